@@ -9,4 +9,5 @@ public class Constant {
     public static final String REASON_CONFLICT = "Integrity constraint has been violated.";
     public static final String REASON_BAD_REQUEST = "Incorrectly made request.";
     public static final String NAME_SERVICE_APP = "ewm-main-service";
+    public static final String EVENTS_ENTITY_TYPE = "events";
 }
@@ -6,7 +6,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.EndpointHitDto;
 import ru.practicum.StatsClient;
-import ru.practicum.ViewStatsDto;
+import ru.practicum.EntityStatsDto;
 import ru.practicum.event.repository.CustomSearchEventRepository;
 import ru.practicum.event.sort.SortEvent;
 import ru.practicum.event.dto.*;
@@ -28,6 +28,7 @@ import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static ru.practicum.constant.Constant.EVENTS_ENTITY_TYPE;
 import static ru.practicum.constant.Constant.NAME_SERVICE_APP;
 import static ru.practicum.event.sort.SortEvent.VIEWS;
 import static ru.practicum.event.state.AdminStateAction.*;
@@ -256,17 +257,19 @@ public class EventServiceImpl implements EventService {
     }
 
     private void sendInfoAboutViewInStats(List<Long> eventsIds, HttpServletRequest request) {
-        for (Long id : eventsIds) {
-            statsClient.createHit(new EndpointHitDto(NAME_SERVICE_APP, "/events/" + id,
-                    request.getRemoteAddr(), LocalDateTime.now()));
+        if (eventsIds.isEmpty()) {
+            return;
         }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<EndpointHitDto> hits = eventsIds.stream()
+                .map(id -> new EndpointHitDto(NAME_SERVICE_APP, "/events/" + id, request.getRemoteAddr(), now))
+                .collect(Collectors.toList());
+        statsClient.createHits(hits);
     }
 
     private void setViewsForOneEvents(Event event) {
-        List<String> uri = List.of("/events/" + event.getId());
-        ViewStatsDto viewStatsDto = statsClient.getStats(event.getCreatedOn(), LocalDateTime.now(), uri, true)
-                .get(0);
-        event.setViews(viewStatsDto.getHits());
+        setViewsForListEvents(List.of(event));
     }
 
     private void getExceptionIfEventNotPublished(Long eventId) {
@@ -295,27 +298,21 @@ public class EventServiceImpl implements EventService {
             return events;
         }
 
-        List<String> uris = events.stream()
-                .map(event -> "/events/" + event.getId())
-                .collect(Collectors.toList());
-
-        LocalDateTime minCreatedOn = events.stream()
-                .map(Event::getCreatedOn)
-                .min(LocalDateTime::compareTo)
-                .orElse(LocalDateTime.now());
-
-        List<ViewStatsDto> viewStatsDto = statsClient.getStats(minCreatedOn, LocalDateTime.now(), uris, true);
-
-        Map<Long, Long> eventsViews = new HashMap<>();
-        viewStatsDto.forEach(v -> eventsViews.put(Long.valueOf(v.getUri().replace("/events/", "")),
-                v.getHits() != null ? v.getHits() : 0));
+        Map<Long, Event> eventsById = new HashMap<>();
+        Map<Long, LocalDateTime> createdOnById = new HashMap<>();
+        for (Event event : events) {
+            event.setViews(0L);
+            eventsById.put(event.getId(), event);
+            createdOnById.put(event.getId(), event.getCreatedOn());
+        }
 
-        events = events.stream()
-                .peek(event -> {
-                    Long views = eventsViews.getOrDefault(event.getId(), 0L);
-                    event.setViews(views);
-                })
-                .collect(Collectors.toList());
+        EntityStatsDto entityStatsDto = statsClient.getEntityStats(NAME_SERVICE_APP, EVENTS_ENTITY_TYPE,
+                createdOnById, LocalDateTime.now(), true);
+        long[] ids = entityStatsDto.getIds();
+        long[] hits = entityStatsDto.getHits();
+        for (int i = 0; i < ids.length; i++) {
+            eventsById.get(ids[i]).setViews(hits[i]);
+        }
 
         return events;
     }
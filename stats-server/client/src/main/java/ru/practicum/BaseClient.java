@@ -20,38 +20,56 @@ public class BaseClient {
     }
 
     protected <T> ResponseEntity<Object> post(String path, T body) {
-        return makeAndSendRequest(HttpMethod.POST, path, null, body);
+        return post(path, body, defaultHeaders());
+    }
+
+    protected <T> ResponseEntity<Object> post(String path, T body, HttpHeaders headers) {
+        return makeAndSendRequest(HttpMethod.POST, path, null, body, headers, Object.class);
     }
 
     protected ResponseEntity<Object> get(String path, @Nullable Map<String, Object> parameters) {
-        return makeAndSendRequest(HttpMethod.GET, path, parameters, null);
+        return makeAndSendRequest(HttpMethod.GET, path, parameters, null, defaultHeaders(), Object.class);
+    }
+
+    /**
+     * GET with the response body kept as raw bytes of the {@code accept} media type.
+     */
+    protected ResponseEntity<byte[]> getBytes(String path, @Nullable Map<String, Object> parameters,
+                                              MediaType accept) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(accept));
+        return makeAndSendRequest(HttpMethod.GET, path, parameters, null, headers, byte[].class);
     }
 
-    private <T> ResponseEntity<Object> makeAndSendRequest(HttpMethod method, String path,
-                                                          @Nullable Map<String, Object> parameters,
-                                                          @Nullable T body) {
-        HttpEntity<T> requestEntity = new HttpEntity<>(body, defaultHeaders());
-        ResponseEntity<Object> serverResponse;
+    @SuppressWarnings("unchecked")
+    private <T, R> ResponseEntity<R> makeAndSendRequest(HttpMethod method, String path,
+                                                        @Nullable Map<String, Object> parameters,
+                                                        @Nullable T body, HttpHeaders headers, Class<R> responseType) {
+        HttpEntity<T> requestEntity = new HttpEntity<>(body, headers);
+        ResponseEntity<R> serverResponse;
         try {
             if (parameters != null) {
-                serverResponse = rest.exchange(path, method, requestEntity, Object.class, parameters);
+                serverResponse = rest.exchange(path, method, requestEntity, responseType, parameters);
             } else {
-                serverResponse = rest.exchange(path, method, requestEntity, Object.class);
+                serverResponse = rest.exchange(path, method, requestEntity, responseType);
             }
         } catch (HttpStatusCodeException e) {
-            return ResponseEntity.status(e.getStatusCode()).body(e.getResponseBodyAsByteArray());
+            // both response types used here, Object and byte[], hold the raw error body
+            return ResponseEntity.status(e.getStatusCode())
+                    .headers(e.getResponseHeaders())
+                    .body((R) e.getResponseBodyAsByteArray());
         }
         return prepareResponse(serverResponse);
     }
 
-    private HttpHeaders defaultHeaders() {
+    protected HttpHeaders defaultHeaders() {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         headers.setAccept(List.of(MediaType.APPLICATION_JSON));
         return headers;
     }
 
-    private static ResponseEntity<Object> prepareResponse(ResponseEntity<Object> response) {
+    private static <R> ResponseEntity<R> prepareResponse(ResponseEntity<R> response) {
         if (response.getStatusCode().is2xxSuccessful()) {
             return response;
         }
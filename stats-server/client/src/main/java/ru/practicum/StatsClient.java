@@ -1,53 +1,113 @@
 package ru.practicum;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 @Service
 public class StatsClient extends BaseClient {
-    private final ObjectMapper mapper = new ObjectMapper();
+    private static final Logger log = LoggerFactory.getLogger(StatsClient.class);
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final String API_PREFIX_HIT = "/hit";
+    private static final String API_PREFIX_HITS = "/hits";
     private static final String API_PREFIX_STATS = "/stats";
+    private static final String API_PREFIX_STATS_QUERY = "/stats/query";
+    private static final String API_PREFIX_STATS_ENTITIES = "/stats/entities";
+    private static final String API_PREFIX_STATS_SERIES = "/stats/series";
+    private static final MediaType BINARY = MediaType.valueOf(BinaryStatsFormat.MEDIA_TYPE);
 
+    private final StatsEncoding encoding;
+    private final int hitRetries;
+    private final Duration maxRetryDelay;
+
+    /**
+     * Hits the server turns away with {@code 429 Too Many Requests} are sent again after its {@code Retry-After},
+     * at most {@code hitRetries} times and only while the server asks to wait no longer than
+     * {@code maxRetryDelayMs}, since the retries hold the request thread of the caller.
+     */
     @Autowired
-    public StatsClient(@Value("${STATS_SERVER_URL}") String serverUrl, RestTemplateBuilder builder) {
+    public StatsClient(@Value("${STATS_SERVER_URL}") String serverUrl,
+                       @Value("${STATS_SERVER_ENCODING:JSON}") StatsEncoding encoding,
+                       @Value("${STATS_SERVER_HIT_RETRIES:2}") int hitRetries,
+                       @Value("${STATS_SERVER_HIT_MAX_RETRY_DELAY_MS:2000}") long maxRetryDelayMs,
+                       RestTemplateBuilder builder) {
         super(
                 builder
                         .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl))
                         .requestFactory(HttpComponentsClientHttpRequestFactory::new)
                         .build()
         );
+        this.encoding = encoding;
+        this.hitRetries = hitRetries;
+        this.maxRetryDelay = Duration.ofMillis(maxRetryDelayMs);
     }
 
     public ResponseEntity<Object> createHit(EndpointHitDto body) {
-        return post(API_PREFIX_HIT, body);
+        return postHits(API_PREFIX_HIT, body, List.of(body));
+    }
+
+    public ResponseEntity<Object> createHits(List<EndpointHitDto> body) {
+        return postHits(API_PREFIX_HITS, body, body);
     }
 
     public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end,
                                        @Nullable List<String> uris, Boolean unique) {
+        return getStats(start, end, uris, unique, false);
+    }
+
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end,
+                                       @Nullable List<String> uris, Boolean unique, Boolean approximate) {
         String startFormatted = FORMATTER.format(start);
         String endFormatted = FORMATTER.format(end);
 
-        String path = "?start={start}&end={end}&uris={uris}&unique={unique}";
+        String path = "?start={start}&end={end}&uris={uris}&unique={unique}&approximate={approximate}";
         Map<String, Object> parameters = Map.of(
                 "start", startFormatted,
                 "end", endFormatted,
                 "uris", uris != null ? String.join(",", uris) : "",
-                "unique", unique);
+                "unique", unique,
+                "approximate", approximate);
+        if (encoding == StatsEncoding.BINARY) {
+            ResponseEntity<byte[]> response = getBytes(API_PREFIX_STATS + path, parameters, BINARY);
+            try {
+                if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+                    throw new IOException("Stats request failed with " + response.getStatusCode());
+                }
+                return new BinaryStatsReader(new ByteArrayInputStream(response.getBody())).readAllStats();
+            } catch (IOException exception) {
+                throw new ClassCastException(exception.getMessage());
+            }
+        }
         Object response = get(API_PREFIX_STATS + path, parameters).getBody();
         try {
             return Arrays.asList(mapper.readValue(mapper.writeValueAsString(response), ViewStatsDto[].class));
@@ -55,4 +115,163 @@ public class StatsClient extends BaseClient {
             throw new ClassCastException(exception.getMessage());
         }
     }
+
+    /**
+     * Stats of every uri counted from its own start, sent as one POST request so that long uri lists do not
+     * end up in the query string. More uris than the server takes in one query are sent in several requests,
+     * whose results are merged most visited first.
+     */
+    public List<ViewStatsDto> getStats(Map<String, LocalDateTime> startsByUri, LocalDateTime end, Boolean unique) {
+        List<UriStartDto> uris = startsByUri.entrySet().stream()
+                .map(entry -> new UriStartDto(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+        List<ViewStatsDto> stats = new ArrayList<>();
+        for (int from = 0; from < uris.size(); from += StatsQueryDto.MAX_URIS) {
+            List<UriStartDto> chunk = uris.subList(from, Math.min(from + StatsQueryDto.MAX_URIS, uris.size()));
+            Object response = post(API_PREFIX_STATS_QUERY, new StatsQueryDto(chunk, end, unique)).getBody();
+            try {
+                stats.addAll(Arrays.asList(mapper.readValue(mapper.writeValueAsString(response),
+                        ViewStatsDto[].class)));
+            } catch (Exception exception) {
+                throw new ClassCastException(exception.getMessage());
+            }
+        }
+        if (uris.size() > StatsQueryDto.MAX_URIS) {
+            stats.sort(Comparator.comparingLong(ViewStatsDto::getHits).reversed());
+        }
+        return stats;
+    }
+
+    /**
+     * Hits of the {@code app} per entity id of the type, such as {@code events}, each counted from its own start.
+     * More entities than the server takes in one query are sent in several queries.
+     */
+    public EntityStatsDto getEntityStats(@Nullable String app, String entityType, Map<Long, LocalDateTime> startsById,
+                                         LocalDateTime end, Boolean unique) {
+        List<EntityStartDto> entities = startsById.entrySet().stream()
+                .map(entry -> new EntityStartDto(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+        long[] ids = new long[0];
+        long[] hits = new long[0];
+        for (int from = 0; from < entities.size(); from += EntityStatsQueryDto.MAX_ENTITIES) {
+            List<EntityStartDto> chunk = entities.subList(from,
+                    Math.min(from + EntityStatsQueryDto.MAX_ENTITIES, entities.size()));
+            Object response = post(API_PREFIX_STATS_ENTITIES,
+                    new EntityStatsQueryDto(app, entityType, chunk, end, unique)).getBody();
+            EntityStatsDto entityStats;
+            try {
+                entityStats = mapper.readValue(mapper.writeValueAsString(response), EntityStatsDto.class);
+            } catch (Exception exception) {
+                throw new ClassCastException(exception.getMessage());
+            }
+            ids = concat(ids, entityStats.getIds());
+            hits = concat(hits, entityStats.getHits());
+        }
+        return new EntityStatsDto(entityType, ids, hits);
+    }
+
+    /**
+     * Hits per {@code interval} ({@code HOUR} or {@code DAY}) for each of the uris, in one request.
+     */
+    public ViewSeriesDto getStatsSeries(LocalDateTime start, LocalDateTime end, @Nullable List<String> uris,
+                                        String interval, Boolean unique) {
+        String path = "?start={start}&end={end}&uris={uris}&interval={interval}&unique={unique}";
+        Map<String, Object> parameters = Map.of(
+                "start", FORMATTER.format(start),
+                "end", FORMATTER.format(end),
+                "uris", uris != null ? String.join(",", uris) : "",
+                "interval", interval,
+                "unique", unique);
+        Object response = get(API_PREFIX_STATS_SERIES + path, parameters).getBody();
+        try {
+            return mapper.readValue(mapper.writeValueAsString(response), ViewSeriesDto.class);
+        } catch (Exception exception) {
+            throw new ClassCastException(exception.getMessage());
+        }
+    }
+
+    private static long[] concat(long[] first, long[] second) {
+        long[] all = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        return all;
+    }
+
+    /**
+     * Sends the hits, retrying while the server sheds them with {@code 429}. A response that is still not
+     * successful is logged, since the hits it carried are lost, and returned to the caller.
+     */
+    private ResponseEntity<Object> postHits(String path, Object body, List<EndpointHitDto> hits) {
+        Supplier<ResponseEntity<Object>> request = hitsRequest(path, body, hits);
+        ResponseEntity<Object> response = request.get();
+        for (int retry = 0; retry < hitRetries && response.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS; retry++) {
+            Duration delay = retryDelay(response.getHeaders());
+            if (delay.compareTo(maxRetryDelay) > 0 || !sleep(delay)) {
+                break;
+            }
+            response = request.get();
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            log.warn("Stats server did not accept {} hits to {}: {}", hits.size(), path, response.getStatusCode());
+        }
+        return response;
+    }
+
+    /**
+     * The wait asked for by {@code Retry-After}, in seconds or as an HTTP date, or {@code maxRetryDelay} when the
+     * header is missing or malformed.
+     */
+    private Duration retryDelay(HttpHeaders headers) {
+        String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter == null) {
+            return maxRetryDelay;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                Duration delay = Duration.between(ZonedDateTime.now(),
+                        ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException ignored) {
+                return maxRetryDelay;
+            }
+        }
+    }
+
+    private static boolean sleep(Duration delay) {
+        try {
+            Thread.sleep(delay.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Supplier<ResponseEntity<Object>> hitsRequest(String path, Object body, List<EndpointHitDto> hits) {
+        if (encoding == StatsEncoding.JSON) {
+            return () -> post(path, body);
+        }
+
+        HttpHeaders headers = defaultHeaders();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            if (encoding == StatsEncoding.BINARY) {
+                headers.setContentType(BINARY);
+                BinaryStatsWriter writer = new BinaryStatsWriter(bytes);
+                for (EndpointHitDto hit : hits) {
+                    writer.writeHit(hit);
+                }
+            } else {
+                headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                    mapper.writeValue(gzip, body);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] encoded = bytes.toByteArray();
+        return () -> post(path, encoded, headers);
+    }
 }
@@ -0,0 +1,12 @@
+package ru.practicum;
+
+/**
+ * How {@link StatsClient} sends hits and receives stats: as JSON, as JSON with gzip-compressed request bodies, or
+ * in the compact {@link BinaryStatsFormat}. Large responses come gzip-compressed whatever the choice and are
+ * inflated by the HTTP client.
+ */
+public enum StatsEncoding {
+    JSON,
+    GZIP,
+    BINARY
+}
@@ -0,0 +1,101 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.web.client.MockServerRestTemplateCustomizer;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+
+public class StatsClientTest {
+    private static final String SERVER_URL = "http://localhost:9090";
+    private static final String HITS_URL = SERVER_URL + "/hits";
+    private final List<EndpointHitDto> hits = List.of(new EndpointHitDto("ewm-main-service", "/events/1",
+            "121.0.0.1", LocalDateTime.of(2024, 6, 16, 10, 51, 2)));
+    private final MockServerRestTemplateCustomizer customizer = new MockServerRestTemplateCustomizer();
+
+    @DisplayName("Отклонённые с 429 запросы должны повторяться после Retry-After")
+    @Test
+    public void shouldRetryHitsAfterTooManyRequests() {
+        StatsClient client = client(2, 2000);
+        MockRestServiceServer server = customizer.getServer();
+        server.expect(requestTo(HITS_URL)).andExpect(method(HttpMethod.POST))
+                .andRespond(withStatus(HttpStatus.TOO_MANY_REQUESTS)
+                        .headers(retryAfter("0")));
+        server.expect(requestTo(HITS_URL)).andExpect(method(HttpMethod.POST))
+                .andRespond(withStatus(HttpStatus.CREATED));
+
+        ResponseEntity<Object> response = client.createHits(hits);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        server.verify();
+    }
+
+    @DisplayName("После исчерпания повторов клиент должен вернуть ответ 429 вызывающему")
+    @Test
+    public void shouldReturnTooManyRequestsWhenRetriesAreExhausted() {
+        StatsClient client = client(2, 2000);
+        MockRestServiceServer server = customizer.getServer();
+        server.expect(ExpectedCount.times(3), requestTo(HITS_URL))
+                .andRespond(withStatus(HttpStatus.TOO_MANY_REQUESTS)
+                        .headers(retryAfter("0")));
+
+        ResponseEntity<Object> response = client.createHits(hits);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("0");
+        server.verify();
+    }
+
+    @DisplayName("Клиент не должен ждать дольше допустимого, если Retry-After слишком велик")
+    @Test
+    public void shouldNotRetryWhenRetryAfterExceedsMaxDelay() {
+        StatsClient client = client(2, 2000);
+        MockRestServiceServer server = customizer.getServer();
+        server.expect(ExpectedCount.once(), requestTo(HITS_URL))
+                .andRespond(withStatus(HttpStatus.TOO_MANY_REQUESTS)
+                        .headers(retryAfter("60")));
+
+        ResponseEntity<Object> response = client.createHits(hits);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        server.verify();
+    }
+
+    @DisplayName("Прочие ошибки сервера не должны повторяться")
+    @Test
+    public void shouldNotRetryOtherErrors() {
+        StatsClient client = client(2, 2000);
+        MockRestServiceServer server = customizer.getServer();
+        server.expect(ExpectedCount.once(), requestTo(SERVER_URL + "/hit"))
+                .andRespond(withStatus(HttpStatus.BAD_REQUEST));
+
+        ResponseEntity<Object> response = client.createHit(hits.get(0));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        server.verify();
+    }
+
+    private StatsClient client(int hitRetries, long maxRetryDelayMs) {
+        return new StatsClient(SERVER_URL, StatsEncoding.JSON, hitRetries, maxRetryDelayMs,
+                new RestTemplateBuilder(customizer));
+    }
+
+    private static HttpHeaders retryAfter(String seconds) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, seconds);
+        return headers;
+    }
+}
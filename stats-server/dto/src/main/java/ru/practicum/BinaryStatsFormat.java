@@ -0,0 +1,25 @@
+package ru.practicum;
+
+/**
+ * Compact binary encoding of hits and stats rows, negotiated as {@value #MEDIA_TYPE}. A stream starts with the
+ * {@value #VERSION} version byte and holds records of one kind up to its end:
+ * <pre>
+ * hit    string app, uri, ip, zigzag varint seconds since the previous hit (the first since 1970-01-01T00:00)
+ * stats  string app, uri, varint hits
+ * string varint reference: 0 introduces a literal (varint UTF-8 length, bytes) that takes the next number
+ *        from 1 on, any other value repeats the literal of that number
+ * uri    string up to and including the last '/', then the rest as a plain literal
+ * ip     byte 4 and the four octets of a dotted IPv4 address, or byte 0 and a plain literal
+ * </pre>
+ * Repeated apps and uri prefixes such as {@code /events/} thus cost one or two bytes after their first use.
+ */
+public final class BinaryStatsFormat {
+    public static final String MEDIA_TYPE = "application/x-ewm-stats";
+    public static final int VERSION = 1;
+    static final int MAX_LITERAL_LENGTH = 64 * 1024;
+    static final int IPV4 = 4;
+    static final int LITERAL = 0;
+
+    private BinaryStatsFormat() {
+    }
+}
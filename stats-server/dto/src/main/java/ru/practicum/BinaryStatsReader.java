@@ -0,0 +1,132 @@
+package ru.practicum;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads records in the {@link BinaryStatsFormat}. Not buffered: wrap unbuffered streams in a
+ * {@link java.io.BufferedInputStream}.
+ */
+public class BinaryStatsReader {
+    private final InputStream in;
+    private final List<String> literals = new ArrayList<>();
+    private long previousTimestamp;
+
+    public BinaryStatsReader(InputStream in) throws IOException {
+        this.in = in;
+        int version = in.read();
+        if (version != BinaryStatsFormat.VERSION) {
+            throw new IOException("Unsupported binary stats version: " + version);
+        }
+    }
+
+    /**
+     * The next hit, or {@code null} at the end of the stream.
+     */
+    public EndpointHitDto readHit() throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        String app = readString(first);
+        String uri = readUri();
+        String ip = readIp();
+        long zigzag = readVarint(read());
+        previousTimestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+        return new EndpointHitDto(app, uri, ip, LocalDateTime.ofEpochSecond(previousTimestamp, 0, ZoneOffset.UTC));
+    }
+
+    /**
+     * The next stats row, or {@code null} at the end of the stream.
+     */
+    public ViewStatsDto readStats() throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        return new ViewStatsDto(readString(first), readUri(), readVarint(read()));
+    }
+
+    public List<EndpointHitDto> readHits() throws IOException {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (EndpointHitDto hit = readHit(); hit != null; hit = readHit()) {
+            hits.add(hit);
+        }
+        return hits;
+    }
+
+    public List<ViewStatsDto> readAllStats() throws IOException {
+        List<ViewStatsDto> stats = new ArrayList<>();
+        for (ViewStatsDto row = readStats(); row != null; row = readStats()) {
+            stats.add(row);
+        }
+        return stats;
+    }
+
+    private String readUri() throws IOException {
+        return readString(read()) + readLiteral();
+    }
+
+    private String readIp() throws IOException {
+        int kind = read();
+        if (kind == BinaryStatsFormat.IPV4) {
+            return read() + "." + read() + "." + read() + "." + read();
+        }
+        if (kind == BinaryStatsFormat.LITERAL) {
+            return readLiteral();
+        }
+        throw new IOException("Unknown ip kind: " + kind);
+    }
+
+    private String readString(int first) throws IOException {
+        long reference = readVarint(first);
+        if (reference == 0) {
+            String literal = readLiteral();
+            literals.add(literal);
+            return literal;
+        }
+        if (reference > literals.size()) {
+            throw new IOException("Unknown string reference: " + reference);
+        }
+        return literals.get((int) reference - 1);
+    }
+
+    private String readLiteral() throws IOException {
+        long length = readVarint(read());
+        if (length > BinaryStatsFormat.MAX_LITERAL_LENGTH) {
+            throw new IOException("Literal too long: " + length);
+        }
+        byte[] bytes = in.readNBytes((int) length);
+        if (bytes.length < length) {
+            throw new EOFException("Stream ended inside a literal");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long readVarint(int first) throws IOException {
+        long value = first & 0x7F;
+        int b = first;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            if (shift > 63) {
+                throw new IOException("Varint too long");
+            }
+            b = read();
+            value |= (long) (b & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    private int read() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Stream ended inside a record");
+        }
+        return b;
+    }
+}
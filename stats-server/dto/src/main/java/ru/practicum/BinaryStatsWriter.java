@@ -0,0 +1,113 @@
+package ru.practicum;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes records in the {@link BinaryStatsFormat}. Not buffered: wrap unbuffered streams in a
+ * {@link java.io.BufferedOutputStream}.
+ */
+public class BinaryStatsWriter implements Flushable {
+    private final OutputStream out;
+    private final Map<String, Integer> references = new HashMap<>();
+    private long previousTimestamp;
+
+    public BinaryStatsWriter(OutputStream out) throws IOException {
+        this.out = out;
+        out.write(BinaryStatsFormat.VERSION);
+    }
+
+    public void writeHit(EndpointHitDto hit) throws IOException {
+        writeString(hit.getApp());
+        writeUri(hit.getUri());
+        writeIp(hit.getIp());
+        long timestamp = hit.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+        long delta = timestamp - previousTimestamp;
+        writeVarint((delta << 1) ^ (delta >> 63));
+        previousTimestamp = timestamp;
+    }
+
+    public void writeStats(ViewStatsDto stats) throws IOException {
+        writeString(stats.getApp());
+        writeUri(stats.getUri());
+        writeVarint(stats.getHits());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void writeUri(String uri) throws IOException {
+        int split = uri.lastIndexOf('/') + 1;
+        writeString(uri.substring(0, split));
+        writeLiteral(uri.substring(split));
+    }
+
+    private void writeIp(String ip) throws IOException {
+        byte[] octets = ipv4(ip);
+        if (octets != null) {
+            out.write(BinaryStatsFormat.IPV4);
+            out.write(octets);
+        } else {
+            out.write(BinaryStatsFormat.LITERAL);
+            writeLiteral(ip);
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        Integer reference = references.get(value);
+        if (reference != null) {
+            writeVarint(reference);
+            return;
+        }
+        writeVarint(0);
+        writeLiteral(value);
+        references.put(value, references.size() + 1);
+    }
+
+    private void writeLiteral(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static byte[] ipv4(String ip) {
+        byte[] octets = new byte[4];
+        int octet = 0;
+        int value = -1;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c == '.' && value >= 0 && octet < 3) {
+                octets[octet++] = (byte) value;
+                value = -1;
+            } else if (c >= '0' && c <= '9' && value != 0) {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return null;
+                }
+            } else {
+                // not a separator or a digit, or a leading zero that would not survive the round trip
+                return null;
+            }
+        }
+        if (value < 0 || octet != 3) {
+            return null;
+        }
+        octets[3] = (byte) value;
+        return octets;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.practicum;
+
+import lombok.*;
+
+/**
+ * Hits per entity id as two parallel arrays: {@code hits[i]} belongs to {@code ids[i]}. Entities without hits
+ * are left out.
+ */
+@Getter
+@Setter
+@Builder
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntityStatsDto {
+    private String entityType;
+    private long[] ids;
+    private long[] hits;
+}
@@ -0,0 +1,38 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Views of entities of one type, such as {@code events}, each counted from its own start up to the shared end.
+ * Hits of all apps are counted when {@code app} is not set. The stats client splits longer lists into
+ * queries of at most {@value #MAX_ENTITIES} entities.
+ */
+@Getter
+@Setter
+@Builder
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntityStatsQueryDto {
+    public static final int MAX_ENTITIES = 1000;
+    private String app;
+    @NotBlank
+    private String entityType;
+    @NotEmpty
+    @Size(max = MAX_ENTITIES)
+    private List<@Valid @NotNull EntityStartDto> entities;
+    @NotNull
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime end;
+    private Boolean unique;
+}
@@ -0,0 +1,16 @@
+package ru.practicum;
+
+import lombok.*;
+
+/**
+ * Result of a bulk import: the number of hits read from the body, including those dropped as repeats.
+ */
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class HitImportDto {
+    private long hits;
+}
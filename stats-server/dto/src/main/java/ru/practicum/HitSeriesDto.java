@@ -0,0 +1,16 @@
+package ru.practicum;
+
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class HitSeriesDto {
+    private String app;
+    private String uri;
+    private long[] hits;
+}
@@ -0,0 +1,32 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Progress of an aggregate rebuild over the days from {@code from} to {@code to} inclusive. Days rebuilt by an
+ * interrupted run count towards {@code percent} but not towards {@code rows} and {@code rowsPerSecond}.
+ */
+@Getter
+@Setter
+@Builder
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class RebuildStatusDto {
+    private String state;
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate from;
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate to;
+    private int days;
+    private int daysDone;
+    private int daysResumed;
+    private long rows;
+    private double rowsPerSecond;
+    private double percent;
+    private String error;
+}
@@ -0,0 +1,33 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Stats of several uris, each counted from its own start up to the shared end. The stats client splits
+ * longer lists into queries of at most {@value #MAX_URIS} uris.
+ */
+@Getter
+@Setter
+@Builder
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsQueryDto {
+    public static final int MAX_URIS = 1000;
+    @NotEmpty
+    @Size(max = MAX_URIS)
+    private List<@Valid @NotNull UriStartDto> uris;
+    @NotNull
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime end;
+    private Boolean unique;
+}
@@ -0,0 +1,25 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Hits per bucket of {@code interval} for each endpoint. Bucket {@code i} of every series starts at
+ * {@code start + i * interval}; the first and the last bucket only count hits inside the requested range.
+ */
+@Getter
+@Setter
+@Builder
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViewSeriesDto {
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime start;
+    private String interval;
+    private List<HitSeriesDto> series;
+}
@@ -0,0 +1,104 @@
+package practicum;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.BinaryStatsReader;
+import ru.practicum.BinaryStatsWriter;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.ViewStatsDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BinaryStatsFormatTest {
+    private final LocalDateTime timestamp = LocalDateTime.of(2024, 6, 16, 10, 51, 2);
+
+    @DisplayName("Запросы должны читаться в том же виде, в каком были записаны")
+    @Test
+    @SneakyThrows
+    public void shouldRoundTripHits() {
+        List<EndpointHitDto> hits = List.of(
+                new EndpointHitDto("ewm-main-service", "/events/1", "121.0.0.1", timestamp),
+                new EndpointHitDto("ewm-main-service", "/events/1", "2001:db8::1", timestamp.minusDays(3)),
+                new EndpointHitDto("ewm-main-service", "/events", "10.0.0.255", timestamp.plusSeconds(1)),
+                new EndpointHitDto("другой-сервис", "/события/42?from=0", "not-an-ip", timestamp),
+                new EndpointHitDto("ewm-main-service", "/", "256.0.0.1", timestamp),
+                new EndpointHitDto("ewm-main-service", "events/2", "01.2.3.4", timestamp));
+
+        assertThat(new BinaryStatsReader(new ByteArrayInputStream(writeHits(hits))).readHits()).isEqualTo(hits);
+    }
+
+    @DisplayName("Статистика должна читаться в том же виде, в каком была записана")
+    @Test
+    @SneakyThrows
+    public void shouldRoundTripStats() {
+        List<ViewStatsDto> stats = List.of(
+                new ViewStatsDto("ewm-main-service", "/events/1", 0L),
+                new ViewStatsDto("ewm-main-service", "/events/2", 300L),
+                new ViewStatsDto("ewm-main-service", "/compilations/7", Long.MAX_VALUE));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryStatsWriter writer = new BinaryStatsWriter(out);
+        for (ViewStatsDto row : stats) {
+            writer.writeStats(row);
+        }
+        writer.flush();
+
+        assertThat(new BinaryStatsReader(new ByteArrayInputStream(out.toByteArray())).readAllStats())
+                .isEqualTo(stats);
+    }
+
+    @DisplayName("Пакет запросов в двоичном виде должен быть заметно меньше JSON")
+    @Test
+    @SneakyThrows
+    public void shouldBeSmallerThanJson() {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            hits.add(new EndpointHitDto("ewm-main-service", "/events/" + (i % 50), "192.168.0." + (i % 200),
+                    timestamp.plusSeconds(i)));
+        }
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+        assertThat(writeHits(hits).length).isLessThan(mapper.writeValueAsBytes(hits).length / 4);
+    }
+
+    @DisplayName("Обрезанный поток должен приводить к ошибке")
+    @Test
+    @SneakyThrows
+    public void shouldFailOnTruncatedStream() {
+        byte[] bytes = writeHits(List.of(new EndpointHitDto("ewm-main-service", "/events/1", "121.0.0.1",
+                timestamp)));
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+
+        assertThatThrownBy(() -> new BinaryStatsReader(new ByteArrayInputStream(truncated)).readHits())
+                .isInstanceOf(IOException.class);
+    }
+
+    @DisplayName("Неизвестная версия формата должна отклоняться")
+    @Test
+    public void shouldRejectUnknownVersion() {
+        assertThatThrownBy(() -> new BinaryStatsReader(new ByteArrayInputStream(new byte[]{42})))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("version");
+    }
+
+    private byte[] writeHits(List<EndpointHitDto> hits) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryStatsWriter writer = new BinaryStatsWriter(out);
+        for (EndpointHitDto hit : hits) {
+            writer.writeHit(hit);
+        }
+        writer.flush();
+        return out.toByteArray();
+    }
+}
@@ -6,4 +6,7 @@ public class Constant {
     public static final String PATTERN_DATE = "yyyy-MM-dd HH:mm:ss";
     public static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     public static final String REASON_BAD_REQUEST = "Incorrectly made request.";
+    public static final String REASON_CONFLICT = "The request conflicts with the current state.";
+    public static final String REASON_TOO_MANY_REQUESTS = "The service is overloaded, retry later.";
+    public static final String REASON_PAYLOAD_TOO_LARGE = "The request body is too large.";
 }
@@ -0,0 +1,20 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.ingest.admission")
+public class AdmissionProperties {
+    private boolean enabled = true;
+    // kept below the connection pool size so the stats readers always find a connection
+    private int maxConcurrent = 8;
+    // requests that may wait for a slot at once, the rest are shed right away
+    private int maxWaiting = 1;
+    private Duration maxWait = Duration.ofMillis(100);
+    private Duration retryAfter = Duration.ofSeconds(1);
+}
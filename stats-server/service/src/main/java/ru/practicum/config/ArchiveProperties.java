@@ -0,0 +1,20 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.archive")
+public class ArchiveProperties {
+    private boolean enabled = false;
+    // whole days of raw hits older than this move from endpoint to the archive; keep it below the raw hit retention
+    private Duration after = Duration.ofDays(30);
+    private Path directory = Path.of("data", "archive");
+    private String cron = "0 45 3 * * *";
+    private int cachedSegments = 64;
+}
@@ -0,0 +1,12 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.bitmap")
+public class BitmapProperties {
+    private boolean enabled = true;
+}
@@ -0,0 +1,15 @@
+package ru.practicum.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.practicum.repository.DatabaseDialect;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class DatabaseConfig {
+    @Bean
+    public DatabaseDialect databaseDialect(DataSource dataSource) {
+        return DatabaseDialect.detect(dataSource);
+    }
+}
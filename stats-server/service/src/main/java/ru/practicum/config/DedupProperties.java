@@ -0,0 +1,18 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.dedup")
+public class DedupProperties {
+    private boolean enabled = false;
+    private Duration window = Duration.ofMinutes(1);
+    // distinct (app, uri, ip) keys expected per window
+    private long expectedHits = 1_000_000;
+    private double falsePositiveRate = 0.001;
+}
@@ -0,0 +1,14 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.ingest.gzip")
+public class GzipProperties {
+    // largest body a gzip request may inflate to, whatever its compressed size
+    private DataSize maxInflatedSize = DataSize.ofMegabytes(256);
+}
@@ -0,0 +1,20 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.ingest.buffer")
+public class HitBufferProperties {
+    private boolean enabled = false;
+    private int capacity = 100_000;
+    private int batchSize = 1000;
+    private Duration flushInterval = Duration.ofMillis(50);
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+    private int flushAttempts = 3;
+    private Duration retryBackoff = Duration.ofMillis(200);
+}
@@ -0,0 +1,19 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.ingest.socket")
+public class HitSocketProperties {
+    private boolean enabled = false;
+    // senders are not authenticated, so only local ones are accepted unless set otherwise
+    private String host = "127.0.0.1";
+    private int port = 9091;
+    // every connection holds one direct buffer, so this also caps the connections
+    private int buffers = 256;
+    // the largest frame has to fit in one buffer
+    private int bufferSize = 64 * 1024;
+}
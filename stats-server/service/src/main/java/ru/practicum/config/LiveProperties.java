@@ -0,0 +1,15 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.live")
+public class LiveProperties {
+    private boolean enabled = true;
+    private Duration maxWindow = Duration.ofHours(1);
+}
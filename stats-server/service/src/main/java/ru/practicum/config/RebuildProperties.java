@@ -0,0 +1,14 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.rebuild")
+public class RebuildProperties {
+    // days rebuilt at once, each holding one connection; capped below the connection pool size
+    private int parallelism = 4;
+    private int batchSize = 10_000;
+}
@@ -0,0 +1,19 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.retention")
+public class RetentionProperties {
+    private boolean enabled = false;
+    private Duration rawHits = Duration.ofDays(7);
+    private Duration minuteRollups = Duration.ofDays(7);
+    private Duration hourRollups = Duration.ofDays(90);
+    private String cron = "0 15 3 * * *";
+    private int partitionsAhead = 7;
+}
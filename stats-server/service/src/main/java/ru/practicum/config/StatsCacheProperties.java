@@ -0,0 +1,18 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.cache")
+public class StatsCacheProperties {
+    private boolean enabled = true;
+    private int maxSize = 10_000;
+    private int maxRows = 1000;
+    private Duration freshness = Duration.ofSeconds(5);
+    private Duration historicalFreshness = Duration.ofMinutes(1);
+}
@@ -0,0 +1,29 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.storage")
+public class StorageProperties {
+    private Engine engine = Engine.JPA;
+    private Mapped mapped = new Mapped();
+
+    public enum Engine {
+        JPA,
+        MAPPED
+    }
+
+    @Getter
+    @Setter
+    public static class Mapped {
+        private Path directory = Path.of("data", "hits");
+        // 32 bytes each, so 1M hits make a 32 MB segment
+        private int segmentHits = 1 << 20;
+        private int scanParallelism = Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.top")
+public class TopProperties {
+    private boolean enabled = true;
+    private int capacity = 1000;
+    private int days = 7;
+}
@@ -0,0 +1,95 @@
+package ru.practicum.controller;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+import ru.practicum.BinaryStatsFormat;
+import ru.practicum.BinaryStatsReader;
+import ru.practicum.BinaryStatsWriter;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.ViewStatsDto;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Reads hits and writes hits or stats rows in the {@link BinaryStatsFormat} when the client sends or accepts
+ * {@value BinaryStatsFormat#MEDIA_TYPE}.
+ */
+public class BinaryStatsHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    public BinaryStatsHttpMessageConverter() {
+        super(MediaType.valueOf(BinaryStatsFormat.MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return EndpointHitDto.class.equals(clazz) || ViewStatsDto.class.equals(clazz) || List.class.equals(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return isHits(type) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        return (type == null ? supports(clazz) : isHits(type) || isStats(type)) && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        List<EndpointHitDto> hits;
+        try {
+            hits = new BinaryStatsReader(new BufferedInputStream(inputMessage.getBody())).readHits();
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Malformed binary hits: " + e.getMessage(), e, inputMessage);
+        }
+        if (!EndpointHitDto.class.equals(type)) {
+            return hits;
+        }
+        if (hits.size() != 1) {
+            throw new HttpMessageNotReadableException("Expected one hit, got " + hits.size(), inputMessage);
+        }
+        return hits.get(0);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object value, @Nullable Type type, HttpOutputMessage outputMessage)
+            throws IOException {
+        BufferedOutputStream out = new BufferedOutputStream(outputMessage.getBody());
+        BinaryStatsWriter writer = new BinaryStatsWriter(out);
+        for (Object item : value instanceof List ? (List<?>) value : List.of(value)) {
+            if (item instanceof EndpointHitDto) {
+                writer.writeHit((EndpointHitDto) item);
+            } else {
+                writer.writeStats((ViewStatsDto) item);
+            }
+        }
+        writer.flush();
+    }
+
+    private static boolean isHits(Type type) {
+        return EndpointHitDto.class.equals(type) || isListOf(type, EndpointHitDto.class);
+    }
+
+    private static boolean isStats(Type type) {
+        return ViewStatsDto.class.equals(type) || isListOf(type, ViewStatsDto.class);
+    }
+
+    private static boolean isListOf(Type type, Class<?> element) {
+        ResolvableType resolved = ResolvableType.forType(type);
+        return List.class.equals(resolved.resolve()) && element.equals(resolved.resolveGeneric(0));
+    }
+}
@@ -0,0 +1,143 @@
+package ru.practicum.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.practicum.config.GzipProperties;
+import ru.practicum.exception.PayloadTooLargeException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Inflates request bodies sent with {@code Content-Encoding: gzip}; compressing responses is left to the
+ * server ({@code server.compression}). The inflated body is capped, since a few kilobytes of gzip can inflate
+ * to gigabytes; reading past the cap fails with {@link PayloadTooLargeException}, answered with 413.
+ */
+@Component
+@RequiredArgsConstructor
+public class GzipRequestFilter extends OncePerRequestFilter {
+    private static final String GZIP = "gzip";
+    private final GzipProperties properties;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !GZIP.equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        chain.doFilter(new GzipRequest(request, properties.getMaxInflatedSize().toBytes()), response);
+    }
+
+    private static final class GzipRequest extends HttpServletRequestWrapper {
+        private final long maxInflatedSize;
+        private ServletInputStream body;
+
+        private GzipRequest(HttpServletRequest request, long maxInflatedSize) {
+            super(request);
+            this.maxInflatedSize = maxInflatedSize;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (body == null) {
+                body = new InflatingInputStream(new GZIPInputStream(super.getInputStream()), maxInflatedSize);
+            }
+            return body;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return isInflated(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return isInflated(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+
+        // the length and the encoding described the compressed body
+        private static boolean isInflated(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                    || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+        }
+    }
+
+    private static final class InflatingInputStream extends ServletInputStream {
+        private final InputStream in;
+        private final long maxInflatedSize;
+        private long inflated;
+        private boolean finished;
+
+        private InflatingInputStream(InputStream in, long maxInflatedSize) {
+            this.in = in;
+            this.maxInflatedSize = maxInflatedSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            finished = b < 0;
+            count(finished ? 0 : 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = in.read(buffer, offset, length);
+            finished = read < 0;
+            count(Math.max(read, 0));
+            return read;
+        }
+
+        private void count(int read) {
+            inflated += read;
+            if (inflated > maxInflatedSize) {
+                throw new PayloadTooLargeException("Inflated request body exceeds " + maxInflatedSize + " bytes");
+            }
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException("Inflated request bodies are read blocking");
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
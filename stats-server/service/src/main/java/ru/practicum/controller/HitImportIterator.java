@@ -0,0 +1,71 @@
+package ru.practicum.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import org.springframework.core.NestedExceptionUtils;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.exception.InvalidHitImportException;
+import ru.practicum.exception.PayloadTooLargeException;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Hits of a newline-delimited JSON body, parsed and validated one at a time as the import takes them, so
+ * that a malformed or invalid hit fails the import with its line number without the body being buffered.
+ */
+class HitImportIterator implements Iterator<EndpointHitDto> {
+    private final MappingIterator<EndpointHitDto> hits;
+    private final Validator validator;
+
+    HitImportIterator(MappingIterator<EndpointHitDto> hits, Validator validator) {
+        this.hits = hits;
+        this.validator = validator;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return hits.hasNextValue();
+        } catch (IOException e) {
+            throw invalid(e);
+        }
+    }
+
+    @Override
+    public EndpointHitDto next() {
+        EndpointHitDto hit;
+        try {
+            hit = hits.nextValue();
+        } catch (IOException e) {
+            throw invalid(e);
+        }
+        Set<ConstraintViolation<EndpointHitDto>> violations = validator.validate(hit);
+        if (!violations.isEmpty()) {
+            throw new InvalidHitImportException("Invalid hit on line " + hits.getCurrentLocation().getLineNr() + ": "
+                    + violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+        return hit;
+    }
+
+    private RuntimeException invalid(IOException e) {
+        Throwable rootCause = NestedExceptionUtils.getRootCause(e);
+        if (rootCause instanceof PayloadTooLargeException) {
+            return (PayloadTooLargeException) rootCause;
+        }
+        if (e instanceof JsonProcessingException) {
+            JsonProcessingException jsonException = (JsonProcessingException) e;
+            return new InvalidHitImportException("Malformed hit on line " + jsonException.getLocation().getLineNr()
+                    + ": " + jsonException.getOriginalMessage());
+        }
+        return new UncheckedIOException(e);
+    }
+}
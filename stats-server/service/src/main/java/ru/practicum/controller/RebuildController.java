@@ -0,0 +1,37 @@
+package ru.practicum.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import ru.practicum.RebuildStatusDto;
+import ru.practicum.service.AggregateRebuild;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/admin/rebuild")
+@RequiredArgsConstructor
+@Slf4j
+public class RebuildController {
+    private final AggregateRebuild aggregateRebuild;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public RebuildStatusDto startRebuild(@RequestParam(required = false)
+                                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                         @RequestParam(required = false)
+                                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                         @RequestParam(defaultValue = "true", required = false) Boolean resume) {
+        log.info("POST /admin/rebuild: request to rebuild aggregates from raw hits: from={}, to={}, resume={}",
+                from, to, resume);
+        return aggregateRebuild.start(from, to, Boolean.TRUE.equals(resume));
+    }
+
+    @GetMapping
+    public RebuildStatusDto getRebuildStatus() {
+        log.info("GET /admin/rebuild: request for the aggregate rebuild progress");
+        return aggregateRebuild.status();
+    }
+}
@@ -1,17 +1,42 @@
 package ru.practicum.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.BinaryStatsFormat;
+import ru.practicum.BinaryStatsWriter;
 import ru.practicum.EndpointHitDto;
+import ru.practicum.EntityStatsDto;
+import ru.practicum.EntityStatsQueryDto;
+import ru.practicum.HitImportDto;
+import ru.practicum.StatsQueryDto;
+import ru.practicum.ViewSeriesDto;
 import ru.practicum.ViewStatsDto;
+import ru.practicum.exception.ResponseAbortedException;
+import ru.practicum.model.Granularity;
 import ru.practicum.service.StatsService;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.Validator;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -23,6 +48,8 @@ import static ru.practicum.Constant.PATTERN_DATE;
 @Validated
 public class StatsController {
     private final StatsService service;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
@@ -31,15 +58,182 @@ public class StatsController {
         return service.createHit(endpointHitDto);
     }
 
+    @PostMapping("/hits")
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<EndpointHitDto> createHits(@RequestBody List<@Valid EndpointHitDto> endpointHitDtos) {
+        log.info("POST /hits: request to save a batch of {} endpoint requests", endpointHitDtos.size());
+        return service.createHits(endpointHitDtos);
+    }
+
+    /**
+     * Bulk-loads hits sent as newline-delimited JSON, one {@link EndpointHitDto} per line, reading the body as
+     * it is stored.
+     */
+    @PostMapping(value = "/hits/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public HitImportDto importHits(HttpServletRequest request) throws IOException {
+        log.info("POST /hits/import: request to import endpoint requests");
+        try (MappingIterator<EndpointHitDto> hits = objectMapper.readerFor(EndpointHitDto.class)
+                .readValues(request.getInputStream())) {
+            long imported = service.importHits(new HitImportIterator(hits, validator));
+            log.info("POST /hits/import: imported {} endpoint requests", imported);
+            return new HitImportDto(imported);
+        }
+    }
+
+    /**
+     * Writes the raw hits of the range as newline-delimited JSON while they are read from the storage.
+     */
+    @GetMapping(value = "/hits/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportHits(@RequestParam @DateTimeFormat(pattern = PATTERN_DATE)
+                           @NotNull LocalDateTime start,
+                           @RequestParam @DateTimeFormat(pattern = PATTERN_DATE)
+                           @NotNull LocalDateTime end,
+                           HttpServletResponse response) throws IOException {
+        log.info("GET /hits/export: request to export endpoint requests: start={}, end={}", start, end);
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())
+                .setRootValueSeparator(null);
+        ObjectWriter jsonWriter = bufferedWriter();
+        stream(response, () -> service.exportHits(start, end, endpointHitDto -> {
+            try {
+                jsonWriter.writeValue(generator, endpointHitDto);
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        generator.close();
+    }
+
+    /**
+     * Writes the stats as they are read from the database: as a JSON array by default, as
+     * newline-delimited JSON objects when the client accepts {@code application/x-ndjson}, or in the
+     * {@link BinaryStatsFormat} when it accepts {@value BinaryStatsFormat#MEDIA_TYPE}.
+     */
     @GetMapping("/stats")
-    public List<ViewStatsDto> getStats(@RequestParam @DateTimeFormat(pattern = PATTERN_DATE)
-                                       @NotNull LocalDateTime start,
-                                       @RequestParam @DateTimeFormat(pattern = PATTERN_DATE)
-                                       @NotNull LocalDateTime end,
-                                       @RequestParam(required = false) List<String> uris,
-                                       @RequestParam(defaultValue = "false", required = false) Boolean unique) {
-        log.info("GET /stats: request for statistics on visits: start={}, end={}, uris={}, unique={}",
-                start, end, uris, unique);
-        return service.getStats(start, end, uris, unique);
+    public void getStats(@RequestParam @DateTimeFormat(pattern = PATTERN_DATE)
+                         @NotNull LocalDateTime start,
+                         @RequestParam @DateTimeFormat(pattern = PATTERN_DATE)
+                         @NotNull LocalDateTime end,
+                         @RequestParam(required = false) List<String> uris,
+                         @RequestParam(required = false) String app,
+                         @RequestParam(defaultValue = "false", required = false) Boolean unique,
+                         @RequestParam(defaultValue = "false", required = false) Boolean approximate,
+                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                         HttpServletResponse response) throws IOException {
+        log.info("GET /stats: request for statistics on visits: start={}, end={}, uris={}, app={}, unique={}, " +
+                "approximate={}", start, end, uris, app, unique, approximate);
+        if (accept != null && accept.contains(BinaryStatsFormat.MEDIA_TYPE)) {
+            response.setContentType(BinaryStatsFormat.MEDIA_TYPE);
+            BinaryStatsWriter writer = new BinaryStatsWriter(new BufferedOutputStream(response.getOutputStream()));
+            stream(response, () -> service.streamStats(start, end, uris, app, unique, approximate, viewStatsDto -> {
+                try {
+                    writer.writeStats(viewStatsDto);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            writer.flush();
+            return;
+        }
+        boolean ndjson = accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setContentType(ndjson ? MediaType.APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())
+                .setRootValueSeparator(null);
+        ObjectWriter jsonWriter = bufferedWriter();
+        if (!ndjson) {
+            generator.writeStartArray();
+        }
+
+        stream(response, () -> service.streamStats(start, end, uris, app, unique, approximate, viewStatsDto -> {
+            try {
+                jsonWriter.writeValue(generator, viewStatsDto);
+                if (ndjson) {
+                    generator.writeRaw('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+
+        if (!ndjson) {
+            generator.writeEndArray();
+        }
+        generator.close();
+    }
+
+    @PostMapping("/stats/query")
+    public List<ViewStatsDto> getStats(@Valid @RequestBody StatsQueryDto statsQueryDto) {
+        log.info("POST /stats/query: request for statistics on visits of {} uris with their own start times, end={}, " +
+                "unique={}", statsQueryDto.getUris().size(), statsQueryDto.getEnd(), statsQueryDto.getUnique());
+        return service.getStats(statsQueryDto);
+    }
+
+    @PostMapping("/stats/entities")
+    public EntityStatsDto getEntityStats(@Valid @RequestBody EntityStatsQueryDto entityStatsQueryDto) {
+        log.info("POST /stats/entities: request for statistics on visits of {} entities of type {}, app={}, end={}, " +
+                        "unique={}", entityStatsQueryDto.getEntities().size(), entityStatsQueryDto.getEntityType(),
+                entityStatsQueryDto.getApp(), entityStatsQueryDto.getEnd(), entityStatsQueryDto.getUnique());
+        return service.getEntityStats(entityStatsQueryDto);
+    }
+
+    @GetMapping("/stats/top")
+    public List<ViewStatsDto> getTopStats(@RequestParam @DateTimeFormat(pattern = PATTERN_DATE)
+                                          @NotNull LocalDateTime start,
+                                          @RequestParam @DateTimeFormat(pattern = PATTERN_DATE)
+                                          @NotNull LocalDateTime end,
+                                          @RequestParam(defaultValue = "10") @Positive int n,
+                                          @RequestParam(defaultValue = "false", required = false) Boolean unique) {
+        log.info("GET /stats/top: request for the {} most visited endpoints: start={}, end={}, unique={}",
+                n, start, end, unique);
+        return service.getTopStats(start, end, n, unique);
+    }
+
+    @GetMapping("/stats/series")
+    public ViewSeriesDto getStatsSeries(@RequestParam @DateTimeFormat(pattern = PATTERN_DATE)
+                                        @NotNull LocalDateTime start,
+                                        @RequestParam @DateTimeFormat(pattern = PATTERN_DATE)
+                                        @NotNull LocalDateTime end,
+                                        @RequestParam(required = false) List<String> uris,
+                                        @RequestParam(required = false) String app,
+                                        @RequestParam(defaultValue = "DAY") Granularity interval,
+                                        @RequestParam(defaultValue = "false", required = false) Boolean unique) {
+        log.info("GET /stats/series: request for visits per {}: start={}, end={}, uris={}, app={}, unique={}",
+                interval, start, end, uris, app, unique);
+        return service.getStatsSeries(start, end, uris, app, interval, unique);
+    }
+
+    @GetMapping("/stats/live")
+    public List<ViewStatsDto> getLiveStats(@RequestParam(required = false) List<String> uris,
+                                           @RequestParam(required = false) String app,
+                                           @RequestParam(defaultValue = "PT15M") Duration window) {
+        log.info("GET /stats/live: request for visits of the last {}: uris={}, app={}", window, uris, app);
+        return service.getLiveStats(uris, app, window);
+    }
+
+    // flushing after each value would commit the response with the first one and send a chunk per value
+    private ObjectWriter bufferedWriter() {
+        return objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Runs a write that streams the response body. An error raised before the response is committed is
+     * reported as usual, with the partial body discarded. Once the status and part of the body are sent, a
+     * completed response would pass the partial body for a whole one, so the connection is aborted instead.
+     */
+    private void stream(HttpServletResponse response, Runnable write) {
+        try {
+            write.run();
+        } catch (RuntimeException e) {
+            if (!response.isCommitted()) {
+                response.reset();
+                throw e;
+            }
+            log.error("Aborting the response after part of its body was sent", e);
+            throw new ResponseAbortedException("Response aborted: " + e.getMessage());
+        }
     }
 }
@@ -1,16 +1,27 @@
 package ru.practicum.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedExceptionUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 import ru.practicum.exception.ApiError;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import static ru.practicum.Constant.REASON_BAD_REQUEST;
+import static ru.practicum.Constant.REASON_CONFLICT;
+import static ru.practicum.Constant.REASON_PAYLOAD_TOO_LARGE;
+import static ru.practicum.Constant.REASON_TOO_MANY_REQUESTS;
 
 @RestControllerAdvice
 @Slf4j
@@ -25,4 +36,122 @@ public class ErrorHandler extends ResponseEntityExceptionHandler {
                 .setErrors(e.getErrorMessages());
         return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
     }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<ApiError> handleInvalidIpAddressException(final InvalidIpAddressException e) {
+        ApiError apiError = new ApiError()
+                .setStatus(HttpStatus.BAD_REQUEST)
+                .setReason(REASON_BAD_REQUEST)
+                .setMessage(e.getMessage())
+                .setErrors(List.of("Incorrect data"));
+        return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<ApiError> handleInvalidUriPatternException(final InvalidUriPatternException e) {
+        ApiError apiError = new ApiError()
+                .setStatus(HttpStatus.BAD_REQUEST)
+                .setReason(REASON_BAD_REQUEST)
+                .setMessage(e.getMessage())
+                .setErrors(List.of("Incorrect data"));
+        return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<ApiError> handleInvalidWindowException(final InvalidWindowException e) {
+        ApiError apiError = new ApiError()
+                .setStatus(HttpStatus.BAD_REQUEST)
+                .setReason(REASON_BAD_REQUEST)
+                .setMessage(e.getMessage())
+                .setErrors(List.of("Incorrect data"));
+        return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<ApiError> handleInvalidIntervalException(final InvalidIntervalException e) {
+        ApiError apiError = new ApiError()
+                .setStatus(HttpStatus.BAD_REQUEST)
+                .setReason(REASON_BAD_REQUEST)
+                .setMessage(e.getMessage())
+                .setErrors(List.of("Incorrect data"));
+        return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<ApiError> handleInvalidHitImportException(final InvalidHitImportException e) {
+        ApiError apiError = new ApiError()
+                .setStatus(HttpStatus.BAD_REQUEST)
+                .setReason(REASON_BAD_REQUEST)
+                .setMessage(e.getMessage())
+                .setErrors(List.of("Incorrect data"));
+        return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ResponseEntity<ApiError> handleRebuildInProgressException(final RebuildInProgressException e) {
+        ApiError apiError = new ApiError()
+                .setStatus(HttpStatus.CONFLICT)
+                .setReason(REASON_CONFLICT)
+                .setMessage(e.getMessage())
+                .setErrors(List.of("Rebuild in progress"));
+        return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ResponseEntity<ApiError> handleIngestionOverloadedException(final IngestionOverloadedException e) {
+        ApiError apiError = new ApiError()
+                .setStatus(HttpStatus.TOO_MANY_REQUESTS)
+                .setReason(REASON_TOO_MANY_REQUESTS)
+                .setMessage(e.getMessage())
+                .setErrors(List.of("Too many hits in flight"));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())));
+        return new ResponseEntity<>(apiError, headers, apiError.getStatus());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public ResponseEntity<ApiError> handlePayloadTooLargeException(final PayloadTooLargeException e) {
+        ApiError apiError = new ApiError()
+                .setStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+                .setReason(REASON_PAYLOAD_TOO_LARGE)
+                .setMessage(e.getMessage())
+                .setErrors(List.of("Request body too large"));
+        return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
+    }
+
+    // Jackson wraps what the body stream throws while a value is bound
+    @Override
+    protected ResponseEntity<Object> handleHttpMessageNotReadable(HttpMessageNotReadableException ex,
+                                                                  HttpHeaders headers, HttpStatus status,
+                                                                  WebRequest request) {
+        Throwable rootCause = NestedExceptionUtils.getRootCause(ex);
+        if (rootCause instanceof PayloadTooLargeException) {
+            ResponseEntity<ApiError> tooLarge = handlePayloadTooLargeException((PayloadTooLargeException) rootCause);
+            return new ResponseEntity<>(tooLarge.getBody(), tooLarge.getHeaders(), tooLarge.getStatusCode());
+        }
+        return super.handleHttpMessageNotReadable(ex, headers, status, request);
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<ApiError> handleConstraintViolationException(final ConstraintViolationException e) {
+        List<String> errors = e.getConstraintViolations().stream()
+                .map(ConstraintViolation::getMessageTemplate)
+                .collect(Collectors.toList());
+
+        ApiError apiError = new ApiError()
+                .setStatus(HttpStatus.BAD_REQUEST)
+                .setReason(REASON_BAD_REQUEST)
+                .setMessage(e.getMessage())
+                .setErrors(errors);
+        return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
+    }
 }
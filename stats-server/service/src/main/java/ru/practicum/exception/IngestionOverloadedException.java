@@ -0,0 +1,16 @@
+package ru.practicum.exception;
+
+import java.time.Duration;
+
+public class IngestionOverloadedException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public IngestionOverloadedException(final String message, final Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
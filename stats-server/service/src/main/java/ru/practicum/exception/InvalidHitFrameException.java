@@ -0,0 +1,7 @@
+package ru.practicum.exception;
+
+public class InvalidHitFrameException extends RuntimeException {
+    public InvalidHitFrameException(final String message) {
+        super(message);
+    }
+}
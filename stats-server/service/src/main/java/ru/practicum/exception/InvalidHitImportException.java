@@ -0,0 +1,7 @@
+package ru.practicum.exception;
+
+public class InvalidHitImportException extends RuntimeException {
+    public InvalidHitImportException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.exception;
+
+public class InvalidIntervalException extends RuntimeException {
+    public InvalidIntervalException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.exception;
+
+public class InvalidUriPatternException extends RuntimeException {
+    public InvalidUriPatternException(final String message) {
+        super(message);
+    }
+}
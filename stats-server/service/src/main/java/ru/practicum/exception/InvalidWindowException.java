@@ -0,0 +1,7 @@
+package ru.practicum.exception;
+
+public class InvalidWindowException extends RuntimeException {
+    public InvalidWindowException(final String message) {
+        super(message);
+    }
+}
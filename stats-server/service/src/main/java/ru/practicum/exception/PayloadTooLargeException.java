@@ -0,0 +1,11 @@
+package ru.practicum.exception;
+
+/**
+ * A request body grew past the size it may take once inflated. Thrown while the body is read, so the
+ * message converters and the import may wrap it; handlers look for it as the root cause.
+ */
+public class PayloadTooLargeException extends RuntimeException {
+    public PayloadTooLargeException(final String message) {
+        super(message);
+    }
+}
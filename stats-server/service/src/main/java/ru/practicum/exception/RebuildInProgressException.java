@@ -0,0 +1,7 @@
+package ru.practicum.exception;
+
+public class RebuildInProgressException extends RuntimeException {
+    public RebuildInProgressException(final String message) {
+        super(message);
+    }
+}
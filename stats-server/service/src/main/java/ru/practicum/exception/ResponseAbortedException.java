@@ -0,0 +1,13 @@
+package ru.practicum.exception;
+
+/**
+ * A streamed response failed after its status and part of its body were sent. Deliberately left to the
+ * servlet container, which closes the connection so the client cannot take the partial body for a whole one.
+ * The failure is not set as the cause: exception handlers are also matched by cause and would append an error
+ * body to the committed response.
+ */
+public class ResponseAbortedException extends RuntimeException {
+    public ResponseAbortedException(final String message) {
+        super(message);
+    }
+}
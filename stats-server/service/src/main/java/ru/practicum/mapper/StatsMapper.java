@@ -1,6 +1,7 @@
 package ru.practicum.mapper;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import ru.practicum.EndpointHitDto;
 import ru.practicum.ViewStatsDto;
 import ru.practicum.model.EndpointHit;
@@ -12,8 +13,13 @@ import java.util.List;
 public interface StatsMapper {
     EndpointHitDto toEndpointHitDto(EndpointHit endpointHit);
 
+    @Mapping(target = "id", ignore = true)
     EndpointHit toEndpointHit(EndpointHitDto endpointHitDto);
 
+    List<EndpointHitDto> toEndpointHitDtoList(List<EndpointHit> endpointHits);
+
+    List<EndpointHit> toEndpointHitList(List<EndpointHitDto> endpointHitDtos);
+
     List<ViewStatsDto> toViewStatsDtoList(List<ViewStats> viewStats);
 
     ViewStatsDto toViewStats(ViewStats viewStats);
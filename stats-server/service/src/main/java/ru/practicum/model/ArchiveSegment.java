@@ -0,0 +1,320 @@
+package ru.practicum.model;
+
+import ru.practicum.sketch.RoaringBitmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Archived hits of one time range, held column by column in primitive arrays sorted by time, so that
+ * aggregating a range is a binary search for its bounds and a tight loop over the rows in between.
+ * The app, uri and ip columns hold ids of the dictionaries. Stored as, all numbers big-endian:
+ * <pre>
+ * int32    magic
+ * byte     version
+ * int64    id of the latest {@code endpoint} row read by the export that wrote the segment
+ * int32    number of hits n
+ * int64    first timestamp, in microseconds of the local date-time counted from 1970-01-01T00:00
+ * column   n - 1 deltas of the following timestamps
+ * column   n app ids
+ * column   n uri ids
+ * column   n ip ids
+ * </pre>
+ * where a column is its length in bytes as int32 followed by the values as unsigned LEB128 varints.
+ */
+public final class ArchiveSegment {
+    private static final int MAGIC = 0x45574d41;
+    private static final byte VERSION = 1;
+    private final long lastId;
+    private final long[] timestamps;
+    private final int[] apps;
+    private final int[] uris;
+    private final int[] ips;
+    // per hit, the index of its (app id, uri id) pair in endpointKeys
+    private final int[] endpoints;
+    private final long[] endpointKeys;
+
+    private ArchiveSegment(long lastId, long[] timestamps, int[] apps, int[] uris, int[] ips) {
+        this.lastId = lastId;
+        this.timestamps = timestamps;
+        this.apps = apps;
+        this.uris = uris;
+        this.ips = ips;
+        this.endpoints = new int[timestamps.length];
+        Map<Long, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < timestamps.length; i++) {
+            endpoints[i] = indexes.computeIfAbsent(endpointKey(apps[i], uris[i]), key -> indexes.size());
+        }
+        this.endpointKeys = new long[indexes.size()];
+        indexes.forEach((key, index) -> endpointKeys[index] = key);
+    }
+
+    public static ArchiveSegment read(ByteBuffer in) throws IOException {
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not an archive segment");
+            }
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported archive segment version " + version);
+            }
+            long lastId = in.getLong();
+            int size = in.getInt();
+            if (size < 0) {
+                throw new IOException("Invalid number of hits: " + size);
+            }
+            long[] timestamps = new long[size];
+            long timestamp = in.getLong();
+            ByteBuffer deltas = column(in);
+            for (int i = 0; i < size; i++) {
+                timestamps[i] = i == 0 ? timestamp : timestamps[i - 1] + readVarint(deltas);
+            }
+            ensureConsumed(deltas);
+            return new ArchiveSegment(lastId, timestamps, readIds(in, size), readIds(in, size), readIds(in, size));
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Archive segment is truncated");
+        }
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(lastId);
+        out.writeInt(timestamps.length);
+        out.writeLong(timestamps.length == 0 ? 0 : timestamps[0]);
+        ByteArrayOutputStream column = new ByteArrayOutputStream(timestamps.length * 2);
+        for (int i = 1; i < timestamps.length; i++) {
+            writeVarint(column, timestamps[i] - timestamps[i - 1]);
+        }
+        writeColumn(out, column);
+        for (int[] ids : new int[][]{apps, uris, ips}) {
+            column.reset();
+            for (int id : ids) {
+                writeVarint(column, Integer.toUnsignedLong(id));
+            }
+            writeColumn(out, column);
+        }
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    /**
+     * Index of the first hit at or after {@code micros}, or {@link #size()} when there is none.
+     */
+    public int indexOf(long micros) {
+        int low = 0;
+        int high = timestamps.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] < micros) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    public int app(int index) {
+        return apps[index];
+    }
+
+    public int uri(int index) {
+        return uris[index];
+    }
+
+    public int ip(int index) {
+        return ips[index];
+    }
+
+    /**
+     * Number of distinct endpoints, which {@link #countHits} and {@link #addIps} index their arrays by.
+     */
+    public int endpointCount() {
+        return endpointKeys.length;
+    }
+
+    /**
+     * The {@code (app id << 32) | uri id} pair of an endpoint.
+     */
+    public long endpointKey(int endpoint) {
+        return endpointKeys[endpoint];
+    }
+
+    /**
+     * Adds the hits with indexes in {@code [from, to)} to {@code counts}, per endpoint.
+     */
+    public void countHits(int from, int to, long[] counts) {
+        for (int i = from; i < to; i++) {
+            counts[endpoints[i]]++;
+        }
+    }
+
+    /**
+     * Adds the ip ids of the hits with indexes in {@code [from, to)} to the bitmaps of their endpoints,
+     * skipping the endpoints without one.
+     */
+    public void addIps(int from, int to, RoaringBitmap[] bitmaps) {
+        for (int i = from; i < to; i++) {
+            RoaringBitmap bitmap = bitmaps[endpoints[i]];
+            if (bitmap != null) {
+                bitmap.add(ips[i]);
+            }
+        }
+    }
+
+    public static long endpointKey(int app, int uri) {
+        return (long) app << 32 | Integer.toUnsignedLong(uri);
+    }
+
+    public static long toMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1_000;
+    }
+
+    public static LocalDateTime toLocalDateTime(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static ByteBuffer column(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Invalid column length: " + length);
+        }
+        ByteBuffer column = in.slice().limit(length);
+        in.position(in.position() + length);
+        return column;
+    }
+
+    private static int[] readIds(ByteBuffer in, int size) throws IOException {
+        ByteBuffer column = column(in);
+        int[] ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = (int) readVarint(column);
+        }
+        ensureConsumed(column);
+        return ids;
+    }
+
+    private static void ensureConsumed(ByteBuffer column) throws IOException {
+        if (column.hasRemaining()) {
+            throw new IOException("Column has " + column.remaining() + " trailing bytes");
+        }
+    }
+
+    private static long readVarint(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeColumn(DataOutputStream out, ByteArrayOutputStream column) throws IOException {
+        out.writeInt(column.size());
+        column.writeTo(out);
+    }
+
+    /**
+     * Collects hits in any order; {@link #build()} sorts them by time.
+     */
+    public static final class Builder {
+        private final long lastId;
+        private long[] timestamps = new long[1024];
+        private int[] apps = new int[1024];
+        private int[] uris = new int[1024];
+        private int[] ips = new int[1024];
+        private int size;
+
+        public Builder(long lastId) {
+            this.lastId = lastId;
+        }
+
+        public Builder add(long timestamp, int app, int uri, int ip) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                apps = Arrays.copyOf(apps, size * 2);
+                uris = Arrays.copyOf(uris, size * 2);
+                ips = Arrays.copyOf(ips, size * 2);
+            }
+            timestamps[size] = timestamp;
+            apps[size] = app;
+            uris[size] = uri;
+            ips[size] = ip;
+            size++;
+            return this;
+        }
+
+        public Builder addAll(ArchiveSegment segment) {
+            for (int i = 0; i < segment.size(); i++) {
+                add(segment.timestamps[i], segment.apps[i], segment.uris[i], segment.ips[i]);
+            }
+            return this;
+        }
+
+        /**
+         * Replaces the ip of every hit added so far with {@code ids[ip]}, for hits collected with indexes
+         * into a list of ips that was resolved afterwards.
+         */
+        public Builder mapIps(int[] ids) {
+            for (int i = 0; i < size; i++) {
+                ips[i] = ids[ips[i]];
+            }
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public ArchiveSegment build() {
+            int[] order = IntStream.range(0, size)
+                    .boxed()
+                    .sorted((first, second) -> Long.compare(timestamps[first], timestamps[second]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            long[] sortedTimestamps = new long[size];
+            int[] sortedApps = new int[size];
+            int[] sortedUris = new int[size];
+            int[] sortedIps = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedTimestamps[i] = timestamps[order[i]];
+                sortedApps[i] = apps[order[i]];
+                sortedUris[i] = uris[order[i]];
+                sortedIps[i] = ips[order[i]];
+            }
+            return new ArchiveSegment(lastId, sortedTimestamps, sortedApps, sortedUris, sortedIps);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ru.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * How far an aggregate has been filled from the stored hits: hits with ids up to {@code lastId} are folded in,
+ * the ones up to {@code toId} still have to be.
+ */
+@Getter
+@Setter
+@ToString
+@AllArgsConstructor
+public class BackfillProgress {
+    private String aggregator;
+    private long lastId;
+    private long toId;
+}
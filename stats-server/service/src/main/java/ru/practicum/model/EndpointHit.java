@@ -5,6 +5,9 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 import lombok.experimental.Accessors;
+import ru.practicum.model.converter.AppConverter;
+import ru.practicum.model.converter.IpConverter;
+import ru.practicum.model.converter.UriConverter;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -20,8 +23,13 @@ public class EndpointHit {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
+    @Column(name = "app_id")
+    @Convert(converter = AppConverter.class)
     private String app;
+    @Column(name = "uri_id")
+    @Convert(converter = UriConverter.class)
     private String uri;
+    @Convert(converter = IpConverter.class)
     private String ip;
     private LocalDateTime timestamp;
 }
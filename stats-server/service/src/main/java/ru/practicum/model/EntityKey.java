@@ -0,0 +1,33 @@
+package ru.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.lang.Nullable;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Numeric entity a hit refers to, taken from uris of the form {@code /<type>/<id>} such as {@code /events/42}.
+ * schema-postgresql.sql repeats the pattern to fill in the entity of hits stored before it was recorded.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class EntityKey {
+    private static final Pattern ENTITY_URI = Pattern.compile("/([a-z][a-z0-9-]{0,63})/([1-9][0-9]{0,17})");
+    private String type;
+    private long id;
+
+    @Nullable
+    public static EntityKey fromUri(String uri) {
+        Matcher matcher = ENTITY_URI.matcher(uri);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return new EntityKey(matcher.group(1), Long.parseLong(matcher.group(2)));
+    }
+}
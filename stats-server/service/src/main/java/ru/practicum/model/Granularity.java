@@ -0,0 +1,54 @@
+package ru.practicum.model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum Granularity {
+    MINUTE(ChronoUnit.MINUTES, "minute", "endpoint_rollup_minute"),
+    HOUR(ChronoUnit.HOURS, "hour", "endpoint_rollup_hour"),
+    DAY(ChronoUnit.DAYS, "day", "endpoint_rollup_day");
+
+    private final ChronoUnit unit;
+    private final String sqlUnit;
+    private final String rollupTable;
+
+    Granularity(ChronoUnit unit, String sqlUnit, String rollupTable) {
+        this.unit = unit;
+        this.sqlUnit = sqlUnit;
+        this.rollupTable = rollupTable;
+    }
+
+    public String getSqlUnit() {
+        return sqlUnit;
+    }
+
+    public String getRollupTable() {
+        return rollupTable;
+    }
+
+    public Duration getDuration() {
+        return unit.getDuration();
+    }
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plus(1, unit);
+    }
+
+    public LocalDateTime next(LocalDateTime bucket) {
+        return bucket.plus(1, unit);
+    }
+
+    public long bucketsBetween(LocalDateTime fromBucket, LocalDateTime toBucket) {
+        return unit.between(fromBucket, toBucket);
+    }
+
+    public Granularity finer() {
+        return this == DAY ? HOUR : this == HOUR ? MINUTE : null;
+    }
+}
@@ -0,0 +1,75 @@
+package ru.practicum.model;
+
+import ru.practicum.EndpointHitDto;
+import ru.practicum.exception.InvalidHitFrameException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Binary frame of one hit on the socket ingestion channel, all numbers big-endian:
+ * <pre>
+ * int32    length of the rest of the frame
+ * int64    timestamp as seconds of the local date-time counted from 1970-01-01T00:00
+ * byte[16] ip in the {@link IpAddresses} form
+ * uint16   length of the app, then the app in UTF-8
+ * uint16   length of the uri, then the uri in UTF-8
+ * </pre>
+ */
+public final class HitFrames {
+    public static final int HEADER_LENGTH = Integer.BYTES;
+    public static final int MIN_BODY_LENGTH = Long.BYTES + IpAddresses.LENGTH + 2 * Short.BYTES;
+    // app and uri are stored as VARCHAR(512)
+    public static final int MAX_TEXT_LENGTH = 512;
+
+    private HitFrames() {
+    }
+
+    public static void encode(EndpointHitDto hit, ByteBuffer out) {
+        byte[] app = hit.getApp().getBytes(StandardCharsets.UTF_8);
+        byte[] uri = hit.getUri().getBytes(StandardCharsets.UTF_8);
+        out.putInt(MIN_BODY_LENGTH + app.length + uri.length)
+                .putLong(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC))
+                .put(IpAddresses.toBytes(hit.getIp()))
+                .putShort((short) app.length).put(app)
+                .putShort((short) uri.length).put(uri);
+    }
+
+    /**
+     * Reads a frame body of {@code length} bytes; the buffer is left right after it even when the frame is invalid.
+     */
+    public static EndpointHitDto decode(ByteBuffer in, int length) {
+        int end = in.position() + length;
+        try {
+            LocalDateTime timestamp = LocalDateTime.ofEpochSecond(in.getLong(), 0, ZoneOffset.UTC);
+            byte[] ip = new byte[IpAddresses.LENGTH];
+            in.get(ip);
+            String app = text(in, end);
+            String uri = text(in, end);
+            if (in.position() != end) {
+                throw new InvalidHitFrameException("Frame has " + (end - in.position()) + " trailing bytes");
+            }
+            return new EndpointHitDto(app, uri, IpAddresses.toString(ip), timestamp);
+        } catch (DateTimeException e) {
+            throw new InvalidHitFrameException("Invalid timestamp: " + e.getMessage());
+        } finally {
+            in.position(end);
+        }
+    }
+
+    private static String text(ByteBuffer in, int end) {
+        if (in.position() + Short.BYTES > end) {
+            throw new InvalidHitFrameException("Frame ends before a text length");
+        }
+        int length = Short.toUnsignedInt(in.getShort());
+        if (length == 0 || length > MAX_TEXT_LENGTH || in.position() + length > end) {
+            throw new InvalidHitFrameException("Invalid text length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
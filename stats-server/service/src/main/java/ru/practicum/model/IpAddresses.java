@@ -0,0 +1,143 @@
+package ru.practicum.model;
+
+import ru.practicum.exception.InvalidIpAddressException;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-width binary form of IP addresses: IPv6 as is, IPv4 as an IPv4-mapped IPv6 address.
+ */
+public final class IpAddresses {
+    public static final int LENGTH = 16;
+
+    private IpAddresses() {
+    }
+
+    /**
+     * Parses an IPv4 or IPv6 literal. Host names and IPv6 zone ids are rejected rather than resolved.
+     */
+    public static byte[] toBytes(String ip) {
+        byte[] bytes = new byte[LENGTH];
+        if (ip.indexOf(':') < 0) {
+            bytes[10] = (byte) 0xff;
+            bytes[11] = (byte) 0xff;
+            System.arraycopy(parseIpv4(ip, ip), 0, bytes, 12, 4);
+            return bytes;
+        }
+
+        int gap = ip.indexOf("::");
+        if (gap >= 0 && ip.indexOf("::", gap + 1) >= 0) {
+            throw new InvalidIpAddressException("Invalid IP address: " + ip);
+        }
+        List<Integer> head = parseGroups(gap < 0 ? ip : ip.substring(0, gap), gap < 0, ip);
+        List<Integer> tail = gap < 0 ? List.of() : parseGroups(ip.substring(gap + 2), true, ip);
+        int groups = head.size() + tail.size();
+        if (gap < 0 ? groups != LENGTH / 2 : groups >= LENGTH / 2) {
+            throw new InvalidIpAddressException("Invalid IP address: " + ip);
+        }
+        for (int i = 0; i < head.size(); i++) {
+            putGroup(bytes, i, head.get(i));
+        }
+        for (int i = 0; i < tail.size(); i++) {
+            putGroup(bytes, LENGTH / 2 - tail.size() + i, tail.get(i));
+        }
+        return bytes;
+    }
+
+    public static String toString(byte[] bytes) {
+        if (isIpv4Mapped(bytes)) {
+            return (bytes[12] & 0xff) + "." + (bytes[13] & 0xff) + "." + (bytes[14] & 0xff) + "." + (bytes[15] & 0xff);
+        }
+        try {
+            return InetAddress.getByAddress(bytes).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new InvalidIpAddressException("Invalid IP address length: " + bytes.length);
+        }
+    }
+
+    public static String normalize(String ip) {
+        return toString(toBytes(ip));
+    }
+
+    private static boolean isIpv4Mapped(byte[] bytes) {
+        for (int i = 0; i < 10; i++) {
+            if (bytes[i] != 0) {
+                return false;
+            }
+        }
+        return bytes[10] == (byte) 0xff && bytes[11] == (byte) 0xff;
+    }
+
+    private static byte[] parseIpv4(String address, String ip) {
+        String[] octets = address.split("\\.", -1);
+        if (octets.length != 4) {
+            throw new InvalidIpAddressException("Invalid IP address: " + ip);
+        }
+        byte[] bytes = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            bytes[i] = (byte) parseOctet(octets[i], ip);
+        }
+        return bytes;
+    }
+
+    // 16-bit groups of a colon-separated part, the last of which may be a dotted IPv4 address worth two groups
+    private static List<Integer> parseGroups(String part, boolean ipv4Allowed, String ip) {
+        List<Integer> groups = new ArrayList<>();
+        if (part.isEmpty()) {
+            return groups;
+        }
+        String[] fields = part.split(":", -1);
+        for (int i = 0; i < fields.length; i++) {
+            if (ipv4Allowed && i == fields.length - 1 && fields[i].indexOf('.') >= 0) {
+                byte[] ipv4 = parseIpv4(fields[i], ip);
+                groups.add((ipv4[0] & 0xff) << 8 | ipv4[1] & 0xff);
+                groups.add((ipv4[2] & 0xff) << 8 | ipv4[3] & 0xff);
+            } else {
+                groups.add(parseGroup(fields[i], ip));
+            }
+        }
+        return groups;
+    }
+
+    private static int parseGroup(String group, String ip) {
+        if (group.isEmpty() || group.length() > 4) {
+            throw new InvalidIpAddressException("Invalid IP address: " + ip);
+        }
+        int value = 0;
+        for (int i = 0; i < group.length(); i++) {
+            char c = group.charAt(i);
+            int digit = c < 0x80 ? Character.digit(c, 16) : -1;
+            if (digit < 0) {
+                throw new InvalidIpAddressException("Invalid IP address: " + ip);
+            }
+            value = value * 16 + digit;
+        }
+        return value;
+    }
+
+    private static void putGroup(byte[] bytes, int index, int group) {
+        bytes[2 * index] = (byte) (group >> 8);
+        bytes[2 * index + 1] = (byte) group;
+    }
+
+    private static int parseOctet(String octet, String ip) {
+        if (octet.isEmpty() || octet.length() > 3) {
+            throw new InvalidIpAddressException("Invalid IP address: " + ip);
+        }
+        int value = 0;
+        for (int i = 0; i < octet.length(); i++) {
+            char c = octet.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new InvalidIpAddressException("Invalid IP address: " + ip);
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (value > 255) {
+            throw new InvalidIpAddressException("Invalid IP address: " + ip);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class RollupKey implements Comparable<RollupKey> {
+    private static final Comparator<RollupKey> ORDER = Comparator.comparing(RollupKey::getApp)
+            .thenComparing(RollupKey::getUri)
+            .thenComparing(RollupKey::getBucket);
+
+    private String app;
+    private String uri;
+    private LocalDateTime bucket;
+
+    @Override
+    public int compareTo(RollupKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,71 @@
+package ru.practicum.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.lang.Nullable;
+import ru.practicum.exception.InvalidUriPatternException;
+
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Endpoints a stats query is limited to: an optional app, and uris given either exactly or as a prefix
+ * ending with {@code *}, such as {@code /events/*}. Without uris every uri of the app matches.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public class StatsFilter {
+    public static final StatsFilter ALL = new StatsFilter(null, List.of(), List.of());
+    private static final char WILDCARD = '*';
+    @Nullable
+    private final String app;
+    private final List<String> uris;
+    private final List<String> prefixes;
+
+    private StatsFilter(@Nullable String app, List<String> uris, List<String> prefixes) {
+        this.app = app;
+        this.uris = uris;
+        this.prefixes = prefixes;
+    }
+
+    public static StatsFilter of(@Nullable String app, @Nullable List<String> uris) {
+        TreeSet<String> exact = new TreeSet<>();
+        TreeSet<String> prefixes = new TreeSet<>();
+        if (uris != null) {
+            for (String uri : uris) {
+                int wildcard = uri.indexOf(WILDCARD);
+                if (wildcard < 0) {
+                    exact.add(uri);
+                } else if (wildcard == uri.length() - 1) {
+                    prefixes.add(uri.substring(0, wildcard));
+                } else {
+                    throw new InvalidUriPatternException("Only a trailing * is supported in uri " + uri);
+                }
+            }
+        }
+        if (prefixes.contains("")) {
+            // a lone * matches every uri
+            return new StatsFilter(app, List.of(), List.of());
+        }
+        // an exact uri already covered by a prefix adds nothing
+        exact.removeIf(uri -> prefixes.stream().anyMatch(uri::startsWith));
+        return new StatsFilter(app, List.copyOf(exact), List.copyOf(prefixes));
+    }
+
+    public boolean isAllUris() {
+        return uris.isEmpty() && prefixes.isEmpty();
+    }
+
+    public boolean isAll() {
+        return app == null && isAllUris();
+    }
+
+    public boolean matches(String app, String uri) {
+        if (this.app != null && !this.app.equals(app)) {
+            return false;
+        }
+        return isAllUris() || uris.contains(uri) || prefixes.stream().anyMatch(uri::startsWith);
+    }
+}
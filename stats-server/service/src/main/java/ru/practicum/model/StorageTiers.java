@@ -0,0 +1,71 @@
+package ru.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.springframework.lang.Nullable;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Oldest time still held by raw hits and by the minute and hour rollups; {@code null} means the whole history.
+ * Day rollups and the daily unique IP sketches are never expired. Cutoffs are whole days, so a bucket of any
+ * granularity lies entirely on one side of each of them.
+ */
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class StorageTiers {
+    public static final StorageTiers COMPLETE = new StorageTiers(null, null, null);
+    @Nullable
+    private final LocalDateTime rawSince;
+    @Nullable
+    private final LocalDateTime minuteSince;
+    @Nullable
+    private final LocalDateTime hourSince;
+
+    /**
+     * Oldest time held by the rollup of the granularity, or by raw hits when it is {@code null}.
+     */
+    @Nullable
+    public LocalDateTime since(@Nullable Granularity granularity) {
+        if (granularity == null) {
+            return rawSince;
+        }
+        switch (granularity) {
+            case MINUTE:
+                return minuteSince;
+            case HOUR:
+                return hourSince;
+            default:
+                return null;
+        }
+    }
+
+    public boolean holds(@Nullable Granularity granularity, LocalDateTime time) {
+        LocalDateTime since = since(granularity);
+        return since == null || !time.isBefore(since);
+    }
+
+    /**
+     * The finest tier holding {@code time}: {@code null} for raw hits, otherwise the finest rollup.
+     */
+    @Nullable
+    public Granularity finest(LocalDateTime time) {
+        if (holds(null, time)) {
+            return null;
+        }
+        for (Granularity granularity : Granularity.values()) {
+            if (holds(granularity, time)) {
+                return granularity;
+            }
+        }
+        return Granularity.DAY;
+    }
+
+    public Stream<LocalDateTime> cutoffs() {
+        return Stream.of(rawSince, minuteSince, hourSince).filter(Objects::nonNull);
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.model.converter;
+
+import org.springframework.beans.factory.ObjectProvider;
+import ru.practicum.repository.HitDictionaries;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Resolves apps to dictionary ids, adding unknown ones as persisting a hit requires. JPQL queries therefore
+ * must not bind app parameters; see {@link ru.practicum.repository.StatsRepository}.
+ */
+@Converter
+public class AppConverter implements AttributeConverter<String, Integer> {
+    private final ObjectProvider<HitDictionaries> hitDictionaries;
+
+    public AppConverter(ObjectProvider<HitDictionaries> hitDictionaries) {
+        this.hitDictionaries = hitDictionaries;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String app) {
+        return app == null ? null : hitDictionaries.getObject().apps().resolve(app);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer id) {
+        return id == null ? null : hitDictionaries.getObject().apps().valueOf(id);
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.model.converter;
+
+import org.springframework.beans.factory.ObjectProvider;
+import ru.practicum.repository.HitDictionaries;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Resolves uris to dictionary ids, adding unknown ones as persisting a hit requires. JPQL queries therefore
+ * must not bind uri parameters; see {@link ru.practicum.repository.StatsRepository}.
+ */
+@Converter
+public class UriConverter implements AttributeConverter<String, Integer> {
+    private final ObjectProvider<HitDictionaries> hitDictionaries;
+
+    public UriConverter(ObjectProvider<HitDictionaries> hitDictionaries) {
+        this.hitDictionaries = hitDictionaries;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String uri) {
+        return uri == null ? null : hitDictionaries.getObject().uris().resolve(uri);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer id) {
+        return id == null ? null : hitDictionaries.getObject().uris().valueOf(id);
+    }
+}
@@ -0,0 +1,227 @@
+package ru.practicum.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.config.ArchiveProperties;
+import ru.practicum.model.ArchiveSegment;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Archived days of hits, one {@link ArchiveSegment} file {@code YYYY-MM-DD.col} per day in
+ * {@code stats.archive.directory}. A file is written aside as {@code YYYY-MM-DD.col.tmp} and replaced as a
+ * whole, so readers see either its old or its new content; recently read segments are kept decoded.
+ */
+@Slf4j
+@Repository
+public class ArchiveRepository {
+    private static final String SUFFIX = ".col";
+    private static final String PENDING_SUFFIX = SUFFIX + ".tmp";
+    private final Path directory;
+    private final NavigableSet<LocalDate> days = new ConcurrentSkipListSet<>();
+    private final Map<LocalDate, ArchiveSegment> segments;
+
+    public ArchiveRepository(ArchiveProperties properties) {
+        this.directory = properties.getDirectory();
+        this.segments = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LocalDate, ArchiveSegment> eldest) {
+                return size() > properties.getCachedSegments();
+            }
+        };
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.endsWith(SUFFIX))
+                        .forEach(name -> {
+                            try {
+                                days.add(LocalDate.parse(name.substring(0, name.length() - SUFFIX.length())));
+                            } catch (DateTimeParseException ignored) {
+                                // not a segment
+                            }
+                        });
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open the hit archive in " + directory, e);
+            }
+        }
+    }
+
+    public NavigableSet<LocalDate> findDays() {
+        return Collections.unmodifiableNavigableSet(days);
+    }
+
+    @Nullable
+    public ArchiveSegment find(LocalDate day) {
+        synchronized (segments) {
+            ArchiveSegment segment = segments.get(day);
+            if (segment != null || !days.contains(day)) {
+                return segment;
+            }
+        }
+        ArchiveSegment segment;
+        try {
+            segment = ArchiveSegment.read(ByteBuffer.wrap(Files.readAllBytes(path(day))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read archive segment " + path(day), e);
+        }
+        synchronized (segments) {
+            segments.put(day, segment);
+        }
+        return segment;
+    }
+
+    /**
+     * Writes the segment aside and syncs it to disk, then, inside a transaction, puts it in place only once the
+     * transaction commits: the hits it takes over are deleted from the table in that transaction, and a rollback
+     * must not leave them in both. A segment left aside by a crash in between is found by {@link #findPending}.
+     */
+    public void save(LocalDate day, ArchiveSegment segment) {
+        Path temporary = pending(day);
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                         Channels.newOutputStream(channel)))) {
+                segment.write(out);
+                out.flush();
+                channel.force(true);
+            }
+            forceDirectory();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write archive segment " + temporary, e);
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(day, segment, temporary);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    publish(day, segment, temporary);
+                } else {
+                    discard(temporary);
+                }
+            }
+        });
+    }
+
+    /**
+     * Segments written aside by exports that stopped before putting them in place, by day. A file that cannot
+     * be read was not synced yet, so its export never committed, and is deleted.
+     */
+    public Map<LocalDate, ArchiveSegment> findPending() {
+        Map<LocalDate, ArchiveSegment> pending = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return pending;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(PENDING_SUFFIX)).forEach(file -> {
+                String name = file.getFileName().toString();
+                try {
+                    LocalDate day = LocalDate.parse(name.substring(0, name.length() - PENDING_SUFFIX.length()));
+                    pending.put(day, ArchiveSegment.read(ByteBuffer.wrap(Files.readAllBytes(file))));
+                } catch (DateTimeParseException ignored) {
+                    // not a segment
+                } catch (IOException e) {
+                    log.warn("Deleting unreadable archive segment {}", file, e);
+                    discard(file);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the hit archive in " + directory, e);
+        }
+        return pending;
+    }
+
+    public void publishPending(LocalDate day, ArchiveSegment segment) {
+        publish(day, segment, pending(day));
+    }
+
+    public void discardPending(LocalDate day) {
+        discard(pending(day));
+    }
+
+    public void delete(LocalDate day) {
+        days.remove(day);
+        synchronized (segments) {
+            segments.remove(day);
+        }
+        try {
+            Files.deleteIfExists(path(day));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete archive segment " + path(day), e);
+        }
+    }
+
+    public long sizeOf(LocalDate day) {
+        try {
+            return Files.size(path(day));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void publish(LocalDate day, ArchiveSegment segment, Path temporary) {
+        try {
+            Files.move(temporary, path(day), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the hits are already gone from the table, the synced segment is put in place at the next start
+            log.error("Could not put archive segment {} in place, its hits are left in {}", path(day), temporary, e);
+            throw new UncheckedIOException("Could not write archive segment " + path(day), e);
+        }
+        forceDirectory();
+        synchronized (segments) {
+            segments.put(day, segment);
+        }
+        days.add(day);
+    }
+
+    // makes a file created or renamed in the directory survive a crash; not every platform can sync a directory
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not sync archive directory {}", directory, e);
+        }
+    }
+
+    private static void discard(Path temporary) {
+        try {
+            Files.deleteIfExists(temporary);
+        } catch (IOException e) {
+            log.warn("Could not delete archive segment {}", temporary, e);
+        }
+    }
+
+    private Path path(LocalDate day) {
+        return directory.resolve(day + SUFFIX);
+    }
+
+    private Path pending(LocalDate day) {
+        return directory.resolve(day + PENDING_SUFFIX);
+    }
+}
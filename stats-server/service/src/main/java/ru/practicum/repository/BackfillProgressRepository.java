@@ -0,0 +1,36 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.BackfillProgress;
+
+import java.util.List;
+
+/**
+ * Aggregates being filled from stored hits, updated in the transaction of every chunk so that a backfill
+ * interrupted by a restart carries on after the last committed chunk.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BackfillProgressRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<BackfillProgress> findAll() {
+        return jdbcTemplate.query("SELECT aggregator, last_id, to_id FROM aggregate_backfill_progress",
+                (rs, rowNum) -> new BackfillProgress(rs.getString("aggregator"), rs.getLong("last_id"),
+                        rs.getLong("to_id")));
+    }
+
+    public void save(BackfillProgress progress) {
+        if (jdbcTemplate.update("UPDATE aggregate_backfill_progress SET last_id = ?, to_id = ? WHERE aggregator = ?",
+                progress.getLastId(), progress.getToId(), progress.getAggregator()) == 0) {
+            jdbcTemplate.update("INSERT INTO aggregate_backfill_progress (aggregator, last_id, to_id) VALUES (?, ?, ?)",
+                    progress.getAggregator(), progress.getLastId(), progress.getToId());
+        }
+    }
+
+    public void delete(String aggregator) {
+        jdbcTemplate.update("DELETE FROM aggregate_backfill_progress WHERE aggregator = ?", aggregator);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+public enum DatabaseDialect {
+    POSTGRESQL,
+    H2;
+
+    public static DatabaseDialect detect(DataSource dataSource) {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "PostgreSQL".equalsIgnoreCase(product) ? POSTGRESQL : H2;
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Cannot detect database dialect", e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ru.practicum.repository;
+
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Cached view of one dictionary table. New ids are committed in their own transaction, so an id
+ * that is cached or already referenced by stored data never disappears with a rolled back batch.
+ */
+public class Dictionary {
+    private final String table;
+    private final String column;
+    private final DictionaryRepository dictionaryRepository;
+    private final TransactionTemplate requiresNewTemplate;
+    private final Map<String, Integer> idsByValue;
+    private final Map<Integer, String> valuesById;
+    // H2 has no table lock, so inserts of the same process are serialized here as well
+    private final Object insertLock = new Object();
+
+    public Dictionary(String table, String column, DictionaryRepository dictionaryRepository,
+                      TransactionTemplate requiresNewTemplate, int cacheSize) {
+        this.table = table;
+        this.column = column;
+        this.dictionaryRepository = dictionaryRepository;
+        this.requiresNewTemplate = requiresNewTemplate;
+        this.idsByValue = lruCache(cacheSize);
+        this.valuesById = lruCache(cacheSize);
+    }
+
+    public int resolve(String value) {
+        return resolve(List.of(value)).get(value);
+    }
+
+    /**
+     * Returns ids of the values, adding the values that are not in the dictionary yet. Missing values are
+     * looked up again under a lock on the table and only the ones still missing are inserted, so an id is
+     * drawn from the sequence only for a value that is actually added and the ids stay dense.
+     */
+    public Map<String, Integer> resolve(Collection<String> values) {
+        Map<String, Integer> resolved = new HashMap<>();
+        SortedSet<String> missing = new TreeSet<>();
+        findCached(values, resolved, missing);
+        if (missing.isEmpty()) {
+            return resolved;
+        }
+
+        Map<String, Integer> found = dictionaryRepository.findIds(table, column, missing);
+        missing.removeAll(found.keySet());
+        if (!missing.isEmpty()) {
+            synchronized (insertLock) {
+                found.putAll(requiresNewTemplate.execute(status -> {
+                    dictionaryRepository.lock(table);
+                    Map<String, Integer> inserted = dictionaryRepository.findIds(table, column, missing);
+                    missing.removeAll(inserted.keySet());
+                    dictionaryRepository.insert(table, column, missing);
+                    inserted.putAll(dictionaryRepository.findIds(table, column, missing));
+                    return inserted;
+                }));
+            }
+        }
+        cache(found);
+        resolved.putAll(found);
+        return resolved;
+    }
+
+    /**
+     * Returns ids of the values that are already in the dictionary and leaves out the others. Never writes,
+     * so read paths use it instead of {@link #resolve}.
+     */
+    public Map<String, Integer> find(Collection<String> values) {
+        Map<String, Integer> found = new HashMap<>();
+        SortedSet<String> missing = new TreeSet<>();
+        findCached(values, found, missing);
+        if (!missing.isEmpty()) {
+            Map<String, Integer> stored = dictionaryRepository.findIds(table, column, missing);
+            cache(stored);
+            found.putAll(stored);
+        }
+        return found;
+    }
+
+    public String valueOf(int id) {
+        synchronized (this) {
+            String value = valuesById.get(id);
+            if (value != null) {
+                return value;
+            }
+        }
+        Map<Integer, String> found = dictionaryRepository.findValues(table, column, Set.of(id));
+        if (!found.containsKey(id)) {
+            throw new IllegalStateException("Unknown id " + id + " in " + table);
+        }
+        Map<String, Integer> reversed = new HashMap<>();
+        found.forEach((key, value) -> reversed.put(value, key));
+        cache(reversed);
+        return found.get(id);
+    }
+
+    private synchronized void findCached(Collection<String> values, Map<String, Integer> found,
+                                         SortedSet<String> missing) {
+        for (String value : values) {
+            Integer id = idsByValue.get(value);
+            if (id != null) {
+                found.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+    }
+
+    private synchronized void cache(Map<String, Integer> found) {
+        found.forEach((value, id) -> {
+            idsByValue.put(value, id);
+            valuesById.put(id, value);
+        });
+    }
+
+    private static <K, V> Map<K, V> lruCache(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Tables that map a distinct {@code VARCHAR(512)} value to a dense {@code INTEGER} id. Values are inserted under
+ * {@link #lock} only: a conflicting insert would still draw an id from the sequence and leave a gap.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DictionaryRepository {
+    private static final int CHUNK_SIZE = 1_000;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final DatabaseDialect dialect;
+
+    /**
+     * Blocks other writers of the table until the end of the transaction; readers are not blocked.
+     */
+    public void lock(String table) {
+        if (dialect == DatabaseDialect.POSTGRESQL) {
+            jdbcTemplate.execute("LOCK TABLE " + table + " IN SHARE ROW EXCLUSIVE MODE");
+        }
+    }
+
+    public void insert(String table, String column, Collection<String> values) {
+        jdbcTemplate.batchUpdate("INSERT INTO " + table + " (" + column + ") VALUES (?)", new ArrayList<>(values),
+                values.size(), (ps, value) -> ps.setString(1, value));
+    }
+
+    public Map<String, Integer> findIds(String table, String column, Collection<String> values) {
+        Map<String, Integer> ids = new HashMap<>();
+        String sql = "SELECT id, " + column + " FROM " + table + " WHERE " + column + " IN (:values)";
+        forEachChunk(values, chunk -> namedParameterJdbcTemplate.query(sql, new MapSqlParameterSource("values", chunk),
+                rs -> {
+                    ids.put(rs.getString(column), rs.getInt("id"));
+                }));
+        return ids;
+    }
+
+    public Map<Integer, String> findValues(String table, String column, Collection<Integer> ids) {
+        Map<Integer, String> values = new HashMap<>();
+        String sql = "SELECT id, " + column + " FROM " + table + " WHERE id IN (:ids)";
+        forEachChunk(ids, chunk -> namedParameterJdbcTemplate.query(sql, new MapSqlParameterSource("ids", chunk),
+                rs -> {
+                    values.put(rs.getInt("id"), rs.getString(column));
+                }));
+        return values;
+    }
+
+    private <T> void forEachChunk(Collection<T> values, Consumer<List<T>> consumer) {
+        List<T> list = new ArrayList<>(values);
+        for (int from = 0; from < list.size(); from += CHUNK_SIZE) {
+            consumer.accept(list.subList(from, Math.min(from + CHUNK_SIZE, list.size())));
+        }
+    }
+}
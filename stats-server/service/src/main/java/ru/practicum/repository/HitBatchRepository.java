@@ -0,0 +1,60 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.EntityKey;
+import ru.practicum.model.IpAddresses;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Repository
+@RequiredArgsConstructor
+public class HitBatchRepository {
+    private static final String INSERT_HIT = "INSERT INTO endpoint (app_id, uri_id, ip, timestamp, entity_type_id, " +
+            "entity_id) VALUES (?, ?, ?, ?, ?, ?)";
+    private final JdbcTemplate jdbcTemplate;
+    private final HitDictionaries hitDictionaries;
+
+    public void saveAll(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> appIds = hitDictionaries.apps().resolve(hits.stream()
+                .map(EndpointHit::getApp)
+                .collect(Collectors.toSet()));
+        Map<String, Integer> uriIds = hitDictionaries.uris().resolve(hits.stream()
+                .map(EndpointHit::getUri)
+                .collect(Collectors.toSet()));
+        Map<String, EntityKey> entities = new HashMap<>();
+        for (String uri : uriIds.keySet()) {
+            EntityKey entity = EntityKey.fromUri(uri);
+            if (entity != null) {
+                entities.put(uri, entity);
+            }
+        }
+        Map<String, Integer> entityTypeIds = hitDictionaries.entityTypes().resolve(entities.values().stream()
+                .map(EntityKey::getType)
+                .collect(Collectors.toSet()));
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, hits.size(), (ps, hit) -> {
+            ps.setInt(1, appIds.get(hit.getApp()));
+            ps.setInt(2, uriIds.get(hit.getUri()));
+            ps.setBytes(3, IpAddresses.toBytes(hit.getIp()));
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+            EntityKey entity = entities.get(hit.getUri());
+            if (entity != null) {
+                ps.setInt(5, entityTypeIds.get(entity.getType()));
+                ps.setLong(6, entity.getId());
+            } else {
+                ps.setNull(5, Types.INTEGER);
+                ps.setNull(6, Types.BIGINT);
+            }
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package ru.practicum.repository;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.config.DictionaryProperties;
+
+@Component
+public class HitDictionaries {
+    private final Dictionary apps;
+    private final Dictionary uris;
+    private final Dictionary entityTypes;
+    private final Dictionary ips;
+
+    public HitDictionaries(DictionaryRepository dictionaryRepository, PlatformTransactionManager transactionManager,
+                           DictionaryProperties properties) {
+        TransactionTemplate requiresNewTemplate = new TransactionTemplate(transactionManager);
+        requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.apps = new Dictionary("app_dictionary", "name", dictionaryRepository, requiresNewTemplate,
+                properties.getCacheSize());
+        this.uris = new Dictionary("uri_dictionary", "uri", dictionaryRepository, requiresNewTemplate,
+                properties.getCacheSize());
+        this.entityTypes = new Dictionary("entity_type_dictionary", "name", dictionaryRepository,
+                requiresNewTemplate, properties.getCacheSize());
+        this.ips = new Dictionary("ip_dictionary", "ip", dictionaryRepository, requiresNewTemplate,
+                properties.getCacheSize());
+    }
+
+    public Dictionary apps() {
+        return apps;
+    }
+
+    public Dictionary uris() {
+        return uris;
+    }
+
+    public Dictionary entityTypes() {
+        return entityTypes;
+    }
+
+    /**
+     * Dense ids of normalized IPs for the unique visitor bitmaps.
+     */
+    public Dictionary ips() {
+        return ips;
+    }
+}
@@ -0,0 +1,57 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Daily range partitions {@code endpoint_pYYYYMMDD} of the PostgreSQL {@code endpoint} table.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PartitionRepository {
+    private static final String PREFIX = "endpoint_p";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseDialect dialect;
+
+    public boolean isPartitioned() {
+        return dialect == DatabaseDialect.POSTGRESQL && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid " +
+                        "WHERE c.relname = 'endpoint' AND pg_table_is_visible(c.oid))", Boolean.class));
+    }
+
+    public List<LocalDate> findDailyPartitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "JOIN pg_class p ON p.oid = i.inhparent " +
+                        "WHERE p.relname = 'endpoint' AND pg_table_is_visible(p.oid) AND c.relname LIKE 'endpoint\\_p%' " +
+                        "ORDER BY c.relname", String.class).stream()
+                .map(name -> LocalDate.parse(name.substring(PREFIX.length()), SUFFIX))
+                .collect(Collectors.toList());
+    }
+
+    public void createDailyPartition(LocalDate day) {
+        jdbcTemplate.execute(String.format("CREATE TABLE IF NOT EXISTS %s PARTITION OF endpoint " +
+                "FOR VALUES FROM ('%s') TO ('%s')", name(day), day, day.plusDays(1)));
+    }
+
+    public void dropDailyPartition(LocalDate day) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + name(day));
+    }
+
+    public int deleteBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM endpoint WHERE timestamp < ?", Timestamp.valueOf(cutoff));
+    }
+
+    private String name(LocalDate day) {
+        return PREFIX + day.format(SUFFIX);
+    }
+}
@@ -0,0 +1,309 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.IpAddresses;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.ViewStats;
+import ru.practicum.model.StatsFilter;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+@Repository
+@RequiredArgsConstructor
+public class RawHitRepository {
+    private static final String SELECT_HITS = "SELECT e.id, a.name AS app, u.uri, e.ip, e.timestamp " +
+            "FROM endpoint AS e " +
+            "JOIN app_dictionary AS a ON a.id = e.app_id " +
+            "JOIN uri_dictionary AS u ON u.id = e.uri_id ";
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Nullable
+    public LocalDateTime findFirstTimestamp() {
+        Timestamp first = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM endpoint", Timestamp.class);
+        return first == null ? null : first.toLocalDateTime();
+    }
+
+    @Nullable
+    public Long findLastId() {
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM endpoint", Long.class);
+    }
+
+    /**
+     * Up to {@code limit} hits with ids in {@code (afterId, toId]}, by id, for paging through the table by key.
+     */
+    public List<EndpointHit> findHits(long afterId, long toId, int limit) {
+        return jdbcTemplate.query(SELECT_HITS + "WHERE e.id > ? AND e.id <= ? ORDER BY e.id LIMIT ?",
+                (rs, rowNum) -> toHit(rs), afterId, toId, limit);
+    }
+
+    /**
+     * Streams the hits of the half-open range {@code [from, to)} in no particular order.
+     */
+    public void forEachHit(LocalDateTime from, LocalDateTime to, Consumer<EndpointHit> consumer) {
+        jdbcTemplate.query(SELECT_HITS + "WHERE e.timestamp >= ? AND e.timestamp < ?", rs -> {
+            consumer.accept(toHit(rs));
+        }, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    /**
+     * Id of the latest hit of the half-open range {@code [from, to)}, or {@code null} when there is none.
+     */
+    @Nullable
+    public Long findLastId(LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM endpoint WHERE timestamp >= ? AND timestamp < ?",
+                Long.class, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    public boolean exists(long id) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM endpoint WHERE id = ?)", Boolean.class, id));
+    }
+
+    /**
+     * Streams the hits of the half-open range {@code [from, to)} with ids up to {@code lastId} by time,
+     * with the dictionary ids of their app and uri.
+     */
+    public void forEachEncodedHit(LocalDateTime from, LocalDateTime to, long lastId, EncodedHitConsumer consumer) {
+        jdbcTemplate.query("SELECT app_id, uri_id, ip, timestamp FROM endpoint " +
+                "WHERE timestamp >= ? AND timestamp < ? AND id <= ? ORDER BY timestamp", rs -> {
+            consumer.accept(rs.getTimestamp("timestamp").toLocalDateTime(), rs.getInt("app_id"), rs.getInt("uri_id"),
+                    IpAddresses.toString(rs.getBytes("ip")));
+        }, Timestamp.valueOf(from), Timestamp.valueOf(to), lastId);
+    }
+
+    /**
+     * Deletes the hits of the half-open range {@code [from, to)} with ids up to {@code lastId}.
+     */
+    public int deleteBetween(LocalDateTime from, LocalDateTime to, long lastId) {
+        return jdbcTemplate.update("DELETE FROM endpoint WHERE timestamp >= ? AND timestamp < ? AND id <= ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to), lastId);
+    }
+
+    /**
+     * Streams distinct {@code (app, uri, ip)} triples of the half-open range {@code [from, to)}.
+     */
+    public void forEachDistinctIp(LocalDateTime from, LocalDateTime to, StatsFilter filter,
+                                  BiConsumer<StatsKey, String> consumer) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        StringBuilder sql = new StringBuilder("SELECT a.name AS app, u.uri, s.ip FROM (" +
+                "SELECT DISTINCT app_id, uri_id, ip FROM endpoint " +
+                "WHERE timestamp >= :from AND timestamp < :to");
+        sql.append(StatsFilterSql.byId(filter, parameters));
+        sql.append(") AS s JOIN app_dictionary AS a ON a.id = s.app_id JOIN uri_dictionary AS u ON u.id = s.uri_id");
+
+        namedParameterJdbcTemplate.query(sql.toString(), parameters, rs -> {
+            consumer.accept(new StatsKey(rs.getString("app"), rs.getString("uri")),
+                    IpAddresses.toString(rs.getBytes("ip")));
+        });
+    }
+
+    /**
+     * Streams hits, or distinct IPs when {@code unique}, per endpoint and {@code granularity} bucket of the
+     * half-open range {@code [from, to)}.
+     */
+    public void forEachBucket(LocalDateTime from, LocalDateTime to, StatsFilter filter,
+                              Granularity granularity, boolean unique, BiConsumer<RollupKey, Long> consumer) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        String bucket = "DATE_TRUNC('" + granularity.getSqlUnit() + "', timestamp)";
+        StringBuilder sql = new StringBuilder("SELECT a.name AS app, u.uri, s.bucket, s.hits FROM (" +
+                "SELECT app_id, uri_id, " + bucket + " AS bucket, " + (unique ? "COUNT(DISTINCT ip)" : "COUNT(*)") +
+                " AS hits FROM endpoint WHERE timestamp >= :from AND timestamp < :to");
+        sql.append(StatsFilterSql.byId(filter, parameters));
+        sql.append(" GROUP BY app_id, uri_id, ").append(bucket)
+                .append(") AS s JOIN app_dictionary AS a ON a.id = s.app_id JOIN uri_dictionary AS u ON u.id = s.uri_id");
+
+        namedParameterJdbcTemplate.query(sql.toString(), parameters, rs -> {
+            consumer.accept(new RollupKey(rs.getString("app"), rs.getString("uri"),
+                    rs.getTimestamp("bucket").toLocalDateTime()), rs.getLong("hits"));
+        });
+    }
+
+    /**
+     * Streams distinct {@code (app, uri, granularity bucket, ip)} quadruples of the half-open range
+     * {@code [from, to)}.
+     */
+    public void forEachBucketIp(LocalDateTime from, LocalDateTime to, StatsFilter filter, Granularity granularity,
+                                BiConsumer<RollupKey, String> consumer) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        String bucket = "DATE_TRUNC('" + granularity.getSqlUnit() + "', timestamp)";
+        StringBuilder sql = new StringBuilder("SELECT a.name AS app, u.uri, s.bucket, s.ip FROM (" +
+                "SELECT DISTINCT app_id, uri_id, " + bucket + " AS bucket, ip FROM endpoint " +
+                "WHERE timestamp >= :from AND timestamp < :to");
+        sql.append(StatsFilterSql.byId(filter, parameters));
+        sql.append(") AS s JOIN app_dictionary AS a ON a.id = s.app_id JOIN uri_dictionary AS u ON u.id = s.uri_id");
+
+        namedParameterJdbcTemplate.query(sql.toString(), parameters, rs -> {
+            consumer.accept(new RollupKey(rs.getString("app"), rs.getString("uri"),
+                    rs.getTimestamp("bucket").toLocalDateTime()), IpAddresses.toString(rs.getBytes("ip")));
+        });
+    }
+
+    /**
+     * Streams hits, or distinct IPs when {@code unique}, per endpoint of the half-open range {@code [from, to)}
+     * ordered like the stats queries.
+     */
+    public void forEachStats(LocalDateTime from, LocalDateTime to, StatsFilter filter, boolean unique,
+                             Consumer<ViewStats> consumer) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        StringBuilder sql = new StringBuilder("SELECT a.name AS app, u.uri, s.hits FROM (" +
+                "SELECT app_id, uri_id, " + (unique ? "COUNT(DISTINCT ip)" : "COUNT(*)") +
+                " AS hits FROM endpoint WHERE timestamp >= :from AND timestamp < :to");
+        sql.append(StatsFilterSql.byId(filter, parameters));
+        sql.append(" GROUP BY app_id, uri_id")
+                .append(") AS s JOIN app_dictionary AS a ON a.id = s.app_id JOIN uri_dictionary AS u ON u.id = s.uri_id")
+                .append(" ORDER BY s.hits DESC, app, uri");
+
+        namedParameterJdbcTemplate.query(sql.toString(), parameters, rs -> {
+            consumer.accept(new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+        });
+    }
+
+    /**
+     * Stats of each uri from its own start up to {@code to} (exclusive), in one query that range-scans the
+     * {@code (uri_id, timestamp)} index once per uri.
+     */
+    public List<ViewStats> findStats(Map<String, LocalDateTime> startsByUri, LocalDateTime to, boolean unique) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource().addValue("to", Timestamp.valueOf(to));
+        String sql = "SELECT a.name AS app, u.uri, " + (unique ? "COUNT(DISTINCT e.ip)" : "COUNT(*)") + " AS hits " +
+                "FROM (VALUES " + uriStarts(startsByUri, parameters) + ") AS q(uri, start) " +
+                "JOIN uri_dictionary AS u ON u.uri = q.uri " +
+                "JOIN endpoint AS e ON e.uri_id = u.id AND e.timestamp >= q.start AND e.timestamp < :to " +
+                "JOIN app_dictionary AS a ON a.id = e.app_id " +
+                "GROUP BY a.name, u.uri " +
+                "ORDER BY hits DESC, app, uri";
+
+        return namedParameterJdbcTemplate.query(sql, parameters, (rs, rowNum) ->
+                new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    /**
+     * Hits of each entity of the type from its own start up to {@code to} (exclusive), in one query that
+     * range-scans the {@code (entity_type_id, entity_id, timestamp)} index once per entity. Entities without
+     * hits are not reported.
+     */
+    public void forEachEntity(String entityType, @Nullable String app, Map<Long, LocalDateTime> startsById,
+                              LocalDateTime to, boolean unique, EntityHitsConsumer consumer) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("type", entityType)
+                .addValue("to", Timestamp.valueOf(to));
+        StringBuilder sql = new StringBuilder("SELECT e.entity_id, ")
+                .append(unique ? "COUNT(DISTINCT e.ip)" : "COUNT(*)").append(" AS hits ")
+                .append(entityHits(app, startsById, parameters))
+                .append(" GROUP BY e.entity_id ORDER BY e.entity_id");
+
+        namedParameterJdbcTemplate.query(sql.toString(), parameters, rs -> {
+            consumer.accept(rs.getLong("entity_id"), rs.getLong("hits"));
+        });
+    }
+
+    /**
+     * Streams distinct {@code (app, uri, ip)} triples of each uri from its own start up to {@code to} (exclusive).
+     */
+    public void forEachDistinctIp(Map<String, LocalDateTime> startsByUri, LocalDateTime to,
+                                  BiConsumer<StatsKey, String> consumer) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource().addValue("to", Timestamp.valueOf(to));
+        String sql = "SELECT DISTINCT a.name AS app, u.uri, e.ip " +
+                "FROM (VALUES " + uriStarts(startsByUri, parameters) + ") AS q(uri, start) " +
+                "JOIN uri_dictionary AS u ON u.uri = q.uri " +
+                "JOIN endpoint AS e ON e.uri_id = u.id AND e.timestamp >= q.start AND e.timestamp < :to " +
+                "JOIN app_dictionary AS a ON a.id = e.app_id";
+
+        namedParameterJdbcTemplate.query(sql, parameters, rs -> {
+            consumer.accept(new StatsKey(rs.getString("app"), rs.getString("uri")),
+                    IpAddresses.toString(rs.getBytes("ip")));
+        });
+    }
+
+    /**
+     * Streams distinct {@code (entity id, ip)} pairs of each entity of the type from its own start up to
+     * {@code to} (exclusive).
+     */
+    public void forEachEntityIp(String entityType, @Nullable String app, Map<Long, LocalDateTime> startsById,
+                                LocalDateTime to, BiConsumer<Long, String> consumer) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("type", entityType)
+                .addValue("to", Timestamp.valueOf(to));
+        String sql = "SELECT DISTINCT e.entity_id, e.ip " + entityHits(app, startsById, parameters);
+
+        namedParameterJdbcTemplate.query(sql, parameters, rs -> {
+            consumer.accept(rs.getLong("entity_id"), IpAddresses.toString(rs.getBytes("ip")));
+        });
+    }
+
+    private static String uriStarts(Map<String, LocalDateTime> startsByUri, MapSqlParameterSource parameters) {
+        StringBuilder values = new StringBuilder();
+        int i = 0;
+        for (Map.Entry<String, LocalDateTime> entry : startsByUri.entrySet()) {
+            values.append(i > 0 ? ", " : "")
+                    .append("(CAST(:uri").append(i).append(" AS VARCHAR(512)), ")
+                    .append("CAST(:start").append(i).append(" AS TIMESTAMP))");
+            parameters.addValue("uri" + i, entry.getKey());
+            parameters.addValue("start" + i, Timestamp.valueOf(entry.getValue()));
+            i++;
+        }
+        return values.toString();
+    }
+
+    // the FROM and WHERE clauses of the hits of each entity since its start
+    private static String entityHits(@Nullable String app, Map<Long, LocalDateTime> startsById,
+                                     MapSqlParameterSource parameters) {
+        StringBuilder values = new StringBuilder();
+        int i = 0;
+        for (Map.Entry<Long, LocalDateTime> entry : startsById.entrySet()) {
+            values.append(i > 0 ? ", " : "")
+                    .append("(CAST(:id").append(i).append(" AS BIGINT), ")
+                    .append("CAST(:start").append(i).append(" AS TIMESTAMP))");
+            parameters.addValue("id" + i, entry.getKey());
+            parameters.addValue("start" + i, Timestamp.valueOf(entry.getValue()));
+            i++;
+        }
+        StringBuilder sql = new StringBuilder("FROM (VALUES ").append(values).append(") AS q(id, start) ")
+                .append("JOIN endpoint AS e ON e.entity_type_id = ")
+                .append("(SELECT id FROM entity_type_dictionary WHERE name = :type) ")
+                .append("AND e.entity_id = q.id AND e.timestamp >= q.start AND e.timestamp < :to");
+        if (app != null) {
+            sql.append(" AND e.app_id = (SELECT id FROM app_dictionary WHERE name = :app)");
+            parameters.addValue("app", app);
+        }
+        return sql.toString();
+    }
+
+    private static EndpointHit toHit(ResultSet rs) throws SQLException {
+        return new EndpointHit(rs.getLong("id"), rs.getString("app"), rs.getString("uri"),
+                IpAddresses.toString(rs.getBytes("ip")), rs.getTimestamp("timestamp").toLocalDateTime());
+    }
+
+    @FunctionalInterface
+    public interface EntityHitsConsumer {
+        void accept(long entityId, long hits);
+    }
+
+    @FunctionalInterface
+    public interface EncodedHitConsumer {
+        void accept(LocalDateTime timestamp, int appId, int uriId, String ip);
+    }
+}
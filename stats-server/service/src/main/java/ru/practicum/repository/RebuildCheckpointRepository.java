@@ -0,0 +1,38 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Days whose aggregates were rebuilt from raw hits, written in the transaction of the rebuild itself so an
+ * interrupted rebuild resumes with the first day it did not commit.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RebuildCheckpointRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public Set<LocalDateTime> findDays(LocalDateTime from, LocalDateTime to) {
+        return new HashSet<>(jdbcTemplate.query(
+                "SELECT bucket FROM aggregate_rebuild_checkpoint WHERE bucket >= ? AND bucket < ?",
+                (rs, rowNum) -> rs.getTimestamp("bucket").toLocalDateTime(),
+                Timestamp.valueOf(from), Timestamp.valueOf(to)));
+    }
+
+    public void save(LocalDateTime day, long hits, LocalDateTime rebuiltAt) {
+        jdbcTemplate.update("DELETE FROM aggregate_rebuild_checkpoint WHERE bucket = ?", Timestamp.valueOf(day));
+        jdbcTemplate.update("INSERT INTO aggregate_rebuild_checkpoint (bucket, hits, rebuilt_at) VALUES (?, ?, ?)",
+                Timestamp.valueOf(day), hits, Timestamp.valueOf(rebuiltAt));
+    }
+
+    public int deleteBetween(LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.update("DELETE FROM aggregate_rebuild_checkpoint WHERE bucket >= ? AND bucket < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+}
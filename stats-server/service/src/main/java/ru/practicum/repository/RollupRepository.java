@@ -0,0 +1,173 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.RangeSegment;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.ViewStats;
+import ru.practicum.model.StatsFilter;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+@Repository
+@RequiredArgsConstructor
+public class RollupRepository {
+    private static final String POSTGRESQL_INCREMENT = "INSERT INTO %1$s (app, uri, bucket, hits) " +
+            "VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (app, uri, bucket) DO UPDATE SET hits = %1$s.hits + EXCLUDED.hits";
+    private static final String H2_INCREMENT = "MERGE INTO %s AS t " +
+            "USING (VALUES (CAST(? AS VARCHAR(512)), CAST(? AS VARCHAR(512)), CAST(? AS TIMESTAMP), " +
+            "CAST(? AS BIGINT))) AS s(app, uri, bucket, hits) " +
+            "ON t.app = s.app AND t.uri = s.uri AND t.bucket = s.bucket " +
+            "WHEN MATCHED THEN UPDATE SET hits = t.hits + s.hits " +
+            "WHEN NOT MATCHED THEN INSERT (app, uri, bucket, hits) VALUES (s.app, s.uri, s.bucket, s.hits)";
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final DatabaseDialect dialect;
+
+    public void increment(Granularity granularity, Map<RollupKey, Long> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        String sql = String.format(dialect == DatabaseDialect.POSTGRESQL ? POSTGRESQL_INCREMENT : H2_INCREMENT,
+                granularity.getRollupTable());
+        jdbcTemplate.batchUpdate(sql, new ArrayList<>(hits.entrySet()), hits.size(), (ps, entry) -> {
+            ps.setString(1, entry.getKey().getApp());
+            ps.setString(2, entry.getKey().getUri());
+            ps.setTimestamp(3, Timestamp.valueOf(entry.getKey().getBucket()));
+            ps.setLong(4, entry.getValue());
+        });
+    }
+
+    public boolean isEmpty(Granularity granularity) {
+        return !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + granularity.getRollupTable() + ")", Boolean.class));
+    }
+
+    public int deleteBefore(Granularity granularity, LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM " + granularity.getRollupTable() + " WHERE bucket < ?",
+                Timestamp.valueOf(cutoff));
+    }
+
+    public int deleteBetween(Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.update("DELETE FROM " + granularity.getRollupTable() + " WHERE bucket >= ? AND bucket < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    public void forEachStats(List<RangeSegment> segments, StatsFilter filter, Consumer<ViewStats> consumer) {
+        forEachStats(segments, filter, null, consumer);
+    }
+
+    /**
+     * Streams stats of the rollup segments ordered by hits, row by row from the result set cursor, stopping after
+     * {@code limit} rows when it is given. Raw segments are read through {@code HitStorage} by
+     * {@code SegmentedStats}.
+     */
+    public void forEachStats(List<RangeSegment> segments, StatsFilter filter, @Nullable Integer limit,
+                             Consumer<ViewStats> consumer) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        String nameFilter = StatsFilterSql.byName(filter, parameters);
+
+        StringBuilder sql = new StringBuilder("SELECT app, uri, SUM(hits) AS hits FROM (");
+        for (int i = 0; i < segments.size(); i++) {
+            RangeSegment segment = segments.get(i);
+            if (i > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT app, uri, hits FROM ").append(segment.getGranularity().getRollupTable())
+                    .append(" WHERE bucket >= :from").append(i).append(" AND bucket < :to").append(i)
+                    .append(nameFilter);
+            parameters.addValue("from" + i, Timestamp.valueOf(segment.getFrom()));
+            parameters.addValue("to" + i, Timestamp.valueOf(segment.getTo()));
+        }
+        sql.append(") AS s GROUP BY app, uri ORDER BY hits DESC, app, uri");
+        if (limit != null) {
+            sql.append(" LIMIT :limit");
+            parameters.addValue("limit", limit);
+        }
+
+        namedParameterJdbcTemplate.query(sql.toString(), parameters, rs -> {
+            consumer.accept(new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+        });
+    }
+
+    /**
+     * Streams stats of each uri over its own rollup segments, in one query with a {@code VALUES} list per tier,
+     * ordered like {@link #forEachStats(List, StatsFilter, Consumer)}. Only hits of the {@code app} are counted
+     * when it is given.
+     */
+    public void forEachUriStats(Map<String, List<RangeSegment>> segmentsByUri, @Nullable String app,
+                                Consumer<ViewStats> consumer) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        Map<Granularity, StringBuilder> values = new HashMap<>();
+        int i = 0;
+        for (Map.Entry<String, List<RangeSegment>> entry : segmentsByUri.entrySet()) {
+            for (RangeSegment segment : entry.getValue()) {
+                StringBuilder tierValues = values.computeIfAbsent(segment.getGranularity(), g -> new StringBuilder());
+                tierValues.append(tierValues.length() > 0 ? ", " : "")
+                        .append("(CAST(:uri").append(i).append(" AS VARCHAR(512)), ")
+                        .append("CAST(:from").append(i).append(" AS TIMESTAMP), ")
+                        .append("CAST(:to").append(i).append(" AS TIMESTAMP))");
+                parameters.addValue("uri" + i, entry.getKey());
+                parameters.addValue("from" + i, Timestamp.valueOf(segment.getFrom()));
+                parameters.addValue("to" + i, Timestamp.valueOf(segment.getTo()));
+                i++;
+            }
+        }
+        if (values.isEmpty()) {
+            return;
+        }
+        if (app != null) {
+            parameters.addValue("app", app);
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT app, uri, SUM(hits) AS hits FROM (");
+        boolean first = true;
+        for (Map.Entry<Granularity, StringBuilder> entry : values.entrySet()) {
+            if (!first) {
+                sql.append(" UNION ALL ");
+            }
+            first = false;
+            String ranges = "(VALUES " + entry.getValue() + ") AS q(uri, from_time, to_time) ";
+            sql.append("SELECT r.app, r.uri, r.hits FROM ").append(ranges)
+                    .append("JOIN ").append(entry.getKey().getRollupTable()).append(" AS r ON r.uri = q.uri ")
+                    .append("AND r.bucket >= q.from_time AND r.bucket < q.to_time")
+                    .append(app != null ? " AND r.app = :app" : "");
+        }
+        sql.append(") AS s GROUP BY app, uri ORDER BY hits DESC, app, uri");
+
+        namedParameterJdbcTemplate.query(sql.toString(), parameters, rs -> {
+            consumer.accept(new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+        });
+    }
+
+    /**
+     * Streams hits per endpoint and bucket of each rollup segment, as stored.
+     */
+    public void forEachBucket(List<RangeSegment> segments, StatsFilter filter,
+                              BiConsumer<RollupKey, Long> consumer) {
+        for (RangeSegment segment : segments) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource()
+                    .addValue("from", Timestamp.valueOf(segment.getFrom()))
+                    .addValue("to", Timestamp.valueOf(segment.getTo()));
+            String sql = "SELECT app, uri, bucket, hits FROM " + segment.getGranularity().getRollupTable() +
+                    " WHERE bucket >= :from AND bucket < :to" + StatsFilterSql.byName(filter, parameters);
+            namedParameterJdbcTemplate.query(sql, parameters, rs -> {
+                consumer.accept(new RollupKey(rs.getString("app"), rs.getString("uri"),
+                        rs.getTimestamp("bucket").toLocalDateTime()), rs.getLong("hits"));
+            });
+        }
+    }
+}
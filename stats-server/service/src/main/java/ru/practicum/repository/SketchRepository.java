@@ -0,0 +1,115 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.StatsFilter;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+
+/**
+ * Storage for per {@code (app, uri, bucket)} binary aggregates (sketches, bitmaps). Writers follow
+ * {@link #createMissing} → {@link #findForUpdate} → {@link #updateAll} inside one transaction.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SketchRepository {
+    private static final int CHUNK_SIZE = 500;
+    private static final String POSTGRESQL_CREATE_MISSING = "INSERT INTO %s (app, uri, bucket, sketch) " +
+            "VALUES (?, ?, ?, ?) ON CONFLICT (app, uri, bucket) DO NOTHING";
+    private static final String H2_CREATE_MISSING = "MERGE INTO %s AS t " +
+            "USING (VALUES (CAST(? AS VARCHAR(512)), CAST(? AS VARCHAR(512)), CAST(? AS TIMESTAMP), " +
+            "CAST(? AS VARBINARY))) AS s(app, uri, bucket, sketch) " +
+            "ON t.app = s.app AND t.uri = s.uri AND t.bucket = s.bucket " +
+            "WHEN NOT MATCHED THEN INSERT (app, uri, bucket, sketch) VALUES (s.app, s.uri, s.bucket, s.sketch)";
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final DatabaseDialect dialect;
+
+    public boolean isEmpty(String table) {
+        return !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + table + ")", Boolean.class));
+    }
+
+    public int deleteBetween(String table, LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.update("DELETE FROM " + table + " WHERE bucket >= ? AND bucket < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    public void createMissing(String table, Set<RollupKey> keys, byte[] emptySketch) {
+        String sql = String.format(dialect == DatabaseDialect.POSTGRESQL ? POSTGRESQL_CREATE_MISSING
+                : H2_CREATE_MISSING, table);
+        jdbcTemplate.batchUpdate(sql, new ArrayList<>(new TreeSet<>(keys)), keys.size(), (ps, key) -> {
+            ps.setString(1, key.getApp());
+            ps.setString(2, key.getUri());
+            ps.setTimestamp(3, Timestamp.valueOf(key.getBucket()));
+            ps.setBytes(4, emptySketch);
+        });
+    }
+
+    /**
+     * Locks and returns the rows of exactly the given keys, in key order and {@code CHUNK_SIZE} keys per query.
+     */
+    public Map<RollupKey, byte[]> findForUpdate(String table, Set<RollupKey> keys) {
+        List<RollupKey> sorted = new ArrayList<>(new TreeSet<>(keys));
+        Map<RollupKey, byte[]> sketches = new HashMap<>();
+        for (int from = 0; from < sorted.size(); from += CHUNK_SIZE) {
+            List<RollupKey> chunk = sorted.subList(from, Math.min(from + CHUNK_SIZE, sorted.size()));
+            String sql = "SELECT app, uri, bucket, sketch FROM " + table + " WHERE (app, uri, bucket) IN (" +
+                    String.join(", ", Collections.nCopies(chunk.size(), "(?, ?, ?)")) + ") " +
+                    "ORDER BY app, uri, bucket FOR UPDATE";
+            Object[] parameters = new Object[chunk.size() * 3];
+            for (int i = 0; i < chunk.size(); i++) {
+                parameters[3 * i] = chunk.get(i).getApp();
+                parameters[3 * i + 1] = chunk.get(i).getUri();
+                parameters[3 * i + 2] = Timestamp.valueOf(chunk.get(i).getBucket());
+            }
+            jdbcTemplate.query(sql, rs -> {
+                sketches.put(new RollupKey(rs.getString("app"), rs.getString("uri"),
+                        rs.getTimestamp("bucket").toLocalDateTime()), rs.getBytes("sketch"));
+            }, parameters);
+        }
+        return sketches;
+    }
+
+    public void updateAll(String table, Map<RollupKey, byte[]> sketches) {
+        List<Map.Entry<RollupKey, byte[]>> entries = new ArrayList<>(sketches.entrySet());
+        jdbcTemplate.batchUpdate("UPDATE " + table + " SET sketch = ? WHERE app = ? AND uri = ? AND bucket = ?",
+                entries, entries.size(), (ps, entry) -> {
+                    ps.setBytes(1, entry.getValue());
+                    ps.setString(2, entry.getKey().getApp());
+                    ps.setString(3, entry.getKey().getUri());
+                    ps.setTimestamp(4, Timestamp.valueOf(entry.getKey().getBucket()));
+                });
+    }
+
+    /**
+     * Streams sketches of buckets in the half-open range {@code [from, to)}.
+     */
+    public void forEach(String table, LocalDateTime from, LocalDateTime to, StatsFilter filter,
+                        BiConsumer<StatsKey, byte[]> consumer) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        StringBuilder sql = new StringBuilder("SELECT app, uri, sketch FROM " + table + " " +
+                "WHERE bucket >= :from AND bucket < :to");
+        sql.append(StatsFilterSql.byName(filter, parameters));
+
+        namedParameterJdbcTemplate.query(sql.toString(), parameters, rs -> {
+            consumer.accept(new StatsKey(rs.getString("app"), rs.getString("uri")), rs.getBytes("sketch"));
+        });
+    }
+}
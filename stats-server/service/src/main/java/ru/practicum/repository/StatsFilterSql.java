@@ -0,0 +1,65 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import ru.practicum.model.StatsFilter;
+
+/**
+ * {@code AND ...} conditions of a {@link StatsFilter}. Prefixes become {@code LIKE 'prefix%'}. PostgreSQL answers
+ * them with a range scan only on the {@code text_pattern_ops} uri indexes of indexes-postgresql.sql, as the
+ * other uri indexes follow the database collation; H2 uses the ordinary ones.
+ */
+final class StatsFilterSql {
+    private StatsFilterSql() {
+    }
+
+    /**
+     * Conditions on the {@code app} and {@code uri} columns of the rollup and sketch tables.
+     */
+    static String byName(StatsFilter filter, MapSqlParameterSource parameters) {
+        StringBuilder sql = new StringBuilder();
+        if (filter.getApp() != null) {
+            sql.append(" AND app = :app");
+            parameters.addValue("app", filter.getApp());
+        }
+        if (!filter.isAllUris()) {
+            sql.append(" AND ").append(uriCondition(filter, parameters));
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Conditions on the {@code app_id} and {@code uri_id} columns of the raw hits.
+     */
+    static String byId(StatsFilter filter, MapSqlParameterSource parameters) {
+        StringBuilder sql = new StringBuilder();
+        if (filter.getApp() != null) {
+            sql.append(" AND app_id = (SELECT id FROM app_dictionary WHERE name = :app)");
+            parameters.addValue("app", filter.getApp());
+        }
+        if (!filter.isAllUris()) {
+            sql.append(" AND uri_id IN (SELECT id FROM uri_dictionary WHERE ")
+                    .append(uriCondition(filter, parameters)).append(")");
+        }
+        return sql.toString();
+    }
+
+    private static String uriCondition(StatsFilter filter, MapSqlParameterSource parameters) {
+        StringBuilder sql = new StringBuilder("(");
+        if (!filter.getUris().isEmpty()) {
+            sql.append("uri IN (:uris)");
+            parameters.addValue("uris", filter.getUris());
+        }
+        for (int i = 0; i < filter.getPrefixes().size(); i++) {
+            if (sql.length() > 1) {
+                sql.append(" OR ");
+            }
+            sql.append("uri LIKE :prefix").append(i).append(" ESCAPE '\\'");
+            parameters.addValue("prefix" + i, escapeLike(filter.getPrefixes().get(i)) + "%");
+        }
+        return sql.append(")").toString();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -1,5 +1,6 @@
 package ru.practicum.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import ru.practicum.model.EndpointHit;
@@ -7,29 +8,39 @@ import ru.practicum.model.ViewStats;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
+/**
+ * JPQL stats over the whole range. Filters by app or uri are applied with native SQL in {@link RawHitRepository}:
+ * a bound app or uri parameter goes through the JPA converters, which add unknown values to the dictionaries.
+ */
 public interface StatsRepository extends JpaRepository<EndpointHit, Long> {
-    @Query("SELECT new ru.practicum.model.ViewStats(h.app, h.uri, COUNT(h.ip)) FROM EndpointHit AS h " +
-            "WHERE (h.timestamp BETWEEN :start AND :end) AND h.uri IN (:uris) " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(h.ip) DESC")
-    List<ViewStats> findAllByDateBetweenAndUri(LocalDateTime start, LocalDateTime end, List<String> uris);
-
-    @Query("SELECT new ru.practicum.model.ViewStats(h.app, h.uri, COUNT(DISTINCT h.ip)) FROM EndpointHit AS h " +
-            "WHERE (h.timestamp BETWEEN :start AND :end) AND h.uri IN (:uris) " +
+    String BY_DATE = "SELECT new ru.practicum.model.ViewStats(h.app, h.uri, COUNT(h.ip)) " +
+            "FROM EndpointHit AS h " +
+            "WHERE (h.timestamp BETWEEN :start AND :end) " +
             "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(DISTINCT h.ip) DESC")
-    List<ViewStats> findAllByDateBetweenAndUriAndUniqueIp(LocalDateTime start, LocalDateTime end, List<String> uris);
-
-    @Query("SELECT new ru.practicum.model.ViewStats(h.app, h.uri, COUNT(h.ip)) FROM EndpointHit AS h " +
+            "ORDER BY COUNT(h.ip) DESC";
+    String BY_DATE_UNIQUE_IP = "SELECT new ru.practicum.model.ViewStats(h.app, h.uri, COUNT(DISTINCT h.ip)) " +
+            "FROM EndpointHit AS h " +
             "WHERE (h.timestamp BETWEEN :start AND :end) " +
             "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(h.ip) DESC")
+            "ORDER BY COUNT(DISTINCT h.ip) DESC";
+
+    @Query(BY_DATE)
     List<ViewStats> findAllByDateBetweenStartAndEnd(LocalDateTime start, LocalDateTime end);
 
-    @Query("SELECT new ru.practicum.model.ViewStats(h.app, h.uri, COUNT(DISTINCT h.ip)) FROM EndpointHit AS h " +
-            "WHERE (h.timestamp BETWEEN :start AND :end) " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(DISTINCT h.ip) DESC")
+    @Query(BY_DATE_UNIQUE_IP)
     List<ViewStats> findAllByDateBetweenAndUniqueIp(LocalDateTime start, LocalDateTime end);
+
+    @Query(BY_DATE)
+    Stream<ViewStats> streamAllByDateBetweenStartAndEnd(LocalDateTime start, LocalDateTime end);
+
+    @Query(BY_DATE_UNIQUE_IP)
+    Stream<ViewStats> streamAllByDateBetweenAndUniqueIp(LocalDateTime start, LocalDateTime end);
+
+    @Query(BY_DATE)
+    List<ViewStats> findTopByDateBetween(LocalDateTime start, LocalDateTime end, Pageable pageable);
+
+    @Query(BY_DATE_UNIQUE_IP)
+    List<ViewStats> findTopByDateBetweenAndUniqueIp(LocalDateTime start, LocalDateTime end, Pageable pageable);
 }
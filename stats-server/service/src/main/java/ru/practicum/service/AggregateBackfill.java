@@ -0,0 +1,84 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.model.BackfillProgress;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.BackfillProgressRepository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Fills aggregates that were added to a service with existing hit history. Runs before the web
+ * server and the hit buffer are started, so no hit can slip between the scan and live updates.
+ * The hits are read from the {@link HitStorage} by id in chunks of {@code CHUNK_SIZE}, each folded in with its
+ * own transaction that also records the progress, so a restart resumes after the last committed chunk.
+ * In-memory aggregates are loaded right after, once the stored ones are complete.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AggregateBackfill implements SmartInitializingSingleton {
+    private static final int CHUNK_SIZE = 10_000;
+    private final List<HitAggregator> aggregators;
+    private final HitStorage hitStorage;
+    private final BackfillProgressRepository backfillProgressRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        backfill();
+        aggregators.forEach(HitAggregator::load);
+    }
+
+    private void backfill() {
+        Map<String, HitAggregator> aggregatorsByName = aggregators.stream()
+                .collect(Collectors.toMap(HitAggregator::name, Function.identity()));
+        Map<String, BackfillProgress> pending = new HashMap<>();
+        backfillProgressRepository.findAll().stream()
+                .filter(progress -> aggregatorsByName.containsKey(progress.getAggregator()))
+                .forEach(progress -> pending.put(progress.getAggregator(), progress));
+        Long lastId = hitStorage.findLastId();
+        aggregators.stream()
+                .filter(aggregator -> !pending.containsKey(aggregator.name()) && aggregator.needsBackfill())
+                .forEach(aggregator -> pending.put(aggregator.name(),
+                        new BackfillProgress(aggregator.name(), 0, lastId == null ? 0 : lastId)));
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        log.info("Backfilling {} from existing hits", pending.values());
+        long afterId = pending.values().stream().mapToLong(BackfillProgress::getLastId).min().orElseThrow();
+        long toId = pending.values().stream().mapToLong(BackfillProgress::getToId).max().orElseThrow();
+        long total = 0;
+        while (true) {
+            List<EndpointHit> chunk = hitStorage.findHits(afterId, toId, CHUNK_SIZE);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            long chunkLastId = chunk.get(chunk.size() - 1).getId();
+            transactionTemplate.executeWithoutResult(status -> pending.values().forEach(progress -> {
+                List<EndpointHit> hits = chunk.stream()
+                        .filter(hit -> hit.getId() > progress.getLastId() && hit.getId() <= progress.getToId())
+                        .collect(Collectors.toList());
+                if (!hits.isEmpty()) {
+                    aggregatorsByName.get(progress.getAggregator()).aggregate(hits);
+                    progress.setLastId(hits.get(hits.size() - 1).getId());
+                    backfillProgressRepository.save(progress);
+                }
+            }));
+            total += chunk.size();
+            afterId = chunkLastId;
+        }
+        transactionTemplate.executeWithoutResult(status -> pending.keySet()
+                .forEach(backfillProgressRepository::delete));
+        log.info("Backfill finished: {} hits", total);
+    }
+}
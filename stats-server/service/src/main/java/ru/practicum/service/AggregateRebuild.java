@@ -0,0 +1,233 @@
+package ru.practicum.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.RebuildStatusDto;
+import ru.practicum.config.RebuildProperties;
+import ru.practicum.exception.EndTimeBeforeStartTimeException;
+import ru.practicum.exception.RebuildInProgressException;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.RebuildCheckpointRepository;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static ru.practicum.model.Granularity.DAY;
+
+/**
+ * Rebuilds the stored aggregates from raw hits, one day per transaction: the aggregates of the day are
+ * cleared and its raw hits folded in again, and a checkpoint row commits with them. Days run in parallel on
+ * a {@link ForkJoinPool} of {@code stats.rebuild.parallelism} workers, each holding one connection, so a
+ * resumed rebuild only redoes the days that did not commit. Only whole days before today that still have
+ * raw hits are rebuilt: today keeps changing on the write path, and expired days have nothing to rebuild from.
+ */
+@Slf4j
+@Component
+public class AggregateRebuild {
+    private final List<HitAggregator> aggregators;
+    private final HitStorage hitStorage;
+    private final RebuildCheckpointRepository checkpointRepository;
+    private final RetentionTiers retentionTiers;
+    private final RebuildProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final HitWriter hitWriter;
+    private final int parallelism;
+    private final Clock clock;
+    private final AtomicReference<Run> current = new AtomicReference<>();
+
+    @Autowired
+    public AggregateRebuild(List<HitAggregator> aggregators, HitStorage hitStorage,
+                            RebuildCheckpointRepository checkpointRepository, RetentionTiers retentionTiers,
+                            RebuildProperties properties, TransactionTemplate transactionTemplate,
+                            HitWriter hitWriter, DataSource dataSource) {
+        this(aggregators, hitStorage, checkpointRepository, retentionTiers, properties, transactionTemplate,
+                hitWriter, parallelism(properties, dataSource), Clock.systemDefaultZone());
+    }
+
+    AggregateRebuild(List<HitAggregator> aggregators, HitStorage hitStorage,
+                     RebuildCheckpointRepository checkpointRepository, RetentionTiers retentionTiers,
+                     RebuildProperties properties, TransactionTemplate transactionTemplate, HitWriter hitWriter,
+                     int parallelism, Clock clock) {
+        this.aggregators = aggregators;
+        this.hitStorage = hitStorage;
+        this.checkpointRepository = checkpointRepository;
+        this.retentionTiers = retentionTiers;
+        this.properties = properties;
+        this.transactionTemplate = transactionTemplate;
+        this.hitWriter = hitWriter;
+        this.parallelism = parallelism;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts rebuilding the days from {@code from} to {@code to} inclusive, by default from the first raw hit
+     * to yesterday, and returns right away. Unless {@code resume} is set, the checkpoints of the range are
+     * dropped first and every day is rebuilt.
+     */
+    public RebuildStatusDto start(@Nullable LocalDate from, @Nullable LocalDate to, boolean resume) {
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new EndTimeBeforeStartTimeException("The end of the rebuild must not be before its start",
+                    List.of("Incorrect data"));
+        }
+
+        LocalDateTime today = DAY.floor(LocalDateTime.now(clock));
+        LocalDateTime first = hitStorage.findFirstTimestamp();
+        LocalDateTime start = DAY.floor(from != null ? from.atStartOfDay() : first != null ? first : today);
+        LocalDateTime rawSince = retentionTiers.current().since(null);
+        if (rawSince != null && start.isBefore(rawSince)) {
+            start = DAY.ceil(rawSince);
+        }
+        LocalDateTime end = to != null && to.atStartOfDay().isBefore(today) ? to.plusDays(1).atStartOfDay() : today;
+
+        Set<LocalDateTime> rebuilt = resume ? checkpointRepository.findDays(start, end) : Set.of();
+        List<LocalDateTime> days = new ArrayList<>();
+        int total = 0;
+        for (LocalDateTime day = start; day.isBefore(end); day = DAY.next(day)) {
+            total++;
+            if (!rebuilt.contains(day)) {
+                days.add(day);
+            }
+        }
+
+        Run run = new Run(start, end, total, total - days.size(), clock.millis());
+        Run previous = current.get();
+        if (previous != null && previous.state == State.RUNNING || !current.compareAndSet(previous, run)) {
+            throw new RebuildInProgressException("An aggregate rebuild is already running");
+        }
+        if (!resume) {
+            checkpointRepository.deleteBetween(start, end);
+        }
+
+        log.info("Rebuilding aggregates of {} days from {} to {} on {} workers, {} days already rebuilt",
+                days.size(), start.toLocalDate(), end.toLocalDate(), parallelism, run.resumed);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        CompletableFuture.runAsync(() -> days.parallelStream().forEach(day -> rebuild(run, day)), pool)
+                .whenComplete((ignored, e) -> {
+                    pool.shutdown();
+                    // in-memory aggregates are reloaded from the rebuilt ones with no hit committing meanwhile
+                    hitWriter.pause(() -> aggregators.stream()
+                            .filter(aggregator -> !aggregator.isStored())
+                            .forEach(HitAggregator::load));
+                    run.finish(e instanceof CompletionException ? e.getCause() : e, clock.millis());
+                    if (e == null) {
+                        log.info("Aggregate rebuild finished: {} rows", run.rows.sum());
+                    } else {
+                        log.error("Aggregate rebuild failed after {} days", run.done.get(), e);
+                    }
+                });
+        return run.toDto(clock.millis());
+    }
+
+    public RebuildStatusDto status() {
+        Run run = current.get();
+        return run == null ? RebuildStatusDto.builder().state(State.IDLE.name()).build() : run.toDto(clock.millis());
+    }
+
+    private void rebuild(Run run, LocalDateTime day) {
+        List<HitAggregator> stored = aggregators.stream()
+                .filter(HitAggregator::isStored)
+                .collect(Collectors.toList());
+        LocalDateTime next = DAY.next(day);
+        long hits = transactionTemplate.execute(status -> {
+            stored.forEach(aggregator -> aggregator.clear(day, next));
+            List<EndpointHit> batch = new ArrayList<>(properties.getBatchSize());
+            long[] count = {0};
+            hitStorage.forEachHit(day, next, hit -> {
+                batch.add(hit);
+                if (batch.size() == properties.getBatchSize()) {
+                    count[0] += flush(run, stored, batch);
+                }
+            });
+            count[0] += flush(run, stored, batch);
+            checkpointRepository.save(day, count[0], LocalDateTime.now(clock));
+            return count[0];
+        });
+        run.done.incrementAndGet();
+        log.debug("Rebuilt aggregates of {}: {} rows", day.toLocalDate(), hits);
+    }
+
+    private int flush(Run run, List<HitAggregator> stored, List<EndpointHit> batch) {
+        int size = batch.size();
+        if (size > 0) {
+            stored.forEach(aggregator -> aggregator.aggregate(batch));
+            batch.clear();
+            run.rows.add(size);
+        }
+        return size;
+    }
+
+    private static int parallelism(RebuildProperties properties, DataSource dataSource) {
+        int parallelism = properties.getParallelism();
+        if (dataSource instanceof HikariDataSource) {
+            // leave a connection to the write path and the queries
+            parallelism = Math.min(parallelism, ((HikariDataSource) dataSource).getMaximumPoolSize() - 1);
+        }
+        return Math.max(1, parallelism);
+    }
+
+    private enum State {
+        IDLE, RUNNING, FINISHED, FAILED
+    }
+
+    private static final class Run {
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        private final int days;
+        private final int resumed;
+        private final long startedMillis;
+        private final AtomicInteger done = new AtomicInteger();
+        private final LongAdder rows = new LongAdder();
+        private volatile State state = State.RUNNING;
+        private volatile long finishedMillis;
+        private volatile String error;
+
+        private Run(LocalDateTime from, LocalDateTime to, int days, int resumed, long startedMillis) {
+            this.from = from;
+            this.to = to;
+            this.days = days;
+            this.resumed = resumed;
+            this.startedMillis = startedMillis;
+        }
+
+        private void finish(@Nullable Throwable e, long nowMillis) {
+            finishedMillis = nowMillis;
+            error = e == null ? null : String.valueOf(e.getMessage());
+            state = e == null ? State.FINISHED : State.FAILED;
+        }
+
+        private RebuildStatusDto toDto(long nowMillis) {
+            State state = this.state;
+            long elapsed = (state == State.RUNNING ? nowMillis : finishedMillis) - startedMillis;
+            long rows = this.rows.sum();
+            int done = this.done.get();
+            return RebuildStatusDto.builder()
+                    .state(state.name())
+                    .from(from.toLocalDate())
+                    .to(to.toLocalDate().minusDays(1))
+                    .days(days)
+                    .daysDone(done)
+                    .daysResumed(resumed)
+                    .rows(rows)
+                    .rowsPerSecond(elapsed > 0 ? rows * 1000.0 / elapsed : 0)
+                    .percent(days > 0 ? (done + resumed) * 100.0 / days : 100)
+                    .error(error)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.practicum.service;
+
+import org.springframework.stereotype.Component;
+import ru.practicum.model.StatsKey;
+import ru.practicum.repository.SketchRepository;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class ApproximateUniqueCounter extends DailyUniqueCounter<HyperLogLog> {
+    public ApproximateUniqueCounter(SketchRepository sketchRepository, HitStorage hitStorage) {
+        super(sketchRepository, hitStorage);
+    }
+
+    @Override
+    protected String table() {
+        return HllAggregator.TABLE;
+    }
+
+    @Override
+    protected HyperLogLog fromBytes(byte[] bytes) {
+        return HyperLogLog.fromBytes(bytes);
+    }
+
+    @Override
+    protected HyperLogLog merge(HyperLogLog first, HyperLogLog second) {
+        return first.merge(second);
+    }
+
+    @Override
+    protected void addIps(Map<StatsKey, HyperLogLog> aggregates, Map<StatsKey, List<String>> ips) {
+        ips.forEach((key, keyIps) -> {
+            HyperLogLog sketch = aggregates.computeIfAbsent(key, k -> new HyperLogLog());
+            keyIps.forEach(sketch::add);
+        });
+    }
+
+    @Override
+    protected long count(HyperLogLog aggregate) {
+        return aggregate.estimate();
+    }
+}
@@ -0,0 +1,71 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.BitmapProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.RollupKey;
+import ru.practicum.repository.HitDictionaries;
+import ru.practicum.repository.SketchRepository;
+import ru.practicum.sketch.RoaringBitmap;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static ru.practicum.model.Granularity.DAY;
+
+@Component
+@RequiredArgsConstructor
+public class BitmapAggregator implements HitAggregator {
+    public static final String TABLE = "endpoint_bitmap_day";
+    private final BitmapProperties properties;
+    private final SketchRepository sketchRepository;
+    private final HitDictionaries hitDictionaries;
+
+    @Override
+    public void aggregate(List<EndpointHit> hits) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        Map<String, Integer> ids = hitDictionaries.ips().resolve(hits.stream()
+                .map(EndpointHit::getIp)
+                .collect(Collectors.toSet()));
+        Map<RollupKey, List<Integer>> keyIds = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            RollupKey key = new RollupKey(hit.getApp(), hit.getUri(), DAY.floor(hit.getTimestamp()));
+            keyIds.computeIfAbsent(key, k -> new ArrayList<>()).add(ids.get(hit.getIp()));
+        }
+
+        sketchRepository.createMissing(TABLE, keyIds.keySet(), new RoaringBitmap().toBytes());
+        Map<RollupKey, byte[]> stored = sketchRepository.findForUpdate(TABLE, keyIds.keySet());
+        Map<RollupKey, byte[]> changed = new HashMap<>();
+        stored.forEach((key, bytes) -> {
+            RoaringBitmap bitmap = RoaringBitmap.fromBytes(bytes);
+            boolean modified = false;
+            for (int id : keyIds.get(key)) {
+                modified |= bitmap.add(id);
+            }
+            if (modified) {
+                changed.put(key, bitmap.toBytes());
+            }
+        });
+        sketchRepository.updateAll(TABLE, changed);
+    }
+
+    @Override
+    public void clear(LocalDateTime from, LocalDateTime to) {
+        if (properties.isEnabled()) {
+            sketchRepository.deleteBetween(TABLE, from, to);
+        }
+    }
+
+    @Override
+    public boolean needsBackfill() {
+        return properties.isEnabled() && sketchRepository.isEmpty(TABLE);
+    }
+}
@@ -0,0 +1,85 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.StorageTiers;
+import ru.practicum.model.ViewStats;
+import ru.practicum.repository.SketchRepository;
+import ru.practicum.model.StatsFilter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static ru.practicum.model.Granularity.DAY;
+
+/**
+ * Unique IP counts merged from per-day aggregates of type {@code T}; only the partial days at the
+ * edges of the range are read from raw rows and added to the merged aggregate.
+ */
+@RequiredArgsConstructor
+public abstract class DailyUniqueCounter<T> {
+    private final SketchRepository sketchRepository;
+    private final HitStorage hitStorage;
+
+    /**
+     * Counts of {@code [from, to)}. An edge of the range that falls on a day whose raw hits have expired is
+     * widened to that whole day.
+     */
+    public List<ViewStats> getStats(LocalDateTime from, LocalDateTime to, StatsFilter filter, StorageTiers tiers) {
+        if (!tiers.holds(null, from)) {
+            from = DAY.floor(from);
+        }
+        if (!tiers.holds(null, DAY.floor(to))) {
+            to = DAY.ceil(to);
+        }
+        Map<StatsKey, T> aggregates = new HashMap<>();
+        Map<StatsKey, List<String>> rawIps = new HashMap<>();
+        LocalDateTime firstDay = DAY.ceil(from);
+        LocalDateTime lastDayEnd = DAY.floor(to);
+
+        if (firstDay.isBefore(lastDayEnd)) {
+            sketchRepository.forEach(table(), firstDay, lastDayEnd, filter, (key, bytes) ->
+                    aggregates.merge(key, fromBytes(bytes), this::merge));
+            collectRawIps(rawIps, from, firstDay, filter);
+            collectRawIps(rawIps, lastDayEnd, to, filter);
+        } else {
+            collectRawIps(rawIps, from, to, filter);
+        }
+        if (!rawIps.isEmpty()) {
+            addIps(aggregates, rawIps);
+        }
+
+        return aggregates.entrySet().stream()
+                .map(entry -> new ViewStats(entry.getKey().getApp(), entry.getKey().getUri(),
+                        count(entry.getValue())))
+                .filter(viewStats -> viewStats.getHits() > 0)
+                .sorted(Comparator.comparing(ViewStats::getHits).reversed()
+                        .thenComparing(ViewStats::getApp)
+                        .thenComparing(ViewStats::getUri))
+                .collect(Collectors.toList());
+    }
+
+    protected abstract String table();
+
+    protected abstract T fromBytes(byte[] bytes);
+
+    protected abstract T merge(T first, T second);
+
+    protected abstract void addIps(Map<StatsKey, T> aggregates, Map<StatsKey, List<String>> ips);
+
+    protected abstract long count(T aggregate);
+
+    private void collectRawIps(Map<StatsKey, List<String>> rawIps, LocalDateTime from, LocalDateTime to,
+                               StatsFilter filter) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        hitStorage.forEachDistinctIp(from, to, filter, (key, ip) ->
+                rawIps.computeIfAbsent(key, k -> new ArrayList<>()).add(ip));
+    }
+}
@@ -0,0 +1,65 @@
+package ru.practicum.service;
+
+import org.springframework.stereotype.Component;
+import ru.practicum.model.StatsKey;
+import ru.practicum.repository.HitDictionaries;
+import ru.practicum.repository.SketchRepository;
+import ru.practicum.sketch.RoaringBitmap;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Exact unique IP counts from the per-day bitmaps of dictionary ids. IPs read from raw rows are looked up in
+ * the dictionary without adding to it; the ones it does not hold get ids from the negative range for the
+ * query only.
+ */
+@Component
+public class ExactUniqueCounter extends DailyUniqueCounter<RoaringBitmap> {
+    private final HitDictionaries hitDictionaries;
+
+    public ExactUniqueCounter(SketchRepository sketchRepository, HitStorage hitStorage,
+                              HitDictionaries hitDictionaries) {
+        super(sketchRepository, hitStorage);
+        this.hitDictionaries = hitDictionaries;
+    }
+
+    @Override
+    protected String table() {
+        return BitmapAggregator.TABLE;
+    }
+
+    @Override
+    protected RoaringBitmap fromBytes(byte[] bytes) {
+        return RoaringBitmap.fromBytes(bytes);
+    }
+
+    @Override
+    protected RoaringBitmap merge(RoaringBitmap first, RoaringBitmap second) {
+        return first.or(second);
+    }
+
+    @Override
+    protected void addIps(Map<StatsKey, RoaringBitmap> aggregates, Map<StatsKey, List<String>> ips) {
+        Set<String> distinctIps = ips.values().stream()
+                .flatMap(Collection::stream)
+                .collect(Collectors.toSet());
+        // an ip without an id is in none of the stored bitmaps, it only needs an id no stored ip has
+        Map<String, Integer> ids = new HashMap<>(hitDictionaries.ips().find(distinctIps));
+        int[] unknown = {0};
+        distinctIps.forEach(ip -> ids.computeIfAbsent(ip, key -> --unknown[0]));
+        ips.forEach((key, keyIps) -> {
+            RoaringBitmap bitmap = aggregates.computeIfAbsent(key, k -> new RoaringBitmap());
+            keyIps.forEach(ip -> bitmap.add(ids.get(ip)));
+        });
+    }
+
+    @Override
+    protected long count(RoaringBitmap aggregate) {
+        return aggregate.cardinality();
+    }
+}
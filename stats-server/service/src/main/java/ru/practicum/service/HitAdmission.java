@@ -0,0 +1,80 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.AdmissionProperties;
+import ru.practicum.exception.IngestionOverloadedException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency limit in front of hit ingestion. At most {@code maxConcurrent} requests store hits at once and at
+ * most {@code maxWaiting} more wait, each up to {@code maxWait}, for a slot. Any further request, and a waiter
+ * whose time runs out, is shed with {@link IngestionOverloadedException}, which the client sees as {@code 429}
+ * with {@code Retry-After}. Saturated writers thus give up quickly instead of parking request threads on the
+ * connection pool the stats readers share.
+ */
+@Component
+public class HitAdmission {
+    private final AdmissionProperties properties;
+    private final Semaphore permits;
+    private final Semaphore waiters;
+    private final Counter admitted;
+    private final Counter shed;
+    private final Timer wait;
+
+    public HitAdmission(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.permits = new Semaphore(properties.getMaxConcurrent());
+        this.waiters = new Semaphore(properties.getMaxWaiting());
+        this.admitted = Counter.builder("stats.ingest.admission.requests").tag("result", "admitted")
+                .description("Hit requests let through to storage")
+                .register(meterRegistry);
+        this.shed = Counter.builder("stats.ingest.admission.requests").tag("result", "shed")
+                .description("Hit requests rejected with 429 because ingestion was saturated")
+                .register(meterRegistry);
+        this.wait = Timer.builder("stats.ingest.admission.wait")
+                .description("Time admitted hit requests waited for a slot")
+                .register(meterRegistry);
+        meterRegistry.gauge("stats.ingest.admission.in.flight", permits,
+                semaphore -> properties.getMaxConcurrent() - semaphore.availablePermits());
+    }
+
+    public void run(Runnable ingestion) {
+        if (!properties.isEnabled()) {
+            ingestion.run();
+            return;
+        }
+
+        long started = System.nanoTime();
+        if (!permits.tryAcquire() && !awaitPermit()) {
+            shed.increment();
+            throw new IngestionOverloadedException("Hit ingestion is saturated", properties.getRetryAfter());
+        }
+
+        admitted.increment();
+        wait.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        try {
+            ingestion.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean awaitPermit() {
+        if (!waiters.tryAcquire()) {
+            return false;
+        }
+        try {
+            return permits.tryAcquire(properties.getMaxWait().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiters.release();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ru.practicum.service;
+
+import ru.practicum.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Derived structure kept up to date on the write path. {@link HitWriter} calls every aggregator
+ * in the same transaction as the raw insert, so aggregates never run ahead of or behind raw rows.
+ */
+public interface HitAggregator {
+    void aggregate(List<EndpointHit> hits);
+
+    /**
+     * Name the progress of a backfill is recorded under.
+     */
+    default String name() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Whether the aggregate is still empty and has to be filled from already stored hits on startup.
+     */
+    default boolean needsBackfill() {
+        return false;
+    }
+
+    /**
+     * Restores state that is kept only in memory. Called on startup after the backfill, before any hit can reach
+     * {@link #aggregate}, and after a rebuild while {@link HitWriter#pause} holds hits back.
+     */
+    default void load() {
+    }
+
+    /**
+     * Whether the aggregate is kept in the database. {@link AggregateRebuild} rebuilds stored aggregates day by day
+     * and calls {@link #load} on the others once it is done.
+     */
+    default boolean isStored() {
+        return true;
+    }
+
+    /**
+     * Deletes the stored aggregates of the whole days in {@code [from, to)}, called in the transaction that folds
+     * the raw hits of those days in again.
+     */
+    default void clear(LocalDateTime from, LocalDateTime to) {
+    }
+}
@@ -0,0 +1,556 @@
+package ru.practicum.service;
+
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.config.ArchiveProperties;
+import ru.practicum.config.RetentionProperties;
+import ru.practicum.model.ArchiveSegment;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.ViewStats;
+import ru.practicum.repository.ArchiveRepository;
+import ru.practicum.repository.Dictionary;
+import ru.practicum.repository.HitDictionaries;
+import ru.practicum.repository.RawHitRepository;
+import ru.practicum.repository.RawHitRepository.EntityHitsConsumer;
+import ru.practicum.sketch.RoaringBitmap;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Columnar archive of old raw hits, one {@link ArchiveSegment} per day. Once a day, every day of the
+ * {@code endpoint} table older than {@code stats.archive.after} is written to its segment and deleted from
+ * the table in one repeatable read transaction, so the hits deleted are exactly the hits read. The segment is
+ * synced to disk before the transaction commits and put in place once it has; an export stopped in between is
+ * finished at the next start. Hits arriving late for an archived day, whatever their ids, are merged into its
+ * segment by the next run. Every raw hit read of
+ * {@link JpaHitStorage} that reaches an archived day merges the archive with the table here. Archived days stay
+ * readable when the export is turned off; they follow the raw hit retention like the table does.
+ */
+@Slf4j
+@Component
+public class HitArchive implements SmartInitializingSingleton {
+    private static final Comparator<ViewStats> MOST_VISITED = Comparator.comparingLong(ViewStats::getHits)
+            .reversed()
+            .thenComparing(ViewStats::getApp)
+            .thenComparing(ViewStats::getUri);
+    private static final int IP_BATCH = 10_000;
+    private final ArchiveProperties properties;
+    private final ArchiveRepository archiveRepository;
+    private final RawHitRepository rawHitRepository;
+    private final HitDictionaries hitDictionaries;
+    private final RetentionProperties retentionProperties;
+    private final RetentionTiers retentionTiers;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+
+    @Autowired
+    public HitArchive(ArchiveProperties properties, ArchiveRepository archiveRepository,
+                      RawHitRepository rawHitRepository, HitDictionaries hitDictionaries,
+                      RetentionProperties retentionProperties, RetentionTiers retentionTiers,
+                      TransactionTemplate transactionTemplate) {
+        this(properties, archiveRepository, rawHitRepository, hitDictionaries, retentionProperties, retentionTiers,
+                transactionTemplate, Clock.systemDefaultZone());
+    }
+
+    HitArchive(ArchiveProperties properties, ArchiveRepository archiveRepository, RawHitRepository rawHitRepository,
+               HitDictionaries hitDictionaries, RetentionProperties retentionProperties,
+               RetentionTiers retentionTiers, TransactionTemplate transactionTemplate, Clock clock) {
+        this.properties = properties;
+        this.archiveRepository = archiveRepository;
+        this.rawHitRepository = rawHitRepository;
+        this.hitDictionaries = hitDictionaries;
+        this.retentionProperties = retentionProperties;
+        this.retentionTiers = retentionTiers;
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.clock = clock;
+    }
+
+    /**
+     * Finishes the exports stopped between their commit and putting their segment in place. The hit with the
+     * last id of a segment was read and deleted by its export, so the export committed if and only if that hit
+     * is gone from the table.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        archiveRepository.findPending().forEach((day, segment) -> {
+            if (rawHitRepository.exists(segment.getLastId())) {
+                log.warn("Discarding archive segment of {} left by an export that did not commit", day);
+                archiveRepository.discardPending(day);
+            } else {
+                log.warn("Putting in place archive segment of {} left by an interrupted export", day);
+                archiveRepository.publishPending(day, segment);
+            }
+        });
+    }
+
+    @Scheduled(cron = "${stats.archive.cron:0 45 3 * * *}")
+    public synchronized void export() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        LocalDateTime first = rawHitRepository.findFirstTimestamp();
+        LocalDateTime cutoff = Granularity.DAY.floor(LocalDateTime.now(clock).minus(properties.getAfter()));
+        if (first == null || !first.isBefore(cutoff)) {
+            return;
+        }
+        int days = 0;
+        long hits = 0;
+        for (LocalDateTime day = Granularity.DAY.floor(first); day.isBefore(cutoff); day = day.plusDays(1)) {
+            LocalDate date = day.toLocalDate();
+            Integer exported = transactionTemplate.execute(status -> exportDay(date));
+            if (exported != null && exported > 0) {
+                days++;
+                hits += exported;
+            }
+        }
+        log.info("Archived {} hits of {} days older than {}", hits, days, cutoff);
+    }
+
+    /**
+     * Applies the raw hit retention by deleting whole archived days, as {@link HitPartitions} drops whole days.
+     */
+    @Scheduled(cron = "${stats.retention.cron:0 15 3 * * *}")
+    public synchronized void expire() {
+        if (!retentionProperties.isEnabled() || !retentionTiers.aggregatesComplete()) {
+            return;
+        }
+        LocalDateTime cutoff = retentionTiers.current().since(null);
+        List<LocalDate> expired = archiveRepository.findDays().stream()
+                .filter(day -> !day.plusDays(1).atStartOfDay().isAfter(cutoff))
+                .collect(Collectors.toList());
+        expired.forEach(archiveRepository::delete);
+        if (!expired.isEmpty()) {
+            log.info("Deleted {} archived days older than {}", expired.size(), cutoff);
+        }
+    }
+
+    /**
+     * Whether any archived day overlaps {@code [from, to)}.
+     */
+    public boolean covers(LocalDateTime from, LocalDateTime to) {
+        return !days(from, to).isEmpty();
+    }
+
+    /**
+     * Hits, or hits from distinct IPs, of every matching endpoint in {@code [start, end]} over the archive and
+     * the {@code endpoint} table together, most visited first.
+     */
+    public void forEachStats(LocalDateTime start, LocalDateTime end, StatsFilter filter, boolean unique,
+                             Consumer<ViewStats> consumer) {
+        LocalDateTime to = RangePlanner.exclusiveEnd(end);
+        Counts<StatsKey> counts = new Counts<>(unique);
+        if (unique) {
+            counts.ips.putAll(archivedIps(start, to, filter));
+            addTableIps(counts, tableIps -> rawHitRepository.forEachDistinctIp(start, to, filter, tableIps));
+        } else {
+            counts.hits.putAll(archivedHits(start, to, filter));
+            rawHitRepository.forEachStats(start, to, filter, false, row ->
+                    counts.addHits(new StatsKey(row.getApp(), row.getUri()), row.getHits()));
+        }
+        toViewStats(counts).forEach(consumer);
+    }
+
+    /**
+     * {@link #forEachStats} of all endpoints, cut to the {@code n} most visited.
+     */
+    public List<ViewStats> findTop(LocalDateTime start, LocalDateTime end, int n, boolean unique) {
+        List<ViewStats> viewStats = new ArrayList<>();
+        forEachStats(start, end, StatsFilter.ALL, unique, viewStats::add);
+        return viewStats.subList(0, Math.min(n, viewStats.size()));
+    }
+
+    /**
+     * Stats of each uri from its own start up to {@code to} (exclusive) over the archive and the table together.
+     */
+    public List<ViewStats> findStats(Map<String, LocalDateTime> startsByUri, LocalDateTime to, boolean unique) {
+        Map<Integer, Long> startsByUriId = new HashMap<>();
+        hitDictionaries.uris().find(startsByUri.keySet()).forEach((uri, uriId) ->
+                startsByUriId.put(uriId, ArchiveSegment.toMicros(startsByUri.get(uri))));
+        LocalDateTime from = Collections.min(startsByUri.values());
+        Counts<StatsKey> counts = archived(from, to, unique, (timestamp, appId, uriId) -> {
+            Long start = startsByUriId.get(uriId);
+            return start != null && timestamp >= start ? ArchiveSegment.endpointKey(appId, uriId) : null;
+        }).rekey(this::statsKey);
+        if (unique) {
+            addTableIps(counts, tableIps -> rawHitRepository.forEachDistinctIp(startsByUri, to, tableIps));
+        } else {
+            rawHitRepository.findStats(startsByUri, to, false).forEach(row ->
+                    counts.addHits(new StatsKey(row.getApp(), row.getUri()), row.getHits()));
+        }
+        return toViewStats(counts);
+    }
+
+    /**
+     * Hits of each entity of the type from its own start up to {@code to} (exclusive) over the archive and the
+     * table together, in the order of the ids. Archived entities are told by their {@code /type/id} uris, as
+     * the entity columns of the table are.
+     */
+    public void forEachEntity(String entityType, @Nullable String app, Map<Long, LocalDateTime> startsById,
+                              LocalDateTime to, boolean unique, EntityHitsConsumer consumer) {
+        Map<String, Long> idsByUri = new HashMap<>();
+        startsById.keySet().forEach(id -> idsByUri.put("/" + entityType + "/" + id, id));
+        Map<Integer, Long> idsByUriId = new HashMap<>();
+        hitDictionaries.uris().find(idsByUri.keySet()).forEach((uri, uriId) ->
+                idsByUriId.put(uriId, idsByUri.get(uri)));
+        Integer appFilter = app == null ? null : hitDictionaries.apps().find(List.of(app)).get(app);
+        if (app != null && appFilter == null) {
+            return;
+        }
+        LocalDateTime from = Collections.min(startsById.values());
+        Counts<Long> counts = archived(from, to, unique, (timestamp, appId, uriId) -> {
+            Long id = idsByUriId.get(uriId);
+            boolean matches = id != null && timestamp >= ArchiveSegment.toMicros(startsById.get(id))
+                    && (appFilter == null || appFilter == appId);
+            return matches ? id : null;
+        });
+        if (unique) {
+            addTableIps(counts, tableIps -> rawHitRepository.forEachEntityIp(entityType, app, startsById, to,
+                    tableIps));
+        } else {
+            rawHitRepository.forEachEntity(entityType, app, startsById, to, false, counts::addHits);
+        }
+        Map<Long, Long> hitsById = new TreeMap<>();
+        counts.forEach(hitsById::put);
+        hitsById.forEach(consumer::accept);
+    }
+
+    /**
+     * Hits, or distinct IPs when {@code unique}, per endpoint and {@code granularity} bucket of
+     * {@code [from, to)} over the archive and the table together.
+     */
+    public void forEachBucket(LocalDateTime from, LocalDateTime to, StatsFilter filter, Granularity granularity,
+                              boolean unique, BiConsumer<RollupKey, Long> consumer) {
+        long bucketMicros = granularity.getDuration().toNanos() / 1_000;
+        Map<Long, Boolean> matches = new HashMap<>();
+        Counts<RollupKey> counts = archived(from, to, unique, (timestamp, appId, uriId) -> {
+            long endpointKey = ArchiveSegment.endpointKey(appId, uriId);
+            return matches(endpointKey, filter, matches)
+                    ? new Bucket(endpointKey, Math.floorDiv(timestamp, bucketMicros)) : null;
+        }).rekey(bucket -> {
+            StatsKey statsKey = statsKey(bucket.endpointKey);
+            return new RollupKey(statsKey.getApp(), statsKey.getUri(),
+                    ArchiveSegment.toLocalDateTime(bucket.number * bucketMicros));
+        });
+        if (unique) {
+            addTableIps(counts, tableIps -> rawHitRepository.forEachBucketIp(from, to, filter, granularity,
+                    tableIps));
+        } else {
+            rawHitRepository.forEachBucket(from, to, filter, granularity, false, counts::addHits);
+        }
+        counts.forEach(consumer);
+    }
+
+    /**
+     * Distinct {@code (app, uri, ip)} triples of {@code [from, to)}, the archived ones first; a triple found in
+     * both is reported twice.
+     */
+    public void forEachDistinctIp(LocalDateTime from, LocalDateTime to, StatsFilter filter,
+                                  BiConsumer<StatsKey, String> consumer) {
+        Map<Long, Boolean> matches = new HashMap<>();
+        Counts<Long> counts = archived(from, to, true, (timestamp, appId, uriId) -> {
+            long endpointKey = ArchiveSegment.endpointKey(appId, uriId);
+            return matches(endpointKey, filter, matches) ? endpointKey : null;
+        });
+        Dictionary ips = hitDictionaries.ips();
+        counts.ips.forEach((endpointKey, bitmap) -> {
+            StatsKey statsKey = statsKey(endpointKey);
+            bitmap.forEach(id -> consumer.accept(statsKey, ips.valueOf(id)));
+        });
+        rawHitRepository.forEachDistinctIp(from, to, filter, consumer);
+    }
+
+    /**
+     * Every archived hit in {@code [from, to)}, by time.
+     */
+    public void forEachHit(LocalDateTime from, LocalDateTime to, Consumer<EndpointHit> consumer) {
+        long fromMicros = ArchiveSegment.toMicros(from);
+        long toMicros = ArchiveSegment.toMicros(to);
+        for (LocalDate day : days(from, to)) {
+            ArchiveSegment segment = archiveRepository.find(day);
+            if (segment == null) {
+                continue;
+            }
+            for (int i = segment.indexOf(fromMicros), last = segment.indexOf(toMicros); i < last; i++) {
+                consumer.accept(new EndpointHit(null, hitDictionaries.apps().valueOf(segment.app(i)),
+                        hitDictionaries.uris().valueOf(segment.uri(i)), hitDictionaries.ips().valueOf(segment.ip(i)),
+                        ArchiveSegment.toLocalDateTime(segment.timestamp(i))));
+            }
+        }
+    }
+
+    @Nullable
+    public LocalDateTime findFirstTimestamp() {
+        for (LocalDate day : archiveRepository.findDays()) {
+            ArchiveSegment segment = archiveRepository.find(day);
+            if (segment != null && segment.size() > 0) {
+                return ArchiveSegment.toLocalDateTime(segment.timestamp(0));
+            }
+        }
+        return null;
+    }
+
+    private Integer exportDay(LocalDate day) {
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = from.plusDays(1);
+        Long lastId = rawHitRepository.findLastId(from, to);
+        if (lastId == null) {
+            return 0;
+        }
+        // every hit of the day left in the table is not archived yet, late ones of earlier runs included
+        ArchiveSegment.Builder builder = new ArchiveSegment.Builder(lastId);
+        // ips are collected as indexes of their first occurrence and resolved to ids once the day is read
+        Map<String, Integer> ipIndexes = new LinkedHashMap<>();
+        rawHitRepository.forEachEncodedHit(from, to, lastId, (timestamp, appId, uriId, ip) -> {
+            Integer index = ipIndexes.get(ip);
+            if (index == null) {
+                index = ipIndexes.size();
+                ipIndexes.put(ip, index);
+            }
+            builder.add(ArchiveSegment.toMicros(timestamp), appId, uriId, index);
+        });
+        int exported = builder.size();
+        if (exported > 0) {
+            Map<String, Integer> ids = hitDictionaries.ips().resolve(ipIndexes.keySet());
+            int[] mapping = new int[ipIndexes.size()];
+            ipIndexes.forEach((ip, index) -> mapping[index] = ids.get(ip));
+            builder.mapIps(mapping);
+            ArchiveSegment archived = archiveRepository.find(day);
+            if (archived != null) {
+                builder.addAll(archived);
+            }
+            archiveRepository.save(day, builder.build());
+        }
+        rawHitRepository.deleteBetween(from, to, lastId);
+        return exported;
+    }
+
+    /**
+     * Tallies the archived hits of {@code [from, to)} under the keys {@code keyOf} gives them; a hit without a
+     * key is left out.
+     */
+    private <K> Counts<K> archived(LocalDateTime from, LocalDateTime to, boolean unique, ArchivedKey<K> keyOf) {
+        Counts<K> counts = new Counts<>(unique);
+        long fromMicros = ArchiveSegment.toMicros(from);
+        long toMicros = ArchiveSegment.toMicros(to);
+        for (LocalDate day : days(from, to)) {
+            ArchiveSegment segment = archiveRepository.find(day);
+            if (segment == null) {
+                continue;
+            }
+            for (int i = segment.indexOf(fromMicros), last = segment.indexOf(toMicros); i < last; i++) {
+                K key = keyOf.apply(segment.timestamp(i), segment.app(i), segment.uri(i));
+                if (key != null) {
+                    counts.addHit(key, segment.ip(i));
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Adds distinct {@code (key, ip)} pairs of the table, looked up in the ip dictionary in batches that never
+     * add to it. An ip the dictionary does not hold is in no archived segment and is counted aside.
+     */
+    private <K> void addTableIps(Counts<K> counts, Consumer<BiConsumer<K, String>> tableIps) {
+        List<K> keys = new ArrayList<>(IP_BATCH);
+        List<String> ips = new ArrayList<>(IP_BATCH);
+        tableIps.accept((key, ip) -> {
+            keys.add(key);
+            ips.add(ip);
+            if (keys.size() == IP_BATCH) {
+                addIps(counts, keys, ips);
+            }
+        });
+        addIps(counts, keys, ips);
+    }
+
+    private <K> void addIps(Counts<K> counts, List<K> keys, List<String> ips) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> ids = hitDictionaries.ips().find(new HashSet<>(ips));
+        for (int i = 0; i < keys.size(); i++) {
+            counts.addIp(keys.get(i), ids.get(ips.get(i)));
+        }
+        keys.clear();
+        ips.clear();
+    }
+
+    private static List<ViewStats> toViewStats(Counts<StatsKey> counts) {
+        List<ViewStats> viewStats = new ArrayList<>();
+        counts.forEach((key, count) -> viewStats.add(new ViewStats(key.getApp(), key.getUri(), count)));
+        viewStats.sort(MOST_VISITED);
+        return viewStats;
+    }
+
+    private Map<StatsKey, Long> archivedHits(LocalDateTime from, LocalDateTime to, StatsFilter filter) {
+        Map<Long, Long> hits = new HashMap<>();
+        Map<Long, Boolean> matches = new HashMap<>();
+        long fromMicros = ArchiveSegment.toMicros(from);
+        long toMicros = ArchiveSegment.toMicros(to);
+        for (LocalDate day : days(from, to)) {
+            ArchiveSegment segment = archiveRepository.find(day);
+            int first = segment == null ? 0 : segment.indexOf(fromMicros);
+            int last = segment == null ? 0 : segment.indexOf(toMicros);
+            if (first >= last) {
+                continue;
+            }
+            // every endpoint is counted, the filter applies to the few totals afterwards
+            long[] counts = new long[segment.endpointCount()];
+            segment.countHits(first, last, counts);
+            for (int endpoint = 0; endpoint < counts.length; endpoint++) {
+                long key = segment.endpointKey(endpoint);
+                if (counts[endpoint] > 0 && matches(key, filter, matches)) {
+                    hits.merge(key, counts[endpoint], Long::sum);
+                }
+            }
+        }
+        Map<StatsKey, Long> stats = new HashMap<>();
+        hits.forEach((key, count) -> stats.put(statsKey(key), count));
+        return stats;
+    }
+
+    private Map<StatsKey, RoaringBitmap> archivedIps(LocalDateTime from, LocalDateTime to, StatsFilter filter) {
+        Map<Long, RoaringBitmap> ips = new HashMap<>();
+        Map<Long, Boolean> matches = new HashMap<>();
+        long fromMicros = ArchiveSegment.toMicros(from);
+        long toMicros = ArchiveSegment.toMicros(to);
+        for (LocalDate day : days(from, to)) {
+            ArchiveSegment segment = archiveRepository.find(day);
+            int first = segment == null ? 0 : segment.indexOf(fromMicros);
+            int last = segment == null ? 0 : segment.indexOf(toMicros);
+            if (first >= last) {
+                continue;
+            }
+            RoaringBitmap[] bitmaps = new RoaringBitmap[segment.endpointCount()];
+            for (int endpoint = 0; endpoint < bitmaps.length; endpoint++) {
+                if (matches(segment.endpointKey(endpoint), filter, matches)) {
+                    bitmaps[endpoint] = new RoaringBitmap();
+                }
+            }
+            segment.addIps(first, last, bitmaps);
+            for (int endpoint = 0; endpoint < bitmaps.length; endpoint++) {
+                if (bitmaps[endpoint] != null && bitmaps[endpoint].cardinality() > 0) {
+                    ips.merge(segment.endpointKey(endpoint), bitmaps[endpoint], RoaringBitmap::or);
+                }
+            }
+        }
+        Map<StatsKey, RoaringBitmap> stats = new HashMap<>();
+        ips.forEach((key, bitmap) -> stats.put(statsKey(key), bitmap));
+        return stats;
+    }
+
+    private boolean matches(long endpointKey, StatsFilter filter, Map<Long, Boolean> matches) {
+        return filter.isAll() || matches.computeIfAbsent(endpointKey, key -> {
+            StatsKey statsKey = statsKey(key);
+            return filter.matches(statsKey.getApp(), statsKey.getUri());
+        });
+    }
+
+    private StatsKey statsKey(long endpointKey) {
+        Dictionary apps = hitDictionaries.apps();
+        Dictionary uris = hitDictionaries.uris();
+        return new StatsKey(apps.valueOf((int) (endpointKey >>> 32)), uris.valueOf((int) endpointKey));
+    }
+
+    private NavigableSet<LocalDate> days(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return new TreeSet<>();
+        }
+        return archiveRepository.findDays().subSet(from.toLocalDate(), true, to.toLocalDate(), true);
+    }
+
+    // the key an archived hit is tallied under, or null to leave it out
+    private interface ArchivedKey<K> {
+        @Nullable
+        K apply(long timestamp, int appId, int uriId);
+    }
+
+    /**
+     * Hits, or distinct IPs, per key. Archived IPs are dictionary ids; each table IP without one is a distinct
+     * IP of its own, counted with the hits of its key.
+     */
+    private static final class Counts<K> {
+        private final Map<K, Long> hits = new HashMap<>();
+        @Nullable
+        private final Map<K, RoaringBitmap> ips;
+
+        private Counts(boolean unique) {
+            this.ips = unique ? new HashMap<>() : null;
+        }
+
+        private void addHit(K key, int ip) {
+            if (ips != null) {
+                ips.computeIfAbsent(key, k -> new RoaringBitmap()).add(ip);
+            } else {
+                addHits(key, 1);
+            }
+        }
+
+        private void addHits(K key, long count) {
+            hits.merge(key, count, Long::sum);
+        }
+
+        private void addIp(K key, @Nullable Integer ip) {
+            if (ip == null) {
+                addHits(key, 1);
+            } else {
+                ips.computeIfAbsent(key, k -> new RoaringBitmap()).add(ip);
+            }
+        }
+
+        private <T> Counts<T> rekey(Function<K, T> keyOf) {
+            Counts<T> counts = new Counts<>(ips != null);
+            hits.forEach((key, count) -> counts.addHits(keyOf.apply(key), count));
+            if (ips != null) {
+                ips.forEach((key, bitmap) -> counts.ips.merge(keyOf.apply(key), bitmap, RoaringBitmap::or));
+            }
+            return counts;
+        }
+
+        private void forEach(BiConsumer<K, Long> consumer) {
+            Map<K, Long> counts = new HashMap<>(hits);
+            if (ips != null) {
+                ips.forEach((key, bitmap) -> counts.merge(key, bitmap.cardinality(), Long::sum));
+            }
+            counts.forEach(consumer);
+        }
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class Bucket {
+        private final long endpointKey;
+        private final long number;
+    }
+}
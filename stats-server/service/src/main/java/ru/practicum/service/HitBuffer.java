@@ -0,0 +1,207 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.HitBufferProperties;
+import ru.practicum.exception.IngestionOverloadedException;
+import ru.practicum.model.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind buffer for hits: {@link #offer} only enqueues, a single flusher thread
+ * drains the queue into {@link HitWriter} once {@code batchSize} hits are collected
+ * or {@code flushInterval} has passed since the first hit of the batch. A batch holds its slots in the
+ * buffer until it is written, and a failed write is retried up to {@code flushAttempts} times before its
+ * hits are logged as lost. Hits that do not fit, or arrive when the buffer is not running, are rejected
+ * with {@link IngestionOverloadedException} rather than accepted and dropped.
+ */
+@Slf4j
+@Component
+public class HitBuffer implements SmartLifecycle {
+    private final HitBufferProperties properties;
+    private final HitWriter hitWriter;
+    private final BlockingQueue<EndpointHit> queue;
+    // free slots, taken by offer and given back once the hits are written
+    private final Semaphore slots;
+    // offer holds the read lock while it enqueues, so that no hit gets in after stop has let the flusher finish
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private final Counter droppedHits;
+    private final Counter failedHits;
+    private final DistributionSummary flushSize;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public HitBuffer(HitBufferProperties properties, HitWriter hitWriter, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.hitWriter = hitWriter;
+        this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+        this.slots = new Semaphore(properties.getCapacity());
+        this.droppedHits = Counter.builder("stats.ingest.buffer.dropped")
+                .description("Hits rejected because the buffer was full")
+                .register(meterRegistry);
+        this.failedHits = Counter.builder("stats.ingest.buffer.failed")
+                .description("Hits lost because their batch could not be written")
+                .register(meterRegistry);
+        this.flushSize = DistributionSummary.builder("stats.ingest.buffer.flush.size")
+                .description("Number of hits written per flush")
+                .register(meterRegistry);
+        meterRegistry.gauge("stats.ingest.buffer.depth", queue, BlockingQueue::size);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Enqueues all the hits or none of them.
+     *
+     * @throws IngestionOverloadedException when the buffer is not running or has no room for the hits
+     */
+    public void offer(List<EndpointHit> hits) {
+        lifecycle.readLock().lock();
+        try {
+            if (!running) {
+                droppedHits.increment(hits.size());
+                throw new IngestionOverloadedException("Hit buffer is not running", properties.getFlushInterval());
+            }
+            if (!slots.tryAcquire(hits.size())) {
+                droppedHits.increment(hits.size());
+                throw new IngestionOverloadedException("Hit buffer is full", properties.getFlushInterval());
+            }
+            queue.addAll(hits);
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled() || running) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "hit-buffer-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Hit buffer started: capacity={}, batchSize={}, flushInterval={}",
+                properties.getCapacity(), properties.getBatchSize(), properties.getFlushInterval());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        lifecycle.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+        try {
+            flusher.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            log.warn("Hit buffer did not drain within {}, {} hits left", properties.getShutdownTimeout(), queue.size());
+        } else {
+            log.info("Hit buffer drained and stopped");
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void flushLoop() {
+        long flushIntervalNanos = properties.getFlushInterval().toNanos();
+        List<EndpointHit> batch = new ArrayList<>(properties.getBatchSize());
+
+        while (running || !queue.isEmpty()) {
+            try {
+                EndpointHit first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch, System.nanoTime() + flushIntervalNanos);
+            } catch (InterruptedException e) {
+                queue.drainTo(batch, properties.getBatchSize() - batch.size());
+                running = false;
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void fillBatch(List<EndpointHit> batch, long deadline) throws InterruptedException {
+        int batchSize = properties.getBatchSize();
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            EndpointHit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<EndpointHit> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    hitWriter.write(batch);
+                    flushSize.record(batch.size());
+                    return;
+                } catch (RuntimeException e) {
+                    if (attempt >= properties.getFlushAttempts() || !backOff(attempt)) {
+                        failedHits.increment(batch.size());
+                        log.error("Failed to flush {} buffered hits in {} attempts, lost hits: {}",
+                                batch.size(), attempt, batch, e);
+                        return;
+                    }
+                    log.warn("Failed to flush {} buffered hits, attempt {} of {}: {}",
+                            batch.size(), attempt, properties.getFlushAttempts(), e.getMessage());
+                }
+            }
+        } finally {
+            slots.release(batch.size());
+        }
+    }
+
+    private boolean backOff(int attempt) {
+        try {
+            Thread.sleep(properties.getRetryBackoff().multipliedBy(attempt).toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
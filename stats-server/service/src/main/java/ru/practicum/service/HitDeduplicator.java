@@ -0,0 +1,129 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.DedupProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.sketch.BloomFilter;
+import ru.practicum.sketch.Hashing;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Drops hits that repeat an {@code (app, uri, ip)} within the same fixed {@code stats.dedup.window}, such as
+ * the views recorded each time a client refreshes the same listing. Windows are cut from the hit timestamps,
+ * not from arrival, so replayed hits collapse the same way as live ones, and each keeps one {@link BloomFilter}
+ * of the keys it has seen. A repeat does not extend its window, so a client that keeps refreshing still counts
+ * once per window. Only the latest {@code WINDOWS} windows are kept; a hit older than all of them is passed on
+ * without a check. A false positive drops a hit that is not a repeat; the rate estimated for the latest window
+ * is published as {@code stats.dedup.false.positive.rate}.
+ */
+@Component
+public class HitDeduplicator {
+    // the current window and the one before, for hits that arrive a little late
+    private static final int WINDOWS = 2;
+    private final DedupProperties properties;
+    private final ConcurrentSkipListMap<Long, BloomFilter> windows = new ConcurrentSkipListMap<>();
+    private final Counter kept;
+    private final Counter dropped;
+
+    public HitDeduplicator(DedupProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.kept = Counter.builder("stats.dedup.hits").tag("result", "kept")
+                .description("Hits passed on to storage")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("stats.dedup.hits").tag("result", "dropped")
+                .description("Hits dropped as repeats within the deduplication window")
+                .register(meterRegistry);
+        meterRegistry.gauge("stats.dedup.false.positive.rate", this, HitDeduplicator::falsePositiveRate);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * The hits that are not repeats, in their original order. Only checks them against the windows, so that a
+     * hit whose write fails is not taken for a repeat when the client retries it; once the hits are stored or
+     * buffered they are marked seen with {@link #record}. Repeats within the hits themselves are dropped here.
+     * Two requests carrying the same hit at the same time may both get it stored.
+     */
+    public List<EndpointHit> filter(List<EndpointHit> hits) {
+        if (!properties.isEnabled()) {
+            return hits;
+        }
+
+        List<EndpointHit> fresh = new ArrayList<>(hits.size());
+        Map<BloomFilter, Set<Long>> seen = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            BloomFilter window = window(hit.getTimestamp());
+            long key = key(hit);
+            if (window == null || !window.mightContain(key)
+                    && seen.computeIfAbsent(window, w -> new HashSet<>()).add(key)) {
+                fresh.add(hit);
+            }
+        }
+        kept.increment(fresh.size());
+        dropped.increment(hits.size() - fresh.size());
+        return fresh;
+    }
+
+    /**
+     * Marks the hits seen in their windows, once they are stored or buffered.
+     */
+    public void record(List<EndpointHit> hits) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (EndpointHit hit : hits) {
+            BloomFilter window = window(hit.getTimestamp());
+            if (window != null) {
+                window.put(key(hit));
+            }
+        }
+    }
+
+    /**
+     * Estimated probability that a hit seen for the first time in the latest window is dropped.
+     */
+    public double falsePositiveRate() {
+        Map.Entry<Long, BloomFilter> latest = windows.lastEntry();
+        return latest == null ? 0 : latest.getValue().falsePositiveRate();
+    }
+
+    @Nullable
+    private BloomFilter window(LocalDateTime timestamp) {
+        long index = Math.floorDiv(timestamp.toInstant(ZoneOffset.UTC).toEpochMilli(),
+                properties.getWindow().toMillis());
+        BloomFilter window = windows.get(index);
+        if (window != null) {
+            return window;
+        }
+        if (windows.size() >= WINDOWS && index < windows.firstKey()) {
+            return null;
+        }
+        window = windows.computeIfAbsent(index, i -> newFilter());
+        while (windows.size() > WINDOWS) {
+            windows.pollFirstEntry();
+        }
+        return window;
+    }
+
+    private static long key(EndpointHit hit) {
+        return Hashing.hash64(hit.getApp() + '\n' + hit.getUri() + '\n' + hit.getIp());
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(properties.getExpectedHits(), properties.getFalsePositiveRate());
+    }
+}
@@ -0,0 +1,123 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.config.RetentionProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.PartitionRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the daily partitions of {@code endpoint} in step with incoming hits and applies the raw hit
+ * retention: expired days are dropped as whole partitions, or deleted by range when the table is
+ * not partitioned (H2; schema-postgresql.sql moves a PostgreSQL table created before partitioning
+ * into partitions). Raw hits expire only while the rollups and bitmaps hold the whole history,
+ * see {@link RetentionTiers}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HitPartitions implements SmartInitializingSingleton {
+    private final PartitionRepository partitionRepository;
+    private final RetentionProperties properties;
+    private final RetentionTiers retentionTiers;
+    private final Set<LocalDate> partitions = ConcurrentHashMap.newKeySet();
+    private volatile boolean partitioned;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        partitioned = partitionRepository.isPartitioned();
+        if (partitioned) {
+            partitions.addAll(partitionRepository.findDailyPartitions());
+            createAhead();
+            log.info("Hits are stored in {} daily partitions", partitions.size());
+        }
+    }
+
+    /**
+     * Creates missing partitions for the days of the hits. Must be called before the hits are inserted
+     * and outside of the inserting transaction, which would otherwise block partition creation.
+     *
+     * @throws DataAccessException when a partition cannot be created
+     */
+    public void ensure(List<EndpointHit> hits) {
+        if (!partitioned) {
+            return;
+        }
+        Set<LocalDate> missing = hits.stream()
+                .map(hit -> hit.getTimestamp().toLocalDate())
+                .filter(day -> !partitions.contains(day))
+                .collect(Collectors.toSet());
+        missing.forEach(this::create);
+    }
+
+    @Scheduled(cron = "${stats.retention.cron:0 15 3 * * *}")
+    public void maintain() {
+        if (partitioned) {
+            createAhead();
+        }
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (!retentionTiers.aggregatesComplete()) {
+            log.warn("Raw hits are kept: they are the only copy of the history while rollups or bitmaps are off");
+            return;
+        }
+
+        LocalDateTime cutoff = retentionTiers.current().since(null);
+        if (partitioned) {
+            List<LocalDate> expired = partitionRepository.findDailyPartitions().stream()
+                    .filter(day -> !day.plusDays(1).atStartOfDay().isAfter(cutoff))
+                    .collect(Collectors.toList());
+            expired.forEach(day -> {
+                partitionRepository.dropDailyPartition(day);
+                partitions.remove(day);
+            });
+            log.info("Dropped {} expired hit partitions older than {}", expired.size(), cutoff);
+        } else {
+            int deleted = partitionRepository.deleteBefore(cutoff);
+            log.info("Deleted {} expired hits older than {}", deleted, cutoff);
+        }
+    }
+
+    private void createAhead() {
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i <= properties.getPartitionsAhead(); i++) {
+            if (!partitions.contains(today.plusDays(i))) {
+                try {
+                    create(today.plusDays(i));
+                } catch (DataAccessException e) {
+                    log.warn("Cannot create hit partition for {} ahead: {}", today.plusDays(i), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the partition of the day. A failure is rethrown unless another writer created the partition
+     * meanwhile, as hits of the day could not be inserted anyway.
+     */
+    private void create(LocalDate day) {
+        try {
+            partitionRepository.createDailyPartition(day);
+        } catch (DataAccessException e) {
+            if (!partitionRepository.findDailyPartitions().contains(day)) {
+                throw e;
+            }
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            partitions.add(day);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.config.HitSocketProperties;
+import ru.practicum.exception.IngestionOverloadedException;
+import ru.practicum.exception.InvalidHitFrameException;
+import ru.practicum.model.HitFrames;
+
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fire-and-forget TCP ingestion of {@link HitFrames}, next to {@code POST /hit}. One selector thread reads every
+ * connection into a direct buffer of a fixed pool and hands the complete frames of each read to
+ * {@link StatsService#createHits}, the same pipeline the HTTP endpoints use. Decoded hits are checked with the
+ * same constraints as a {@code POST /hit} body. Nothing is written back: invalid frames and hits shed by
+ * admission are only counted, and a frame that cannot fit in a buffer closes the connection. The socket binds
+ * to the loopback address unless {@code stats.ingest.socket.host} says otherwise, as senders are not
+ * authenticated. While a batch is stored the thread reads nothing, so a slow database pushes back on the senders
+ * through their TCP windows; pair the socket with the hit buffer to keep that pause short.
+ */
+@Slf4j
+@Component
+public class HitSocketListener implements SmartLifecycle {
+    private final HitSocketProperties properties;
+    private final StatsService statsService;
+    private final Validator validator;
+    private final Deque<ByteBuffer> buffers = new ArrayDeque<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Counter accepted;
+    private final Counter invalid;
+    private final Counter dropped;
+    private final Counter rejected;
+    private int allocated;
+    private volatile boolean running;
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread listener;
+
+    public HitSocketListener(HitSocketProperties properties, StatsService statsService, Validator validator,
+                             MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.statsService = statsService;
+        this.validator = validator;
+        this.accepted = Counter.builder("stats.ingest.socket.frames").tag("result", "accepted")
+                .description("Hit frames passed on to storage")
+                .register(meterRegistry);
+        this.invalid = Counter.builder("stats.ingest.socket.frames").tag("result", "invalid")
+                .description("Hit frames skipped because they could not be decoded or held an invalid hit")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("stats.ingest.socket.frames").tag("result", "dropped")
+                .description("Hit frames lost because storing them failed or was shed")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("stats.ingest.socket.rejected")
+                .description("Connections closed because no buffer was left")
+                .register(meterRegistry);
+        meterRegistry.gauge("stats.ingest.socket.connections", connections);
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled() || running) {
+            return;
+        }
+        try {
+            selector = Selector.open();
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(properties.getHost(), properties.getPort()));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the hit socket on port " + properties.getPort(), e);
+        }
+        running = true;
+        listener = new Thread(this::listen, "hit-socket-listener");
+        listener.setDaemon(true);
+        listener.start();
+        log.info("Hit socket listening on {}", getLocalPort());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            listener.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Hit socket stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Started after and stopped before the hit buffer, so the buffer drains every hit read from the socket.
+     */
+    @Override
+    public int getPhase() {
+        return 1;
+    }
+
+    public int getLocalPort() {
+        try {
+            return ((InetSocketAddress) server.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void listen() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error("Hit socket failed", e);
+            running = false;
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            closeQuietly(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        ByteBuffer buffer = borrow();
+        if (buffer == null) {
+            rejected.increment();
+            log.warn("Hit socket connection from {} rejected: all {} buffers are in use",
+                    channel.getRemoteAddress(), properties.getBuffers());
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, buffer);
+        connections.incrementAndGet();
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+        try {
+            if (channel.read(buffer) < 0) {
+                close(key);
+                return;
+            }
+        } catch (IOException e) {
+            log.debug("Hit socket connection failed", e);
+            close(key);
+            return;
+        }
+
+        buffer.flip();
+        List<EndpointHitDto> hits = new ArrayList<>();
+        while (buffer.remaining() >= HitFrames.HEADER_LENGTH) {
+            int length = buffer.getInt(buffer.position());
+            if (length < HitFrames.MIN_BODY_LENGTH || length > buffer.capacity() - HitFrames.HEADER_LENGTH) {
+                log.warn("Hit socket connection closed: invalid frame length {}", length);
+                invalid.increment();
+                close(key);
+                ingest(hits);
+                return;
+            }
+            if (buffer.remaining() < HitFrames.HEADER_LENGTH + length) {
+                break;
+            }
+            buffer.position(buffer.position() + HitFrames.HEADER_LENGTH);
+            try {
+                EndpointHitDto hit = HitFrames.decode(buffer, length);
+                if (validator.validate(hit).isEmpty()) {
+                    hits.add(hit);
+                } else {
+                    invalid.increment();
+                }
+            } catch (InvalidHitFrameException e) {
+                invalid.increment();
+            }
+        }
+        buffer.compact();
+        ingest(hits);
+    }
+
+    private void ingest(List<EndpointHitDto> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        try {
+            statsService.createHits(hits);
+            accepted.increment(hits.size());
+        } catch (IngestionOverloadedException e) {
+            dropped.increment(hits.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not store {} hits from the hit socket", hits.size(), e);
+            dropped.increment(hits.size());
+        }
+    }
+
+    private ByteBuffer borrow() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null && allocated < properties.getBuffers()) {
+            allocated++;
+            buffer = ByteBuffer.allocateDirect(properties.getBufferSize());
+        }
+        return buffer;
+    }
+
+    private void close(SelectionKey key) {
+        closeQuietly(key);
+        if (key.attachment() instanceof ByteBuffer) {
+            buffers.push(((ByteBuffer) key.attachment()).clear());
+            key.attach(null);
+            connections.decrementAndGet();
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        closeQuietly(key.channel());
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.debug("Could not close {}", closeable, e);
+        }
+    }
+}
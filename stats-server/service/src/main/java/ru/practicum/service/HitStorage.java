@@ -0,0 +1,86 @@
+package ru.practicum.service;
+
+import org.springframework.lang.Nullable;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.ViewStats;
+import ru.practicum.repository.RawHitRepository.EntityHitsConsumer;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Where raw hits are kept, chosen with {@code stats.storage.engine}: the {@code endpoint} table by default
+ * ({@link JpaHitStorage}) or an append-only log of memory-mapped files ({@link MappedHitStorage}). Every read
+ * of raw hits goes through it; rollups, sketches and bitmaps are fed on the write path and stay in the
+ * database either way. The table storage also reads the old days moved
+ * to the columnar {@link HitArchive}.
+ */
+public interface HitStorage {
+    /**
+     * Stores the hits. Called inside the transaction that aggregates them.
+     */
+    void saveAll(List<EndpointHit> hits);
+
+    /**
+     * Hits, or hits from distinct IPs, of every matching endpoint in {@code [start, end]}, most visited first.
+     */
+    void forEachStats(LocalDateTime start, LocalDateTime end, StatsFilter filter, boolean unique,
+                      Consumer<ViewStats> consumer);
+
+    /**
+     * The {@code n} most visited endpoints of {@code [start, end]}, counted like {@link #forEachStats}.
+     */
+    List<ViewStats> findTop(LocalDateTime start, LocalDateTime end, int n, boolean unique);
+
+    /**
+     * Stats of each uri from its own start up to {@code to} (exclusive), most visited first.
+     */
+    List<ViewStats> findStats(Map<String, LocalDateTime> startsByUri, LocalDateTime to, boolean unique);
+
+    /**
+     * Hits of each entity of the type from its own start up to {@code to} (exclusive), in the order of the ids.
+     * Entities without hits are not reported.
+     */
+    void forEachEntity(String entityType, @Nullable String app, Map<Long, LocalDateTime> startsById,
+                       LocalDateTime to, boolean unique, EntityHitsConsumer consumer);
+
+    /**
+     * Hits, or distinct IPs when {@code unique}, per endpoint and {@code granularity} bucket of
+     * {@code [from, to)}.
+     */
+    void forEachBucket(LocalDateTime from, LocalDateTime to, StatsFilter filter, Granularity granularity,
+                       boolean unique, BiConsumer<RollupKey, Long> consumer);
+
+    /**
+     * Distinct {@code (app, uri, ip)} triples of {@code [from, to)}.
+     */
+    void forEachDistinctIp(LocalDateTime from, LocalDateTime to, StatsFilter filter,
+                           BiConsumer<StatsKey, String> consumer);
+
+    /**
+     * Id of the latest stored hit, or {@code null} when there is none. Ids grow in the order hits are stored.
+     */
+    @Nullable
+    Long findLastId();
+
+    /**
+     * Up to {@code limit} hits with ids in {@code (afterId, toId]}, by id and with their ids set, for paging
+     * through the stored hits by key. Days moved to the {@link HitArchive} keep no ids and are not read.
+     */
+    List<EndpointHit> findHits(long afterId, long toId, int limit);
+
+    /**
+     * Every hit in {@code [from, to)}, in no particular order.
+     */
+    void forEachHit(LocalDateTime from, LocalDateTime to, Consumer<EndpointHit> consumer);
+
+    @Nullable
+    LocalDateTime findFirstTimestamp();
+}
@@ -0,0 +1,119 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.model.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Inserts hits and updates every {@link HitAggregator} in one transaction. Concurrent writers are group
+ * committed: hits that arrive while a transaction runs wait for it, then the first of their writers stores
+ * all of them together. Aggregators thus see one batch per transaction instead of one per request, and a
+ * burst of single hits to the same endpoint upserts its rollup rows once rather than once per hit. Every
+ * writer returns only after the transaction carrying its hits commits, or rethrows what it failed with.
+ * {@link LiveCounters} are in memory only and count the hits once they are committed.
+ */
+@Component
+@RequiredArgsConstructor
+public class HitWriter {
+    private final HitStorage hitStorage;
+    private final List<HitAggregator> aggregators;
+    private final HitPartitions hitPartitions;
+    private final TransactionTemplate transactionTemplate;
+    private final LiveCounters liveCounters;
+    private final Queue<PendingWrite> pending = new ConcurrentLinkedQueue<>();
+    private final Object commitLock = new Object();
+
+    public void write(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // the hits have to commit or roll back with the caller's transaction, not with other writers
+            store(hits);
+            return;
+        }
+
+        PendingWrite write = new PendingWrite(hits);
+        pending.add(write);
+        synchronized (commitLock) {
+            if (!write.done) {
+                commitPending();
+            }
+        }
+        if (write.failure instanceof RuntimeException) {
+            throw (RuntimeException) write.failure;
+        }
+        if (write.failure instanceof Error) {
+            throw (Error) write.failure;
+        }
+    }
+
+    /**
+     * Runs the action while no group commit is in progress, so that no hit commits, and no aggregator sees one,
+     * until it returns. Writers meanwhile queue up and are committed together afterwards. Hits written within
+     * a caller's transaction are not held back.
+     */
+    public void pause(Runnable action) {
+        synchronized (commitLock) {
+            action.run();
+        }
+    }
+
+    private void commitPending() {
+        List<PendingWrite> group = new ArrayList<>();
+        List<EndpointHit> hits = new ArrayList<>();
+        for (PendingWrite write = pending.poll(); write != null; write = pending.poll()) {
+            group.add(write);
+            hits.addAll(write.hits);
+        }
+        Throwable failure = null;
+        try {
+            store(hits);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+        for (PendingWrite write : group) {
+            write.failure = failure;
+            write.done = true;
+        }
+    }
+
+    private void store(List<EndpointHit> hits) {
+        hitPartitions.ensure(hits);
+        transactionTemplate.executeWithoutResult(status -> {
+            hitStorage.saveAll(hits);
+            aggregators.forEach(aggregator -> aggregator.aggregate(hits));
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        liveCounters.add(hits);
+                    }
+                });
+            } else {
+                liveCounters.add(hits);
+            }
+        });
+    }
+
+    // done and failure are written under commitLock once store returns, that is after the transaction committed
+    // and its afterCommit added the hits to liveCounters, or after it failed. The writer reads them once it has
+    // held commitLock itself, which makes them visible, so its hits are committed and counted when it returns.
+    private static final class PendingWrite {
+        private final List<EndpointHit> hits;
+        private boolean done;
+        private Throwable failure;
+
+        private PendingWrite(List<EndpointHit> hits) {
+            this.hits = hits;
+        }
+    }
+}
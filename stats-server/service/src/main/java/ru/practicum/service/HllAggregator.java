@@ -0,0 +1,65 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.SketchProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.RollupKey;
+import ru.practicum.repository.SketchRepository;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ru.practicum.model.Granularity.DAY;
+
+@Component
+@RequiredArgsConstructor
+public class HllAggregator implements HitAggregator {
+    public static final String TABLE = "endpoint_hll_day";
+    private final SketchProperties properties;
+    private final SketchRepository sketchRepository;
+
+    @Override
+    public void aggregate(List<EndpointHit> hits) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        Map<RollupKey, List<String>> ips = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            RollupKey key = new RollupKey(hit.getApp(), hit.getUri(), DAY.floor(hit.getTimestamp()));
+            ips.computeIfAbsent(key, k -> new ArrayList<>()).add(hit.getIp());
+        }
+
+        sketchRepository.createMissing(TABLE, ips.keySet(), new HyperLogLog().toBytes());
+        Map<RollupKey, byte[]> stored = sketchRepository.findForUpdate(TABLE, ips.keySet());
+        Map<RollupKey, byte[]> changed = new HashMap<>();
+        stored.forEach((key, bytes) -> {
+            HyperLogLog sketch = HyperLogLog.fromBytes(bytes);
+            boolean modified = false;
+            for (String ip : ips.get(key)) {
+                modified |= sketch.add(ip);
+            }
+            if (modified) {
+                changed.put(key, sketch.toBytes());
+            }
+        });
+        sketchRepository.updateAll(TABLE, changed);
+    }
+
+    @Override
+    public void clear(LocalDateTime from, LocalDateTime to) {
+        if (properties.isEnabled()) {
+            sketchRepository.deleteBetween(TABLE, from, to);
+        }
+    }
+
+    @Override
+    public boolean needsBackfill() {
+        return properties.isEnabled() && sketchRepository.isEmpty(TABLE);
+    }
+}
@@ -0,0 +1,139 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.ViewStats;
+import ru.practicum.repository.HitBatchRepository;
+import ru.practicum.repository.RawHitRepository;
+import ru.practicum.repository.RawHitRepository.EntityHitsConsumer;
+import ru.practicum.repository.StatsRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.storage.engine", havingValue = "jpa", matchIfMissing = true)
+public class JpaHitStorage implements HitStorage {
+    private final HitBatchRepository hitBatchRepository;
+    private final RawHitRepository rawHitRepository;
+    private final StatsRepository statsRepository;
+    private final HitArchive hitArchive;
+
+    @Override
+    public void saveAll(List<EndpointHit> hits) {
+        hitBatchRepository.saveAll(hits);
+    }
+
+    @Override
+    public void forEachStats(LocalDateTime start, LocalDateTime end, StatsFilter filter, boolean unique,
+                             Consumer<ViewStats> consumer) {
+        if (hitArchive.covers(start, RangePlanner.exclusiveEnd(end))) {
+            hitArchive.forEachStats(start, end, filter, unique, consumer);
+            return;
+        }
+        if (!filter.isAll()) {
+            rawHitRepository.forEachStats(start, RangePlanner.exclusiveEnd(end), filter, unique, consumer);
+            return;
+        }
+        Stream<ViewStats> viewStats = unique
+                ? statsRepository.streamAllByDateBetweenAndUniqueIp(start, end)
+                : statsRepository.streamAllByDateBetweenStartAndEnd(start, end);
+        try (viewStats) {
+            viewStats.forEach(consumer);
+        }
+    }
+
+    @Override
+    public List<ViewStats> findTop(LocalDateTime start, LocalDateTime end, int n, boolean unique) {
+        if (hitArchive.covers(start, RangePlanner.exclusiveEnd(end))) {
+            return hitArchive.findTop(start, end, n, unique);
+        }
+        return unique
+                ? statsRepository.findTopByDateBetweenAndUniqueIp(start, end, PageRequest.of(0, n))
+                : statsRepository.findTopByDateBetween(start, end, PageRequest.of(0, n));
+    }
+
+    @Override
+    public List<ViewStats> findStats(Map<String, LocalDateTime> startsByUri, LocalDateTime to, boolean unique) {
+        if (coversAny(startsByUri.values(), to)) {
+            return hitArchive.findStats(startsByUri, to, unique);
+        }
+        return rawHitRepository.findStats(startsByUri, to, unique);
+    }
+
+    @Override
+    public void forEachEntity(String entityType, @Nullable String app, Map<Long, LocalDateTime> startsById,
+                              LocalDateTime to, boolean unique, EntityHitsConsumer consumer) {
+        if (coversAny(startsById.values(), to)) {
+            hitArchive.forEachEntity(entityType, app, startsById, to, unique, consumer);
+            return;
+        }
+        rawHitRepository.forEachEntity(entityType, app, startsById, to, unique, consumer);
+    }
+
+    @Override
+    public void forEachBucket(LocalDateTime from, LocalDateTime to, StatsFilter filter, Granularity granularity,
+                              boolean unique, BiConsumer<RollupKey, Long> consumer) {
+        if (hitArchive.covers(from, to)) {
+            hitArchive.forEachBucket(from, to, filter, granularity, unique, consumer);
+            return;
+        }
+        rawHitRepository.forEachBucket(from, to, filter, granularity, unique, consumer);
+    }
+
+    @Override
+    public void forEachDistinctIp(LocalDateTime from, LocalDateTime to, StatsFilter filter,
+                                  BiConsumer<StatsKey, String> consumer) {
+        if (hitArchive.covers(from, to)) {
+            hitArchive.forEachDistinctIp(from, to, filter, consumer);
+            return;
+        }
+        rawHitRepository.forEachDistinctIp(from, to, filter, consumer);
+    }
+
+    @Nullable
+    @Override
+    public Long findLastId() {
+        return rawHitRepository.findLastId();
+    }
+
+    @Override
+    public List<EndpointHit> findHits(long afterId, long toId, int limit) {
+        return rawHitRepository.findHits(afterId, toId, limit);
+    }
+
+    @Override
+    public void forEachHit(LocalDateTime from, LocalDateTime to, Consumer<EndpointHit> consumer) {
+        hitArchive.forEachHit(from, to, consumer);
+        rawHitRepository.forEachHit(from, to, consumer);
+    }
+
+    @Nullable
+    @Override
+    public LocalDateTime findFirstTimestamp() {
+        LocalDateTime archived = hitArchive.findFirstTimestamp();
+        LocalDateTime first = rawHitRepository.findFirstTimestamp();
+        return archived == null || first != null && first.isBefore(archived) ? first : archived;
+    }
+
+    private boolean coversAny(Collection<LocalDateTime> starts, LocalDateTime to) {
+        return starts.stream().min(Comparator.naturalOrder())
+                .map(start -> hitArchive.covers(start, to))
+                .orElse(false);
+    }
+}
@@ -0,0 +1,134 @@
+package ru.practicum.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.LiveProperties;
+import ru.practicum.exception.InvalidWindowException;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.ViewStats;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Hits per endpoint over the last minutes, kept in memory only. Each minute has its own bucket of
+ * {@link LongAdder}s, which stripe increments over per-thread cells instead of contending on one value.
+ * Buckets sit in a ring of {@code maxWindow} minutes plus one for hits stamped a little ahead of the
+ * server clock; a writer that reaches a slot still holding an older minute swaps in a fresh bucket with a
+ * compare-and-set, so rotation never blocks readers or other writers.
+ */
+@Component
+public class LiveCounters {
+    private final LiveProperties properties;
+    private final Clock clock;
+    private final int minutes;
+    private final AtomicReferenceArray<Bucket> ring;
+
+    @Autowired
+    public LiveCounters(LiveProperties properties) {
+        this(properties, Clock.systemDefaultZone());
+    }
+
+    LiveCounters(LiveProperties properties, Clock clock) {
+        this.properties = properties;
+        this.clock = clock;
+        this.minutes = (int) Math.max(1, properties.getMaxWindow().toMinutes());
+        this.ring = new AtomicReferenceArray<>(minutes + 1);
+    }
+
+    public void add(Collection<EndpointHit> hits) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        long now = minuteOf(LocalDateTime.now(clock));
+        for (EndpointHit hit : hits) {
+            long minute = minuteOf(hit.getTimestamp());
+            if (minute <= now - minutes || minute > now + 1) {
+                continue;
+            }
+            Bucket bucket = bucket(minute);
+            if (bucket != null) {
+                bucket.hits.computeIfAbsent(new StatsKey(hit.getApp(), hit.getUri()), key -> new LongAdder())
+                        .increment();
+            }
+        }
+    }
+
+    /**
+     * Hits of the current minute and the {@code window} minus one minutes before it, most hit first.
+     */
+    public List<ViewStats> getStats(StatsFilter filter, Duration window) {
+        long windowMinutes = window.toMinutes();
+        if (windowMinutes < 1 || windowMinutes > minutes) {
+            throw new InvalidWindowException("Window must be between 1 minute and " + properties.getMaxWindow());
+        }
+
+        long now = minuteOf(LocalDateTime.now(clock));
+        Map<StatsKey, Long> hits = new HashMap<>();
+        for (int i = 0; i < ring.length(); i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket == null || bucket.minute <= now - windowMinutes || bucket.minute > now) {
+                continue;
+            }
+            bucket.hits.forEach((key, adder) -> {
+                if (filter.matches(key.getApp(), key.getUri())) {
+                    hits.merge(key, adder.sum(), Long::sum);
+                }
+            });
+        }
+
+        return hits.entrySet().stream()
+                .map(entry -> new ViewStats(entry.getKey().getApp(), entry.getKey().getUri(), entry.getValue()))
+                .sorted(Comparator.comparing(ViewStats::getHits).reversed()
+                        .thenComparing(ViewStats::getApp)
+                        .thenComparing(ViewStats::getUri))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The bucket of the minute, replacing an expired one in its slot, or {@code null} when the slot already
+     * moved on to a later minute.
+     */
+    @Nullable
+    private Bucket bucket(long minute) {
+        int slot = (int) Math.floorMod(minute, (long) ring.length());
+        while (true) {
+            Bucket bucket = ring.get(slot);
+            if (bucket != null && bucket.minute >= minute) {
+                return bucket.minute == minute ? bucket : null;
+            }
+            Bucket fresh = new Bucket(minute);
+            if (ring.compareAndSet(slot, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private static long minuteOf(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private static final class Bucket {
+        private final long minute;
+        private final ConcurrentHashMap<StatsKey, LongAdder> hits = new ConcurrentHashMap<>();
+
+        private Bucket(long minute) {
+            this.minute = minute;
+        }
+    }
+}
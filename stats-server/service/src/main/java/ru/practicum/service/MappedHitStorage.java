@@ -0,0 +1,646 @@
+package ru.practicum.service;
+
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.RetentionProperties;
+import ru.practicum.config.StorageProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.IpAddresses;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.ViewStats;
+import ru.practicum.repository.Dictionary;
+import ru.practicum.repository.HitDictionaries;
+import ru.practicum.repository.RawHitRepository.EntityHitsConsumer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only hit log in memory-mapped segment files of {@code stats.storage.mapped.segment-hits} fixed 32-byte
+ * records: the timestamp in epoch microseconds, the app and uri ids of the {@link HitDictionaries}, and the IP
+ * in its 16-byte form. Each segment header holds the number of records and their earliest and latest
+ * timestamps, so a range query skips the segments it does not overlap and scans the others in parallel.
+ * One writer appends at a time and publishes the records to readers by updating the count; nothing is
+ * changed in place. Appends are not transactional: the hits of a batch whose aggregation is rolled back
+ * stay in the log. Full segments are forced to disk, the open one is left to the page cache until shutdown,
+ * so a crash of the machine, unlike one of the process, may lose its latest hits. The other raw reads, per-uri
+ * starts, entities, series and the distinct IPs of partial days, scan the same segments keyed their own way.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.storage.engine", havingValue = "mapped")
+public class MappedHitStorage implements HitStorage, DisposableBean {
+    static final int HEADER_LENGTH = 32;
+    static final int RECORD_LENGTH = 32;
+    private static final int MAGIC = 0x45574d48;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".hits";
+    private static final Comparator<ViewStats> MOST_VISITED = Comparator.comparingLong(ViewStats::getHits)
+            .reversed()
+            .thenComparing(ViewStats::getApp)
+            .thenComparing(ViewStats::getUri);
+    private final StorageProperties.Mapped properties;
+    private final HitDictionaries hitDictionaries;
+    private final RetentionProperties retentionProperties;
+    private final RetentionTiers retentionTiers;
+    private final ForkJoinPool scanPool;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    @Nullable
+    private Segment active;
+    private long nextNumber;
+
+    public MappedHitStorage(StorageProperties properties, HitDictionaries hitDictionaries,
+                            RetentionProperties retentionProperties, RetentionTiers retentionTiers) {
+        this.properties = properties.getMapped();
+        this.hitDictionaries = hitDictionaries;
+        this.retentionProperties = retentionProperties;
+        this.retentionTiers = retentionTiers;
+        int segmentHits = this.properties.getSegmentHits();
+        if (segmentHits < 1 || segmentHits > (Integer.MAX_VALUE - HEADER_LENGTH) / RECORD_LENGTH) {
+            throw new IllegalArgumentException("Invalid stats.storage.mapped.segment-hits: " + segmentHits);
+        }
+        this.scanPool = new ForkJoinPool(this.properties.getScanParallelism());
+        open();
+    }
+
+    @Override
+    public void saveAll(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> appIds = hitDictionaries.apps().resolve(hits.stream()
+                .map(EndpointHit::getApp)
+                .collect(Collectors.toSet()));
+        Map<String, Integer> uriIds = hitDictionaries.uris().resolve(hits.stream()
+                .map(EndpointHit::getUri)
+                .collect(Collectors.toSet()));
+
+        synchronized (this) {
+            for (EndpointHit hit : hits) {
+                if (active == null || active.isFull()) {
+                    roll();
+                }
+                active.append(toMicros(hit.getTimestamp()), appIds.get(hit.getApp()), uriIds.get(hit.getUri()),
+                        IpAddresses.toBytes(hit.getIp()));
+            }
+            active.publish();
+        }
+    }
+
+    @Override
+    public void forEachStats(LocalDateTime start, LocalDateTime end, StatsFilter filter, boolean unique,
+                             Consumer<ViewStats> consumer) {
+        long from = toMicros(start);
+        long to = toMicros(end);
+        Dictionary apps = hitDictionaries.apps();
+        Dictionary uris = hitDictionaries.uris();
+        LongPredicate matches = filter.isAll() ? endpoint -> true
+                : endpoint -> filter.matches(apps.valueOf(appId(endpoint)), uris.valueOf(uriId(endpoint)));
+        List<Segment> overlapping = overlapping(from, to);
+
+        Map<Long, Tally> tallies = scanPool.submit(() -> overlapping.parallelStream()
+                        .map(segment -> segment.tally(from, to, unique, matches))
+                        .reduce(MappedHitStorage::merge)
+                        .orElseGet(Map::of))
+                .join();
+        toViewStats(tallies).forEach(consumer);
+    }
+
+    @Override
+    public List<ViewStats> findTop(LocalDateTime start, LocalDateTime end, int n, boolean unique) {
+        List<ViewStats> viewStats = new ArrayList<>();
+        forEachStats(start, end, StatsFilter.ALL, unique, viewStats::add);
+        return viewStats.subList(0, Math.min(n, viewStats.size()));
+    }
+
+    @Override
+    public List<ViewStats> findStats(Map<String, LocalDateTime> startsByUri, LocalDateTime to, boolean unique) {
+        Map<Integer, Long> startsByUriId = new HashMap<>();
+        hitDictionaries.uris().find(startsByUri.keySet())
+                .forEach((uri, uriId) -> startsByUriId.put(uriId, toMicros(startsByUri.get(uri))));
+        if (startsByUriId.isEmpty()) {
+            return List.of();
+        }
+        return toViewStats(tally(Collections.min(startsByUriId.values()), toMicros(to) - 1, unique,
+                (timestamp, appId, uriId) -> {
+                    Long start = startsByUriId.get(uriId);
+                    return start != null && timestamp >= start ? endpoint(appId, uriId) : null;
+                }));
+    }
+
+    /**
+     * Entities are told by their {@code /type/id} uris, as the entity columns of the table are.
+     */
+    @Override
+    public void forEachEntity(String entityType, @Nullable String app, Map<Long, LocalDateTime> startsById,
+                              LocalDateTime to, boolean unique, EntityHitsConsumer consumer) {
+        Map<String, Long> idsByUri = new HashMap<>();
+        startsById.keySet().forEach(id -> idsByUri.put("/" + entityType + "/" + id, id));
+        Map<Integer, Long> idsByUriId = new HashMap<>();
+        hitDictionaries.uris().find(idsByUri.keySet())
+                .forEach((uri, uriId) -> idsByUriId.put(uriId, idsByUri.get(uri)));
+        Integer appFilter = app == null ? null : hitDictionaries.apps().find(List.of(app)).get(app);
+        if (idsByUriId.isEmpty() || app != null && appFilter == null) {
+            return;
+        }
+        Map<Integer, Long> startsByUriId = new HashMap<>();
+        idsByUriId.forEach((uriId, id) -> startsByUriId.put(uriId, toMicros(startsById.get(id))));
+
+        Map<Long, Tally> tallies = tally(Collections.min(startsByUriId.values()), toMicros(to) - 1, unique,
+                (timestamp, appId, uriId) -> {
+                    Long start = startsByUriId.get(uriId);
+                    boolean matches = start != null && timestamp >= start
+                            && (appFilter == null || appFilter == appId);
+                    return matches ? idsByUriId.get(uriId) : null;
+                });
+        new TreeMap<>(tallies).forEach((id, tally) -> consumer.accept(id, tally.count()));
+    }
+
+    @Override
+    public void forEachBucket(LocalDateTime from, LocalDateTime to, StatsFilter filter, Granularity granularity,
+                              boolean unique, BiConsumer<RollupKey, Long> consumer) {
+        long bucketMicros = granularity.getDuration().toNanos() / 1_000;
+        LongPredicate matches = matcher(filter);
+        Map<Bucket, Tally> tallies = tally(toMicros(from), toMicros(to) - 1, unique, (timestamp, appId, uriId) -> {
+            long endpoint = endpoint(appId, uriId);
+            return matches.test(endpoint) ? new Bucket(endpoint, Math.floorDiv(timestamp, bucketMicros)) : null;
+        });
+        Dictionary apps = hitDictionaries.apps();
+        Dictionary uris = hitDictionaries.uris();
+        tallies.forEach((bucket, tally) -> consumer.accept(new RollupKey(apps.valueOf(appId(bucket.endpoint)),
+                uris.valueOf(uriId(bucket.endpoint)), toLocalDateTime(bucket.number * bucketMicros)), tally.count()));
+    }
+
+    @Override
+    public void forEachDistinctIp(LocalDateTime from, LocalDateTime to, StatsFilter filter,
+                                  BiConsumer<StatsKey, String> consumer) {
+        LongPredicate matches = matcher(filter);
+        Map<Long, Tally> tallies = tally(toMicros(from), toMicros(to) - 1, true, (timestamp, appId, uriId) -> {
+            long endpoint = endpoint(appId, uriId);
+            return matches.test(endpoint) ? endpoint : null;
+        });
+        Dictionary apps = hitDictionaries.apps();
+        Dictionary uris = hitDictionaries.uris();
+        tallies.forEach((endpoint, tally) -> {
+            StatsKey key = new StatsKey(apps.valueOf(appId(endpoint)), uris.valueOf(uriId(endpoint)));
+            tally.ips.forEach(address -> consumer.accept(key, IpAddresses.toString(address.toBytes())));
+        });
+    }
+
+    /**
+     * A hit is identified by its segment number in the high half of the id and its position in the segment,
+     * counted from one, in the low half.
+     */
+    @Nullable
+    @Override
+    public Long findLastId() {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (segment.count > 0) {
+                return id(segment.number, segment.count - 1);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<EndpointHit> findHits(long afterId, long toId, int limit) {
+        Dictionary apps = hitDictionaries.apps();
+        Dictionary uris = hitDictionaries.uris();
+        List<EndpointHit> hits = new ArrayList<>();
+        long afterNumber = afterId >>> 32;
+        for (Segment segment : segments) {
+            if (segment.number < afterNumber || segment.number > toId >>> 32) {
+                continue;
+            }
+            int from = segment.number == afterNumber ? (int) afterId : 0;
+            int to = segment.number == toId >>> 32 ? Math.min(segment.count, (int) toId) : segment.count;
+            for (int i = from; i < to && hits.size() < limit; i++) {
+                hits.add(segment.read(i, id(segment.number, i), apps, uris));
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public void forEachHit(LocalDateTime from, LocalDateTime to, Consumer<EndpointHit> consumer) {
+        long fromMicros = toMicros(from);
+        long toMicros = toMicros(to) - 1;
+        Dictionary apps = hitDictionaries.apps();
+        Dictionary uris = hitDictionaries.uris();
+        for (Segment segment : overlapping(fromMicros, toMicros)) {
+            segment.forEach(fromMicros, toMicros, (timestamp, appId, uriId, ip) -> consumer.accept(
+                    new EndpointHit(null, apps.valueOf(appId), uris.valueOf(uriId), IpAddresses.toString(ip),
+                            toLocalDateTime(timestamp))));
+        }
+    }
+
+    @Nullable
+    @Override
+    public LocalDateTime findFirstTimestamp() {
+        OptionalLong first = segments.stream()
+                .filter(segment -> segment.count > 0)
+                .mapToLong(segment -> segment.first)
+                .min();
+        return first.isPresent() ? toLocalDateTime(first.getAsLong()) : null;
+    }
+
+    /**
+     * Applies the raw hit retention by deleting whole segments, as {@link HitPartitions} drops whole days.
+     */
+    @Scheduled(cron = "${stats.retention.cron:0 15 3 * * *}")
+    public synchronized void expire() {
+        if (!retentionProperties.isEnabled() || !retentionTiers.aggregatesComplete()) {
+            return;
+        }
+        long cutoff = toMicros(retentionTiers.current().since(null));
+        for (Segment segment : segments) {
+            if (segment != active && segment.count > 0 && segment.last < cutoff) {
+                segments.remove(segment);
+                try {
+                    // a scan still holding the segment keeps reading its mapping
+                    Files.deleteIfExists(segment.path);
+                    log.info("Deleted hit segment {} older than {}", segment.path.getFileName(), cutoff);
+                } catch (IOException e) {
+                    log.warn("Could not delete hit segment {}", segment.path, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        scanPool.shutdown();
+        if (active != null) {
+            active.publish();
+            active.buffer.force();
+        }
+    }
+
+    private void open() {
+        Path directory = properties.getDirectory();
+        try {
+            Files.createDirectories(directory);
+            List<Path> paths;
+            try (Stream<Path> files = Files.list(directory)) {
+                paths = files.filter(path -> number(path) >= 0)
+                        .sorted(Comparator.comparingLong(MappedHitStorage::number))
+                        .collect(Collectors.toList());
+            }
+            for (Path path : paths) {
+                segments.add(Segment.open(path));
+                nextNumber = number(path) + 1;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the hit log in " + directory, e);
+        }
+        if (!segments.isEmpty() && !segments.get(segments.size() - 1).isFull()) {
+            active = segments.get(segments.size() - 1);
+        }
+        log.info("Hit log in {}: {} segments, {} hits", directory.toAbsolutePath(), segments.size(),
+                segments.stream().mapToLong(segment -> segment.count).sum());
+    }
+
+    private void roll() {
+        if (active != null) {
+            active.publish();
+            active.buffer.force();
+        }
+        Path path = properties.getDirectory().resolve(String.format("%s%012d%s", PREFIX, nextNumber, SUFFIX));
+        try {
+            active = Segment.create(path, properties.getSegmentHits());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create hit segment " + path, e);
+        }
+        nextNumber++;
+        segments.add(active);
+    }
+
+    private List<Segment> overlapping(long from, long to) {
+        return segments.stream()
+                .filter(segment -> segment.overlaps(from, to))
+                .collect(Collectors.toList());
+    }
+
+    private <K> Map<K, Tally> tally(long from, long to, boolean unique, RecordKey<K> keyOf) {
+        List<Segment> overlapping = overlapping(from, to);
+        return scanPool.submit(() -> overlapping.parallelStream()
+                        .map(segment -> segment.tally(from, to, unique, keyOf))
+                        .reduce(MappedHitStorage::merge)
+                        .orElseGet(Map::of))
+                .join();
+    }
+
+    // matches each endpoint against the filter once per query, whichever segment meets it first
+    private LongPredicate matcher(StatsFilter filter) {
+        if (filter.isAll()) {
+            return endpoint -> true;
+        }
+        Dictionary apps = hitDictionaries.apps();
+        Dictionary uris = hitDictionaries.uris();
+        Map<Long, Boolean> matched = new ConcurrentHashMap<>();
+        return endpoint -> matched.computeIfAbsent(endpoint, key ->
+                filter.matches(apps.valueOf(appId(key)), uris.valueOf(uriId(key))));
+    }
+
+    private List<ViewStats> toViewStats(Map<Long, Tally> tallies) {
+        Dictionary apps = hitDictionaries.apps();
+        Dictionary uris = hitDictionaries.uris();
+        List<ViewStats> viewStats = new ArrayList<>(tallies.size());
+        tallies.forEach((endpoint, tally) -> viewStats.add(new ViewStats(apps.valueOf(appId(endpoint)),
+                uris.valueOf(uriId(endpoint)), tally.count())));
+        viewStats.sort(MOST_VISITED);
+        return viewStats;
+    }
+
+    private static <K> Map<K, Tally> merge(Map<K, Tally> first, Map<K, Tally> second) {
+        Map<K, Tally> larger = first.size() >= second.size() ? first : second;
+        Map<K, Tally> smaller = larger == first ? second : first;
+        smaller.forEach((endpoint, tally) -> larger.merge(endpoint, tally, Tally::add));
+        return larger;
+    }
+
+    private static long number(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long id(long number, int index) {
+        return number << 32 | index + 1;
+    }
+
+    private static long endpoint(int appId, int uriId) {
+        return (long) appId << 32 | uriId & 0xFFFFFFFFL;
+    }
+
+    private static int appId(long endpoint) {
+        return (int) (endpoint >>> 32);
+    }
+
+    private static int uriId(long endpoint) {
+        return (int) endpoint;
+    }
+
+    private static long toMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1_000;
+    }
+
+    private static LocalDateTime toLocalDateTime(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * One segment file. Its header holds the magic number, the record count and the earliest and latest
+     * timestamps; readers take the count first, which covers every record and bound written before it.
+     */
+    private static final class Segment {
+        private final Path path;
+        private final long number;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private volatile int count;
+        private volatile long first;
+        private volatile long last;
+        // appended but not yet published, touched by the writer only
+        private int pendingCount;
+        private long pendingFirst;
+        private long pendingLast;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.number = number(path);
+            this.buffer = buffer;
+            this.capacity = (buffer.capacity() - HEADER_LENGTH) / RECORD_LENGTH;
+            this.count = buffer.getInt(4);
+            this.first = buffer.getLong(8);
+            this.last = buffer.getLong(16);
+            this.pendingCount = count;
+            this.pendingFirst = first;
+            this.pendingLast = last;
+        }
+
+        private static Segment create(Path path, int capacity) throws IOException {
+            MappedByteBuffer buffer = map(path, (long) HEADER_LENGTH + (long) capacity * RECORD_LENGTH,
+                    StandardOpenOption.CREATE_NEW);
+            buffer.putInt(0, MAGIC);
+            buffer.putLong(8, Long.MAX_VALUE);
+            buffer.putLong(16, Long.MIN_VALUE);
+            return new Segment(path, buffer);
+        }
+
+        private static Segment open(Path path) throws IOException {
+            MappedByteBuffer buffer = map(path, Files.size(path));
+            if (buffer.capacity() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a hit segment: " + path);
+            }
+            return new Segment(path, buffer);
+        }
+
+        private static MappedByteBuffer map(Path path, long size, StandardOpenOption... options) throws IOException {
+            Set<StandardOpenOption> openOptions = new HashSet<>(List.of(options));
+            openOptions.add(StandardOpenOption.READ);
+            openOptions.add(StandardOpenOption.WRITE);
+            try (FileChannel channel = FileChannel.open(path, openOptions)) {
+                // the mapping stays valid after the channel is closed
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        private boolean isFull() {
+            return pendingCount == capacity;
+        }
+
+        private void append(long timestamp, int appId, int uriId, byte[] ip) {
+            int offset = HEADER_LENGTH + pendingCount * RECORD_LENGTH;
+            ByteBuffer address = ByteBuffer.wrap(ip);
+            buffer.putLong(offset, timestamp);
+            buffer.putInt(offset + 8, appId);
+            buffer.putInt(offset + 12, uriId);
+            buffer.putLong(offset + 16, address.getLong(0));
+            buffer.putLong(offset + 24, address.getLong(8));
+            pendingCount++;
+            pendingFirst = Math.min(pendingFirst, timestamp);
+            pendingLast = Math.max(pendingLast, timestamp);
+        }
+
+        private void publish() {
+            buffer.putLong(8, pendingFirst);
+            buffer.putLong(16, pendingLast);
+            buffer.putInt(4, pendingCount);
+            first = pendingFirst;
+            last = pendingLast;
+            count = pendingCount;
+        }
+
+        private boolean overlaps(long from, long to) {
+            return count > 0 && first <= to && last >= from;
+        }
+
+        private Map<Long, Tally> tally(long from, long to, boolean unique, LongPredicate matches) {
+            Map<Long, Tally> tallies = new HashMap<>();
+            int records = count;
+            for (int i = 0; i < records; i++) {
+                int offset = HEADER_LENGTH + i * RECORD_LENGTH;
+                long timestamp = buffer.getLong(offset);
+                if (timestamp < from || timestamp > to) {
+                    continue;
+                }
+                long endpoint = endpoint(buffer.getInt(offset + 8), buffer.getInt(offset + 12));
+                Tally tally = tallies.get(endpoint);
+                if (tally == null) {
+                    tally = matches.test(endpoint) ? new Tally(unique) : Tally.SKIPPED;
+                    tallies.put(endpoint, tally);
+                }
+                if (tally == Tally.SKIPPED) {
+                    continue;
+                }
+                tally.hits++;
+                if (unique) {
+                    tally.ips.add(new Address(buffer.getLong(offset + 16), buffer.getLong(offset + 24)));
+                }
+            }
+            tallies.values().removeIf(tally -> tally == Tally.SKIPPED);
+            return tallies;
+        }
+
+        private <K> Map<K, Tally> tally(long from, long to, boolean unique, RecordKey<K> keyOf) {
+            Map<K, Tally> tallies = new HashMap<>();
+            int records = count;
+            for (int i = 0; i < records; i++) {
+                int offset = HEADER_LENGTH + i * RECORD_LENGTH;
+                long timestamp = buffer.getLong(offset);
+                if (timestamp < from || timestamp > to) {
+                    continue;
+                }
+                K key = keyOf.apply(timestamp, buffer.getInt(offset + 8), buffer.getInt(offset + 12));
+                if (key == null) {
+                    continue;
+                }
+                Tally tally = tallies.computeIfAbsent(key, k -> new Tally(unique));
+                tally.hits++;
+                if (unique) {
+                    tally.ips.add(new Address(buffer.getLong(offset + 16), buffer.getLong(offset + 24)));
+                }
+            }
+            return tallies;
+        }
+
+        private void forEach(long from, long to, RecordConsumer consumer) {
+            int records = count;
+            for (int i = 0; i < records; i++) {
+                int offset = HEADER_LENGTH + i * RECORD_LENGTH;
+                long timestamp = buffer.getLong(offset);
+                if (timestamp >= from && timestamp <= to) {
+                    consumer.accept(timestamp, buffer.getInt(offset + 8), buffer.getInt(offset + 12), ip(offset));
+                }
+            }
+        }
+
+        private EndpointHit read(int index, long id, Dictionary apps, Dictionary uris) {
+            int offset = HEADER_LENGTH + index * RECORD_LENGTH;
+            return new EndpointHit(id, apps.valueOf(buffer.getInt(offset + 8)),
+                    uris.valueOf(buffer.getInt(offset + 12)), IpAddresses.toString(ip(offset)),
+                    toLocalDateTime(buffer.getLong(offset)));
+        }
+
+        private byte[] ip(int offset) {
+            byte[] ip = new byte[IpAddresses.LENGTH];
+            ByteBuffer.wrap(ip).putLong(buffer.getLong(offset + 16)).putLong(buffer.getLong(offset + 24));
+            return ip;
+        }
+    }
+
+    private interface RecordConsumer {
+        void accept(long timestamp, int appId, int uriId, byte[] ip);
+    }
+
+    // the key a record is tallied under, or null to leave it out
+    private interface RecordKey<K> {
+        @Nullable
+        K apply(long timestamp, int appId, int uriId);
+    }
+
+    private static final class Tally {
+        private static final Tally SKIPPED = new Tally(false);
+        private long hits;
+        @Nullable
+        private final Set<Address> ips;
+
+        private Tally(boolean unique) {
+            this.ips = unique ? new HashSet<>() : null;
+        }
+
+        private long count() {
+            return ips != null ? ips.size() : hits;
+        }
+
+        private Tally add(Tally other) {
+            hits += other.hits;
+            if (ips != null) {
+                ips.addAll(other.ips);
+            }
+            return this;
+        }
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class Address {
+        private final long high;
+        private final long low;
+
+        private byte[] toBytes() {
+            return ByteBuffer.allocate(IpAddresses.LENGTH).putLong(high).putLong(low).array();
+        }
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class Bucket {
+        private final long endpoint;
+        private final long number;
+    }
+}
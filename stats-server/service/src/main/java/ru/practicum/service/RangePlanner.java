@@ -0,0 +1,97 @@
+package ru.practicum.service;
+
+import ru.practicum.model.Granularity;
+import ru.practicum.model.RangeSegment;
+import ru.practicum.model.StorageTiers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class RangePlanner {
+    /**
+     * Stored timestamps have at most microsecond precision, so {@code timestamp < end + 1µs}
+     * selects exactly the rows of the inclusive {@code BETWEEN start AND end} used by the API.
+     */
+    public static LocalDateTime exclusiveEnd(LocalDateTime end) {
+        return end.plusNanos(1000);
+    }
+
+    /**
+     * The inverse of {@link #exclusiveEnd}: the inclusive end that selects the rows of {@code [from, to)}.
+     */
+    public static LocalDateTime inclusiveEnd(LocalDateTime to) {
+        return to.minusNanos(1000);
+    }
+
+    /**
+     * Splits {@code [from, to)} into the largest whole buckets it covers, going down from days
+     * to hours and minutes near the edges, and leaves only the sub-minute edges to raw rows.
+     */
+    public static List<RangeSegment> plan(LocalDateTime from, LocalDateTime to) {
+        return plan(from, to, Granularity.DAY);
+    }
+
+    /**
+     * Same as {@link #plan(LocalDateTime, LocalDateTime)}, but uses no bucket coarser than {@code coarsest},
+     * so that every segment lies within whole buckets of that granularity.
+     */
+    public static List<RangeSegment> plan(LocalDateTime from, LocalDateTime to, Granularity coarsest) {
+        return plan(from, to, coarsest, StorageTiers.COMPLETE);
+    }
+
+    /**
+     * Same as {@link #plan(LocalDateTime, LocalDateTime, Granularity)}, but reads every part of the range only
+     * from tiers that still hold it. Where raw hits have expired an edge of the range is widened to the whole
+     * bucket of the finest tier left, and where that tier is coarser than {@code coarsest} its buckets are used.
+     */
+    public static List<RangeSegment> plan(LocalDateTime from, LocalDateTime to, Granularity coarsest,
+                                          StorageTiers tiers) {
+        List<RangeSegment> segments = new ArrayList<>();
+        List<LocalDateTime> bounds = tiers.cutoffs()
+                .filter(cutoff -> cutoff.isAfter(from) && cutoff.isBefore(to))
+                .sorted()
+                .distinct()
+                .collect(Collectors.toCollection(ArrayList::new));
+        bounds.add(to);
+
+        LocalDateTime periodFrom = from;
+        for (LocalDateTime periodTo : bounds) {
+            // the same tiers are held all over the period
+            Granularity finest = tiers.finest(periodFrom);
+            LocalDateTime segmentFrom = finest == null ? periodFrom : finest.floor(periodFrom);
+            LocalDateTime segmentTo = finest == null ? periodTo : finest.ceil(periodTo);
+            Granularity top = finest != null && finest.compareTo(coarsest) > 0 ? finest : coarsest;
+            split(segmentFrom, segmentTo, top, tiers, segments);
+            periodFrom = periodTo;
+        }
+        return segments;
+    }
+
+    private static void split(LocalDateTime from, LocalDateTime to, Granularity granularity, StorageTiers tiers,
+                              List<RangeSegment> segments) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (granularity == null) {
+            segments.add(new RangeSegment(null, from, to));
+            return;
+        }
+        if (!tiers.holds(granularity, from)) {
+            split(from, to, granularity.finer(), tiers, segments);
+            return;
+        }
+
+        LocalDateTime firstBucket = granularity.ceil(from);
+        LocalDateTime lastBucketEnd = granularity.floor(to);
+        if (!firstBucket.isBefore(lastBucketEnd)) {
+            split(from, to, granularity.finer(), tiers, segments);
+            return;
+        }
+
+        split(from, firstBucket, granularity.finer(), tiers, segments);
+        segments.add(new RangeSegment(granularity, firstBucket, lastBucketEnd));
+        split(lastBucketEnd, to, granularity.finer(), tiers, segments);
+    }
+}
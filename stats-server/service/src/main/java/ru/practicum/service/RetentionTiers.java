@@ -0,0 +1,87 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.BitmapProperties;
+import ru.practicum.config.RetentionProperties;
+import ru.practicum.config.RollupProperties;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.StorageTiers;
+import ru.practicum.repository.RollupRepository;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static ru.practicum.model.Granularity.DAY;
+
+/**
+ * Retention of the storage tiers: raw hits for {@code stats.retention.raw-hits}, minute and hour rollups for
+ * their own periods, day rollups and daily sketches forever. Every tier expires in whole days. Raw hits are
+ * folded into the rollups and sketches on the write path already, so compacting a tier only deletes its
+ * expired rows; the raw hits themselves are expired by {@link HitPartitions}.
+ */
+@Slf4j
+@Component
+public class RetentionTiers {
+    private final RetentionProperties properties;
+    private final RollupProperties rollupProperties;
+    private final BitmapProperties bitmapProperties;
+    private final RollupRepository rollupRepository;
+    private final Clock clock;
+
+    @Autowired
+    public RetentionTiers(RetentionProperties properties, RollupProperties rollupProperties,
+                          BitmapProperties bitmapProperties, RollupRepository rollupRepository) {
+        this(properties, rollupProperties, bitmapProperties, rollupRepository, Clock.systemDefaultZone());
+    }
+
+    RetentionTiers(RetentionProperties properties, RollupProperties rollupProperties,
+                   BitmapProperties bitmapProperties, RollupRepository rollupRepository, Clock clock) {
+        this.properties = properties;
+        this.rollupProperties = rollupProperties;
+        this.bitmapProperties = bitmapProperties;
+        this.rollupRepository = rollupRepository;
+        this.clock = clock;
+    }
+
+    /**
+     * What the tiers hold now. A tier may still hold a little more until the next compaction, which only
+     * makes the finer tier unused a bit early.
+     */
+    public StorageTiers current() {
+        if (!properties.isEnabled()) {
+            return StorageTiers.COMPLETE;
+        }
+        LocalDateTime now = LocalDateTime.now(clock);
+        return new StorageTiers(aggregatesComplete() ? cutoff(now, properties.getRawHits()) : null,
+                cutoff(now, properties.getMinuteRollups()), cutoff(now, properties.getHourRollups()));
+    }
+
+    /**
+     * Whether the rollups and the exact unique IP bitmaps keep the whole history, so raw hits may expire
+     * without changing any count.
+     */
+    public boolean aggregatesComplete() {
+        return rollupProperties.isEnabled() && bitmapProperties.isEnabled();
+    }
+
+    @Scheduled(cron = "${stats.retention.cron:0 15 3 * * *}")
+    public void compact() {
+        if (!properties.isEnabled() || !rollupProperties.isEnabled()) {
+            return;
+        }
+        StorageTiers tiers = current();
+        for (Granularity granularity : new Granularity[]{Granularity.MINUTE, Granularity.HOUR}) {
+            LocalDateTime cutoff = tiers.since(granularity);
+            int deleted = rollupRepository.deleteBefore(granularity, cutoff);
+            log.info("Deleted {} {} rollup rows older than {}", deleted, granularity.getSqlUnit(), cutoff);
+        }
+    }
+
+    private static LocalDateTime cutoff(LocalDateTime now, Duration retention) {
+        return DAY.floor(now.minus(retention));
+    }
+}
@@ -0,0 +1,52 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.RollupProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.RollupKey;
+import ru.practicum.repository.RollupRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Component
+@RequiredArgsConstructor
+public class RollupAggregator implements HitAggregator {
+    private final RollupProperties properties;
+    private final RollupRepository rollupRepository;
+
+    @Override
+    public void aggregate(List<EndpointHit> hits) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (Granularity granularity : Granularity.values()) {
+            // sorted keys keep the row lock order stable between concurrent writers
+            Map<RollupKey, Long> buckets = new TreeMap<>();
+            for (EndpointHit hit : hits) {
+                RollupKey key = new RollupKey(hit.getApp(), hit.getUri(), granularity.floor(hit.getTimestamp()));
+                buckets.merge(key, 1L, Long::sum);
+            }
+            rollupRepository.increment(granularity, buckets);
+        }
+    }
+
+    @Override
+    public void clear(LocalDateTime from, LocalDateTime to) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (Granularity granularity : Granularity.values()) {
+            rollupRepository.deleteBetween(granularity, from, to);
+        }
+    }
+
+    @Override
+    public boolean needsBackfill() {
+        return properties.isEnabled() && rollupRepository.isEmpty(Granularity.DAY);
+    }
+}
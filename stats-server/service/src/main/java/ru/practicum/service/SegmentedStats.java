@@ -0,0 +1,131 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.RangeSegment;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.ViewStats;
+import ru.practicum.repository.RollupRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Stats over the segments planned by {@link RangePlanner}: whole buckets from the rollup tables and the raw
+ * edges through {@link HitStorage}, so the edges are counted whichever engine keeps the hits and whether or not
+ * their day is archived. When a range has raw edges their counts are merged with the rollup rows in memory,
+ * otherwise the rows stream from the rollup query as they are read.
+ */
+@Component
+@RequiredArgsConstructor
+public class SegmentedStats {
+    private static final Comparator<ViewStats> MOST_VISITED = Comparator.comparingLong(ViewStats::getHits)
+            .reversed()
+            .thenComparing(ViewStats::getApp)
+            .thenComparing(ViewStats::getUri);
+    private final RollupRepository rollupRepository;
+    private final HitStorage hitStorage;
+
+    public void forEachStats(List<RangeSegment> segments, StatsFilter filter, Consumer<ViewStats> consumer) {
+        forEachStats(segments, filter, null, consumer);
+    }
+
+    /**
+     * Stats of the segments ordered by hits, then app and uri, at most {@code limit} of them when it is given.
+     */
+    public void forEachStats(List<RangeSegment> segments, StatsFilter filter, @Nullable Integer limit,
+                             Consumer<ViewStats> consumer) {
+        List<RangeSegment> rollups = rollups(segments);
+        if (rollups.size() == segments.size()) {
+            rollupRepository.forEachStats(rollups, filter, limit, consumer);
+            return;
+        }
+
+        Map<StatsKey, Long> hits = new HashMap<>();
+        Consumer<ViewStats> addHits = viewStats -> add(hits, viewStats);
+        for (RangeSegment segment : segments) {
+            if (segment.isRaw()) {
+                hitStorage.forEachStats(segment.getFrom(), RangePlanner.inclusiveEnd(segment.getTo()), filter,
+                        false, addHits);
+            }
+        }
+        if (!rollups.isEmpty()) {
+            rollupRepository.forEachStats(rollups, filter, addHits);
+        }
+        toViewStats(hits).stream()
+                .limit(limit == null ? Long.MAX_VALUE : limit)
+                .forEach(consumer);
+    }
+
+    /**
+     * Stats of each uri over its own segments, ordered like {@link #forEachStats(List, StatsFilter, Consumer)}.
+     * Only hits of the {@code app} are counted when it is given. Raw edges ending together, such as the trailing
+     * edge every uri shares, are read at once.
+     */
+    public void forEachUriStats(Map<String, List<RangeSegment>> segmentsByUri, @Nullable String app,
+                                Consumer<ViewStats> consumer) {
+        Map<String, List<RangeSegment>> rollupsByUri = new HashMap<>();
+        Map<LocalDateTime, Map<String, LocalDateTime>> rawStartsByEnd = new HashMap<>();
+        segmentsByUri.forEach((uri, segments) -> segments.forEach(segment -> {
+            if (segment.isRaw()) {
+                rawStartsByEnd.computeIfAbsent(segment.getTo(), to -> new HashMap<>()).put(uri, segment.getFrom());
+            } else {
+                rollupsByUri.computeIfAbsent(uri, u -> new ArrayList<>()).add(segment);
+            }
+        }));
+        if (rawStartsByEnd.isEmpty()) {
+            rollupRepository.forEachUriStats(rollupsByUri, app, consumer);
+            return;
+        }
+
+        Map<StatsKey, Long> hits = new HashMap<>();
+        rawStartsByEnd.forEach((to, startsByUri) -> hitStorage.findStats(startsByUri, to, false).stream()
+                .filter(viewStats -> app == null || app.equals(viewStats.getApp()))
+                .forEach(viewStats -> add(hits, viewStats)));
+        rollupRepository.forEachUriStats(rollupsByUri, app, viewStats -> add(hits, viewStats));
+        toViewStats(hits).forEach(consumer);
+    }
+
+    /**
+     * Hits per endpoint and bucket of each segment: rollup rows as stored, and each raw edge as a single bucket
+     * starting at the edge.
+     */
+    public void forEachBucket(List<RangeSegment> segments, StatsFilter filter,
+                              BiConsumer<RollupKey, Long> consumer) {
+        for (RangeSegment segment : segments) {
+            if (segment.isRaw()) {
+                hitStorage.forEachStats(segment.getFrom(), RangePlanner.inclusiveEnd(segment.getTo()), filter,
+                        false, viewStats -> consumer.accept(new RollupKey(viewStats.getApp(), viewStats.getUri(),
+                                segment.getFrom()), viewStats.getHits()));
+            }
+        }
+        rollupRepository.forEachBucket(rollups(segments), filter, consumer);
+    }
+
+    private static List<RangeSegment> rollups(List<RangeSegment> segments) {
+        return segments.stream()
+                .filter(segment -> !segment.isRaw())
+                .collect(Collectors.toList());
+    }
+
+    private static void add(Map<StatsKey, Long> hits, ViewStats viewStats) {
+        hits.merge(new StatsKey(viewStats.getApp(), viewStats.getUri()), viewStats.getHits(), Long::sum);
+    }
+
+    private static List<ViewStats> toViewStats(Map<StatsKey, Long> hits) {
+        List<ViewStats> viewStats = new ArrayList<>(hits.size());
+        hits.forEach((key, count) -> viewStats.add(new ViewStats(key.getApp(), key.getUri(), count)));
+        viewStats.sort(MOST_VISITED);
+        return viewStats;
+    }
+}
@@ -0,0 +1,150 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.config.StatsCacheProperties;
+import ru.practicum.model.StatsFilter;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * LRU cache of small stats results. A range ending within the last {@code freshness} is keyed by the
+ * {@code freshness} bucket of its end instead of the end itself, so the "from the event date to now" queries
+ * repeated many times a second share one entry and see the stats of at most one bucket ago; such entries
+ * expire after {@code freshness}. A closed range changes only through late or imported hits, so its entries
+ * are kept for the longer {@code historicalFreshness}. Uris are keyed through the {@link StatsFilter}, which
+ * is the same for every order of the same uris.
+ */
+@Component
+public class StatsCache {
+    private final StatsCacheProperties properties;
+    private final Clock clock;
+    private final Map<Key, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter expired;
+    private final Counter evicted;
+    private final Timer staleness;
+
+    @Autowired
+    public StatsCache(StatsCacheProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, Clock.systemDefaultZone());
+    }
+
+    StatsCache(StatsCacheProperties properties, MeterRegistry meterRegistry, Clock clock) {
+        this.properties = properties;
+        this.clock = clock;
+        this.hits = Counter.builder("stats.cache.requests").tag("result", "hit")
+                .description("Stats queries answered from the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("stats.cache.requests").tag("result", "miss")
+                .description("Stats queries that went to the database")
+                .register(meterRegistry);
+        this.expired = Counter.builder("stats.cache.evictions").tag("cause", "expired")
+                .description("Cached results dropped because they were older than their freshness window")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("stats.cache.evictions").tag("cause", "size")
+                .description("Least recently used results dropped to stay within the maximum size")
+                .register(meterRegistry);
+        this.staleness = Timer.builder("stats.cache.staleness")
+                .description("Age of the cached results served")
+                .register(meterRegistry);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, StatsCache.Entry> eldest) {
+                if (size() > properties.getMaxSize()) {
+                    evicted.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        meterRegistry.gauge("stats.cache.size", entries, map -> size());
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public int getMaxRows() {
+        return properties.getMaxRows();
+    }
+
+    public Key key(LocalDateTime start, LocalDateTime end, StatsFilter filter, Boolean unique, Boolean approximate) {
+        long freshness = properties.getFreshness().toMillis();
+        long endMillis = end.toInstant(ZoneOffset.UTC).toEpochMilli();
+        long nowMillis = LocalDateTime.now(clock).toInstant(ZoneOffset.UTC).toEpochMilli();
+        boolean live = endMillis > nowMillis - freshness;
+        return new Key(start.truncatedTo(ChronoUnit.SECONDS), live ? Math.floorDiv(endMillis, freshness) : endMillis,
+                live, filter, Boolean.TRUE.equals(unique),
+                Boolean.TRUE.equals(approximate));
+    }
+
+    public Optional<List<ViewStatsDto>> get(Key key) {
+        long now = clock.millis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && now - entry.createdMillis >= ttl(key).toMillis()) {
+                entries.remove(key);
+                expired.increment();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        staleness.record(Duration.ofMillis(now - entry.createdMillis));
+        return Optional.of(entry.stats);
+    }
+
+    public void put(Key key, List<ViewStatsDto> stats) {
+        Entry entry = new Entry(List.copyOf(stats), clock.millis());
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    private Duration ttl(Key key) {
+        return key.live ? properties.getFreshness() : properties.getHistoricalFreshness();
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    public static final class Key {
+        private final LocalDateTime start;
+        private final long end;
+        private final boolean live;
+        private final StatsFilter filter;
+        private final boolean unique;
+        private final boolean approximate;
+    }
+
+    @AllArgsConstructor
+    private static final class Entry {
+        private final List<ViewStatsDto> stats;
+        private final long createdMillis;
+    }
+}
@@ -1,13 +1,78 @@
 package ru.practicum.service;
 
 import ru.practicum.EndpointHitDto;
+import ru.practicum.EntityStatsDto;
+import ru.practicum.EntityStatsQueryDto;
+import ru.practicum.StatsQueryDto;
+import ru.practicum.ViewSeriesDto;
 import ru.practicum.ViewStatsDto;
+import ru.practicum.model.Granularity;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatsService {
     EndpointHitDto createHit(EndpointHitDto endpointHitDto);
 
-    List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique);
+    List<EndpointHitDto> createHits(List<EndpointHitDto> endpointHitDtos);
+
+    /**
+     * Stores the hits in batches of {@code stats.ingest.import.batch-size} as they are read from the iterator and
+     * returns their number. A bulk import holds one batch in flight and is not subject to the admission control of
+     * {@link #createHits}, nor deduplicated or buffered: each batch is committed before the next is read, so the
+     * number returned is the number of rows written. The batches stored before a failing hit stay stored.
+     */
+    long importHits(Iterator<EndpointHitDto> endpointHitDtos);
+
+    /**
+     * Hands every raw hit of the range to the consumer as it is read, in no particular order.
+     */
+    void exportHits(LocalDateTime start, LocalDateTime end, Consumer<EndpointHitDto> consumer);
+
+    /**
+     * Stats of the endpoints of the {@code app}, or of all apps when it is {@code null}. A uri ending with
+     * {@code *} matches every uri starting with the part before it.
+     */
+    List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, String app,
+                                Boolean unique, Boolean approximate);
+
+    /**
+     * Same as {@link #getStats}, but hands the rows to the consumer as they are read instead of collecting them.
+     * Invalid arguments are rejected before the first row is passed.
+     */
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, String app, Boolean unique,
+                     Boolean approximate, Consumer<ViewStatsDto> consumer);
+
+    /**
+     * The {@code n} endpoints with the most hits in the range, ordered like {@link #getStats}.
+     */
+    List<ViewStatsDto> getTopStats(LocalDateTime start, LocalDateTime end, int n, Boolean unique);
+
+    /**
+     * Hits of the last {@code window} counted in memory, without a database query.
+     */
+    List<ViewStatsDto> getLiveStats(List<String> uris, String app, Duration window);
+
+    /**
+     * Hits, or unique IPs, per {@code interval} bucket of the range for each endpoint. Endpoints are ordered
+     * like in {@link #getStats} by their total over the range. Unique IPs of days whose raw hits have expired
+     * come from the daily bitmaps, so they are only counted per DAY.
+     */
+    ViewSeriesDto getStatsSeries(LocalDateTime start, LocalDateTime end, List<String> uris, String app,
+                                 Granularity interval, Boolean unique);
+
+    /**
+     * Stats of every uri of the query counted from its own start, evaluated in one pass. Where a start is older
+     * than the raw hits kept, the counts come from the aggregates, with that edge widened like in {@link #getStats}.
+     */
+    List<ViewStatsDto> getStats(StatsQueryDto statsQueryDto);
+
+    /**
+     * Hits per entity id of the query, each counted from its own start. Where a start is older than the raw hits
+     * kept, the entity is counted by its {@code /<type>/<id>} uri in the aggregates.
+     */
+    EntityStatsDto getEntityStats(EntityStatsQueryDto entityStatsQueryDto);
 }
@@ -4,50 +4,413 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.EndpointHitDto;
+import ru.practicum.EntityStartDto;
+import ru.practicum.EntityStatsDto;
+import ru.practicum.EntityStatsQueryDto;
+import ru.practicum.HitSeriesDto;
+import ru.practicum.StatsQueryDto;
+import ru.practicum.UriStartDto;
+import ru.practicum.ViewSeriesDto;
 import ru.practicum.ViewStatsDto;
+import ru.practicum.config.BitmapProperties;
+import ru.practicum.config.HitImportProperties;
+import ru.practicum.config.RollupProperties;
+import ru.practicum.config.SketchProperties;
 import ru.practicum.exception.EndTimeBeforeStartTimeException;
+import ru.practicum.exception.InvalidIntervalException;
 import ru.practicum.mapper.StatsMapper;
 import ru.practicum.model.EndpointHit;
+import ru.practicum.model.EntityKey;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.IpAddresses;
+import ru.practicum.model.RangeSegment;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.StorageTiers;
 import ru.practicum.model.ViewStats;
-import ru.practicum.repository.StatsRepository;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static ru.practicum.model.Granularity.DAY;
 
 @Service
 @RequiredArgsConstructor
 public class StatsServiceImpl implements StatsService {
-    private final StatsRepository statsRepository;
+    private static final int MAX_SERIES_BUCKETS = 10_000;
+    private final SegmentedStats segmentedStats;
+    private final HitStorage hitStorage;
+    private final RollupProperties rollupProperties;
+    private final RetentionTiers retentionTiers;
+    private final ApproximateUniqueCounter approximateUniqueCounter;
+    private final SketchProperties sketchProperties;
+    private final ExactUniqueCounter exactUniqueCounter;
+    private final BitmapProperties bitmapProperties;
+    private final TopHitters topHitters;
+    private final LiveCounters liveCounters;
+    private final StatsCache statsCache;
+    private final HitWriter hitWriter;
+    private final HitBuffer hitBuffer;
+    private final HitDeduplicator hitDeduplicator;
+    private final HitAdmission hitAdmission;
+    private final HitImportProperties hitImportProperties;
     private final StatsMapper statsMapper;
 
-    @Transactional
     @Override
     public EndpointHitDto createHit(EndpointHitDto endpointHitDto) {
-        EndpointHit endpointHitSave = statsRepository.save(statsMapper.toEndpointHit(endpointHitDto));
-        return statsMapper.toEndpointHitDto(endpointHitSave);
+        EndpointHit endpointHit = statsMapper.toEndpointHit(endpointHitDto);
+        hitAdmission.run(() -> saveHits(List.of(endpointHit)));
+        return statsMapper.toEndpointHitDto(endpointHit);
+    }
+
+    @Override
+    public List<EndpointHitDto> createHits(List<EndpointHitDto> endpointHitDtos) {
+        List<EndpointHit> endpointHits = statsMapper.toEndpointHitList(endpointHitDtos);
+        hitAdmission.run(() -> saveHits(endpointHits));
+        return statsMapper.toEndpointHitDtoList(endpointHits);
+    }
+
+    @Override
+    public long importHits(Iterator<EndpointHitDto> endpointHitDtos) {
+        long imported = 0;
+        List<EndpointHitDto> batch = new ArrayList<>(hitImportProperties.getBatchSize());
+        while (endpointHitDtos.hasNext()) {
+            batch.add(endpointHitDtos.next());
+            if (batch.size() == hitImportProperties.getBatchSize()) {
+                imported += importBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            imported += importBatch(batch);
+        }
+        return imported;
     }
 
     @Transactional(readOnly = true)
     @Override
-    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+    public void exportHits(LocalDateTime start, LocalDateTime end, Consumer<EndpointHitDto> consumer) {
         checkTime(start, end);
-        List<ViewStats> viewStats;
+        hitStorage.forEachHit(start, RangePlanner.exclusiveEnd(end),
+                endpointHit -> consumer.accept(statsMapper.toEndpointHitDto(endpointHit)));
+    }
 
-        if ((uris == null || uris.isEmpty()) || uris.get(0).equals("/events")) {
-            viewStats = Boolean.TRUE.equals(unique)
-                    ? statsRepository.findAllByDateBetweenAndUniqueIp(start, end)
-                    : statsRepository.findAllByDateBetweenStartAndEnd(start, end);
-            return statsMapper.toViewStatsDtoList(viewStats);
+    @Transactional(readOnly = true)
+    @Override
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, String app,
+                                       Boolean unique, Boolean approximate) {
+        List<ViewStatsDto> viewStatsDtoList = new ArrayList<>();
+        streamStats(start, end, uris, app, unique, approximate, viewStatsDtoList::add);
+        return viewStatsDtoList;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, String app, Boolean unique,
+                            Boolean approximate, Consumer<ViewStatsDto> consumer) {
+        checkTime(start, end);
+        StatsFilter filter = StatsFilter.of(app, uris);
+        if (!statsCache.isEnabled()) {
+            queryStats(start, end, filter, unique, approximate, consumer);
+            return;
+        }
+
+        StatsCache.Key key = statsCache.key(start, end, filter, unique, approximate);
+        Optional<List<ViewStatsDto>> cached = statsCache.get(key);
+        if (cached.isPresent()) {
+            cached.get().forEach(consumer);
+            return;
+        }
+        // only results of up to maxRows rows are cached, larger ones keep streaming without being collected
+        List<ViewStatsDto> rows = new ArrayList<>();
+        boolean[] overflow = {false};
+        queryStats(start, end, filter, unique, approximate, viewStatsDto -> {
+            if (!overflow[0] && rows.size() < statsCache.getMaxRows()) {
+                rows.add(viewStatsDto);
+            } else if (!overflow[0]) {
+                overflow[0] = true;
+                rows.clear();
+            }
+            consumer.accept(viewStatsDto);
+        });
+        if (!overflow[0]) {
+            statsCache.put(key, rows);
         }
+    }
+
+    private void queryStats(LocalDateTime start, LocalDateTime end, StatsFilter filter, Boolean unique,
+                            Boolean approximate, Consumer<ViewStatsDto> consumer) {
+        Consumer<ViewStats> viewStatsConsumer = viewStats -> consumer.accept(statsMapper.toViewStats(viewStats));
+
+        if (!Boolean.TRUE.equals(unique) && rollupProperties.isEnabled()) {
+            segmentedStats.forEachStats(RangePlanner.plan(start, RangePlanner.exclusiveEnd(end), DAY,
+                    retentionTiers.current()), filter, viewStatsConsumer);
+            return;
+        }
+
+        if (Boolean.TRUE.equals(unique) && Boolean.TRUE.equals(approximate) && sketchProperties.isEnabled()) {
+            approximateUniqueCounter.getStats(start, RangePlanner.exclusiveEnd(end), filter, retentionTiers.current())
+                    .forEach(viewStatsConsumer);
+            return;
+        }
+
+        if (Boolean.TRUE.equals(unique) && bitmapProperties.isEnabled()) {
+            exactUniqueCounter.getStats(start, RangePlanner.exclusiveEnd(end), filter, retentionTiers.current())
+                    .forEach(viewStatsConsumer);
+            return;
+        }
+
+        hitStorage.forEachStats(start, end, filter, Boolean.TRUE.equals(unique), viewStatsConsumer);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<ViewStatsDto> getTopStats(LocalDateTime start, LocalDateTime end, int n, Boolean unique) {
+        checkTime(start, end);
+        if (!Boolean.TRUE.equals(unique)) {
+            Optional<List<ViewStats>> top = topHitters.getTop(start, end, n);
+            if (top.isPresent()) {
+                return statsMapper.toViewStatsDtoList(top.get());
+            }
+        }
+
+        List<ViewStats> viewStats;
+        if (!Boolean.TRUE.equals(unique) && rollupProperties.isEnabled()) {
+            viewStats = new ArrayList<>(n);
+            segmentedStats.forEachStats(RangePlanner.plan(start, RangePlanner.exclusiveEnd(end), DAY,
+                    retentionTiers.current()), StatsFilter.ALL, n,
+                    viewStats::add);
+        } else if (Boolean.TRUE.equals(unique) && bitmapProperties.isEnabled()) {
+            viewStats = exactUniqueCounter.getStats(start, RangePlanner.exclusiveEnd(end), StatsFilter.ALL,
+                    retentionTiers.current());
+            viewStats = viewStats.subList(0, Math.min(n, viewStats.size()));
+        } else {
+            viewStats = hitStorage.findTop(start, end, n, Boolean.TRUE.equals(unique));
+        }
+        return statsMapper.toViewStatsDtoList(viewStats);
+    }
 
-        viewStats = Boolean.TRUE.equals(unique)
-                ? statsRepository.findAllByDateBetweenAndUriAndUniqueIp(start, end, uris)
-                : statsRepository.findAllByDateBetweenAndUri(start, end, uris);
+    @Override
+    public List<ViewStatsDto> getLiveStats(List<String> uris, String app, Duration window) {
+        return statsMapper.toViewStatsDtoList(liveCounters.getStats(StatsFilter.of(app, uris), window));
+    }
 
+    @Transactional(readOnly = true)
+    @Override
+    public List<ViewStatsDto> getStats(StatsQueryDto statsQueryDto) {
+        // a uri listed twice is counted once, from the earliest of its starts
+        Map<String, LocalDateTime> startsByUri = new HashMap<>();
+        for (UriStartDto uriStart : statsQueryDto.getUris()) {
+            checkTime(uriStart.getStart(), statsQueryDto.getEnd());
+            startsByUri.merge(uriStart.getUri(), uriStart.getStart(),
+                    (first, second) -> first.isBefore(second) ? first : second);
+        }
+        LocalDateTime to = RangePlanner.exclusiveEnd(statsQueryDto.getEnd());
+        boolean unique = Boolean.TRUE.equals(statsQueryDto.getUnique());
+        StorageTiers tiers = retentionTiers.current();
+        if (!reachesExpiredHits(startsByUri.values(), tiers)) {
+            return statsMapper.toViewStatsDtoList(hitStorage.findStats(startsByUri, to, unique));
+        }
+
+        // raw hits of some starts have expired, their part of the range is read from the aggregates
+        List<ViewStats> viewStats = new ArrayList<>();
+        if (!unique) {
+            segmentedStats.forEachUriStats(planEach(startsByUri, to, tiers), null, viewStats::add);
+        } else {
+            Map<String, LocalDateTime> held = new HashMap<>();
+            startsByUri.forEach((uri, start) -> {
+                if (tiers.holds(null, start)) {
+                    held.put(uri, start);
+                } else {
+                    viewStats.addAll(exactUniqueCounter.getStats(start, to, StatsFilter.of(null, List.of(uri)),
+                            tiers));
+                }
+            });
+            if (!held.isEmpty()) {
+                viewStats.addAll(hitStorage.findStats(held, to, true));
+            }
+            viewStats.sort(Comparator.comparing(ViewStats::getHits).reversed()
+                    .thenComparing(ViewStats::getApp)
+                    .thenComparing(ViewStats::getUri));
+        }
         return statsMapper.toViewStatsDtoList(viewStats);
     }
 
+    @Transactional(readOnly = true)
+    @Override
+    public EntityStatsDto getEntityStats(EntityStatsQueryDto entityStatsQueryDto) {
+        Map<Long, LocalDateTime> startsById = new HashMap<>();
+        for (EntityStartDto entityStart : entityStatsQueryDto.getEntities()) {
+            checkTime(entityStart.getStart(), entityStatsQueryDto.getEnd());
+            startsById.merge(entityStart.getId(), entityStart.getStart(),
+                    (first, second) -> first.isBefore(second) ? first : second);
+        }
+
+        String entityType = entityStatsQueryDto.getEntityType();
+        String app = entityStatsQueryDto.getApp();
+        LocalDateTime to = RangePlanner.exclusiveEnd(entityStatsQueryDto.getEnd());
+        boolean unique = Boolean.TRUE.equals(entityStatsQueryDto.getUnique());
+        StorageTiers tiers = retentionTiers.current();
+        Map<Long, Long> hitsById = new TreeMap<>();
+        if (!reachesExpiredHits(startsById.values(), tiers)) {
+            hitStorage.forEachEntity(entityType, app, startsById, to, unique, hitsById::put);
+        } else {
+            // raw hits of some starts have expired, the entities are counted by their uris in the aggregates
+            Consumer<ViewStats> addHits = viewStats -> {
+                EntityKey entityKey = EntityKey.fromUri(viewStats.getUri());
+                if (entityKey != null) {
+                    hitsById.merge(entityKey.getId(), viewStats.getHits(), Long::sum);
+                }
+            };
+            Map<String, LocalDateTime> startsByUri = new HashMap<>();
+            startsById.forEach((id, start) -> startsByUri.put("/" + entityType + "/" + id, start));
+            if (!unique) {
+                segmentedStats.forEachUriStats(planEach(startsByUri, to, tiers), app, addHits);
+            } else {
+                // unique IPs of expired ranges are counted per app, an ip seen through two apps counts twice
+                Map<Long, LocalDateTime> held = new HashMap<>();
+                startsById.forEach((id, start) -> {
+                    if (tiers.holds(null, start)) {
+                        held.put(id, start);
+                    } else {
+                        exactUniqueCounter.getStats(start, to,
+                                StatsFilter.of(app, List.of("/" + entityType + "/" + id)), tiers).forEach(addHits);
+                    }
+                });
+                if (!held.isEmpty()) {
+                    hitStorage.forEachEntity(entityType, app, held, to, true, hitsById::put);
+                }
+            }
+        }
+
+        long[] ids = new long[hitsById.size()];
+        long[] hits = new long[hitsById.size()];
+        int size = 0;
+        for (Map.Entry<Long, Long> entry : hitsById.entrySet()) {
+            ids[size] = entry.getKey();
+            hits[size++] = entry.getValue();
+        }
+        return new EntityStatsDto(entityType, ids, hits);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public ViewSeriesDto getStatsSeries(LocalDateTime start, LocalDateTime end, List<String> uris, String app,
+                                        Granularity interval, Boolean unique) {
+        checkTime(start, end);
+        if (interval != Granularity.HOUR && interval != Granularity.DAY) {
+            throw new InvalidIntervalException("Series are built per HOUR or DAY, not per " + interval);
+        }
+        LocalDateTime firstBucket = interval.floor(start);
+        long buckets = interval.bucketsBetween(firstBucket, interval.floor(end)) + 1;
+        if (buckets > MAX_SERIES_BUCKETS) {
+            throw new InvalidIntervalException("The range spans " + buckets + " buckets of " + interval +
+                    ", at most " + MAX_SERIES_BUCKETS + " are allowed");
+        }
+
+        StatsFilter filter = StatsFilter.of(app, uris);
+        Map<StatsKey, long[]> series = new HashMap<>();
+        BiConsumer<RollupKey, Long> addHits = (key, hits) -> {
+            long[] counts = series.computeIfAbsent(new StatsKey(key.getApp(), key.getUri()),
+                    k -> new long[(int) buckets]);
+            counts[(int) interval.bucketsBetween(firstBucket, interval.floor(key.getBucket()))] += hits;
+        };
+        if (!Boolean.TRUE.equals(unique) && rollupProperties.isEnabled()) {
+            segmentedStats.forEachBucket(RangePlanner.plan(start, RangePlanner.exclusiveEnd(end), interval,
+                    retentionTiers.current()), filter, addHits);
+        } else if (!Boolean.TRUE.equals(unique)) {
+            hitStorage.forEachBucket(start, RangePlanner.exclusiveEnd(end), filter, interval, false, addHits);
+        } else {
+            forEachUniqueBucket(start, RangePlanner.exclusiveEnd(end), filter, interval, addHits);
+        }
+
+        List<HitSeriesDto> hitSeries = series.entrySet().stream()
+                .map(entry -> new HitSeriesDto(entry.getKey().getApp(), entry.getKey().getUri(), entry.getValue()))
+                .sorted(Comparator.comparingLong((HitSeriesDto dto) -> -LongStream.of(dto.getHits()).sum())
+                        .thenComparing(HitSeriesDto::getApp)
+                        .thenComparing(HitSeriesDto::getUri))
+                .collect(Collectors.toList());
+        return new ViewSeriesDto(firstBucket, interval.name(), hitSeries);
+    }
+
+    /**
+     * Unique IPs per bucket. Days whose raw hits have expired are counted from the daily bitmaps, which hold no
+     * finer buckets, so a series per hour is refused there.
+     */
+    private void forEachUniqueBucket(LocalDateTime from, LocalDateTime to, StatsFilter filter, Granularity interval,
+                                     BiConsumer<RollupKey, Long> consumer) {
+        StorageTiers tiers = retentionTiers.current();
+        LocalDateTime rawSince = tiers.since(null);
+        if (rawSince != null && from.isBefore(rawSince)) {
+            if (interval != DAY) {
+                throw new InvalidIntervalException("Unique series per " + interval + " reach back to " + rawSince +
+                        ", raw hits before it have expired");
+            }
+            for (LocalDateTime day = DAY.floor(from); day.isBefore(rawSince) && day.isBefore(to);
+                 day = day.plusDays(1)) {
+                LocalDateTime bucket = day;
+                exactUniqueCounter.getStats(bucket, bucket.plusDays(1), filter, tiers).forEach(viewStats ->
+                        consumer.accept(new RollupKey(viewStats.getApp(), viewStats.getUri(), bucket),
+                                viewStats.getHits()));
+            }
+            from = rawSince;
+        }
+        if (from.isBefore(to)) {
+            hitStorage.forEachBucket(from, to, filter, interval, true, consumer);
+        }
+    }
+
+    private static boolean reachesExpiredHits(Collection<LocalDateTime> starts, StorageTiers tiers) {
+        return starts.stream().anyMatch(start -> !tiers.holds(null, start));
+    }
+
+    private static Map<String, List<RangeSegment>> planEach(Map<String, LocalDateTime> startsByUri, LocalDateTime to,
+                                                            StorageTiers tiers) {
+        Map<String, List<RangeSegment>> segmentsByUri = new HashMap<>();
+        startsByUri.forEach((uri, start) -> segmentsByUri.put(uri, RangePlanner.plan(start, to, DAY, tiers)));
+        return segmentsByUri;
+    }
+
+    private void saveHits(List<EndpointHit> endpointHits) {
+        endpointHits.forEach(endpointHit -> endpointHit.setIp(IpAddresses.normalize(endpointHit.getIp())));
+        List<EndpointHit> fresh = hitDeduplicator.filter(endpointHits);
+        if (fresh.isEmpty()) {
+            return;
+        }
+        if (hitBuffer.isEnabled()) {
+            hitBuffer.offer(fresh);
+        } else {
+            hitWriter.write(fresh);
+        }
+        hitDeduplicator.record(fresh);
+    }
+
+    /**
+     * Writes the batch directly: the deduplicator would collapse replayed hits by their arrival, and the buffer
+     * would drop what does not fit, while the import reports every hit it was given as stored.
+     */
+    private int importBatch(List<EndpointHitDto> batch) {
+        List<EndpointHit> endpointHits = statsMapper.toEndpointHitList(batch);
+        endpointHits.forEach(endpointHit -> endpointHit.setIp(IpAddresses.normalize(endpointHit.getIp())));
+        hitWriter.write(endpointHits);
+        return endpointHits.size();
+    }
+
     private void checkTime(LocalDateTime start, LocalDateTime end) {
         if (end.isBefore(start)) {
             throw new EndTimeBeforeStartTimeException("End time cannot be before than start time",
@@ -0,0 +1,165 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.config.RollupProperties;
+import ru.practicum.config.TopProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.RangeSegment;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.ViewStats;
+import ru.practicum.sketch.SpaceSaving;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+import static ru.practicum.model.Granularity.DAY;
+
+/**
+ * Per-day {@link SpaceSaving} summaries of hits per endpoint for the last {@code stats.top.days} days,
+ * kept in memory so the most hit endpoints of whole days are found without touching the database.
+ * Summaries are updated only after the hit transaction commits and are restored from the day rollups
+ * (raw rows while rollups are off) on startup.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TopHitters implements HitAggregator {
+    // same order as the stats queries: most hits first, then by app and uri
+    private static final Comparator<SpaceSaving.Counter<StatsKey>> COUNTER_ORDER =
+            Comparator.comparingLong((SpaceSaving.Counter<StatsKey> counter) -> counter.getCount()).reversed()
+                    .thenComparing(counter -> counter.getKey().getApp())
+                    .thenComparing(counter -> counter.getKey().getUri());
+    private final TopProperties properties;
+    private final RollupProperties rollupProperties;
+    private final SegmentedStats segmentedStats;
+    private volatile ConcurrentSkipListMap<LocalDate, SpaceSaving<StatsKey>> days = new ConcurrentSkipListMap<>();
+    private volatile boolean loaded;
+
+    @Override
+    public void aggregate(List<EndpointHit> hits) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        Map<LocalDate, Map<StatsKey, Long>> counts = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            counts.computeIfAbsent(hit.getTimestamp().toLocalDate(), day -> new HashMap<>())
+                    .merge(new StatsKey(hit.getApp(), hit.getUri()), 1L, Long::sum);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(counts);
+                }
+            });
+        } else {
+            add(counts);
+        }
+    }
+
+    /**
+     * Builds the summaries aside and swaps them in at once. A hit committed while they are read from the rollups
+     * could be counted twice or lost with the old summaries, so {@link AggregateRebuild} reloads them with
+     * {@link HitWriter#pause} holding commits back.
+     */
+    @Override
+    public void load() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        ConcurrentSkipListMap<LocalDate, SpaceSaving<StatsKey>> loadedDays = new ConcurrentSkipListMap<>();
+        LocalDate today = LocalDate.now();
+        for (LocalDate day = firstDay(); !day.isAfter(today); day = day.plusDays(1)) {
+            LocalDateTime from = day.atStartOfDay();
+            RangeSegment segment = new RangeSegment(rollupProperties.isEnabled() ? DAY : null, from, DAY.next(from));
+            SpaceSaving<StatsKey> summary = new SpaceSaving<>(properties.getCapacity());
+            // rows come most hit first, so the heavy hitters of the day are tracked exactly
+            segmentedStats.forEachStats(List.of(segment), StatsFilter.ALL, viewStats ->
+                    summary.add(new StatsKey(viewStats.getApp(), viewStats.getUri()), viewStats.getHits()));
+            if (summary.size() > 0) {
+                loadedDays.put(day, summary);
+            }
+        }
+        days = loadedDays;
+        loaded = true;
+        log.info("Loaded top hitter summaries for {} days", loadedDays.size());
+    }
+
+    @Override
+    public boolean isStored() {
+        return false;
+    }
+
+    /**
+     * The {@code n} most hit endpoints of {@code [start, end]}, or nothing when the summaries cannot prove
+     * the answer exact: the range has to consist of whole days within the kept window, every returned count
+     * has to be exact and no endpoint left out may possibly reach the last returned count.
+     */
+    public Optional<List<ViewStats>> getTop(LocalDateTime start, LocalDateTime end, int n) {
+        // hit timestamps carry whole seconds (see Constant.PATTERN_DATE), so an end at 23:59:59 closes its day
+        LocalDateTime to = end.truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        if (!loaded || !start.equals(DAY.floor(start)) || !to.equals(DAY.floor(to))
+                || start.toLocalDate().isBefore(firstDay())) {
+            return Optional.empty();
+        }
+
+        List<SpaceSaving<StatsKey>> summaries = new ArrayList<>();
+        days.subMap(start.toLocalDate(), to.toLocalDate()).values().forEach(summary -> {
+            synchronized (summary) {
+                summaries.add(summary.copy());
+            }
+        });
+        SpaceSaving<StatsKey> merged = SpaceSaving.merge(summaries, properties.getCapacity());
+
+        List<SpaceSaving.Counter<StatsKey>> counters = merged.counters();
+        counters.sort(COUNTER_ORDER);
+        List<SpaceSaving.Counter<StatsKey>> top = counters.subList(0, Math.min(n, counters.size()));
+        if (top.stream().anyMatch(counter -> counter.getError() > 0)) {
+            return Optional.empty();
+        }
+        long bound = merged.untrackedBound();
+        if (top.size() < n ? bound > 0 : top.get(top.size() - 1).getCount() <= bound) {
+            return Optional.empty();
+        }
+        return Optional.of(top.stream()
+                .map(counter -> new ViewStats(counter.getKey().getApp(), counter.getKey().getUri(),
+                        counter.getCount()))
+                .collect(Collectors.toList()));
+    }
+
+    private void add(Map<LocalDate, Map<StatsKey, Long>> counts) {
+        ConcurrentSkipListMap<LocalDate, SpaceSaving<StatsKey>> days = this.days;
+        LocalDate firstDay = firstDay();
+        counts.forEach((day, dayCounts) -> {
+            if (day.isBefore(firstDay)) {
+                return;
+            }
+            SpaceSaving<StatsKey> summary = days.computeIfAbsent(day,
+                    d -> new SpaceSaving<>(properties.getCapacity()));
+            synchronized (summary) {
+                dayCounts.forEach(summary::add);
+            }
+        });
+        days.headMap(firstDay).clear();
+    }
+
+    private LocalDate firstDay() {
+        return LocalDate.now().minusDays(properties.getDays() - 1);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.practicum.sketch;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter over 64-bit hashes, sized for {@code expectedInsertions} keys at {@code falsePositiveRate}.
+ * The {@code k} probe positions come from the hash and a remix of it (Kirsch and Mitzenmacher). Bits are
+ * set with compare-and-set, so concurrent writers never lose each other's bits, and every bit that flips
+ * is counted to estimate the current false-positive rate as {@code (set bits / bits)^k}.
+ */
+public class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+    private final LongAdder setBits = new LongAdder();
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Expected insertions must be positive and the false-positive rate " +
+                    "between 0 and 1: " + expectedInsertions + ", " + falsePositiveRate);
+        }
+        double ln2 = Math.log(2);
+        long optimal = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE, (optimal + 63) / 64);
+        this.words = new AtomicLongArray(wordCount);
+        this.bits = wordCount * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * ln2));
+    }
+
+    /**
+     * Adds the hash and tells whether it was new, that is whether any of its bits was still clear. A key added
+     * before always answers {@code false}; a new key answers {@code false} at the false-positive rate.
+     */
+    public boolean put(long hash) {
+        long step = step(hash);
+        boolean changed = false;
+        for (int i = 0; i < hashes; i++) {
+            changed |= set(Math.floorMod(hash + i * step, bits));
+        }
+        return changed;
+    }
+
+    public boolean mightContain(long hash) {
+        long step = step(hash);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(hash + i * step, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Probability that a key never added is reported as present, estimated from the bits set so far.
+     */
+    public double falsePositiveRate() {
+        return Math.pow((double) setBits.sum() / bits, hashes);
+    }
+
+    public long bitSize() {
+        return bits;
+    }
+
+    public int hashCount() {
+        return hashes;
+    }
+
+    // odd, so the step is never zero and consecutive probes of a key differ
+    private static long step(long hash) {
+        return Hashing.fmix64(hash ^ 0x9e3779b97f4a7c15L) | 1;
+    }
+
+    private boolean set(long bit) {
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        while (true) {
+            long word = words.get(index);
+            if ((word & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, word, word | mask)) {
+                setBits.increment();
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ru.practicum.sketch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Mergeable HyperLogLog cardinality sketch with {@code 2^12} one-byte registers.
+ *
+ * <p>The relative standard error of {@link #estimate()} is {@code 1.04 / sqrt(4096) ≈ 1.6%}, so about
+ * 95% of estimates land within ±3.3% and 99.7% within ±4.9% of the true number of distinct values.
+ * Small cardinalities (up to {@code 2.5 * 4096}) are corrected with linear counting and are
+ * practically exact for the handful of IPs a single event usually gets.
+ */
+public class HyperLogLog {
+    public static final int PRECISION = 12;
+    public static final int REGISTERS = 1 << PRECISION;
+    public static final double STANDARD_ERROR = 1.04 / Math.sqrt(REGISTERS);
+    private static final byte VERSION = 1;
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(new byte[REGISTERS]);
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    public boolean add(String value) {
+        return addHash(Hashing.hash64(value));
+    }
+
+    public boolean addHash(long hash) {
+        int index = (int) (hash >>> (64 - PRECISION));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION), 64 - PRECISION) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+            return true;
+        }
+        return false;
+    }
+
+    public HyperLogLog merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Serializes the registers as {@code [version, precision, encoding, payload]}: sparse sketches
+     * store {@code (index, rank)} pairs only, dense ones the raw register array.
+     */
+    public byte[] toBytes() {
+        int nonZero = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                nonZero++;
+            }
+        }
+
+        if (Integer.BYTES + nonZero * 3 < REGISTERS) {
+            ByteBuffer buffer = ByteBuffer.allocate(3 + Integer.BYTES + nonZero * 3)
+                    .put(VERSION).put((byte) PRECISION).put(SPARSE)
+                    .putInt(nonZero);
+            for (int i = 0; i < REGISTERS; i++) {
+                if (registers[i] != 0) {
+                    buffer.putShort((short) i).put(registers[i]);
+                }
+            }
+            return buffer.array();
+        }
+
+        return ByteBuffer.allocate(3 + REGISTERS)
+                .put(VERSION).put((byte) PRECISION).put(DENSE)
+                .put(registers)
+                .array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        byte precision = buffer.get();
+        if (version != VERSION || precision != PRECISION) {
+            throw new IllegalArgumentException("Unsupported sketch format: version=" + version +
+                    ", precision=" + precision);
+        }
+
+        byte[] registers = new byte[REGISTERS];
+        if (buffer.get() == SPARSE) {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                int index = buffer.getShort() & 0xffff;
+                registers[index] = buffer.get();
+            }
+        } else {
+            buffer.get(registers);
+        }
+        return new HyperLogLog(registers);
+    }
+}
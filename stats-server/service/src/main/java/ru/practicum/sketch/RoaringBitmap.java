@@ -0,0 +1,349 @@
+package ru.practicum.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of int ids in the spirit of Roaring bitmaps: ids are split by their high 16 bits
+ * into chunks, each chunk stored as a sorted {@code char[]} while it holds at most 4096 ids and as
+ * a 8 KB bit set once it grows beyond that. Run containers are not implemented. Ids are ordered as
+ * unsigned ints, so negative ids, such as the ones {@code ExactUniqueCounter} gives ips missing from
+ * the dictionary, are held in the last chunks and visited after all non-negative ids.
+ */
+public class RoaringBitmap {
+    private static final byte VERSION = 1;
+    private static final byte ARRAY = 0;
+    private static final byte BITMAP = 1;
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys = new char[0];
+    private Container[] containers = new Container[0];
+
+    public boolean add(int id) {
+        char high = (char) (id >>> 16);
+        int index = Arrays.binarySearch(keys, high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high, new ArrayContainer());
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add((char) id);
+        return containers[index].cardinality() > before;
+    }
+
+    public boolean contains(int id) {
+        int index = Arrays.binarySearch(keys, (char) (id >>> 16));
+        return index >= 0 && containers[index].contains((char) id);
+    }
+
+    public RoaringBitmap or(RoaringBitmap other) {
+        char[] mergedKeys = new char[keys.length + other.keys.length];
+        Container[] mergedContainers = new Container[mergedKeys.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                mergedKeys[size] = keys[i];
+                mergedContainers[size++] = containers[i++];
+            } else if (i == keys.length || other.keys[j] < keys[i]) {
+                mergedKeys[size] = other.keys[j];
+                mergedContainers[size++] = other.containers[j++].copy();
+            } else {
+                mergedKeys[size] = keys[i];
+                mergedContainers[size++] = containers[i++].or(other.containers[j++]);
+            }
+        }
+        keys = Arrays.copyOf(mergedKeys, size);
+        containers = Arrays.copyOf(mergedContainers, size);
+        return this;
+    }
+
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (Container container : containers) {
+            cardinality += container.cardinality();
+        }
+        return cardinality;
+    }
+
+    public byte[] toBytes() {
+        int length = 1 + Integer.BYTES;
+        for (Container container : containers) {
+            length += Character.BYTES + 1 + container.serializedSize();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length)
+                .put(VERSION)
+                .putInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            buffer.putChar(keys[i]);
+            containers[i].write(buffer);
+        }
+        return buffer.array();
+    }
+
+    public static RoaringBitmap fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported bitmap format: version=" + version);
+        }
+
+        RoaringBitmap bitmap = new RoaringBitmap();
+        int size = buffer.getInt();
+        bitmap.keys = new char[size];
+        bitmap.containers = new Container[size];
+        for (int i = 0; i < size; i++) {
+            bitmap.keys[i] = buffer.getChar();
+            bitmap.containers[i] = buffer.get() == ARRAY ? ArrayContainer.read(buffer) : BitmapContainer.read(buffer);
+        }
+        return bitmap;
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        char[] newKeys = new char[keys.length + 1];
+        Container[] newContainers = new Container[containers.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(containers, 0, newContainers, 0, index);
+        newKeys[index] = key;
+        newContainers[index] = container;
+        System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+        System.arraycopy(containers, index, newContainers, index + 1, containers.length - index);
+        keys = newKeys;
+        containers = newContainers;
+    }
+
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract boolean contains(char value);
+
+        abstract Container or(Container other);
+
+        abstract int cardinality();
+
+        abstract void forEach(int high, IntConsumer consumer);
+
+        abstract Container copy();
+
+        abstract int serializedSize();
+
+        abstract void write(ByteBuffer buffer);
+    }
+
+    private static class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX_SIZE) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(Math.max(values.length * 2, 4), ARRAY_MAX_SIZE));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.copy().or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            char[] merged = new char[cardinality + array.cardinality];
+            int i = 0;
+            int j = 0;
+            int size = 0;
+            while (i < cardinality && j < array.cardinality) {
+                if (values[i] < array.values[j]) {
+                    merged[size++] = values[i++];
+                } else if (values[i] > array.values[j]) {
+                    merged[size++] = array.values[j++];
+                } else {
+                    merged[size++] = values[i++];
+                    j++;
+                }
+            }
+            while (i < cardinality) {
+                merged[size++] = values[i++];
+            }
+            while (j < array.cardinality) {
+                merged[size++] = array.values[j++];
+            }
+            ArrayContainer result = new ArrayContainer(merged, size);
+            return size > ARRAY_MAX_SIZE ? result.toBitmap() : result;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < cardinality; i++) {
+                consumer.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        @Override
+        int serializedSize() {
+            return Character.BYTES + cardinality * Character.BYTES;
+        }
+
+        @Override
+        void write(ByteBuffer buffer) {
+            buffer.put(ARRAY).putChar((char) cardinality);
+            for (int i = 0; i < cardinality; i++) {
+                buffer.putChar(values[i]);
+            }
+        }
+
+        static ArrayContainer read(ByteBuffer buffer) {
+            int cardinality = buffer.getChar();
+            char[] values = new char[Math.max(cardinality, 1)];
+            for (int i = 0; i < cardinality; i++) {
+                values[i] = buffer.getChar();
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            this(new long[BITMAP_WORDS], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long word = words[value >>> 6];
+            long updated = word | (1L << value);
+            if (updated != word) {
+                words[value >>> 6] = updated;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    add(array.values[i]);
+                }
+                return this;
+            }
+            BitmapContainer bitmap = (BitmapContainer) other;
+            int newCardinality = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] |= bitmap.words[i];
+                newCardinality += Long.bitCount(words[i]);
+            }
+            cardinality = newCardinality;
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int word = 0; word < words.length; word++) {
+                for (long bits = words[word]; bits != 0; bits &= bits - 1) {
+                    consumer.accept(high | word << 6 | Long.numberOfTrailingZeros(bits));
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        int serializedSize() {
+            return BITMAP_WORDS * Long.BYTES;
+        }
+
+        @Override
+        void write(ByteBuffer buffer) {
+            buffer.put(BITMAP);
+            for (long word : words) {
+                buffer.putLong(word);
+            }
+        }
+
+        static BitmapContainer read(ByteBuffer buffer) {
+            long[] words = new long[BITMAP_WORDS];
+            int cardinality = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] = buffer.getLong();
+                cardinality += Long.bitCount(words[i]);
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package ru.practicum.sketch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-saving heavy-hitter summary (Metwally et al.) over at most {@code capacity} keys.
+ *
+ * <p>Counters live in a min-heap indexed by key, so an increment costs {@code O(log capacity)}. Once
+ * the summary is full a new key takes over the smallest counter and inherits its count as
+ * {@code error}: every tracked count is an upper bound that overestimates by at most {@code error},
+ * and any untracked key was seen at most {@link #untrackedBound()} times, the largest count evicted so
+ * far. A counter with zero error has been tracked since the first occurrence of its key and is exact.
+ */
+public class SpaceSaving<K> {
+    private final int capacity;
+    private final Map<K, Counter<K>> index;
+    private final Counter<K>[] heap;
+    private int size;
+    private long floor;
+
+    @SuppressWarnings("unchecked")
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.index = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    public void add(K key, long weight) {
+        Counter<K> counter = index.get(key);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.position);
+            return;
+        }
+        if (size < capacity) {
+            counter = new Counter<>(key, weight, 0);
+            counter.position = size;
+            heap[size++] = counter;
+            index.put(key, counter);
+            siftUp(counter.position);
+            return;
+        }
+
+        counter = heap[0];
+        floor = Math.max(floor, counter.count);
+        index.remove(counter.key);
+        counter.key = key;
+        counter.error = counter.count;
+        counter.count += weight;
+        index.put(key, counter);
+        siftDown(0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Upper bound for the count of any key that is not tracked; zero while no key has been evicted.
+     */
+    public long untrackedBound() {
+        return floor;
+    }
+
+    /**
+     * Snapshot of the tracked counters in no particular order.
+     */
+    public List<Counter<K>> counters() {
+        List<Counter<K>> counters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            counters.add(new Counter<>(heap[i].key, heap[i].count, heap[i].error));
+        }
+        return counters;
+    }
+
+    public SpaceSaving<K> copy() {
+        SpaceSaving<K> copy = new SpaceSaving<>(capacity);
+        for (Counter<K> counter : counters()) {
+            copy.append(counter);
+        }
+        copy.floor = floor;
+        return copy;
+    }
+
+    /**
+     * Combines summaries of disjoint streams into one of the given capacity. A key missing from a summary
+     * may still have been seen there up to that summary's {@link #untrackedBound()} times, so the bound is
+     * added to both its count and its error; the counts and errors of the result keep the guarantees above.
+     */
+    public static <K> SpaceSaving<K> merge(Collection<SpaceSaving<K>> summaries, int capacity) {
+        long bounds = summaries.stream().mapToLong(SpaceSaving::untrackedBound).sum();
+
+        Map<K, Counter<K>> combined = new HashMap<>();
+        for (SpaceSaving<K> summary : summaries) {
+            long bound = summary.untrackedBound();
+            for (int i = 0; i < summary.size; i++) {
+                Counter<K> counter = summary.heap[i];
+                Counter<K> merged = combined.computeIfAbsent(counter.key, key -> new Counter<>(key, bounds, bounds));
+                merged.count += counter.count - bound;
+                merged.error += counter.error - bound;
+            }
+        }
+
+        List<Counter<K>> counters = new ArrayList<>(combined.values());
+        counters.sort(Comparator.comparingLong((Counter<K> counter) -> counter.count).reversed());
+        SpaceSaving<K> result = new SpaceSaving<>(capacity);
+        result.floor = bounds;
+        for (int i = 0; i < counters.size(); i++) {
+            if (i < capacity) {
+                result.append(counters.get(i));
+            } else {
+                result.floor = Math.max(result.floor, counters.get(i).count);
+                break;
+            }
+        }
+        return result;
+    }
+
+    private void append(Counter<K> counter) {
+        Counter<K> copy = new Counter<>(counter.key, counter.count, counter.error);
+        copy.position = size;
+        heap[size++] = copy;
+        index.put(copy.key, copy);
+        siftUp(copy.position);
+    }
+
+    private void siftUp(int position) {
+        Counter<K> counter = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(counter, position);
+    }
+
+    private void siftDown(int position) {
+        Counter<K> counter = heap[position];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(counter, position);
+    }
+
+    private void place(Counter<K> counter, int position) {
+        heap[position] = counter;
+        counter.position = position;
+    }
+
+    public static final class Counter<K> {
+        private K key;
+        private long count;
+        private long error;
+        private int position;
+
+        private Counter(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+-- Runs after schema.sql. Under a non-C collation the btree indexes on uri do not serve LIKE 'prefix%', so the
+-- uri prefixes of StatsFilter get text_pattern_ops indexes, with app and bucket checked inside the index.
+CREATE INDEX IF NOT EXISTS ix_uri_dictionary_uri_pattern ON uri_dictionary (uri text_pattern_ops);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_rollup_minute_uri_pattern
+    ON endpoint_rollup_minute (uri text_pattern_ops, app, bucket);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_rollup_hour_uri_pattern
+    ON endpoint_rollup_hour (uri text_pattern_ops, app, bucket);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_rollup_day_uri_pattern
+    ON endpoint_rollup_day (uri text_pattern_ops, app, bucket);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_hll_day_uri_pattern ON endpoint_hll_day (uri text_pattern_ops, app, bucket);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_bitmap_day_uri_pattern
+    ON endpoint_bitmap_day (uri text_pattern_ops, app, bucket);
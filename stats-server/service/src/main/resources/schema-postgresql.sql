@@ -0,0 +1,136 @@
+-- Migrates an endpoint table of the VARCHAR layout (app, uri and ip strings) in place: apps and uris move into
+-- their dictionaries, ips into the 16-byte form of IpAddresses. Strings that are not ip addresses, which the
+-- old layout accepted, become the unspecified address :: so their hits are still counted.
+CREATE TABLE IF NOT EXISTS app_dictionary
+(
+    id   INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name VARCHAR(512) NOT NULL,
+    CONSTRAINT pk_app_dictionary PRIMARY KEY (id),
+    CONSTRAINT uq_app_dictionary_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS uri_dictionary
+(
+    id  INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    uri VARCHAR(512) NOT NULL,
+    CONSTRAINT pk_uri_dictionary PRIMARY KEY (id),
+    CONSTRAINT uq_uri_dictionary_uri UNIQUE (uri)
+);
+
+CREATE TABLE IF NOT EXISTS entity_type_dictionary
+(
+    id   INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name VARCHAR(64) NOT NULL,
+    CONSTRAINT pk_entity_type_dictionary PRIMARY KEY (id),
+    CONSTRAINT uq_entity_type_dictionary_name UNIQUE (name)
+);
+
+CREATE OR REPLACE FUNCTION pg_temp.legacy_ip_bytes(ip TEXT) RETURNS BYTEA LANGUAGE plpgsql AS '
+DECLARE
+    address INET;
+BEGIN
+    address := host(ip::inet)::inet;
+    IF family(address) = 4 THEN
+        RETURN decode(''00000000000000000000ffff'', ''hex'') || substring(inet_send(address) FROM 5);
+    END IF;
+    RETURN substring(inet_send(address) FROM 5);
+EXCEPTION WHEN invalid_text_representation THEN
+    RETURN decode(repeat(''00'', 16), ''hex'');
+END';
+
+DO '
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = ''endpoint'' AND column_name = ''app'') THEN
+        INSERT INTO app_dictionary (name)
+        SELECT DISTINCT e.app FROM endpoint AS e
+        WHERE NOT EXISTS (SELECT 1 FROM app_dictionary AS d WHERE d.name = e.app)
+        ORDER BY e.app;
+        INSERT INTO uri_dictionary (uri)
+        SELECT DISTINCT e.uri FROM endpoint AS e
+        WHERE NOT EXISTS (SELECT 1 FROM uri_dictionary AS d WHERE d.uri = e.uri)
+        ORDER BY e.uri;
+
+        ALTER TABLE endpoint ADD COLUMN app_id INTEGER, ADD COLUMN uri_id INTEGER, ADD COLUMN ip_bytes BYTEA;
+        UPDATE endpoint AS e
+        SET app_id = a.id, uri_id = u.id, ip_bytes = pg_temp.legacy_ip_bytes(e.ip)
+        FROM app_dictionary AS a, uri_dictionary AS u
+        WHERE a.name = e.app AND u.uri = e.uri;
+        ALTER TABLE endpoint DROP COLUMN app, DROP COLUMN uri, DROP COLUMN ip;
+        ALTER TABLE endpoint RENAME COLUMN ip_bytes TO ip;
+        ALTER TABLE endpoint ALTER COLUMN app_id SET NOT NULL, ALTER COLUMN uri_id SET NOT NULL,
+            ALTER COLUMN ip SET NOT NULL;
+    END IF;
+END';
+
+-- Hits stored before the entity columns existed get their entity from the uri, with the pattern of EntityKey.
+DO '
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.tables
+               WHERE table_schema = current_schema() AND table_name = ''endpoint'')
+        AND NOT EXISTS (SELECT 1 FROM information_schema.columns
+                        WHERE table_schema = current_schema() AND table_name = ''endpoint''
+                          AND column_name = ''entity_type_id'') THEN
+        ALTER TABLE endpoint ADD COLUMN entity_type_id INTEGER, ADD COLUMN entity_id BIGINT;
+        CREATE TEMPORARY TABLE entity_uri ON COMMIT DROP AS
+        SELECT id AS uri_id, m[1] AS type, CAST(m[2] AS BIGINT) AS entity_id
+        FROM (SELECT id, regexp_match(uri, ''^/([a-z][a-z0-9-]{0,63})/([1-9][0-9]{0,17})$'') AS m
+              FROM uri_dictionary) AS u
+        WHERE m IS NOT NULL;
+        INSERT INTO entity_type_dictionary (name)
+        SELECT DISTINCT q.type FROM entity_uri AS q
+        WHERE NOT EXISTS (SELECT 1 FROM entity_type_dictionary AS t WHERE t.name = q.type)
+        ORDER BY q.type;
+        UPDATE endpoint AS e
+        SET entity_type_id = t.id, entity_id = q.entity_id
+        FROM entity_uri AS q
+        JOIN entity_type_dictionary AS t ON t.name = q.type
+        WHERE e.uri_id = q.uri_id;
+    END IF;
+END';
+
+-- An endpoint table created before partitioning is set aside here, so that the partitioned table is created below
+-- and the old rows are then copied into its daily partitions. Its identity sequence, named endpoint_id_seq as well,
+-- goes with its identity.
+DO '
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class
+               WHERE relname = ''endpoint'' AND relkind = ''r'' AND pg_table_is_visible(oid)) THEN
+        ALTER TABLE endpoint RENAME TO endpoint_unpartitioned;
+        ALTER TABLE endpoint_unpartitioned DROP CONSTRAINT IF EXISTS pk_endpoint;
+        ALTER TABLE endpoint_unpartitioned ALTER COLUMN id DROP IDENTITY IF EXISTS;
+    END IF;
+END';
+
+CREATE SEQUENCE IF NOT EXISTS endpoint_id_seq;
+
+CREATE TABLE IF NOT EXISTS endpoint
+(
+    id             BIGINT DEFAULT nextval('endpoint_id_seq') NOT NULL,
+    app_id         INTEGER NOT NULL,
+    uri_id         INTEGER NOT NULL,
+    ip             BYTEA NOT NULL,
+    timestamp      TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    entity_type_id INTEGER,
+    entity_id      BIGINT,
+    CONSTRAINT pk_endpoint PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+-- Copies the rows of the table set aside above into daily partitions named as PartitionRepository names them,
+-- in one transaction, and drops the old table; a failed copy is retried on the next start.
+DO '
+DECLARE
+    day DATE;
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class
+               WHERE relname = ''endpoint_unpartitioned'' AND relkind = ''r'' AND pg_table_is_visible(oid)) THEN
+        FOR day IN SELECT DISTINCT CAST(timestamp AS DATE) FROM endpoint_unpartitioned LOOP
+            EXECUTE format(''CREATE TABLE IF NOT EXISTS %I PARTITION OF endpoint FOR VALUES FROM (%L) TO (%L)'',
+                           ''endpoint_p'' || to_char(day, ''YYYYMMDD''), day, day + 1);
+        END LOOP;
+        INSERT INTO endpoint (id, app_id, uri_id, ip, timestamp, entity_type_id, entity_id)
+        SELECT id, app_id, uri_id, ip, timestamp, entity_type_id, entity_id FROM endpoint_unpartitioned;
+        PERFORM setval(''endpoint_id_seq'', (SELECT COALESCE(MAX(id), 0) + 1 FROM endpoint), false);
+        DROP TABLE endpoint_unpartitioned;
+    END IF;
+END';
@@ -1,9 +1,128 @@
+CREATE TABLE IF NOT EXISTS app_dictionary
+(
+    id   INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name VARCHAR(512) NOT NULL,
+    CONSTRAINT pk_app_dictionary PRIMARY KEY (id),
+    CONSTRAINT uq_app_dictionary_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS uri_dictionary
+(
+    id  INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    uri VARCHAR(512) NOT NULL,
+    CONSTRAINT pk_uri_dictionary PRIMARY KEY (id),
+    CONSTRAINT uq_uri_dictionary_uri UNIQUE (uri)
+);
+
+CREATE TABLE IF NOT EXISTS entity_type_dictionary
+(
+    id   INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name VARCHAR(64) NOT NULL,
+    CONSTRAINT pk_entity_type_dictionary PRIMARY KEY (id),
+    CONSTRAINT uq_entity_type_dictionary_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS ip_dictionary
+(
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    ip VARCHAR(512) NOT NULL,
+    CONSTRAINT pk_ip_dictionary PRIMARY KEY (id),
+    CONSTRAINT uq_ip_dictionary_ip UNIQUE (ip)
+);
+
 CREATE TABLE IF NOT EXISTS endpoint
 (
-    id        BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
-    app       VARCHAR(512) NOT NULL,
-    uri       VARCHAR(512) NOT NULL,
-    ip        VARCHAR(512) NOT NULL,
-    timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    app_id         INTEGER NOT NULL,
+    uri_id         INTEGER NOT NULL,
+    ip             BINARY(16) NOT NULL,
+    timestamp      TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    entity_type_id INTEGER,
+    entity_id      BIGINT,
     CONSTRAINT pk_endpoint PRIMARY KEY (id)
-);
\ No newline at end of file
+);
+
+-- endpoint tables created before hits carried their entity; PostgreSQL fills them in schema-postgresql.sql
+ALTER TABLE endpoint ADD COLUMN IF NOT EXISTS entity_type_id INTEGER;
+
+ALTER TABLE endpoint ADD COLUMN IF NOT EXISTS entity_id BIGINT;
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_timestamp_app_uri_ip ON endpoint (timestamp, app_id, uri_id, ip);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_uri_timestamp_app_ip ON endpoint (uri_id, timestamp, app_id, ip);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_app_uri_timestamp_ip ON endpoint (app_id, uri_id, timestamp, ip);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_entity_timestamp_app_ip
+    ON endpoint (entity_type_id, entity_id, timestamp, app_id, ip);
+
+CREATE TABLE IF NOT EXISTS endpoint_rollup_minute
+(
+    app    VARCHAR(512) NOT NULL,
+    uri    VARCHAR(512) NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits   BIGINT NOT NULL,
+    CONSTRAINT pk_endpoint_rollup_minute PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_rollup_minute_bucket ON endpoint_rollup_minute (bucket);
+
+CREATE TABLE IF NOT EXISTS endpoint_rollup_hour
+(
+    app    VARCHAR(512) NOT NULL,
+    uri    VARCHAR(512) NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits   BIGINT NOT NULL,
+    CONSTRAINT pk_endpoint_rollup_hour PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_rollup_hour_bucket ON endpoint_rollup_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS endpoint_rollup_day
+(
+    app    VARCHAR(512) NOT NULL,
+    uri    VARCHAR(512) NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits   BIGINT NOT NULL,
+    CONSTRAINT pk_endpoint_rollup_day PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_rollup_day_bucket ON endpoint_rollup_day (bucket);
+
+CREATE TABLE IF NOT EXISTS endpoint_hll_day
+(
+    app    VARCHAR(512) NOT NULL,
+    uri    VARCHAR(512) NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    sketch BYTEA NOT NULL,
+    CONSTRAINT pk_endpoint_hll_day PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_hll_day_bucket ON endpoint_hll_day (bucket);
+
+CREATE TABLE IF NOT EXISTS endpoint_bitmap_day
+(
+    app    VARCHAR(512) NOT NULL,
+    uri    VARCHAR(512) NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    sketch BYTEA NOT NULL,
+    CONSTRAINT pk_endpoint_bitmap_day PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_bitmap_day_bucket ON endpoint_bitmap_day (bucket);
+
+CREATE TABLE IF NOT EXISTS aggregate_rebuild_checkpoint
+(
+    bucket     TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits       BIGINT NOT NULL,
+    rebuilt_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    CONSTRAINT pk_aggregate_rebuild_checkpoint PRIMARY KEY (bucket)
+);
+
+CREATE TABLE IF NOT EXISTS aggregate_backfill_progress
+(
+    aggregator VARCHAR(128) NOT NULL,
+    last_id    BIGINT NOT NULL,
+    to_id      BIGINT NOT NULL,
+    CONSTRAINT pk_aggregate_backfill_progress PRIMARY KEY (aggregator)
+);
@@ -0,0 +1,121 @@
+package ru.practicum.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.config.ArchiveProperties;
+import ru.practicum.config.RetentionProperties;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.ViewStats;
+import ru.practicum.repository.ArchiveRepository;
+import ru.practicum.repository.HitDictionaries;
+import ru.practicum.repository.RawHitRepository;
+import ru.practicum.service.HitArchive;
+import ru.practicum.service.HitStorage;
+import ru.practicum.service.RetentionTiers;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.practicum.benchmark.BenchmarkSupport.medianMicros;
+
+/**
+ * Compares the raw hits of the {@code endpoint} table with the same hits moved to the columnar
+ * {@link HitArchive}: payload size and latency of the raw {@code GET /stats} query shapes. Aggregates are off,
+ * so only the raw storages are measured. Run with {@code mvn test -Pbenchmark}; the number of hits is set with
+ * {@code -Dbenchmark.hits}.
+ */
+@Slf4j
+@Tag("benchmark")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:archive-benchmark;OPTIMIZE_REUSE_RESULTS=FALSE",
+        "stats.rollup.enabled=false",
+        "stats.sketch.enabled=false",
+        "stats.bitmap.enabled=false"})
+public class ArchiveBenchmarkTest {
+    private final HitStorage hitStorage;
+    private final RawHitRepository rawHitRepository;
+    private final HitDictionaries hitDictionaries;
+    private final RetentionProperties retentionProperties;
+    private final RetentionTiers retentionTiers;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    @TempDir
+    Path directory;
+
+    @DisplayName("Замер размера и скорости запросов таблицы endpoint и колоночного архива")
+    @Test
+    public void compareTableAndArchive() {
+        ArchiveProperties properties = new ArchiveProperties();
+        properties.setEnabled(true);
+        properties.setAfter(Duration.ofDays(1));
+        properties.setDirectory(directory);
+        properties.setCachedSegments(BenchmarkSupport.DAYS);
+        ArchiveRepository archiveRepository = new ArchiveRepository(properties);
+        HitArchive hitArchive = new HitArchive(properties, archiveRepository, rawHitRepository, hitDictionaries,
+                retentionProperties, retentionTiers, transactionTemplate);
+        log.info("Benchmark: {} hits, {} uris, {} ips, {} days", BenchmarkSupport.HITS, BenchmarkSupport.URIS,
+                BenchmarkSupport.IPS, BenchmarkSupport.DAYS);
+        BenchmarkSupport.forEachBatch(batch -> transactionTemplate.executeWithoutResult(status ->
+                hitStorage.saveAll(batch)));
+
+        LocalDateTime start = BenchmarkSupport.ORIGIN.plusDays(40);
+        LocalDateTime end = start.plusDays(7);
+        StatsFilter uris = StatsFilter.of(null, IntStream.range(0, 10)
+                .mapToObj(i -> "/events/" + i * 37)
+                .collect(Collectors.toList()));
+        Map<String, Object[]> queries = new LinkedHashMap<>();
+        queries.put("range, us", new Object[]{StatsFilter.ALL, false});
+        queries.put("range unique, us", new Object[]{StatsFilter.ALL, true});
+        queries.put("range uris, us", new Object[]{uris, false});
+        queries.put("range uris unique, us", new Object[]{uris, true});
+
+        Map<String, Long> table = new LinkedHashMap<>();
+        Map<String, Long> archive = new LinkedHashMap<>();
+        table.put("payload, KB", jdbcTemplate.queryForObject(
+                "SELECT SUM(8 + 4 + 4 + OCTET_LENGTH(ip) + 8) FROM endpoint", Long.class) / 1024);
+        queries.forEach((name, query) -> table.put(name, medianMicros(() ->
+                stats(consumer -> hitStorage.forEachStats(start, end, (StatsFilter) query[0], (boolean) query[1],
+                        consumer)))));
+        List<ViewStats> expected = stats(consumer -> hitStorage.forEachStats(start, end, uris, true, consumer));
+
+        long startNanos = System.nanoTime();
+        hitArchive.export();
+        log.info("Export took {} ms", (System.nanoTime() - startNanos) / 1_000_000);
+        archive.put("payload, KB", archiveRepository.findDays().stream()
+                .mapToLong(archiveRepository::sizeOf)
+                .sum() / 1024);
+        queries.forEach((name, query) -> archive.put(name, medianMicros(() ->
+                stats(consumer -> hitArchive.forEachStats(start, end, (StatsFilter) query[0], (boolean) query[1],
+                        consumer)))));
+
+        log.info(String.format("%-28s %15s %15s", "", "table", "archive"));
+        table.forEach((name, value) -> log.info(String.format("%-28s %15d %15d", name, value, archive.get(name))));
+        assertEquals(expected, stats(consumer -> hitArchive.forEachStats(start, end, uris, true, consumer)));
+    }
+
+    private List<ViewStats> stats(Consumer<Consumer<ViewStats>> query) {
+        return transactionTemplate.execute(status -> {
+            List<ViewStats> viewStats = new ArrayList<>();
+            query.accept(viewStats::add);
+            return viewStats;
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package ru.practicum.benchmark;
+
+import ru.practicum.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Deterministic hit stream shared by the benchmarks: one app, {@code /events/{id}} uris with a
+ * skewed popularity, random IPv4 addresses and timestamps spread over {@link #DAYS} days.
+ * Query latency is reported as the median of {@link #MEASURED_RUNS} runs after a warmup.
+ */
+final class BenchmarkSupport {
+    static final int HITS = Integer.getInteger("benchmark.hits", 2_000_000);
+    static final int BATCH_SIZE = 10_000;
+    static final int URIS = 1_000;
+    static final int IPS = 200_000;
+    static final int DAYS = 90;
+    static final LocalDateTime ORIGIN = LocalDateTime.of(2024, 1, 1, 0, 0);
+    static final int WARMUP_RUNS = 2;
+    static final int MEASURED_RUNS = 5;
+
+    private BenchmarkSupport() {
+    }
+
+    static void forEachBatch(Consumer<List<EndpointHit>> consumer) {
+        Random random = new Random(42);
+        List<EndpointHit> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < HITS; i++) {
+            batch.add(new EndpointHit(null, "ewm-main-service", "/events/" + uriIndex(random), ip(random.nextInt(IPS)),
+                    ORIGIN.plusSeconds(random.nextInt(DAYS * 24 * 60 * 60))));
+            if (batch.size() == BATCH_SIZE || i == HITS - 1) {
+                consumer.accept(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    static long medianMicros(Supplier<?> query) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            query.get();
+        }
+        long[] runs = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long startNanos = System.nanoTime();
+            query.get();
+            runs[i] = (System.nanoTime() - startNanos) / 1_000;
+        }
+        Arrays.sort(runs);
+        return runs[MEASURED_RUNS / 2];
+    }
+
+    private static int uriIndex(Random random) {
+        return (int) (URIS * Math.pow(random.nextDouble(), 3));
+    }
+
+    private static String ip(int i) {
+        return "10." + (i >>> 16 & 0xff) + "." + (i >>> 8 & 0xff) + "." + (i & 0xff);
+    }
+}
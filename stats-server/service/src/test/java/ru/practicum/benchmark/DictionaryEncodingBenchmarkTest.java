@@ -0,0 +1,136 @@
+package ru.practicum.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.ViewStats;
+import ru.practicum.repository.HitBatchRepository;
+import ru.practicum.repository.RawHitRepository;
+import ru.practicum.repository.StatsRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.practicum.benchmark.BenchmarkSupport.medianMicros;
+
+/**
+ * Compares the dictionary-encoded {@code endpoint} table with the previous layout of three
+ * {@code VARCHAR(512)} columns, kept here as {@code endpoint_plain} with the same indexes: ingest
+ * throughput, row payload size and latency of the four stats query shapes.
+ * Run with {@code mvn test -Pbenchmark}; the number of hits is set with {@code -Dbenchmark.hits}.
+ */
+@Slf4j
+@Tag("benchmark")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:dictionary-benchmark;OPTIMIZE_REUSE_RESULTS=FALSE",
+        "stats.rollup.enabled=false",
+        "stats.sketch.enabled=false",
+        "stats.bitmap.enabled=false"})
+public class DictionaryEncodingBenchmarkTest {
+    private static final String PLAIN_QUERY = "SELECT app, uri, COUNT(%1$s) AS hits FROM endpoint_plain " +
+            "WHERE timestamp BETWEEN :start AND :end%2$s GROUP BY app, uri ORDER BY COUNT(%1$s) DESC";
+    private final HitBatchRepository hitBatchRepository;
+    private final StatsRepository statsRepository;
+    private final RawHitRepository rawHitRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @DisplayName("Замер размера и скорости запросов до и после словарного кодирования строк")
+    @Test
+    public void comparePlainAndEncodedRows() {
+        createPlainTable();
+        log.info("Benchmark: {} hits, {} uris, {} ips, {} days", BenchmarkSupport.HITS, BenchmarkSupport.URIS,
+                BenchmarkSupport.IPS, BenchmarkSupport.DAYS);
+
+        Map<String, Long> plain = new LinkedHashMap<>();
+        Map<String, Long> encoded = new LinkedHashMap<>();
+        long[] nanos = {0, 0};
+        BenchmarkSupport.forEachBatch(batch -> {
+            long startNanos = System.nanoTime();
+            jdbcTemplate.batchUpdate("INSERT INTO endpoint_plain (app, uri, ip, timestamp) VALUES (?, ?, ?, ?)",
+                    batch, batch.size(), (ps, hit) -> {
+                        ps.setString(1, hit.getApp());
+                        ps.setString(2, hit.getUri());
+                        ps.setString(3, hit.getIp());
+                        ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+                    });
+            nanos[0] += System.nanoTime() - startNanos;
+            startNanos = System.nanoTime();
+            hitBatchRepository.saveAll(batch);
+            nanos[1] += System.nanoTime() - startNanos;
+        });
+        plain.put("ingest, hits/s", BenchmarkSupport.HITS * 1_000_000_000L / nanos[0]);
+        encoded.put("ingest, hits/s", BenchmarkSupport.HITS * 1_000_000_000L / nanos[1]);
+        plain.put("row payload, KB", payloadKb("SELECT SUM(8 + OCTET_LENGTH(app) + OCTET_LENGTH(uri) + " +
+                "OCTET_LENGTH(ip) + 8) FROM endpoint_plain"));
+        encoded.put("row payload, KB", payloadKb("SELECT SUM(8 + 4 + 4 + OCTET_LENGTH(ip) + 8) FROM endpoint")
+                + payloadKb("SELECT COALESCE(SUM(4 + OCTET_LENGTH(name)), 0) FROM app_dictionary")
+                + payloadKb("SELECT COALESCE(SUM(4 + OCTET_LENGTH(uri)), 0) FROM uri_dictionary"));
+
+        LocalDateTime start = BenchmarkSupport.ORIGIN.plusDays(40);
+        LocalDateTime end = start.plusDays(7);
+        List<String> uris = IntStream.range(0, 10).mapToObj(i -> "/events/" + i * 37).collect(Collectors.toList());
+        plain.put("range, us", medianMicros(() -> queryPlain(start, end, null, false)));
+        encoded.put("range, us", medianMicros(() -> statsRepository.findAllByDateBetweenStartAndEnd(start, end)));
+        plain.put("range unique, us", medianMicros(() -> queryPlain(start, end, null, true)));
+        encoded.put("range unique, us", medianMicros(() ->
+                statsRepository.findAllByDateBetweenAndUniqueIp(start, end)));
+        plain.put("range uris, us", medianMicros(() -> queryPlain(start, end, uris, false)));
+        encoded.put("range uris, us", medianMicros(() -> findStats(start, end, uris, false)));
+        plain.put("range uris unique, us", medianMicros(() -> queryPlain(start, end, uris, true)));
+        encoded.put("range uris unique, us", medianMicros(() -> findStats(start, end, uris, true)));
+
+        log.info(String.format("%-28s %15s %15s", "", "plain", "encoded"));
+        plain.forEach((name, value) -> log.info(String.format("%-28s %15d %15d", name, value, encoded.get(name))));
+        assertEquals(Set.copyOf(queryPlain(start, end, uris, true)), Set.copyOf(findStats(start, end, uris, true)));
+    }
+
+    private void createPlainTable() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS endpoint_plain (" +
+                "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "app VARCHAR(512) NOT NULL, uri VARCHAR(512) NOT NULL, ip VARCHAR(512) NOT NULL, " +
+                "timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS ix_endpoint_plain_timestamp_app_uri_ip " +
+                "ON endpoint_plain (timestamp, app, uri, ip)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS ix_endpoint_plain_uri_timestamp_app_ip " +
+                "ON endpoint_plain (uri, timestamp, app, ip)");
+    }
+
+    private List<ViewStats> queryPlain(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end))
+                .addValue("uris", uris);
+        String sql = String.format(PLAIN_QUERY, unique ? "DISTINCT ip" : "ip", uris == null ? "" : " AND uri IN (:uris)");
+        return namedParameterJdbcTemplate.query(sql, parameters, (rs, rowNum) ->
+                new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    private long payloadKb(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class) / 1024;
+    }
+
+    // benchmark hits have whole-second timestamps, so [start, end + 1s) matches BETWEEN start AND end
+    private List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        List<ViewStats> stats = new ArrayList<>();
+        rawHitRepository.forEachStats(start, end.plusSeconds(1), StatsFilter.of(null, uris), unique, stats::add);
+        return stats;
+    }
+}
@@ -0,0 +1,114 @@
+package ru.practicum.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.ViewStats;
+import ru.practicum.repository.HitBatchRepository;
+import ru.practicum.repository.RawHitRepository;
+import ru.practicum.repository.StatsRepository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.practicum.benchmark.BenchmarkSupport.medianMicros;
+
+/**
+ * Seeds the {@code endpoint} table and compares ingest throughput and latency of the four
+ * stats query shapes without and with the {@code endpoint} indexes from schema.sql.
+ * Run with {@code mvn test -Pbenchmark}; the number of hits is set with {@code -Dbenchmark.hits}.
+ */
+@Slf4j
+@Tag("benchmark")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;OPTIMIZE_REUSE_RESULTS=FALSE",
+        "stats.rollup.enabled=false",
+        "stats.sketch.enabled=false",
+        "stats.bitmap.enabled=false"})
+public class EndpointIndexBenchmarkTest {
+    private static final Pattern ENDPOINT_INDEX = Pattern.compile(
+            "CREATE INDEX IF NOT EXISTS (\\w+) ON endpoint \\(.*?\\)", Pattern.CASE_INSENSITIVE);
+    private final HitBatchRepository hitBatchRepository;
+    private final StatsRepository statsRepository;
+    private final RawHitRepository rawHitRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @DisplayName("Замер вставки и запросов статистики без индексов и с индексами")
+    @Test
+    public void compareWithAndWithoutIndexes() throws IOException {
+        Map<String, String> indexes = endpointIndexes();
+        log.info("Benchmark: {} hits, {} uris, {} ips, {} days, indexes {}", BenchmarkSupport.HITS,
+                BenchmarkSupport.URIS, BenchmarkSupport.IPS, BenchmarkSupport.DAYS, indexes.keySet());
+
+        indexes.keySet().forEach(name -> jdbcTemplate.execute("DROP INDEX IF EXISTS " + name));
+        Map<String, Long> withoutIndexes = run();
+        indexes.values().forEach(jdbcTemplate::execute);
+        Map<String, Long> withIndexes = run();
+
+        log.info(String.format("%-28s %15s %15s", "", "no indexes", "indexes"));
+        withoutIndexes.forEach((name, value) -> log.info(String.format("%-28s %15d %15d",
+                name, value, withIndexes.get(name))));
+        assertEquals(withoutIndexes.keySet(), withIndexes.keySet());
+    }
+
+    private Map<String, Long> run() {
+        jdbcTemplate.execute("TRUNCATE TABLE endpoint");
+        Map<String, Long> results = new LinkedHashMap<>();
+        results.put("ingest, hits/s", ingest());
+
+        LocalDateTime start = BenchmarkSupport.ORIGIN.plusDays(40);
+        LocalDateTime end = start.plusDays(7);
+        List<String> uris = IntStream.range(0, 10).mapToObj(i -> "/events/" + i * 37).collect(Collectors.toList());
+        results.put("range, us", medianMicros(() -> statsRepository.findAllByDateBetweenStartAndEnd(start, end)));
+        results.put("range unique, us", medianMicros(() -> statsRepository.findAllByDateBetweenAndUniqueIp(start, end)));
+        results.put("range uris, us", medianMicros(() -> findStats(start, end, uris, false)));
+        results.put("range uris unique, us", medianMicros(() -> findStats(start, end, uris, true)));
+        return results;
+    }
+
+    private long ingest() {
+        long[] nanos = {0};
+        BenchmarkSupport.forEachBatch(batch -> {
+            long startNanos = System.nanoTime();
+            hitBatchRepository.saveAll(batch);
+            nanos[0] += System.nanoTime() - startNanos;
+        });
+        return BenchmarkSupport.HITS * 1_000_000_000L / nanos[0];
+    }
+
+    private Map<String, String> endpointIndexes() throws IOException {
+        String schema = new String(new ClassPathResource("schema.sql").getInputStream().readAllBytes(),
+                StandardCharsets.UTF_8);
+        Map<String, String> indexes = new LinkedHashMap<>();
+        Matcher matcher = ENDPOINT_INDEX.matcher(schema);
+        while (matcher.find()) {
+            indexes.put(matcher.group(1), matcher.group());
+        }
+        return indexes;
+    }
+
+    // benchmark hits have whole-second timestamps, so [start, end + 1s) matches BETWEEN start AND end
+    private List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        List<ViewStats> stats = new ArrayList<>();
+        rawHitRepository.forEachStats(start, end.plusSeconds(1), StatsFilter.of(null, uris), unique, stats::add);
+        return stats;
+    }
+}
@@ -0,0 +1,98 @@
+package ru.practicum.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.EndpointHitDto;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Compares loading hits through single {@code POST /hit} calls with the NDJSON bulk {@code POST /hits/import},
+ * and measures the {@code GET /hits/export} stream of the loaded hits, all through the web layer with every
+ * aggregate on. Single calls are measured on the first {@link #SINGLE_HITS} hits only. Run with
+ * {@code mvn test -Pbenchmark}; the number of hits is set with {@code -Dbenchmark.hits}.
+ */
+@Slf4j
+@Tag("benchmark")
+@AutoConfigureMockMvc
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:import-benchmark;OPTIMIZE_REUSE_RESULTS=FALSE"})
+public class HitImportBenchmarkTest {
+    private static final int SINGLE_HITS = 10_000;
+    // the body is built in memory
+    private static final int IMPORTED_HITS = Math.min(BenchmarkSupport.HITS, 500_000);
+    private final MockMvc mvc;
+    private final ObjectMapper mapper;
+
+    @DisplayName("Замер скорости загрузки запросов по одному и пакетной загрузки и выгрузки NDJSON")
+    @Test
+    @SneakyThrows
+    public void compareSingleHitsAndImport() {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        BenchmarkSupport.forEachBatch(batch -> batch.stream()
+                .limit(IMPORTED_HITS - hits.size())
+                .forEach(hit -> hits.add(new EndpointHitDto(hit.getApp(), hit.getUri(), hit.getIp(),
+                        hit.getTimestamp()))));
+        // replayed traffic comes in time order, unlike the generated hits
+        hits.sort(Comparator.comparing(EndpointHitDto::getTimestamp));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (EndpointHitDto hit : hits.subList(SINGLE_HITS, hits.size())) {
+            body.write(mapper.writeValueAsBytes(hit));
+            body.write('\n');
+        }
+        log.info("Benchmark: {} single hits, {} imported hits, {} KB of NDJSON", SINGLE_HITS,
+                hits.size() - SINGLE_HITS, body.size() / 1024);
+        Map<String, Long> results = new LinkedHashMap<>();
+
+        long startNanos = System.nanoTime();
+        for (EndpointHitDto hit : hits.subList(0, SINGLE_HITS)) {
+            mvc.perform(post("/hit")
+                            .content(mapper.writeValueAsBytes(hit))
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isCreated());
+        }
+        results.put("POST /hit, hits/s", SINGLE_HITS * 1_000_000_000L / (System.nanoTime() - startNanos));
+
+        startNanos = System.nanoTime();
+        mvc.perform(post("/hits/import")
+                        .content(body.toByteArray())
+                        .contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isCreated());
+        results.put("POST /hits/import, hits/s", (hits.size() - SINGLE_HITS) * 1_000_000_000L
+                / (System.nanoTime() - startNanos));
+
+        startNanos = System.nanoTime();
+        String exported = mvc.perform(get("/hits/export")
+                        .param("start", "2000-01-01 00:00:00")
+                        .param("end", "2100-01-01 00:00:00")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        results.put("GET /hits/export, hits/s", hits.size() * 1_000_000_000L / (System.nanoTime() - startNanos));
+
+        results.forEach((name, value) -> log.info(String.format("%-28s %15d", name, value)));
+        assertEquals(hits.size(), exported.lines().count());
+    }
+}
@@ -0,0 +1,111 @@
+package ru.practicum.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.config.RetentionProperties;
+import ru.practicum.config.StorageProperties;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.ViewStats;
+import ru.practicum.repository.HitDictionaries;
+import ru.practicum.service.HitStorage;
+import ru.practicum.service.MappedHitStorage;
+import ru.practicum.service.RetentionTiers;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.practicum.benchmark.BenchmarkSupport.medianMicros;
+
+/**
+ * Compares the default {@link HitStorage}, the {@code endpoint} table, with the {@link MappedHitStorage} log on
+ * the same hits: ingest throughput and latency of the raw {@code GET /stats} query shapes. Aggregates are off,
+ * so only the storages themselves are measured. Run with {@code mvn test -Pbenchmark}; the number of hits is
+ * set with {@code -Dbenchmark.hits}.
+ */
+@Slf4j
+@Tag("benchmark")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:storage-benchmark;OPTIMIZE_REUSE_RESULTS=FALSE",
+        "stats.rollup.enabled=false",
+        "stats.sketch.enabled=false",
+        "stats.bitmap.enabled=false"})
+public class HitStorageBenchmarkTest {
+    private final HitStorage hitStorage;
+    private final HitDictionaries hitDictionaries;
+    private final RetentionProperties retentionProperties;
+    private final RetentionTiers retentionTiers;
+    private final TransactionTemplate transactionTemplate;
+    @TempDir
+    Path directory;
+
+    @DisplayName("Замер скорости записи и запросов таблицы и журнала в отображаемых в память файлах")
+    @Test
+    public void compareTableAndMappedLog() {
+        StorageProperties properties = new StorageProperties();
+        properties.getMapped().setDirectory(directory);
+        MappedHitStorage mappedHitStorage = new MappedHitStorage(properties, hitDictionaries, retentionProperties,
+                retentionTiers);
+        log.info("Benchmark: {} hits, {} uris, {} ips, {} days", BenchmarkSupport.HITS, BenchmarkSupport.URIS,
+                BenchmarkSupport.IPS, BenchmarkSupport.DAYS);
+
+        Map<String, Long> table = new LinkedHashMap<>();
+        Map<String, Long> mapped = new LinkedHashMap<>();
+        long[] nanos = {0, 0};
+        BenchmarkSupport.forEachBatch(batch -> {
+            long startNanos = System.nanoTime();
+            transactionTemplate.executeWithoutResult(status -> hitStorage.saveAll(batch));
+            nanos[0] += System.nanoTime() - startNanos;
+            startNanos = System.nanoTime();
+            mappedHitStorage.saveAll(batch);
+            nanos[1] += System.nanoTime() - startNanos;
+        });
+        table.put("ingest, hits/s", BenchmarkSupport.HITS * 1_000_000_000L / nanos[0]);
+        mapped.put("ingest, hits/s", BenchmarkSupport.HITS * 1_000_000_000L / nanos[1]);
+
+        LocalDateTime start = BenchmarkSupport.ORIGIN.plusDays(40);
+        LocalDateTime end = start.plusDays(7);
+        StatsFilter uris = StatsFilter.of(null, IntStream.range(0, 10)
+                .mapToObj(i -> "/events/" + i * 37)
+                .collect(Collectors.toList()));
+        Map<String, Object[]> queries = new LinkedHashMap<>();
+        queries.put("range, us", new Object[]{StatsFilter.ALL, false});
+        queries.put("range unique, us", new Object[]{StatsFilter.ALL, true});
+        queries.put("range uris, us", new Object[]{uris, false});
+        queries.put("range uris unique, us", new Object[]{uris, true});
+        queries.forEach((name, query) -> {
+            StatsFilter filter = (StatsFilter) query[0];
+            boolean unique = (boolean) query[1];
+            table.put(name, medianMicros(() -> stats(hitStorage, start, end, filter, unique)));
+            mapped.put(name, medianMicros(() -> stats(mappedHitStorage, start, end, filter, unique)));
+        });
+
+        log.info(String.format("%-28s %15s %15s", "", "table", "mapped"));
+        table.forEach((name, value) -> log.info(String.format("%-28s %15d %15d", name, value, mapped.get(name))));
+        assertEquals(stats(hitStorage, start, end, uris, true), stats(mappedHitStorage, start, end, uris, true));
+        mappedHitStorage.destroy();
+    }
+
+    private List<ViewStats> stats(HitStorage storage, LocalDateTime start, LocalDateTime end, StatsFilter filter,
+                                  boolean unique) {
+        return transactionTemplate.execute(status -> {
+            List<ViewStats> viewStats = new ArrayList<>();
+            storage.forEachStats(start, end, filter, unique, viewStats::add);
+            return viewStats;
+        });
+    }
+}
@@ -0,0 +1,102 @@
+package ru.practicum.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ru.practicum.config.LiveProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.ViewStats;
+import ru.practicum.service.LiveCounters;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Increment throughput of {@link LiveCounters} by number of writer threads, next to the same map of
+ * per-endpoint {@link AtomicLong}s that every thread updates with a compare-and-set on one shared value.
+ * Every thread hits the same {@link #URIS} endpoints, which is the worst case for contention.
+ * Run with {@code mvn test -Pbenchmark}; increments per thread are set with {@code -Dbenchmark.live.ops}.
+ */
+@Slf4j
+@Tag("benchmark")
+public class LiveCountersBenchmarkTest {
+    private static final int OPS = Integer.getInteger("benchmark.live.ops", 5_000_000);
+    private static final int URIS = 10;
+
+    @DisplayName("Замер масштабирования счётчиков посещений в реальном времени по числу потоков")
+    @Test
+    public void compareStripedAndSharedCounters() throws Exception {
+        int maxThreads = Math.max(8, Runtime.getRuntime().availableProcessors());
+        log.info("Benchmark: {} increments per thread, {} uris, {} cpus", OPS, URIS,
+                Runtime.getRuntime().availableProcessors());
+        log.info(String.format("%-8s %20s %20s", "threads", "striped, ops/s", "shared, ops/s"));
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            LiveCounters liveCounters = new LiveCounters(new LiveProperties());
+            long striped = opsPerSecond(threads, hits -> liveCounters.add(hits));
+            Map<StatsKey, AtomicLong> shared = new ConcurrentHashMap<>();
+            long contended = opsPerSecond(threads, hits -> hits.forEach(hit ->
+                    shared.computeIfAbsent(new StatsKey(hit.getApp(), hit.getUri()), key -> new AtomicLong())
+                            .incrementAndGet()));
+            log.info(String.format("%-8d %20d %20d", threads, striped, contended));
+
+            long total = liveCounters.getStats(StatsFilter.ALL, Duration.ofHours(1)).stream()
+                    .mapToLong(ViewStats::getHits)
+                    .sum();
+            assertEquals(2L * threads * OPS, total);
+        }
+    }
+
+    /**
+     * Runs a warmup and a measured round of {@link #OPS} single-hit increments on every thread.
+     */
+    private static long opsPerSecond(int threads, Consumer<List<EndpointHit>> counter) throws Exception {
+        opsNanos(threads, counter);
+        return (long) threads * OPS * 1_000_000_000L / opsNanos(threads, counter);
+    }
+
+    private static long opsNanos(int threads, Consumer<List<EndpointHit>> counter) throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<List<EndpointHit>> hits = new ArrayList<>();
+            for (int i = 0; i < URIS; i++) {
+                hits.add(List.of(new EndpointHit(null, "ewm-main-service", "/events/" + i, "10.0.0.1", now)));
+            }
+            Thread worker = new Thread(() -> {
+                try {
+                    barrier.await();
+                    for (int i = 0; i < OPS; i++) {
+                        counter.accept(hits.get(i % URIS));
+                    }
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        barrier.await();
+        long startNanos = System.nanoTime();
+        barrier.await();
+        long nanos = System.nanoTime() - startNanos;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return nanos;
+    }
+}
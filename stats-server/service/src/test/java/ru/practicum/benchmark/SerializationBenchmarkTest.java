@@ -0,0 +1,158 @@
+package ru.practicum.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ru.practicum.BinaryStatsReader;
+import ru.practicum.BinaryStatsWriter;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.ViewStatsDto;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.practicum.benchmark.BenchmarkSupport.medianMicros;
+
+/**
+ * Compares the encodings of the stats endpoints on the payloads they carry: a {@code POST /hits} batch of
+ * {@link BenchmarkSupport#BATCH_SIZE} hits and a {@code GET /stats} answer of {@link BenchmarkSupport#URIS} rows.
+ * Reports the body size and the median time to encode and to decode it as JSON, gzip-compressed JSON,
+ * the binary format and the gzip-compressed binary format. Run with {@code mvn test -Pbenchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+public class SerializationBenchmarkTest {
+    private static final TypeReference<List<EndpointHitDto>> HITS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<ViewStatsDto>> STATS = new TypeReference<>() {
+    };
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @DisplayName("Замер размера и скорости сериализации пакета запросов в разных форматах")
+    @Test
+    public void compareHitBatchEncodings() {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        BenchmarkSupport.forEachBatch(batch -> {
+            if (hits.isEmpty()) {
+                batch.forEach(hit -> hits.add(new EndpointHitDto(hit.getApp(), hit.getUri(), hit.getIp(),
+                        hit.getTimestamp())));
+            }
+        });
+
+        compare("hit batch", hits, new Codec<>() {
+            @Override
+            public void write(BinaryStatsWriter writer, EndpointHitDto hit) throws IOException {
+                writer.writeHit(hit);
+            }
+
+            @Override
+            public List<EndpointHitDto> read(BinaryStatsReader reader) throws IOException {
+                return reader.readHits();
+            }
+
+            @Override
+            public List<EndpointHitDto> readJson(InputStream in) throws IOException {
+                return mapper.readValue(in, HITS);
+            }
+        });
+    }
+
+    @DisplayName("Замер размера и скорости сериализации статистики в разных форматах")
+    @Test
+    public void compareStatsEncodings() {
+        Random random = new Random(42);
+        List<ViewStatsDto> stats = new ArrayList<>();
+        for (int i = 0; i < BenchmarkSupport.URIS; i++) {
+            stats.add(new ViewStatsDto("ewm-main-service", "/events/" + random.nextInt(100_000),
+                    (long) (BenchmarkSupport.HITS / Math.pow(i + 1, 1.2))));
+        }
+
+        compare("stats", stats, new Codec<>() {
+            @Override
+            public void write(BinaryStatsWriter writer, ViewStatsDto row) throws IOException {
+                writer.writeStats(row);
+            }
+
+            @Override
+            public List<ViewStatsDto> read(BinaryStatsReader reader) throws IOException {
+                return reader.readAllStats();
+            }
+
+            @Override
+            public List<ViewStatsDto> readJson(InputStream in) throws IOException {
+                return mapper.readValue(in, STATS);
+            }
+        });
+    }
+
+    private <T> void compare(String payload, List<T> values, Codec<T> codec) {
+        Map<String, long[]> results = new LinkedHashMap<>();
+        for (String encoding : List.of("json", "json+gzip", "binary", "binary+gzip")) {
+            boolean binary = encoding.startsWith("binary");
+            boolean gzip = encoding.endsWith("gzip");
+            byte[] body = encode(values, codec, binary, gzip);
+            assertEquals(values, decode(body, codec, binary, gzip));
+            results.put(encoding, new long[]{
+                    body.length,
+                    medianMicros(() -> encode(values, codec, binary, gzip)),
+                    medianMicros(() -> decode(body, codec, binary, gzip))});
+        }
+
+        log.info("Benchmark: {} of {} values", payload, values.size());
+        log.info(String.format("%-16s %12s %12s %12s", "", "bytes", "encode, us", "decode, us"));
+        results.forEach((encoding, result) -> log.info(String.format("%-16s %12d %12d %12d", encoding,
+                result[0], result[1], result[2])));
+    }
+
+    private <T> byte[] encode(List<T> values, Codec<T> codec, boolean binary, boolean gzip) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = gzip ? new GZIPOutputStream(bytes) : null) {
+            if (binary) {
+                BinaryStatsWriter writer = new BinaryStatsWriter(new BufferedOutputStream(out == null ? bytes : out));
+                for (T value : values) {
+                    codec.write(writer, value);
+                }
+                writer.flush();
+            } else {
+                mapper.writeValue(out == null ? bytes : out, values);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private <T> List<T> decode(byte[] body, Codec<T> codec, boolean binary, boolean gzip) {
+        try (InputStream in = gzip ? new GZIPInputStream(new ByteArrayInputStream(body))
+                : new ByteArrayInputStream(body)) {
+            return binary ? codec.read(new BinaryStatsReader(new BufferedInputStream(in))) : codec.readJson(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface Codec<T> {
+        void write(BinaryStatsWriter writer, T value) throws IOException;
+
+        List<T> read(BinaryStatsReader reader) throws IOException;
+
+        List<T> readJson(InputStream in) throws IOException;
+    }
+}
@@ -0,0 +1,90 @@
+package ru.practicum.controller;
+
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.RebuildStatusDto;
+import ru.practicum.config.GzipProperties;
+import ru.practicum.exception.RebuildInProgressException;
+import ru.practicum.service.AggregateRebuild;
+
+import java.time.LocalDate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(RebuildController.class)
+@EnableConfigurationProperties(GzipProperties.class)
+public class RebuildControllerTest {
+    @Autowired
+    private MockMvc mvc;
+    @MockBean
+    private AggregateRebuild aggregateRebuild;
+
+    @DisplayName("Должен запустить пересборку агрегатов")
+    @Test
+    @SneakyThrows
+    public void shouldStartRebuild() {
+        RebuildStatusDto status = RebuildStatusDto.builder()
+                .state("RUNNING")
+                .from(LocalDate.of(2024, 6, 1))
+                .to(LocalDate.of(2024, 6, 30))
+                .days(30)
+                .daysResumed(10)
+                .percent(100.0 / 3)
+                .build();
+        when(aggregateRebuild.start(any(), any(), eq(true))).thenReturn(status);
+
+        mvc.perform(post("/admin/rebuild")
+                        .param("from", "2024-06-01")
+                        .param("to", "2024-06-30"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.state").value("RUNNING"))
+                .andExpect(jsonPath("$.from").value("2024-06-01"))
+                .andExpect(jsonPath("$.to").value("2024-06-30"))
+                .andExpect(jsonPath("$.daysResumed").value(10));
+
+        verify(aggregateRebuild).start(LocalDate.of(2024, 6, 1), LocalDate.of(2024, 6, 30), true);
+    }
+
+    @DisplayName("Должен вернуть 409, если пересборка уже идет")
+    @Test
+    @SneakyThrows
+    public void shouldReturnConflictWhenRebuildIsRunning() {
+        when(aggregateRebuild.start(any(), any(), eq(false)))
+                .thenThrow(new RebuildInProgressException("An aggregate rebuild is already running"));
+
+        mvc.perform(post("/admin/rebuild").param("resume", "false"))
+                .andExpect(status().isConflict());
+    }
+
+    @DisplayName("Должен вернуть ход пересборки")
+    @Test
+    @SneakyThrows
+    public void shouldGetRebuildStatus() {
+        when(aggregateRebuild.status()).thenReturn(RebuildStatusDto.builder()
+                .state("FINISHED")
+                .rows(1500)
+                .rowsPerSecond(750.0)
+                .percent(100.0)
+                .build());
+
+        mvc.perform(get("/admin/rebuild"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("FINISHED"))
+                .andExpect(jsonPath("$.rows").value(1500))
+                .andExpect(jsonPath("$.rowsPerSecond").value(750.0))
+                .andExpect(jsonPath("$.percent").value(100.0));
+    }
+}
@@ -6,25 +6,60 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.BinaryStatsFormat;
+import ru.practicum.BinaryStatsReader;
+import ru.practicum.BinaryStatsWriter;
 import ru.practicum.EndpointHitDto;
+import ru.practicum.EntityStartDto;
+import ru.practicum.EntityStatsDto;
+import ru.practicum.EntityStatsQueryDto;
+import ru.practicum.HitSeriesDto;
+import ru.practicum.StatsQueryDto;
+import ru.practicum.UriStartDto;
+import ru.practicum.ViewSeriesDto;
 import ru.practicum.ViewStatsDto;
+import ru.practicum.config.GzipProperties;
+import ru.practicum.exception.IngestionOverloadedException;
+import ru.practicum.exception.InvalidUriPatternException;
+import ru.practicum.exception.ResponseAbortedException;
+import ru.practicum.model.Granularity;
 import ru.practicum.service.StatsService;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
 
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static ru.practicum.Constant.FORMATTER;
 
-@WebMvcTest(StatsController.class)
+@WebMvcTest(value = StatsController.class, properties = "stats.ingest.gzip.max-inflated-size=64KB")
+@EnableConfigurationProperties(GzipProperties.class)
 public class StatsControllerTest {
     @Autowired
     private MockMvc mvc;
@@ -55,6 +90,228 @@ public class StatsControllerTest {
         verify(statsService).createHit(any());
     }
 
+    @DisplayName("Должен сохранить пакет информации о запросах к эндпоинтам")
+    @Test
+    @SneakyThrows
+    public void shouldCreateHits() {
+        List<EndpointHitDto> endpointHitDtos = List.of(
+                new EndpointHitDto("ewm-main-service", "/events/1", "121.0.0.1",
+                        LocalDateTime.of(2024,6,16, 10, 51, 2)),
+                new EndpointHitDto("ewm-main-service", "/events/2", "121.0.0.1",
+                        LocalDateTime.of(2024,6,16, 10, 51, 2)));
+
+        when(statsService.createHits(anyList())).thenReturn(endpointHitDtos);
+
+        mvc.perform(post("/hits")
+                        .content(mapper.writeValueAsString(endpointHitDtos))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$[0].uri").value(endpointHitDtos.get(0).getUri()))
+                .andExpect(jsonPath("$[1].uri").value(endpointHitDtos.get(1).getUri()));
+
+        verify(statsService).createHits(anyList());
+    }
+
+    @DisplayName("Должен сохранить пакет запросов, переданный в двоичном формате")
+    @Test
+    @SneakyThrows
+    public void shouldCreateHitsFromBinary() {
+        List<EndpointHitDto> endpointHitDtos = List.of(
+                new EndpointHitDto("ewm-main-service", "/events/1", "121.0.0.1",
+                        LocalDateTime.of(2024,6,16, 10, 51, 2)),
+                new EndpointHitDto("ewm-main-service", "/events/2", "2001:db8::1",
+                        LocalDateTime.of(2024,6,16, 10, 51, 3)));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        BinaryStatsWriter writer = new BinaryStatsWriter(body);
+        for (EndpointHitDto endpointHitDto : endpointHitDtos) {
+            writer.writeHit(endpointHitDto);
+        }
+
+        when(statsService.createHits(anyList())).thenReturn(endpointHitDtos);
+
+        mvc.perform(post("/hits")
+                        .content(body.toByteArray())
+                        .contentType(BinaryStatsFormat.MEDIA_TYPE)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$[1].ip").value("2001:db8::1"));
+
+        verify(statsService).createHits(endpointHitDtos);
+    }
+
+    @DisplayName("Должен сохранить пакет запросов, переданный в сжатом gzip JSON")
+    @Test
+    @SneakyThrows
+    public void shouldCreateHitsFromGzipJson() {
+        List<EndpointHitDto> endpointHitDtos = List.of(
+                new EndpointHitDto("ewm-main-service", "/events/1", "121.0.0.1",
+                        LocalDateTime.of(2024,6,16, 10, 51, 2)));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(body)) {
+            mapper.writeValue(gzip, endpointHitDtos);
+        }
+
+        when(statsService.createHits(anyList())).thenReturn(endpointHitDtos);
+
+        mvc.perform(post("/hits")
+                        .content(body.toByteArray())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$[0].uri").value("/events/1"));
+
+        verify(statsService).createHits(endpointHitDtos);
+    }
+
+    @DisplayName("Должен отклонить сжатое тело, которое распаковывается больше допустимого размера")
+    @Test
+    @SneakyThrows
+    public void shouldRejectGzipBodyInflatingPastLimit() {
+        EndpointHitDto endpointHitDto = new EndpointHitDto("ewm-main-service", "/events/" + "1".repeat(100_000),
+                "121.0.0.1", LocalDateTime.of(2024,6,16, 10, 51, 2));
+        String line = mapper.writeValueAsString(new EndpointHitDto("ewm-main-service", "/events/1", "121.0.0.1",
+                LocalDateTime.of(2024,6,16, 10, 51, 2))) + "\n";
+        List<EndpointHitDto> imported = importHits();
+
+        mvc.perform(post("/hits")
+                        .content(gzip(mapper.writeValueAsBytes(List.of(endpointHitDto))))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(status().isPayloadTooLarge());
+        mvc.perform(post("/hits/import")
+                        .content(gzip(line.repeat(2000).getBytes(StandardCharsets.UTF_8)))
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(jsonPath("$.message").value(startsWith("Inflated request body exceeds")));
+
+        verify(statsService, never()).createHits(anyList());
+        assertTrue(imported.size() < 2000);
+    }
+
+    @DisplayName("Должен загрузить запросы из NDJSON по мере чтения тела")
+    @Test
+    @SneakyThrows
+    public void shouldImportHitsFromNdjson() {
+        List<EndpointHitDto> endpointHitDtos = List.of(
+                new EndpointHitDto("ewm-main-service", "/events/1", "121.0.0.1",
+                        LocalDateTime.of(2024,6,16, 10, 51, 2)),
+                new EndpointHitDto("ewm-main-service", "/events/2", "2001:db8::1",
+                        LocalDateTime.of(2024,6,16, 10, 51, 3)));
+        List<EndpointHitDto> imported = importHits();
+
+        mvc.perform(post("/hits/import")
+                        .content(mapper.writeValueAsString(endpointHitDtos.get(0)) + "\n"
+                                + mapper.writeValueAsString(endpointHitDtos.get(1)) + "\n")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.hits").value(2));
+
+        assertEquals(endpointHitDtos, imported);
+    }
+
+    @DisplayName("Должен отклонить загрузку с некорректным запросом и указать его строку")
+    @Test
+    @SneakyThrows
+    public void shouldNotImportInvalidHits() {
+        String valid = mapper.writeValueAsString(new EndpointHitDto("ewm-main-service", "/events/1", "121.0.0.1",
+                LocalDateTime.of(2024,6,16, 10, 51, 2)));
+        List<EndpointHitDto> imported = importHits();
+
+        mvc.perform(post("/hits/import")
+                        .content(valid + "\n" + valid.replace("/events/1", " ") + "\n")
+                        .contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid hit on line 2: uri must not be blank"));
+        mvc.perform(post("/hits/import")
+                        .content(valid + "\n" + valid + "\n{\"app\": ")
+                        .contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(startsWith("Malformed hit on line 3")));
+
+        assertEquals(3, imported.size());
+    }
+
+    @DisplayName("Должен выгрузить сырые запросы диапазона в NDJSON")
+    @Test
+    @SneakyThrows
+    public void shouldExportHitsAsNdjson() {
+        List<EndpointHitDto> endpointHitDtos = List.of(
+                new EndpointHitDto("ewm-main-service", "/events/1", "121.0.0.1",
+                        LocalDateTime.of(2024,6,16, 10, 51, 2)),
+                new EndpointHitDto("ewm-main-service", "/events/2", "121.0.0.2",
+                        LocalDateTime.of(2024,6,16, 10, 51, 3)));
+        doAnswer(invocation -> {
+            endpointHitDtos.forEach(invocation.<Consumer<EndpointHitDto>>getArgument(2));
+            return null;
+        }).when(statsService).exportHits(any(), any(), any());
+
+        mvc.perform(get("/hits/export?start=2024-06-16 00:00:00&end=2024-06-17 00:00:00")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(mapper.writeValueAsString(endpointHitDtos.get(0)) + "\n"
+                        + mapper.writeValueAsString(endpointHitDtos.get(1)) + "\n"));
+
+        verify(statsService).exportHits(eq(LocalDateTime.of(2024, 6, 16, 0, 0)),
+                eq(LocalDateTime.of(2024, 6, 17, 0, 0)), any());
+    }
+
+    @DisplayName("Должен отклонить поврежденный двоичный пакет")
+    @Test
+    @SneakyThrows
+    public void shouldNotCreateHitsFromMalformedBinary() {
+        mvc.perform(post("/hits")
+                        .content(new byte[]{BinaryStatsFormat.VERSION, 0, 42})
+                        .contentType(BinaryStatsFormat.MEDIA_TYPE))
+                .andExpect(status().isBadRequest());
+
+        verify(statsService, never()).createHits(anyList());
+    }
+
+    @DisplayName("Должен вернуть 429 с Retry-After, если прием запросов перегружен")
+    @Test
+    @SneakyThrows
+    public void shouldReturnTooManyRequestsWhenIngestionIsSaturated() {
+        EndpointHitDto endpointHitDto = new EndpointHitDto("ewm-main-service", "/events/1", "121.0.0.1",
+                LocalDateTime.of(2024,6,16, 10, 51, 2));
+
+        when(statsService.createHit(any()))
+                .thenThrow(new IngestionOverloadedException("Hit ingestion is saturated", Duration.ofSeconds(2)));
+
+        mvc.perform(post("/hit")
+                        .content(mapper.writeValueAsString(endpointHitDto))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"));
+    }
+
+    @DisplayName("Должен отклонить пакет, если один из запросов не прошёл валидацию")
+    @Test
+    @SneakyThrows
+    public void shouldNotCreateHitsWhenOneIsInvalid() {
+        List<EndpointHitDto> endpointHitDtos = List.of(
+                new EndpointHitDto("ewm-main-service", "/events/1", "121.0.0.1",
+                        LocalDateTime.of(2024,6,16, 10, 51, 2)),
+                new EndpointHitDto("ewm-main-service", "", "121.0.0.1",
+                        LocalDateTime.of(2024,6,16, 10, 51, 2)));
+
+        mvc.perform(post("/hits")
+                        .content(mapper.writeValueAsString(endpointHitDtos))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verify(statsService, never()).createHits(anyList());
+    }
+
     @DisplayName("Должен получить статистику по посещениям с указанием количества уникальных ip по конкретным uris")
     @Test
     @SneakyThrows
@@ -65,7 +322,7 @@ public class StatsControllerTest {
         String uris = "/events/1";
         Boolean unique = true;
 
-        when(statsService.getStats(any(), any(), anyList(), anyBoolean())).thenReturn(viewStatsDto);
+        streamStats(viewStatsDto);
 
         mvc.perform(get("/stats?start=" + start + "&end=" + end + "&uris=" + uris + "&unique=" + unique,
                         start, end, uris, unique)
@@ -76,6 +333,236 @@ public class StatsControllerTest {
                 .andExpect(jsonPath("$[0].uri").value(viewStatsDto.get(0).getUri()))
                 .andExpect(jsonPath("$[0].hits").value(viewStatsDto.get(0).getHits()));
 
-        verify(statsService).getStats(any(), any(), anyList(), anyBoolean());
+        verify(statsService).streamStats(any(), any(), anyList(), any(), anyBoolean(), anyBoolean(), any());
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Получение статистики в формате NDJSON")
+    public void shouldGetStatsAsNdjson() {
+        List<ViewStatsDto> viewStatsDto = List.of(new ViewStatsDto("ewm-main-service", "/events/1", 2L),
+                new ViewStatsDto("ewm-main-service", "/events/2", 1L));
+        streamStats(viewStatsDto);
+
+        mvc.perform(get("/stats?start=2024-05-16 10:51:02&end=2024-06-16 10:51:02&uris=/events/1,/events/2")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(mapper.writeValueAsString(viewStatsDto.get(0)) + "\n"
+                        + mapper.writeValueAsString(viewStatsDto.get(1)) + "\n"));
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Получение статистики в двоичном формате")
+    public void shouldGetStatsAsBinary() {
+        List<ViewStatsDto> viewStatsDto = List.of(new ViewStatsDto("ewm-main-service", "/events/1", 2L),
+                new ViewStatsDto("ewm-main-service", "/events/2", 1L));
+        streamStats(viewStatsDto);
+
+        byte[] body = mvc.perform(get("/stats?start=2024-05-16 10:51:02&end=2024-06-16 10:51:02" +
+                        "&uris=/events/1,/events/2")
+                        .accept(BinaryStatsFormat.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BinaryStatsFormat.MEDIA_TYPE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(viewStatsDto, new BinaryStatsReader(new ByteArrayInputStream(body)).readAllStats());
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Ошибка до отправки ответа должна вернуться обычным ответом об ошибке без части статистики")
+    public void shouldReportErrorBeforeStatsAreSent() {
+        doAnswer(invocation -> {
+            invocation.<Consumer<ViewStatsDto>>getArgument(6).accept(new ViewStatsDto("ewm", "/events/1", 2L));
+            throw new InvalidUriPatternException("Invalid uri pattern: /events/**");
+        }).when(statsService).streamStats(any(), any(), any(), any(), anyBoolean(), anyBoolean(), any());
+
+        mvc.perform(get("/stats?start=2024-05-16 10:51:02&end=2024-06-16 10:51:02&uris=/events/**"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(startsWith("{")))
+                .andExpect(jsonPath("$.message").value("Invalid uri pattern: /events/**"));
+    }
+
+    @Test
+    @DisplayName("Ошибка после отправки части статистики должна оборвать ответ, а не завершить его")
+    public void shouldAbortStatsAfterPartIsSent() {
+        doAnswer(invocation -> {
+            for (int i = 0; i < 2_000; i++) {
+                invocation.<Consumer<ViewStatsDto>>getArgument(6).accept(new ViewStatsDto("ewm", "/events/" + i, 1L));
+            }
+            throw new IllegalStateException("Connection reset");
+        }).when(statsService).streamStats(any(), any(), any(), any(), anyBoolean(), anyBoolean(), any());
+
+        Exception e = assertThrows(Exception.class,
+                () -> mvc.perform(get("/stats?start=2024-05-16 10:51:02&end=2024-06-16 10:51:02")));
+
+        assertInstanceOf(ResponseAbortedException.class, e.getCause());
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Получение статистики по uri с собственным началом для каждого")
+    public void shouldGetStatsOfQuery() {
+        StatsQueryDto statsQueryDto = new StatsQueryDto(List.of(
+                new UriStartDto("/events/1", LocalDateTime.of(2024, 5, 1, 10, 0)),
+                new UriStartDto("/events/2", LocalDateTime.of(2024, 5, 3, 12, 0))),
+                LocalDateTime.of(2024, 6, 1, 0, 0), true);
+        List<ViewStatsDto> viewStatsDto = List.of(new ViewStatsDto("ewm-main-service", "/events/2", 7L));
+        when(statsService.getStats(any(StatsQueryDto.class))).thenReturn(viewStatsDto);
+
+        mvc.perform(post("/stats/query")
+                        .content(mapper.writeValueAsString(statsQueryDto))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].uri").value("/events/2"))
+                .andExpect(jsonPath("$[0].hits").value(7));
+
+        verify(statsService).getStats(statsQueryDto);
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Пакетный запрос без uri должен отклоняться")
+    public void shouldNotGetStatsOfEmptyQuery() {
+        StatsQueryDto statsQueryDto = new StatsQueryDto(List.of(), LocalDateTime.of(2024, 6, 1, 0, 0), false);
+
+        mvc.perform(post("/stats/query")
+                        .content(mapper.writeValueAsString(statsQueryDto))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verify(statsService, never()).getStats(any(StatsQueryDto.class));
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Получение просмотров сущностей по числовым id")
+    public void shouldGetEntityStats() {
+        EntityStatsQueryDto entityStatsQueryDto = new EntityStatsQueryDto("ewm-main-service", "events",
+                List.of(new EntityStartDto(1L, LocalDateTime.of(2024, 5, 1, 10, 0)),
+                        new EntityStartDto(2L, LocalDateTime.of(2024, 5, 3, 12, 0))),
+                LocalDateTime.of(2024, 6, 1, 0, 0), true);
+        when(statsService.getEntityStats(any(EntityStatsQueryDto.class)))
+                .thenReturn(new EntityStatsDto("events", new long[]{2L}, new long[]{7L}));
+
+        mvc.perform(post("/stats/entities")
+                        .content(mapper.writeValueAsString(entityStatsQueryDto))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.entityType").value("events"))
+                .andExpect(jsonPath("$.ids[0]").value(2))
+                .andExpect(jsonPath("$.hits[0]").value(7));
+
+        verify(statsService).getEntityStats(entityStatsQueryDto);
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Запрос просмотров сущности без id должен отклоняться")
+    public void shouldNotGetEntityStatsWithoutId() {
+        EntityStatsQueryDto entityStatsQueryDto = new EntityStatsQueryDto(null, "events",
+                List.of(new EntityStartDto(null, LocalDateTime.of(2024, 5, 1, 10, 0))),
+                LocalDateTime.of(2024, 6, 1, 0, 0), false);
+
+        mvc.perform(post("/stats/entities")
+                        .content(mapper.writeValueAsString(entityStatsQueryDto))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verify(statsService, never()).getEntityStats(any(EntityStatsQueryDto.class));
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Получение самых посещаемых эндпоинтов")
+    public void shouldGetTopStats() {
+        List<ViewStatsDto> viewStatsDto = List.of(new ViewStatsDto("ewm-main-service", "/events/1", 3L));
+        when(statsService.getTopStats(any(), any(), anyInt(), anyBoolean())).thenReturn(viewStatsDto);
+
+        mvc.perform(get("/stats/top?start=2024-05-16 00:00:00&end=2024-05-16 23:59:59&n=1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].uri").value("/events/1"))
+                .andExpect(jsonPath("$[0].hits").value(3));
+
+        verify(statsService).getTopStats(any(), any(), eq(1), eq(false));
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Размер топа должен быть положительным")
+    public void shouldNotGetTopStatsWithNonPositiveN() {
+        mvc.perform(get("/stats/top?start=2024-05-16 00:00:00&end=2024-05-16 23:59:59&n=0"))
+                .andExpect(status().isBadRequest());
+
+        verify(statsService, never()).getTopStats(any(), any(), anyInt(), anyBoolean());
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Получение ряда посещений по часам")
+    public void shouldGetStatsSeries() {
+        ViewSeriesDto viewSeriesDto = new ViewSeriesDto(LocalDateTime.of(2024, 5, 16, 10, 0), "HOUR",
+                List.of(new HitSeriesDto("ewm-main-service", "/events/1", new long[]{2, 0, 5})));
+        when(statsService.getStatsSeries(any(), any(), anyList(), any(), any(), anyBoolean())).thenReturn(viewSeriesDto);
+
+        mvc.perform(get("/stats/series?start=2024-05-16 10:30:00&end=2024-05-16 12:10:00&uris=/events/1" +
+                        "&interval=HOUR")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.start").value("2024-05-16 10:00:00"))
+                .andExpect(jsonPath("$.interval").value("HOUR"))
+                .andExpect(jsonPath("$.series[0].uri").value("/events/1"))
+                .andExpect(jsonPath("$.series[0].hits[2]").value(5));
+
+        verify(statsService).getStatsSeries(any(), any(), eq(List.of("/events/1")), isNull(), eq(Granularity.HOUR),
+                eq(false));
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Получение посещений за последние минуты")
+    public void shouldGetLiveStats() {
+        List<ViewStatsDto> viewStatsDto = List.of(new ViewStatsDto("ewm-main-service", "/events/1", 4L));
+        when(statsService.getLiveStats(anyList(), any(), any())).thenReturn(viewStatsDto);
+
+        mvc.perform(get("/stats/live?uris=/events/1&window=PT5M")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].hits").value(4));
+
+        verify(statsService).getLiveStats(List.of("/events/1"), null, Duration.ofMinutes(5));
+    }
+
+    @SneakyThrows
+    private byte[] gzip(byte[] content) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(body)) {
+            gzip.write(content);
+        }
+        return body.toByteArray();
+    }
+
+    private List<EndpointHitDto> importHits() {
+        List<EndpointHitDto> imported = new ArrayList<>();
+        when(statsService.importHits(any())).thenAnswer(invocation -> {
+            long before = imported.size();
+            invocation.<Iterator<EndpointHitDto>>getArgument(0).forEachRemaining(imported::add);
+            return imported.size() - before;
+        });
+        return imported;
+    }
+
+    private void streamStats(List<ViewStatsDto> viewStatsDto) {
+        doAnswer(invocation -> {
+            viewStatsDto.forEach(invocation.<Consumer<ViewStatsDto>>getArgument(6));
+            return null;
+        }).when(statsService).streamStats(any(), any(), anyList(), any(), anyBoolean(), anyBoolean(), any());
     }
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+package ru.practicum.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.sketch.RoaringBitmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ArchiveSegmentTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 6, 1, 0, 0);
+
+    @DisplayName("Должен восстанавливать сегмент, упорядоченный по времени, из записанных столбцов")
+    @Test
+    public void shouldReadWrittenSegment() throws IOException {
+        ArchiveSegment segment = new ArchiveSegment.Builder(42)
+                .add(micros(DAY.plusHours(3)), 1, 7, 300_000)
+                .add(micros(DAY.plusNanos(123_456_000)), 2, 8, 5)
+                .add(micros(DAY.plusHours(1)), 1, 7, Integer.MAX_VALUE)
+                .build();
+
+        ArchiveSegment read = ArchiveSegment.read(ByteBuffer.wrap(write(segment)));
+
+        assertEquals(42, read.getLastId());
+        assertEquals(3, read.size());
+        assertEquals(DAY.plusNanos(123_456_000), ArchiveSegment.toLocalDateTime(read.timestamp(0)));
+        assertEquals(micros(DAY.plusHours(1)), read.timestamp(1));
+        assertEquals(micros(DAY.plusHours(3)), read.timestamp(2));
+        assertEquals(2, read.app(0));
+        assertEquals(8, read.uri(0));
+        assertEquals(Integer.MAX_VALUE, read.ip(1));
+        assertEquals(300_000, read.ip(2));
+        assertEquals(2, read.endpointCount());
+    }
+
+    @DisplayName("Должен считать просмотры и ip по конечным точкам в полуоткрытом диапазоне строк")
+    @Test
+    public void shouldCountHitsAndIpsOfRange() {
+        ArchiveSegment.Builder builder = new ArchiveSegment.Builder(0);
+        for (int hour = 0; hour < 24; hour++) {
+            builder.add(micros(DAY.plusHours(hour)), 1, hour % 2, hour % 3);
+        }
+        ArchiveSegment segment = builder.build();
+        int from = segment.indexOf(micros(DAY.plusHours(6)));
+        int to = segment.indexOf(micros(DAY.plusHours(12)));
+
+        long[] counts = new long[segment.endpointCount()];
+        segment.countHits(from, to, counts);
+        RoaringBitmap[] bitmaps = new RoaringBitmap[segment.endpointCount()];
+        bitmaps[0] = new RoaringBitmap();
+        segment.addIps(from, to, bitmaps);
+
+        assertEquals(6, from);
+        assertEquals(12, to);
+        assertEquals(24, segment.indexOf(micros(DAY.plusDays(1))));
+        assertEquals(ArchiveSegment.endpointKey(1, 0), segment.endpointKey(0));
+        assertEquals(6, Arrays.stream(counts).sum());
+        assertEquals(3, counts[0]);
+        assertEquals(3, bitmaps[0].cardinality());
+        assertNull(bitmaps[1]);
+    }
+
+    @DisplayName("Столбцы должны занимать заметно меньше строк таблицы endpoint")
+    @Test
+    public void shouldBeSmallerThanRows() throws IOException {
+        ArchiveSegment.Builder builder = new ArchiveSegment.Builder(0);
+        for (int i = 0; i < 10_000; i++) {
+            builder.add(micros(DAY.plusSeconds(i * 8L)), 1, i % 1000, i % 3000);
+        }
+
+        // id, app_id, uri_id, ip of an IPv4 address and timestamp of a row
+        assertTrue(write(builder.build()).length < 10_000 * (8 + 4 + 4 + 4 + 8) / 2);
+    }
+
+    @DisplayName("Обрезанный сегмент должен приводить к ошибке")
+    @Test
+    public void shouldFailOnTruncatedSegment() throws IOException {
+        byte[] bytes = write(new ArchiveSegment.Builder(0)
+                .add(micros(DAY), 1, 1, 1)
+                .add(micros(DAY.plusHours(1)), 1, 2, 3)
+                .build());
+
+        IOException e = assertThrows(IOException.class,
+                () -> ArchiveSegment.read(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 1))));
+
+        assertTrue(e.getMessage().contains("length") || e.getMessage().contains("truncated"));
+        bytes[4] = 42;
+        assertThrows(IOException.class, () -> ArchiveSegment.read(ByteBuffer.wrap(bytes)));
+    }
+
+    private static long micros(LocalDateTime timestamp) {
+        return ArchiveSegment.toMicros(timestamp);
+    }
+
+    private static byte[] write(ArchiveSegment segment) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            segment.write(out);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,26 @@
+package ru.practicum.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class EntityKeyTest {
+    @DisplayName("Должен извлекать тип и числовой id сущности из uri")
+    @Test
+    public void shouldParseEntityUri() {
+        assertEquals(new EntityKey("events", 42L), EntityKey.fromUri("/events/42"));
+        assertEquals(new EntityKey("compilations", 999999999999999999L),
+                EntityKey.fromUri("/compilations/999999999999999999"));
+    }
+
+    @DisplayName("Не должен считать сущностью uri другого вида")
+    @Test
+    public void shouldIgnoreOtherUris() {
+        for (String uri : new String[]{"/events", "/events/", "/events/0", "/events/01", "/events/1/requests",
+                "/events/abc", "/Events/1", "events/1", "/events/1000000000000000000"}) {
+            assertNull(EntityKey.fromUri(uri), uri);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.practicum.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.exception.InvalidHitFrameException;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HitFramesTest {
+    @DisplayName("Должен восстанавливать запрос из закодированного кадра")
+    @Test
+    public void shouldDecodeEncodedFrame() {
+        EndpointHitDto ipv4 = new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.1",
+                LocalDateTime.of(2024, 6, 16, 10, 51, 2));
+        EndpointHitDto ipv6 = new EndpointHitDto("ewm-main-service", "/события/2", "2001:db8:0:0:0:0:0:1",
+                LocalDateTime.of(1969, 12, 31, 23, 59, 59));
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        HitFrames.encode(ipv4, buffer);
+        HitFrames.encode(ipv6, buffer);
+        buffer.flip();
+
+        assertEquals(ipv4, HitFrames.decode(buffer, buffer.getInt()));
+        assertEquals(ipv6, HitFrames.decode(buffer, buffer.getInt()));
+        assertEquals(0, buffer.remaining());
+    }
+
+    @DisplayName("Должен отклонять кадр с длиной текста за пределами кадра и оставлять буфер после него")
+    @Test
+    public void shouldRejectTextOutsideFrame() {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        HitFrames.encode(new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.1",
+                LocalDateTime.of(2024, 6, 16, 10, 51, 2)), buffer);
+        buffer.flip();
+        int length = buffer.getInt();
+        buffer.putShort(HitFrames.HEADER_LENGTH + Long.BYTES + IpAddresses.LENGTH, (short) 500);
+
+        assertThrows(InvalidHitFrameException.class, () -> HitFrames.decode(buffer, length));
+        assertEquals(0, buffer.remaining());
+    }
+}
@@ -0,0 +1,35 @@
+package ru.practicum.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.exception.InvalidIpAddressException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class IpAddressesTest {
+    @DisplayName("Должен хранить ip в 16 байтах и восстанавливать его в нормализованном виде")
+    @Test
+    public void shouldConvertToBytesAndBack() {
+        assertEquals(IpAddresses.LENGTH, IpAddresses.toBytes("121.0.0.2").length);
+        assertEquals("121.0.0.2", IpAddresses.toString(IpAddresses.toBytes("121.0.0.2")));
+        assertEquals("255.255.255.255", IpAddresses.normalize("255.255.255.255"));
+        assertEquals("0:0:0:0:0:0:0:1", IpAddresses.normalize("::1"));
+        assertEquals("2001:db8:0:0:0:0:0:1", IpAddresses.normalize("2001:DB8::1"));
+        assertEquals("10.0.0.1", IpAddresses.normalize("::ffff:10.0.0.1"));
+        assertEquals("0:0:0:0:0:0:0:0", IpAddresses.normalize("::"));
+        assertEquals("1:0:0:0:0:0:0:0", IpAddresses.normalize("1::"));
+        assertEquals("1:2:3:4:5:6:7:8", IpAddresses.normalize("1:2:3:4:5:6:7:8"));
+        assertEquals("1:2:3:4:5:6:102:304", IpAddresses.normalize("1:2:3:4:5:6:1.2.3.4"));
+    }
+
+    @DisplayName("Должен отклонять строки, не являющиеся ip")
+    @Test
+    public void shouldRejectInvalidIp() {
+        for (String ip : new String[]{"", "121.0.0", "121.0.0.256", "121.0.0.a", "localhost", "1:2:3",
+                "example.com", "1:2:3:4:5:6:7:8:9", "1::2::3", ":1::", "1::2:", "12345::", "fe80::1%eth0",
+                "1.2.3.4::", "::1.2.3", "1:2:3:4:5:6:7::8", "::g"}) {
+            assertThrows(InvalidIpAddressException.class, () -> IpAddresses.toBytes(ip), ip);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ru.practicum.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.exception.InvalidUriPatternException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatsFilterTest {
+    @DisplayName("Должен разделять точные uri и префиксы и сравнивать фильтры без учёта порядка")
+    @Test
+    public void shouldSplitExactUrisAndPrefixes() {
+        StatsFilter filter = StatsFilter.of("ewm", List.of("/users/1", "/events/*", "/events/2", "/compilations/*"));
+
+        assertEquals(List.of("/users/1"), filter.getUris());
+        assertEquals(List.of("/compilations/", "/events/"), filter.getPrefixes());
+        assertEquals(filter, StatsFilter.of("ewm", List.of("/compilations/*", "/users/1", "/events/*")));
+        assertEquals(StatsFilter.ALL, StatsFilter.of(null, List.of("/events/1", "*")));
+        assertTrue(StatsFilter.of(null, null).isAll());
+        assertFalse(StatsFilter.of("ewm", null).isAll());
+    }
+
+    @DisplayName("Должен сопоставлять приложение, точные uri и префиксы")
+    @Test
+    public void shouldMatchAppAndUris() {
+        StatsFilter filter = StatsFilter.of("ewm", List.of("/events/*", "/users/1"));
+
+        assertTrue(filter.matches("ewm", "/events/1"));
+        assertTrue(filter.matches("ewm", "/users/1"));
+        assertFalse(filter.matches("ewm", "/events"));
+        assertFalse(filter.matches("ewm", "/users/10"));
+        assertFalse(filter.matches("ewm-admin", "/events/1"));
+        assertTrue(StatsFilter.of(null, List.of("/events")).matches("ewm", "/events"));
+        assertFalse(StatsFilter.of(null, List.of("/events")).matches("ewm", "/events/1"));
+    }
+
+    @DisplayName("Должен отклонять * не в конце uri")
+    @Test
+    public void shouldRejectInnerWildcard() {
+        assertThrows(InvalidUriPatternException.class, () -> StatsFilter.of(null, List.of("/events/*/requests")));
+        assertThrows(InvalidUriPatternException.class, () -> StatsFilter.of(null, List.of("/events/**")));
+    }
+}
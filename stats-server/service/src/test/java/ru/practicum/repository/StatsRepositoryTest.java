@@ -5,7 +5,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import ru.practicum.config.DatabaseConfig;
+import ru.practicum.config.DictionaryProperties;
 import ru.practicum.model.EndpointHit;
 import ru.practicum.model.ViewStats;
 
@@ -17,6 +21,8 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 @DataJpaTest
+@EnableConfigurationProperties(DictionaryProperties.class)
+@Import({DatabaseConfig.class, DictionaryRepository.class, HitDictionaries.class})
 public class StatsRepositoryTest {
     @Autowired
     private StatsRepository statsRepository;
@@ -29,7 +35,6 @@ public class StatsRepositoryTest {
     protected EndpointHit endpointHitSix;
     private LocalDateTime start;
     private LocalDateTime end;
-    private List<String> uris;
 
     @BeforeEach
     public void setUp() {
@@ -42,7 +47,6 @@ public class StatsRepositoryTest {
         endpointHitSix = new EndpointHit(null,"ewm3", "/events/3", "121.0.0.6", timestamp.plusDays(5));
         start = LocalDateTime.of(2024,1,1, 0, 0, 0);
         end = LocalDateTime.of(2024,3,1, 0, 0, 0);
-        uris = List.of("/events/2", "/events/3");
 
         statsRepository.save(endpointHitOne);
         statsRepository.save(endpointHitTwo);
@@ -52,33 +56,6 @@ public class StatsRepositoryTest {
         statsRepository.save(endpointHitSix);
     }
 
-    @DisplayName("Должен получить статистику в определенном промежутке времени по посещениям по конкретным uris")
-    @Test
-    public void findAllByDateBetweenAndUri() {
-        List<ViewStats> viewStatsList = List.of(
-                new ViewStats("ewm3", "/events/3", 3L),
-                new ViewStats("ewm2", "/events/2", 2L));
-
-        List<ViewStats> result = statsRepository.findAllByDateBetweenAndUri(start, end, uris);
-
-        assertNotNull(result);
-        assertThat(result, Matchers.is(equalTo(viewStatsList)));
-    }
-
-    @DisplayName("Должен получить статистику в определенном промежутке времени " +
-            "по посещениям с указанием количества уникальных ip по конкретным uris")
-    @Test
-    public void findAllByDateBetweenAndUriAndUniqueIp() {
-        List<ViewStats> viewStatsList = List.of(
-                new ViewStats("ewm3", "/events/3", 2L),
-                new ViewStats("ewm2", "/events/2", 1L));
-
-        List<ViewStats> result = statsRepository.findAllByDateBetweenAndUriAndUniqueIp(start, end, uris);
-
-        assertNotNull(result);
-        assertThat(result, Matchers.is(equalTo(viewStatsList)));
-    }
-
     @DisplayName("Должен получить статистику в определенном промежутке времени по посещениям")
     @Test
     public void findAllByDateBetweenStartAndEnd() {
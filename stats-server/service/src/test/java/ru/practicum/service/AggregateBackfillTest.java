@@ -0,0 +1,65 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import ru.practicum.EndpointHitDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:backfill", "stats.cache.enabled=false"},
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class AggregateBackfillTest {
+    private final AggregateBackfill aggregateBackfill;
+    private final StatsService statsService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "endpoint", "endpoint_rollup_minute", "endpoint_rollup_hour",
+                "endpoint_rollup_day", "endpoint_hll_day", "endpoint_bitmap_day", "aggregate_backfill_progress");
+        LocalDateTime timestamp = LocalDateTime.of(2024, 2, 1, 10, 0);
+        statsService.createHits(List.of(
+                new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.1", timestamp),
+                new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.2", timestamp.plusMinutes(1)),
+                new EndpointHitDto("ewm-main-service", "/events/2", "192.168.0.3", timestamp.plusHours(1))));
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "endpoint_rollup_minute", "endpoint_rollup_hour",
+                "endpoint_rollup_day");
+    }
+
+    @DisplayName("Должен заполнить пустые агрегаты по сохраненным запросам")
+    @Test
+    public void shouldBackfillEmptyAggregates() {
+        aggregateBackfill.afterSingletonsInstantiated();
+
+        for (String table : List.of("endpoint_rollup_minute", "endpoint_rollup_hour", "endpoint_rollup_day")) {
+            assertEquals(3L, jdbcTemplate.queryForObject("SELECT SUM(hits) FROM " + table, Long.class));
+        }
+        assertEquals(0, JdbcTestUtils.countRowsInTable(jdbcTemplate, "aggregate_backfill_progress"));
+    }
+
+    @DisplayName("Должен продолжить прерванное заполнение после последней записанной порции")
+    @Test
+    public void shouldResumeInterruptedBackfill() {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM endpoint ORDER BY id", Long.class);
+        jdbcTemplate.update("INSERT INTO endpoint_rollup_day (app, uri, bucket, hits) VALUES (?, ?, ?, ?)",
+                "ewm-main-service", "/events/1", LocalDateTime.of(2024, 2, 1, 0, 0), 1);
+        jdbcTemplate.update("INSERT INTO aggregate_backfill_progress (aggregator, last_id, to_id) VALUES (?, ?, ?)",
+                "RollupAggregator", ids.get(0), ids.get(2));
+
+        aggregateBackfill.afterSingletonsInstantiated();
+
+        assertEquals(List.of(2L, 1L), jdbcTemplate.queryForList(
+                "SELECT hits FROM endpoint_rollup_day ORDER BY uri", Long.class));
+        assertEquals(0, JdbcTestUtils.countRowsInTable(jdbcTemplate, "aggregate_backfill_progress"));
+    }
+}
@@ -0,0 +1,107 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.RebuildStatusDto;
+import ru.practicum.exception.EndTimeBeforeStartTimeException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:rebuild", "stats.cache.enabled=false"},
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class AggregateRebuildTest {
+    private final AggregateRebuild aggregateRebuild;
+    private final StatsService statsService;
+    private final JdbcTemplate jdbcTemplate;
+    private LocalDate first;
+    private LocalDate second;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "endpoint", "endpoint_rollup_minute", "endpoint_rollup_hour",
+                "endpoint_rollup_day", "endpoint_hll_day", "endpoint_bitmap_day", "aggregate_rebuild_checkpoint");
+        first = LocalDate.now().minusDays(3);
+        second = first.plusDays(1);
+        statsService.createHits(List.of(
+                new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.1", first.atTime(10, 0)),
+                new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.2", first.atTime(11, 30)),
+                new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.1", first.atTime(23, 59, 59)),
+                new EndpointHitDto("ewm-main-service", "/events/2", "192.168.0.3", second.atTime(0, 0)),
+                new EndpointHitDto("ewm-main-service", "/events/2", "192.168.0.3", second.atTime(12, 0))));
+    }
+
+    @DisplayName("Должен пересобрать агрегаты по сырым данным")
+    @Test
+    public void shouldRebuildAggregatesFromRawHits() {
+        jdbcTemplate.update("UPDATE endpoint_rollup_day SET hits = 100");
+        jdbcTemplate.update("DELETE FROM endpoint_rollup_hour");
+        jdbcTemplate.update("DELETE FROM endpoint_hll_day");
+
+        aggregateRebuild.start(first, second, false);
+        RebuildStatusDto status = await();
+
+        assertEquals("FINISHED", status.getState());
+        assertEquals(first, status.getFrom());
+        assertEquals(second, status.getTo());
+        assertEquals(2, status.getDays());
+        assertEquals(2, status.getDaysDone());
+        assertEquals(5, status.getRows());
+        assertEquals(100.0, status.getPercent());
+        for (String table : List.of("endpoint_rollup_minute", "endpoint_rollup_hour", "endpoint_rollup_day")) {
+            assertEquals(5L, jdbcTemplate.queryForObject("SELECT SUM(hits) FROM " + table, Long.class));
+        }
+        assertEquals(2, JdbcTestUtils.countRowsInTable(jdbcTemplate, "endpoint_hll_day"));
+        assertEquals(2, JdbcTestUtils.countRowsInTable(jdbcTemplate, "aggregate_rebuild_checkpoint"));
+    }
+
+    @DisplayName("Должен продолжить пересборку, пропустив уже пересобранные дни")
+    @Test
+    public void shouldResumeRebuildFromCheckpoints() {
+        aggregateRebuild.start(first, first, false);
+        await();
+        jdbcTemplate.update("UPDATE endpoint_rollup_day SET hits = 100");
+
+        aggregateRebuild.start(first, second, true);
+        RebuildStatusDto status = await();
+
+        assertEquals("FINISHED", status.getState());
+        assertEquals(2, status.getDays());
+        assertEquals(1, status.getDaysResumed());
+        assertEquals(1, status.getDaysDone());
+        assertEquals(2, status.getRows());
+        assertEquals(100.0, status.getPercent());
+        assertEquals(List.of(100L, 2L), jdbcTemplate.queryForList(
+                "SELECT hits FROM endpoint_rollup_day ORDER BY bucket", Long.class));
+    }
+
+    @DisplayName("Должен выбросить исключение, если конец пересборки раньше начала")
+    @Test
+    public void shouldThrowExceptionWhenRebuildEndsBeforeStart() {
+        assertThrows(EndTimeBeforeStartTimeException.class, () -> aggregateRebuild.start(second, first, true));
+    }
+
+    @SneakyThrows
+    private RebuildStatusDto await() {
+        for (int i = 0; i < 100; i++) {
+            RebuildStatusDto status = aggregateRebuild.status();
+            if (!"RUNNING".equals(status.getState())) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Rebuild did not finish in time");
+    }
+}
@@ -0,0 +1,109 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.config.AdmissionProperties;
+import ru.practicum.exception.IngestionOverloadedException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HitAdmissionTest {
+    private MeterRegistry meterRegistry;
+    private AdmissionProperties properties;
+    private HitAdmission hitAdmission;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new AdmissionProperties();
+        properties.setMaxConcurrent(1);
+        properties.setMaxWait(Duration.ofMillis(10));
+        properties.setRetryAfter(Duration.ofSeconds(2));
+        hitAdmission = new HitAdmission(properties, meterRegistry);
+    }
+
+    @DisplayName("Должен отклонять запрос, когда все слоты заняты, и пропускать после их освобождения")
+    @Test
+    public void shouldShedWhenSaturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> running = CompletableFuture.runAsync(() -> hitAdmission.run(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        started.await();
+
+        IngestionOverloadedException e = assertThrows(IngestionOverloadedException.class,
+                () -> hitAdmission.run(() -> { }));
+        assertEquals(Duration.ofSeconds(2), e.getRetryAfter());
+        assertEquals(1.0, meterRegistry.get("stats.ingest.admission.in.flight").gauge().value());
+
+        release.countDown();
+        running.join();
+        hitAdmission.run(() -> { });
+
+        assertEquals(2, meterRegistry.get("stats.ingest.admission.requests").tag("result", "admitted")
+                .counter().count());
+        assertEquals(1, meterRegistry.get("stats.ingest.admission.requests").tag("result", "shed")
+                .counter().count());
+        assertEquals(0.0, meterRegistry.get("stats.ingest.admission.in.flight").gauge().value());
+    }
+
+    @DisplayName("Должен сразу отклонять запрос, когда ждущих слота уже столько, сколько разрешено")
+    @Test
+    public void shouldShedAtOnceWhenTooManyWait() throws Exception {
+        properties.setMaxWait(Duration.ofSeconds(10));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> running = CompletableFuture.runAsync(() -> hitAdmission.run(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        started.await();
+        Thread waiting = new Thread(() -> hitAdmission.run(() -> { }));
+        waiting.start();
+        while (waiting.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+
+        long shedStarted = System.nanoTime();
+        assertThrows(IngestionOverloadedException.class, () -> hitAdmission.run(() -> { }));
+        assertTrue(System.nanoTime() - shedStarted < Duration.ofSeconds(5).toNanos());
+
+        release.countDown();
+        running.join();
+        waiting.join();
+        assertEquals(2, meterRegistry.get("stats.ingest.admission.requests").tag("result", "admitted")
+                .counter().count());
+        assertEquals(1, meterRegistry.get("stats.ingest.admission.requests").tag("result", "shed")
+                .counter().count());
+    }
+
+    @DisplayName("Должен освобождать слот, если запись завершилась ошибкой")
+    @Test
+    public void shouldReleaseSlotOnFailure() {
+        assertThrows(IllegalStateException.class, () -> hitAdmission.run(() -> {
+            throw new IllegalStateException();
+        }));
+
+        hitAdmission.run(() -> { });
+        assertEquals(0.0, meterRegistry.get("stats.ingest.admission.in.flight").gauge().value());
+    }
+}
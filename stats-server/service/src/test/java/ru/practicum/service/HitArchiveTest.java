@@ -0,0 +1,238 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.EntityStartDto;
+import ru.practicum.EntityStatsQueryDto;
+import ru.practicum.StatsQueryDto;
+import ru.practicum.UriStartDto;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.model.ArchiveSegment;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.RangeSegment;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.ViewStats;
+import ru.practicum.repository.ArchiveRepository;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:archive",
+        "stats.cache.enabled=false",
+        "stats.rollup.enabled=false",
+        "stats.sketch.enabled=false",
+        "stats.bitmap.enabled=false",
+        "stats.top.enabled=false",
+        "stats.archive.enabled=true",
+        "stats.archive.after=2d",
+        "stats.archive.directory=target/archive-test"})
+public class HitArchiveTest {
+    private final HitArchive hitArchive;
+    private final HitStorage hitStorage;
+    private final ArchiveRepository archiveRepository;
+    private final StatsService statsService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SegmentedStats segmentedStats;
+    private LocalDate first;
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "endpoint");
+        List.copyOf(archiveRepository.findDays()).forEach(archiveRepository::delete);
+        first = LocalDate.now().minusDays(5);
+        start = first.atStartOfDay();
+        end = LocalDateTime.now().plusHours(1);
+        statsService.createHits(List.of(
+                new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.1", first.atTime(10, 0)),
+                new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.2", first.atTime(11, 30)),
+                new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.1", first.atTime(23, 59, 59)),
+                new EndpointHitDto("ewm-main-service", "/events/2", "2001:db8::1", first.plusDays(1).atTime(0, 0)),
+                new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.3", first.plusDays(1).atTime(12, 0)),
+                new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.1", LocalDateTime.now().minusHours(1)),
+                new EndpointHitDto("other-service", "/events/1", "192.168.0.1", LocalDateTime.now().minusHours(1))));
+    }
+
+    @DisplayName("Должен переносить старые дни в архив и отвечать так же, как до переноса")
+    @Test
+    public void shouldMoveOldDaysToArchive() {
+        List<Object> before = queries();
+
+        hitArchive.export();
+
+        assertEquals(Set.of(first, first.plusDays(1)), archiveRepository.findDays());
+        assertEquals(2, JdbcTestUtils.countRowsInTable(jdbcTemplate, "endpoint"));
+        assertEquals(before, queries());
+        assertEquals(List.of(
+                new ViewStatsDto("ewm-main-service", "/events/1", 5L),
+                new ViewStatsDto("ewm-main-service", "/events/2", 1L),
+                new ViewStatsDto("other-service", "/events/1", 1L)),
+                statsService.getStats(start, end, null, null, false, false));
+        assertEquals(List.of(new ViewStatsDto("ewm-main-service", "/events/1", 3L)),
+                statsService.getStats(first.atTime(11, 0), first.plusDays(1).atTime(12, 0), List.of("/events/1"),
+                        null, true, false));
+
+        List<EndpointHit> hits = new ArrayList<>();
+        hitStorage.forEachHit(start, start.plusDays(1), hits::add);
+        assertEquals(3, hits.size());
+        assertEquals("192.168.0.2", hits.get(1).getIp());
+        assertEquals(first.atTime(10, 0), hitStorage.findFirstTimestamp());
+    }
+
+    @DisplayName("Должен сливать архив с таблицей в уникальных ip частичных дней")
+    @Test
+    public void shouldMergeArchiveIntoDistinctIps() {
+        hitArchive.export();
+
+        Set<String> ips = new HashSet<>();
+        hitStorage.forEachDistinctIp(first.atTime(11, 0), LocalDateTime.now(),
+                StatsFilter.of("ewm-main-service", List.of("/events/1")), (key, ip) -> ips.add(ip));
+
+        assertEquals(Set.of("192.168.0.1", "192.168.0.2", "192.168.0.3"), ips);
+    }
+
+    @DisplayName("Не должен оставлять сегмент архива, если транзакция выгрузки откатилась")
+    @Test
+    public void shouldNotPublishSegmentOfRolledBackExport() {
+        hitArchive.export();
+        LocalDate day = first.minusDays(1);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            archiveRepository.save(day, archiveRepository.find(first));
+            status.setRollbackOnly();
+        });
+
+        assertFalse(archiveRepository.findDays().contains(day));
+        assertFalse(Files.exists(Path.of("target/archive-test", day + ".col")));
+        assertFalse(Files.exists(Path.of("target/archive-test", day + ".col.tmp")));
+    }
+
+    @DisplayName("Должен дописывать опоздавшие запросы к архивному дню без повторного счета")
+    @Test
+    public void shouldMergeLateHitsIntoArchivedDay() {
+        hitArchive.export();
+        statsService.createHits(List.of(
+                new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.4", first.atTime(15, 0))));
+        List<ViewStatsDto> expected = List.of(
+                new ViewStatsDto("ewm-main-service", "/events/1", 5L),
+                new ViewStatsDto("ewm-main-service", "/events/2", 1L));
+        LocalDateTime to = first.plusDays(2).atStartOfDay();
+
+        assertEquals(expected, statsService.getStats(start, to, null, null, false, false));
+        hitArchive.export();
+        hitArchive.export();
+
+        assertEquals(2, JdbcTestUtils.countRowsInTable(jdbcTemplate, "endpoint"));
+        assertEquals(4, archiveRepository.find(first).size());
+        assertEquals(expected, statsService.getStats(start, to, null, null, false, false));
+    }
+
+    @DisplayName("Запросы неполных минут по краям диапазона должны читаться из архива")
+    @Test
+    public void shouldReadRawEdgesFromArchive() {
+        List<RangeSegment> segments = RangePlanner.plan(first.atTime(11, 29, 30),
+                RangePlanner.exclusiveEnd(first.atTime(23, 59, 59)));
+        List<ViewStats> expected = List.of(new ViewStats("ewm-main-service", "/events/1", 1L));
+
+        hitArchive.export();
+        List<ViewStats> viewStats = new ArrayList<>();
+        segmentedStats.forEachStats(segments, StatsFilter.ALL, viewStats::add);
+        Map<RollupKey, Long> buckets = new HashMap<>();
+        segmentedStats.forEachBucket(segments, StatsFilter.ALL, buckets::put);
+
+        assertEquals(expected, viewStats);
+        assertEquals(Map.of(new RollupKey("ewm-main-service", "/events/1", first.atTime(23, 59)), 1L), buckets);
+    }
+
+    @DisplayName("Должен архивировать опоздавший запрос с id меньше уже заархивированных, а не терять его")
+    @Test
+    public void shouldArchiveLateHitWithLowerId() {
+        hitArchive.export();
+        long archivedLastId = archiveRepository.find(first).getLastId();
+        statsService.createHits(List.of(
+                new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.4", first.atTime(15, 0))));
+        // as if it committed late with an id drawn before the previous export
+        jdbcTemplate.update("UPDATE endpoint SET id = ? WHERE timestamp = ?", archivedLastId - 1,
+                first.atTime(15, 0));
+
+        hitArchive.export();
+
+        assertEquals(4, archiveRepository.find(first).size());
+        assertEquals(2, JdbcTestUtils.countRowsInTable(jdbcTemplate, "endpoint"));
+    }
+
+    @DisplayName("При старте должен ставить на место сегмент закоммиченной выгрузки и удалять сегмент незавершенной")
+    @Test
+    public void shouldRecoverPendingSegmentsOnStart() throws IOException {
+        hitArchive.export();
+        LocalDate committed = first.minusDays(1);
+        LocalDate rolledBack = first.minusDays(2);
+        Long remainingId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM endpoint", Long.class);
+        write(committed, archiveRepository.find(first));
+        write(rolledBack, new ArchiveSegment.Builder(remainingId).add(0, 1, 1, 1).build());
+
+        hitArchive.afterSingletonsInstantiated();
+
+        assertTrue(archiveRepository.findDays().contains(committed));
+        assertEquals(3, archiveRepository.find(committed).size());
+        assertFalse(archiveRepository.findDays().contains(rolledBack));
+        assertEquals(Map.of(), archiveRepository.findPending());
+        archiveRepository.delete(committed);
+    }
+
+    private void write(LocalDate day, ArchiveSegment segment) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(
+                Path.of("target/archive-test", day + ".col.tmp")))) {
+            segment.write(out);
+        }
+    }
+
+    private List<Object> queries() {
+        List<Object> results = new ArrayList<>();
+        for (boolean unique : new boolean[]{false, true}) {
+            results.add(statsService.getStats(start, end, null, null, unique, false));
+            results.add(statsService.getStats(start, end, List.of("/events/*"), "ewm-main-service", unique, false));
+            results.add(statsService.getStats(first.atTime(11, 0), end, List.of("/events/2"), null, unique, false));
+            results.add(statsService.getStats(new StatsQueryDto(List.of(new UriStartDto("/events/1", start),
+                    new UriStartDto("/events/2", first.atTime(11, 0))), end, unique)));
+            results.add(statsService.getEntityStats(new EntityStatsQueryDto(null, "events",
+                    List.of(new EntityStartDto(1L, first.atTime(11, 0)), new EntityStartDto(2L, start)), end,
+                    unique)));
+            results.add(statsService.getEntityStats(new EntityStatsQueryDto("ewm-main-service", "events",
+                    List.of(new EntityStartDto(1L, start)), end, unique)));
+            results.add(statsService.getStatsSeries(start, end, null, null, Granularity.DAY, unique));
+            results.add(statsService.getStatsSeries(start, end, List.of("/events/1"), null, Granularity.HOUR,
+                    unique));
+            results.add(statsService.getTopStats(start, end, 1, unique));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,163 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.config.HitBufferProperties;
+import ru.practicum.exception.IngestionOverloadedException;
+import ru.practicum.model.EndpointHit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class HitBufferTest {
+    private HitWriter hitWriter;
+    private HitBufferProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private List<Integer> flushSizes;
+    private List<EndpointHit> written;
+
+    @BeforeEach
+    public void setUp() {
+        hitWriter = mock(HitWriter.class);
+        meterRegistry = new SimpleMeterRegistry();
+        flushSizes = Collections.synchronizedList(new ArrayList<>());
+        written = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            List<EndpointHit> batch = invocation.getArgument(0);
+            flushSizes.add(batch.size());
+            written.addAll(batch);
+            return null;
+        }).when(hitWriter).write(anyList());
+
+        properties = new HitBufferProperties();
+        properties.setEnabled(true);
+        properties.setCapacity(10);
+        properties.setBatchSize(4);
+        properties.setFlushInterval(Duration.ofSeconds(10));
+    }
+
+    @DisplayName("Должен при остановке записать все накопленные запросы пачками не больше batchSize")
+    @Test
+    public void shouldDrainQueueOnStop() {
+        HitBuffer hitBuffer = new HitBuffer(properties, hitWriter, meterRegistry);
+        hitBuffer.start();
+
+        hitBuffer.offer(hits(10));
+        hitBuffer.stop();
+
+        assertEquals(10, written.size());
+        assertTrue(flushSizes.stream().allMatch(size -> size <= 4));
+        assertFalse(hitBuffer.isRunning());
+        assertEquals(10.0, meterRegistry.get("stats.ingest.buffer.flush.size").summary().totalAmount());
+    }
+
+    @DisplayName("Должен отклонять запросы и считать их, если буфер не запущен")
+    @Test
+    public void shouldRejectHitsWhenNotRunning() {
+        HitBuffer hitBuffer = new HitBuffer(properties, hitWriter, meterRegistry);
+
+        assertThrows(IngestionOverloadedException.class, () -> hitBuffer.offer(hits(3)));
+
+        assertEquals(3.0, meterRegistry.get("stats.ingest.buffer.dropped").counter().count());
+        assertEquals(0.0, meterRegistry.get("stats.ingest.buffer.depth").gauge().value());
+    }
+
+    @DisplayName("Должен отклонять запросы после остановки")
+    @Test
+    public void shouldRejectHitsAfterStop() {
+        properties.setFlushInterval(Duration.ofMillis(20));
+        HitBuffer hitBuffer = new HitBuffer(properties, hitWriter, meterRegistry);
+        hitBuffer.start();
+        hitBuffer.stop();
+
+        assertThrows(IngestionOverloadedException.class, () -> hitBuffer.offer(hits(1)));
+        assertTrue(written.isEmpty());
+    }
+
+    @DisplayName("Должен отклонять пачку целиком, если для нее нет места")
+    @Test
+    public void shouldRejectBatchThatDoesNotFit() {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            List<EndpointHit> batch = invocation.getArgument(0);
+            written.addAll(batch);
+            return null;
+        }).when(hitWriter).write(anyList());
+        HitBuffer hitBuffer = new HitBuffer(properties, hitWriter, meterRegistry);
+        hitBuffer.start();
+
+        hitBuffer.offer(hits(8));
+        assertThrows(IngestionOverloadedException.class, () -> hitBuffer.offer(hits(3)));
+        release.countDown();
+        hitBuffer.stop();
+
+        assertEquals(8, written.size());
+        assertEquals(3.0, meterRegistry.get("stats.ingest.buffer.dropped").counter().count());
+    }
+
+    @DisplayName("Должен повторять запись пачки после ошибки")
+    @Test
+    public void shouldRetryFailedFlush() {
+        AtomicInteger attempts = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("Connection refused");
+            }
+            List<EndpointHit> batch = invocation.getArgument(0);
+            written.addAll(batch);
+            return null;
+        }).when(hitWriter).write(anyList());
+        properties.setFlushInterval(Duration.ofMillis(20));
+        properties.setRetryBackoff(Duration.ofMillis(1));
+        HitBuffer hitBuffer = new HitBuffer(properties, hitWriter, meterRegistry);
+        hitBuffer.start();
+
+        hitBuffer.offer(hits(2));
+        hitBuffer.stop();
+
+        assertEquals(2, attempts.get());
+        assertEquals(2, written.size());
+        assertEquals(0.0, meterRegistry.get("stats.ingest.buffer.failed").counter().count());
+    }
+
+    @DisplayName("Должен записать неполную пачку по истечении flushInterval")
+    @Test
+    public void shouldFlushByTime() throws InterruptedException {
+        properties.setFlushInterval(Duration.ofMillis(20));
+        HitBuffer hitBuffer = new HitBuffer(properties, hitWriter, meterRegistry);
+        hitBuffer.start();
+
+        hitBuffer.offer(hits(2));
+        for (int i = 0; i < 100 && written.size() < 2; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(2, written.size());
+        hitBuffer.stop();
+    }
+
+    private List<EndpointHit> hits(int count) {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 2, 1, 10, 1, 8);
+        return IntStream.range(0, count)
+                .mapToObj(i -> new EndpointHit(null, "ewm", "/events/" + i, "121.0.0.1", timestamp))
+                .collect(Collectors.toList());
+    }
+}
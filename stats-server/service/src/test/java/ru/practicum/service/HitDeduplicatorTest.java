@@ -0,0 +1,119 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.config.DedupProperties;
+import ru.practicum.model.EndpointHit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HitDeduplicatorTest {
+    private MeterRegistry meterRegistry;
+    private DedupProperties properties;
+    private HitDeduplicator hitDeduplicator;
+    private LocalDateTime now;
+
+    @BeforeEach
+    public void setUp() {
+        now = LocalDateTime.of(2024, 2, 1, 10, 30, 0);
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new DedupProperties();
+        properties.setEnabled(true);
+        properties.setWindow(Duration.ofMinutes(1));
+        properties.setExpectedHits(1000);
+        hitDeduplicator = new HitDeduplicator(properties, meterRegistry);
+    }
+
+    @DisplayName("Должен отбрасывать повторные запросы с того же ip в пределах окна")
+    @Test
+    public void shouldDropRepeatsWithinWindow() {
+        EndpointHit first = hit("/events/1", "192.168.0.1", now);
+        EndpointHit otherIp = hit("/events/1", "192.168.0.2", now);
+        EndpointHit otherUri = hit("/events/2", "192.168.0.1", now);
+
+        assertEquals(List.of(first, otherIp, otherUri), store(List.of(first, otherIp,
+                hit("/events/1", "192.168.0.1", now.plusSeconds(10)), otherUri)));
+        assertEquals(List.of(), store(List.of(hit("/events/1", "192.168.0.1", now.plusSeconds(59)))));
+
+        assertEquals(3, meterRegistry.get("stats.dedup.hits").tag("result", "kept").counter().count());
+        assertEquals(2, meterRegistry.get("stats.dedup.hits").tag("result", "dropped").counter().count());
+    }
+
+    @DisplayName("Повторы не должны продлевать окно: постоянно обновляющий клиент учитывается раз в окно")
+    @Test
+    public void shouldKeepOneHitPerFixedWindow() {
+        int kept = 0;
+        for (int second = 0; second < 180; second += 20) {
+            kept += store(List.of(hit("/events/1", "192.168.0.1", now.plusSeconds(second)))).size();
+        }
+
+        assertEquals(3, kept);
+    }
+
+    @DisplayName("Окно должно определяться временем запроса, а не временем его поступления")
+    @Test
+    public void shouldCutWindowsFromHitTimestamps() {
+        LocalDateTime replayed = now.minusDays(1);
+        EndpointHit live = hit("/events/1", "192.168.0.1", now);
+
+        assertEquals(1, store(List.of(hit("/events/1", "192.168.0.1", replayed),
+                hit("/events/1", "192.168.0.1", replayed.plusSeconds(30)))).size());
+        assertEquals(List.of(live), store(List.of(live)));
+
+        store(List.of(hit("/events/2", "192.168.0.1", now.plusMinutes(1))));
+        List<EndpointHit> older = List.of(hit("/events/1", "192.168.0.1", replayed),
+                hit("/events/1", "192.168.0.1", replayed));
+        assertEquals(older, store(older));
+    }
+
+    @DisplayName("Запрос, который не удалось записать, должен сохраниться при повторной отправке")
+    @Test
+    public void shouldKeepRetryOfHitThatFailedToStore() {
+        EndpointHit hit = hit("/events/1", "192.168.0.1", now);
+
+        // the write fails, so the hit is never recorded
+        assertEquals(List.of(hit), hitDeduplicator.filter(List.of(hit)));
+
+        assertEquals(List.of(hit), store(List.of(hit)));
+        assertEquals(List.of(), store(List.of(hit)));
+    }
+
+    @DisplayName("Должен публиковать оценку доли ложных срабатываний")
+    @Test
+    public void shouldReportFalsePositiveRate() {
+        assertEquals(0.0, meterRegistry.get("stats.dedup.false.positive.rate").gauge().value());
+        for (int i = 0; i < 1000; i++) {
+            store(List.of(hit("/events/" + i, "192.168.0.1", now)));
+        }
+
+        double rate = meterRegistry.get("stats.dedup.false.positive.rate").gauge().value();
+        assertTrue(rate > 0 && rate < 2 * properties.getFalsePositiveRate(), "rate=" + rate);
+    }
+
+    @DisplayName("Должен пропускать все запросы, если дедупликация выключена")
+    @Test
+    public void shouldKeepAllHitsWhenDisabled() {
+        properties.setEnabled(false);
+        List<EndpointHit> hits = List.of(hit("/events/1", "192.168.0.1", now), hit("/events/1", "192.168.0.1", now));
+
+        assertEquals(hits, store(hits));
+    }
+
+    private List<EndpointHit> store(List<EndpointHit> hits) {
+        List<EndpointHit> fresh = hitDeduplicator.filter(hits);
+        hitDeduplicator.record(fresh);
+        return fresh;
+    }
+
+    private static EndpointHit hit(String uri, String ip, LocalDateTime timestamp) {
+        return new EndpointHit(null, "ewm-main-service", uri, ip, timestamp);
+    }
+}
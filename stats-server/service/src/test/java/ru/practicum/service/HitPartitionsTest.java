@@ -0,0 +1,132 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import ru.practicum.config.BitmapProperties;
+import ru.practicum.config.RetentionProperties;
+import ru.practicum.config.RollupProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.PartitionRepository;
+import ru.practicum.repository.RollupRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HitPartitionsTest {
+    private PartitionRepository partitionRepository;
+    private RetentionProperties properties;
+    private RollupProperties rollupProperties;
+    private RetentionTiers retentionTiers;
+    private LocalDate today;
+
+    @BeforeEach
+    public void setUp() {
+        partitionRepository = mock(PartitionRepository.class);
+        properties = new RetentionProperties();
+        properties.setEnabled(true);
+        properties.setRawHits(Duration.ofDays(30));
+        properties.setPartitionsAhead(2);
+        rollupProperties = new RollupProperties();
+        retentionTiers = new RetentionTiers(properties, rollupProperties, new BitmapProperties(),
+                mock(RollupRepository.class));
+        today = LocalDate.now();
+    }
+
+    @DisplayName("Должен удалять целиком только партиции, которые полностью старше срока хранения")
+    @Test
+    public void shouldDropExpiredPartitions() {
+        when(partitionRepository.isPartitioned()).thenReturn(true);
+        when(partitionRepository.findDailyPartitions()).thenReturn(List.of(today.minusDays(32), today.minusDays(31),
+                today.minusDays(30), today, today.plusDays(1), today.plusDays(2)));
+        HitPartitions hitPartitions = new HitPartitions(partitionRepository, properties, retentionTiers);
+        hitPartitions.afterSingletonsInstantiated();
+
+        hitPartitions.maintain();
+
+        verify(partitionRepository).dropDailyPartition(today.minusDays(32));
+        verify(partitionRepository).dropDailyPartition(today.minusDays(31));
+        verify(partitionRepository, never()).dropDailyPartition(today.minusDays(30));
+        verify(partitionRepository, never()).deleteBefore(any());
+    }
+
+    @DisplayName("Должен заранее создавать партиции и досоздавать их для запросов из других дней один раз")
+    @Test
+    public void shouldCreateMissingPartitions() {
+        when(partitionRepository.isPartitioned()).thenReturn(true);
+        when(partitionRepository.findDailyPartitions()).thenReturn(List.of(today));
+        HitPartitions hitPartitions = new HitPartitions(partitionRepository, properties, retentionTiers);
+        hitPartitions.afterSingletonsInstantiated();
+
+        EndpointHit old = new EndpointHit(null, "ewm", "/events/1", "121.0.0.1", today.minusDays(3).atTime(10, 0));
+        EndpointHit current = new EndpointHit(null, "ewm", "/events/1", "121.0.0.1", today.atTime(10, 0));
+        hitPartitions.ensure(List.of(old, current));
+        hitPartitions.ensure(List.of(old));
+
+        verify(partitionRepository).createDailyPartition(today.plusDays(1));
+        verify(partitionRepository).createDailyPartition(today.plusDays(2));
+        verify(partitionRepository, times(1)).createDailyPartition(today.minusDays(3));
+        verify(partitionRepository, never()).createDailyPartition(today);
+    }
+
+    @DisplayName("Должен передать ошибку создания партиции записи запросов, если партиции так и нет")
+    @Test
+    public void shouldPropagatePartitionFailure() {
+        when(partitionRepository.isPartitioned()).thenReturn(true);
+        when(partitionRepository.findDailyPartitions()).thenReturn(List.of(today));
+        HitPartitions hitPartitions = new HitPartitions(partitionRepository, properties, retentionTiers);
+        hitPartitions.afterSingletonsInstantiated();
+        LocalDate day = today.minusDays(3);
+        doThrow(new DataAccessResourceFailureException("disk full")).when(partitionRepository)
+                .createDailyPartition(day);
+        List<EndpointHit> hits = List.of(new EndpointHit(null, "ewm", "/events/1", "121.0.0.1", day.atTime(10, 0)));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> hitPartitions.ensure(hits));
+
+        when(partitionRepository.findDailyPartitions()).thenReturn(List.of(day, today));
+        hitPartitions.ensure(hits);
+        hitPartitions.ensure(hits);
+        verify(partitionRepository, times(2)).createDailyPartition(day);
+    }
+
+    @DisplayName("Без партиционирования должен удалять устаревшие запросы по диапазону времени")
+    @Test
+    public void shouldDeleteExpiredHitsWithoutPartitions() {
+        when(partitionRepository.isPartitioned()).thenReturn(false);
+        HitPartitions hitPartitions = new HitPartitions(partitionRepository, properties, retentionTiers);
+        hitPartitions.afterSingletonsInstantiated();
+
+        hitPartitions.ensure(List.of(new EndpointHit(null, "ewm", "/events/1", "121.0.0.1",
+                today.minusDays(3).atTime(10, 0))));
+        hitPartitions.maintain();
+
+        verify(partitionRepository, never()).createDailyPartition(any());
+        verify(partitionRepository).deleteBefore(any());
+    }
+
+    @DisplayName("Не должен удалять сырые запросы, пока агрегаты не хранят всю историю")
+    @Test
+    public void shouldKeepRawHitsWithoutRollups() {
+        rollupProperties.setEnabled(false);
+        when(partitionRepository.isPartitioned()).thenReturn(true);
+        when(partitionRepository.findDailyPartitions()).thenReturn(List.of(today.minusDays(40), today));
+        HitPartitions hitPartitions = new HitPartitions(partitionRepository, properties, retentionTiers);
+        hitPartitions.afterSingletonsInstantiated();
+
+        hitPartitions.maintain();
+
+        verify(partitionRepository, never()).dropDailyPartition(any());
+        verify(partitionRepository, never()).deleteBefore(any());
+    }
+}
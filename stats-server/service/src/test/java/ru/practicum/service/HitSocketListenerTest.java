@@ -0,0 +1,148 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.config.HitSocketProperties;
+import ru.practicum.model.HitFrames;
+
+import javax.validation.Validation;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class HitSocketListenerTest {
+    private MeterRegistry meterRegistry;
+    private StatsService statsService;
+    private HitSocketListener listener;
+
+    @BeforeEach
+    public void setUp() {
+        HitSocketProperties properties = new HitSocketProperties();
+        properties.setEnabled(true);
+        properties.setHost("127.0.0.1");
+        properties.setPort(0);
+        properties.setBuffers(1);
+        properties.setBufferSize(256);
+        meterRegistry = new SimpleMeterRegistry();
+        statsService = mock(StatsService.class);
+        listener = new HitSocketListener(properties, statsService,
+                Validation.buildDefaultValidatorFactory().getValidator(), meterRegistry);
+        listener.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        listener.stop();
+    }
+
+    @DisplayName("Должен передать на сохранение все кадры, в том числе разрезанные между пакетами")
+    @Test
+    public void shouldIngestFramesSplitAcrossWrites() throws IOException {
+        List<EndpointHitDto> received = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            received.addAll(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        }).when(statsService).createHits(anyList());
+        List<EndpointHitDto> sent = new ArrayList<>();
+        ByteBuffer frames = ByteBuffer.allocate(4096);
+        for (int i = 0; i < 20; i++) {
+            EndpointHitDto hit = new EndpointHitDto("ewm-main-service", "/events/" + i, "192.168.0." + i,
+                    LocalDateTime.of(2024, 6, 16, 10, 51, i));
+            HitFrames.encode(hit, frames);
+            sent.add(hit);
+        }
+        frames.flip();
+
+        try (SocketChannel channel = connect()) {
+            // odd chunk sizes cut frames and their length headers apart
+            while (frames.hasRemaining()) {
+                ByteBuffer chunk = frames.slice();
+                chunk.limit(Math.min(37, chunk.remaining()));
+                frames.position(frames.position() + chunk.limit());
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+            }
+
+            Counter accepted = meterRegistry.get("stats.ingest.socket.frames").tag("result", "accepted").counter();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (accepted.count() < sent.size() && System.currentTimeMillis() < deadline) {
+                Thread.onSpinWait();
+            }
+            assertEquals(sent, received);
+            assertEquals(20, accepted.count());
+        }
+    }
+
+    @DisplayName("Должен пропустить кадры с запросами, не прошедшими проверку, и сохранить остальные")
+    @Test
+    public void shouldSkipInvalidHits() throws IOException {
+        List<EndpointHitDto> received = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            received.addAll(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        }).when(statsService).createHits(anyList());
+        LocalDateTime timestamp = LocalDateTime.of(2024, 6, 16, 10, 51);
+        EndpointHitDto valid = new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.1", timestamp);
+        ByteBuffer frames = ByteBuffer.allocate(1024);
+        HitFrames.encode(new EndpointHitDto(" ", "/events/1", "192.168.0.1", timestamp), frames);
+        HitFrames.encode(new EndpointHitDto("ewm-main-service", "", "192.168.0.1", timestamp), frames);
+        HitFrames.encode(valid, frames);
+        frames.flip();
+
+        try (SocketChannel channel = connect()) {
+            while (frames.hasRemaining()) {
+                channel.write(frames);
+            }
+            Counter accepted = meterRegistry.get("stats.ingest.socket.frames").tag("result", "accepted").counter();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (accepted.count() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.onSpinWait();
+            }
+        }
+        assertEquals(List.of(valid), received);
+        assertEquals(2, meterRegistry.get("stats.ingest.socket.frames").tag("result", "invalid").counter().count());
+    }
+
+    @DisplayName("Должен закрыть соединение, если кадр не помещается в буфер")
+    @Test
+    public void shouldCloseConnectionOnOversizedFrame() throws IOException {
+        try (SocketChannel channel = connect()) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 10_000));
+
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+        }
+        verify(statsService, never()).createHits(anyList());
+    }
+
+    @DisplayName("Должен отклонить соединение, если свободных буферов не осталось")
+    @Test
+    public void shouldRejectConnectionWithoutFreeBuffer() throws IOException {
+        try (SocketChannel first = connect(); SocketChannel second = connect()) {
+            assertEquals(-1, second.read(ByteBuffer.allocate(1)));
+        }
+        assertEquals(1, meterRegistry.get("stats.ingest.socket.rejected").counter().count());
+    }
+
+    private SocketChannel connect() throws IOException {
+        return SocketChannel.open(new InetSocketAddress("127.0.0.1", listener.getLocalPort()));
+    }
+}
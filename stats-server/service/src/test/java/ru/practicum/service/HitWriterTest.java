@@ -0,0 +1,133 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class HitWriterTest {
+    private HitStorage hitStorage;
+    private List<Integer> batchSizes;
+    private LiveCounters liveCounters;
+    private HitWriter hitWriter;
+
+    @BeforeEach
+    public void setUp() {
+        hitStorage = mock(HitStorage.class);
+        batchSizes = Collections.synchronizedList(new ArrayList<>());
+        HitAggregator aggregator = mock(HitAggregator.class);
+        doAnswer(invocation -> {
+            List<EndpointHit> hits = invocation.getArgument(0);
+            batchSizes.add(hits.size());
+            return null;
+        }).when(aggregator).aggregate(anyList());
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        liveCounters = mock(LiveCounters.class);
+        hitWriter = new HitWriter(hitStorage, List.of(aggregator), mock(HitPartitions.class), transactionTemplate,
+                liveCounters);
+    }
+
+    @DisplayName("Должен записать запросы, пришедшие во время транзакции, одной следующей транзакцией")
+    @Test
+    public void shouldGroupConcurrentWrites() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger saves = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (saves.incrementAndGet() == 1) {
+                started.countDown();
+                release.await();
+            }
+            return null;
+        }).when(hitStorage).saveAll(anyList());
+
+        Thread first = new Thread(() -> hitWriter.write(hits(1)));
+        first.start();
+        started.await();
+        List<Thread> waiting = List.of(new Thread(() -> hitWriter.write(hits(2))),
+                new Thread(() -> hitWriter.write(hits(3))));
+        for (Thread thread : waiting) {
+            thread.start();
+            while (thread.getState() != Thread.State.BLOCKED) {
+                Thread.sleep(1);
+            }
+        }
+        release.countDown();
+        first.join();
+        for (Thread thread : waiting) {
+            thread.join();
+        }
+
+        assertEquals(List.of(1, 5), batchSizes);
+        assertEquals(2, saves.get());
+    }
+
+    @DisplayName("Должен передать ошибку записи вызвавшему")
+    @Test
+    public void shouldRethrowFailure() {
+        doThrow(new IllegalStateException("Connection refused")).when(hitStorage).saveAll(anyList());
+
+        assertThrows(IllegalStateException.class, () -> hitWriter.write(hits(1)));
+        assertEquals(List.of(), batchSizes);
+        verify(liveCounters, never()).add(anyList());
+    }
+
+    @DisplayName("Должен учитывать в живых счетчиках только записанные запросы")
+    @Test
+    public void shouldCountLiveHitsOnceWritten() {
+        List<EndpointHit> hits = hits(2);
+
+        hitWriter.write(hits);
+
+        verify(liveCounters).add(hits);
+    }
+
+    @DisplayName("Не должен записывать запросы, пока запись приостановлена")
+    @Test
+    public void shouldHoldBackWritesWhilePaused() throws InterruptedException {
+        Thread writer = new Thread(() -> hitWriter.write(hits(1)));
+        hitWriter.pause(() -> {
+            writer.start();
+            while (writer.getState() != Thread.State.BLOCKED) {
+                Thread.onSpinWait();
+            }
+            verify(hitStorage, never()).saveAll(anyList());
+        });
+        writer.join();
+
+        verify(hitStorage).saveAll(anyList());
+    }
+
+    private List<EndpointHit> hits(int count) {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            hits.add(new EndpointHit(null, "ewm", "/events/1", "121.0.0.1", LocalDateTime.of(2024, 2, 1, 10, 1)));
+        }
+        return hits;
+    }
+}
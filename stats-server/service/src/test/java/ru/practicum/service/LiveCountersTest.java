@@ -0,0 +1,98 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.config.LiveProperties;
+import ru.practicum.exception.InvalidWindowException;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.ViewStats;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LiveCountersTest {
+    private MutableClock clock;
+    private LiveCounters liveCounters;
+    private LocalDateTime now;
+
+    @BeforeEach
+    public void setUp() {
+        now = LocalDateTime.of(2024, 2, 1, 10, 30, 20);
+        clock = new MutableClock(now);
+        LiveProperties properties = new LiveProperties();
+        properties.setMaxWindow(Duration.ofMinutes(10));
+        liveCounters = new LiveCounters(properties, clock);
+    }
+
+    @DisplayName("Должен считать посещения за последние минуты окна и фильтровать по uri")
+    @Test
+    public void shouldCountHitsOfWindow() {
+        liveCounters.add(List.of(hit("/events/1", now), hit("/events/1", now.minusMinutes(2)),
+                hit("/events/2", now.minusMinutes(4)), hit("/events/3", now.minusMinutes(11))));
+
+        assertEquals(List.of(new ViewStats("ewm", "/events/1", 2L), new ViewStats("ewm", "/events/2", 1L)),
+                liveCounters.getStats(StatsFilter.ALL, Duration.ofMinutes(5)));
+        assertEquals(List.of(new ViewStats("ewm", "/events/1", 2L)),
+                liveCounters.getStats(StatsFilter.ALL, Duration.ofMinutes(3)));
+        assertEquals(List.of(new ViewStats("ewm", "/events/2", 1L)),
+                liveCounters.getStats(StatsFilter.of(null, List.of("/events/2", "/events/3")),
+                        Duration.ofMinutes(10)));
+    }
+
+    @DisplayName("Должен забывать посещения минут, вышедших из окна, при переиспользовании ячейки")
+    @Test
+    public void shouldRotateBuckets() {
+        liveCounters.add(List.of(hit("/events/1", now), hit("/events/1", now)));
+        clock.set(now.plusMinutes(11));
+        liveCounters.add(List.of(hit("/events/1", now.plusMinutes(11))));
+
+        assertEquals(List.of(new ViewStats("ewm", "/events/1", 1L)),
+                liveCounters.getStats(StatsFilter.ALL, Duration.ofMinutes(10)));
+        liveCounters.add(List.of(hit("/events/2", now)));
+        assertEquals(List.of(new ViewStats("ewm", "/events/1", 1L)),
+                liveCounters.getStats(StatsFilter.ALL, Duration.ofMinutes(10)));
+    }
+
+    @DisplayName("Не должен терять посещения при одновременной записи из многих потоков")
+    @Test
+    public void shouldCountConcurrentHits() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    liveCounters.add(List.of(hit("/events/" + i % 4, now.minusMinutes(i % 3))));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        List<ViewStats> stats = liveCounters.getStats(StatsFilter.ALL, Duration.ofMinutes(5));
+        assertEquals(4, stats.size());
+        stats.forEach(viewStats -> assertEquals(20_000L, viewStats.getHits()));
+    }
+
+    @DisplayName("Должен отклонять окно короче минуты или длиннее максимального")
+    @Test
+    public void shouldNotGetStatsOfInvalidWindow() {
+        assertThrows(InvalidWindowException.class, () -> liveCounters.getStats(StatsFilter.ALL, Duration.ofSeconds(30)));
+        assertThrows(InvalidWindowException.class, () -> liveCounters.getStats(StatsFilter.ALL, Duration.ofMinutes(11)));
+    }
+
+    private static EndpointHit hit(String uri, LocalDateTime timestamp) {
+        return new EndpointHit(null, "ewm", uri, "121.0.0.1", timestamp);
+    }
+}
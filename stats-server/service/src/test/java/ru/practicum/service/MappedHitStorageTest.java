@@ -0,0 +1,267 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.config.BitmapProperties;
+import ru.practicum.config.RetentionProperties;
+import ru.practicum.config.RollupProperties;
+import ru.practicum.config.StorageProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.RollupKey;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.ViewStats;
+import ru.practicum.repository.Dictionary;
+import ru.practicum.repository.HitDictionaries;
+import ru.practicum.repository.RollupRepository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MappedHitStorageTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 6, 1, 0, 0);
+    private static final LocalDateTime NOW = DAY.plusDays(30);
+    @TempDir
+    Path directory;
+    private StorageProperties properties;
+    private RetentionProperties retentionProperties;
+    private HitDictionaries hitDictionaries;
+    private MappedHitStorage storage;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new StorageProperties();
+        properties.getMapped().setDirectory(directory);
+        properties.getMapped().setSegmentHits(4);
+        properties.getMapped().setScanParallelism(2);
+        retentionProperties = new RetentionProperties();
+        hitDictionaries = mock(HitDictionaries.class);
+        Dictionary apps = dictionary();
+        Dictionary uris = dictionary();
+        when(hitDictionaries.apps()).thenReturn(apps);
+        when(hitDictionaries.uris()).thenReturn(uris);
+        storage = open();
+    }
+
+    @DisplayName("Должен считать просмотры и уникальные ip по всем сегментам диапазона")
+    @Test
+    public void shouldCountHitsAndUniqueIps() {
+        storage.saveAll(List.of(
+                hit("ewm-main-service", "/events/1", "10.0.0.1", DAY.plusHours(1)),
+                hit("ewm-main-service", "/events/1", "10.0.0.1", DAY.plusHours(2)),
+                hit("ewm-main-service", "/events/1", "2001:db8::1", DAY.plusHours(3)),
+                hit("ewm-main-service", "/events/2", "10.0.0.2", DAY.plusHours(4)),
+                hit("ewm-main-service", "/compilations/1", "10.0.0.2", DAY.plusHours(5)),
+                hit("other-service", "/events/1", "10.0.0.3", DAY.plusHours(6))));
+
+        assertEquals(List.of(
+                new ViewStats("ewm-main-service", "/events/1", 3L),
+                new ViewStats("ewm-main-service", "/compilations/1", 1L),
+                new ViewStats("ewm-main-service", "/events/2", 1L),
+                new ViewStats("other-service", "/events/1", 1L)),
+                stats(DAY, DAY.plusDays(1), StatsFilter.ALL, false));
+        assertEquals(List.of(
+                new ViewStats("ewm-main-service", "/events/1", 2L),
+                new ViewStats("ewm-main-service", "/events/2", 1L)),
+                stats(DAY, DAY.plusDays(1), StatsFilter.of("ewm-main-service", List.of("/events/*")), true));
+        assertEquals(List.of(new ViewStats("ewm-main-service", "/events/1", 2L)),
+                stats(DAY.plusHours(2), DAY.plusHours(3), StatsFilter.ALL, false));
+    }
+
+    @DisplayName("Должен отвечать на запросы с началом по каждому uri, по сущностям, рядам и топу")
+    @Test
+    public void shouldAnswerTheOtherRawQueries() {
+        storage.saveAll(List.of(
+                hit("ewm-main-service", "/events/1", "10.0.0.1", DAY.plusHours(1)),
+                hit("ewm-main-service", "/events/1", "10.0.0.1", DAY.plusHours(2)),
+                hit("ewm-main-service", "/events/1", "10.0.0.2", DAY.plusDays(1).plusHours(1)),
+                hit("ewm-main-service", "/events/2", "10.0.0.3", DAY.plusHours(3)),
+                hit("ewm-main-service", "/compilations/1", "10.0.0.3", DAY.plusHours(4)),
+                hit("other-service", "/events/1", "10.0.0.1", DAY.plusHours(5))));
+
+        assertEquals(List.of(
+                new ViewStats("ewm-main-service", "/events/1", 3L),
+                new ViewStats("ewm-main-service", "/compilations/1", 1L)),
+                storage.findTop(DAY, DAY.plusDays(2), 2, false));
+        assertEquals(List.of(
+                new ViewStats("ewm-main-service", "/events/1", 1L),
+                new ViewStats("ewm-main-service", "/events/2", 1L),
+                new ViewStats("other-service", "/events/1", 1L)),
+                storage.findStats(Map.of("/events/1", DAY.plusHours(2).plusMinutes(1), "/events/2", DAY,
+                        "/events/3", DAY), DAY.plusDays(2), false));
+
+        Map<Long, Long> entities = new HashMap<>();
+        storage.forEachEntity("events", null, Map.of(1L, DAY, 2L, DAY.plusHours(4)), DAY.plusDays(2), true,
+                entities::put);
+        assertEquals(Map.of(1L, 2L), entities);
+        entities.clear();
+        storage.forEachEntity("events", "ewm-main-service", Map.of(1L, DAY), DAY.plusDays(2), false,
+                entities::put);
+        assertEquals(Map.of(1L, 3L), entities);
+
+        Map<RollupKey, Long> buckets = new HashMap<>();
+        storage.forEachBucket(DAY, DAY.plusDays(2), StatsFilter.of("ewm-main-service", List.of("/events/1")),
+                Granularity.DAY, true, buckets::put);
+        assertEquals(Map.of(
+                new RollupKey("ewm-main-service", "/events/1", DAY), 1L,
+                new RollupKey("ewm-main-service", "/events/1", DAY.plusDays(1)), 1L), buckets);
+
+        Map<StatsKey, List<String>> ips = new HashMap<>();
+        storage.forEachDistinctIp(DAY, DAY.plusDays(1), StatsFilter.of(null, List.of("/events/1")), (key, ip) ->
+                ips.computeIfAbsent(key, k -> new ArrayList<>()).add(ip));
+        assertEquals(Map.of(
+                new StatsKey("ewm-main-service", "/events/1"), List.of("10.0.0.1"),
+                new StatsKey("other-service", "/events/1"), List.of("10.0.0.1")), ips);
+    }
+
+    @DisplayName("Должен дописывать новые сегменты и читать только те, что пересекают диапазон")
+    @Test
+    public void shouldRollSegmentsAndScanOverlappingOnes() throws IOException {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int day = 0; day < 3; day++) {
+            for (int i = 0; i < 4; i++) {
+                hits.add(hit("ewm-main-service", "/events/" + day, "10.0.0." + i, DAY.plusDays(day).plusHours(i)));
+            }
+        }
+        storage.saveAll(hits.subList(0, 5));
+        storage.saveAll(hits.subList(5, 12));
+
+        assertEquals(3, segments().size());
+        assertEquals(List.of(new ViewStats("ewm-main-service", "/events/1", 4L)),
+                stats(DAY.plusDays(1), DAY.plusDays(1).plusHours(23), StatsFilter.ALL, false));
+
+        // the first segment would add its hits to the third day, if it were read despite its header
+        try (FileChannel channel = FileChannel.open(segments().get(0), StandardOpenOption.WRITE)) {
+            ByteBuffer timestamp = ByteBuffer.allocate(Long.BYTES);
+            timestamp.putLong(0, DAY.plusDays(2).toEpochSecond(ZoneOffset.UTC) * 1_000_000);
+            for (int i = 0; i < 4; i++) {
+                channel.write(timestamp.rewind(), MappedHitStorage.HEADER_LENGTH + i * MappedHitStorage.RECORD_LENGTH);
+            }
+        }
+        assertEquals(List.of(new ViewStats("ewm-main-service", "/events/2", 4L)),
+                stats(DAY.plusDays(2), DAY.plusDays(3), StatsFilter.ALL, true));
+    }
+
+    @DisplayName("Должен восстанавливать журнал после перезапуска и продолжать незаполненный сегмент")
+    @Test
+    public void shouldReopenLog() throws IOException {
+        storage.saveAll(List.of(
+                hit("ewm-main-service", "/events/1", "10.0.0.1", DAY.plusHours(1)),
+                hit("ewm-main-service", "/events/1", "10.0.0.2", DAY.plusHours(2))));
+        storage.destroy();
+
+        storage = open();
+        storage.saveAll(List.of(hit("ewm-main-service", "/events/1", "10.0.0.3", DAY.plusHours(3))));
+
+        assertEquals(1, segments().size());
+        assertEquals(DAY.plusHours(1), storage.findFirstTimestamp());
+        assertEquals(List.of(new ViewStats("ewm-main-service", "/events/1", 3L)),
+                stats(DAY, DAY.plusDays(1), StatsFilter.ALL, false));
+    }
+
+    @DisplayName("Должен возвращать сохраненные запросы полуоткрытого диапазона без потерь")
+    @Test
+    public void shouldReadHitsOfHalfOpenRange() {
+        assertNull(storage.findFirstTimestamp());
+        storage.saveAll(List.of(
+                hit("ewm-main-service", "/events/1", "2001:db8::1", DAY.plusNanos(123_456_000)),
+                hit("ewm-main-service", "/events/2", "10.0.0.1", DAY.plusDays(1))));
+
+        List<EndpointHit> hits = new ArrayList<>();
+        storage.forEachHit(DAY, DAY.plusDays(1), hits::add);
+
+        assertEquals(1, hits.size());
+        assertEquals("/events/1", hits.get(0).getUri());
+        assertEquals("2001:db8:0:0:0:0:0:1", hits.get(0).getIp());
+        assertEquals(DAY.plusNanos(123_456_000), hits.get(0).getTimestamp());
+    }
+
+    @DisplayName("Должен удалять целые сегменты старше срока хранения сырых данных")
+    @Test
+    public void shouldExpireWholeSegments() throws IOException {
+        retentionProperties.setEnabled(true);
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            hits.add(hit("ewm-main-service", "/events/1", "10.0.0.1", NOW.minusDays(12 - i)));
+        }
+        storage.saveAll(hits);
+
+        storage.expire();
+
+        assertEquals(1, segments().size());
+        assertEquals(NOW.minusDays(8), storage.findFirstTimestamp());
+    }
+
+    private MappedHitStorage open() {
+        RetentionTiers retentionTiers = new RetentionTiers(retentionProperties, new RollupProperties(),
+                new BitmapProperties(), mock(RollupRepository.class), new MutableClock(NOW));
+        return new MappedHitStorage(properties, hitDictionaries, retentionProperties, retentionTiers);
+    }
+
+    private List<ViewStats> stats(LocalDateTime start, LocalDateTime end, StatsFilter filter, boolean unique) {
+        List<ViewStats> viewStats = new ArrayList<>();
+        storage.forEachStats(start, end, filter, unique, viewStats::add);
+        return viewStats;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static EndpointHit hit(String app, String uri, String ip, LocalDateTime timestamp) {
+        return new EndpointHit(null, app, uri, ip, timestamp);
+    }
+
+    private static Dictionary dictionary() {
+        Map<String, Integer> ids = new HashMap<>();
+        Map<Integer, String> values = new HashMap<>();
+        Dictionary dictionary = mock(Dictionary.class);
+        when(dictionary.resolve(anyCollection())).thenAnswer(invocation -> {
+            Map<String, Integer> resolved = new HashMap<>();
+            for (String value : invocation.<Collection<String>>getArgument(0)) {
+                if (!ids.containsKey(value)) {
+                    ids.put(value, ids.size() + 1);
+                    values.put(ids.get(value), value);
+                }
+                resolved.put(value, ids.get(value));
+            }
+            return resolved;
+        });
+        when(dictionary.find(anyCollection())).thenAnswer(invocation -> {
+            Map<String, Integer> found = new HashMap<>();
+            for (String value : invocation.<Collection<String>>getArgument(0)) {
+                if (ids.containsKey(value)) {
+                    found.put(value, ids.get(value));
+                }
+            }
+            return found;
+        });
+        when(dictionary.valueOf(anyInt())).thenAnswer(invocation -> values.get(invocation.<Integer>getArgument(0)));
+        return dictionary;
+    }
+}
@@ -0,0 +1,86 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.model.RangeSegment;
+import ru.practicum.model.StorageTiers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.practicum.model.Granularity.DAY;
+import static ru.practicum.model.Granularity.HOUR;
+import static ru.practicum.model.Granularity.MINUTE;
+
+public class RangePlannerTest {
+    @DisplayName("Должен разбить интервал на целые дни, часы и минуты, оставив сырым только края")
+    @Test
+    public void shouldSplitRangeIntoBuckets() {
+        LocalDateTime from = LocalDateTime.of(2024, 2, 1, 10, 1, 8);
+        LocalDateTime to = LocalDateTime.of(2024, 2, 4, 12, 30, 15);
+
+        List<RangeSegment> segments = RangePlanner.plan(from, to);
+
+        assertEquals(List.of(
+                new RangeSegment(null, from, LocalDateTime.of(2024, 2, 1, 10, 2)),
+                new RangeSegment(MINUTE, LocalDateTime.of(2024, 2, 1, 10, 2), LocalDateTime.of(2024, 2, 1, 11, 0)),
+                new RangeSegment(HOUR, LocalDateTime.of(2024, 2, 1, 11, 0), LocalDateTime.of(2024, 2, 2, 0, 0)),
+                new RangeSegment(DAY, LocalDateTime.of(2024, 2, 2, 0, 0), LocalDateTime.of(2024, 2, 4, 0, 0)),
+                new RangeSegment(HOUR, LocalDateTime.of(2024, 2, 4, 0, 0), LocalDateTime.of(2024, 2, 4, 12, 0)),
+                new RangeSegment(MINUTE, LocalDateTime.of(2024, 2, 4, 12, 0), LocalDateTime.of(2024, 2, 4, 12, 30)),
+                new RangeSegment(null, LocalDateTime.of(2024, 2, 4, 12, 30), to)), segments);
+    }
+
+    @DisplayName("Должен читать сырые строки, если интервал короче минуты")
+    @Test
+    public void shouldUseRawRowsForShortRange() {
+        LocalDateTime from = LocalDateTime.of(2024, 2, 1, 10, 1, 8);
+        LocalDateTime to = LocalDateTime.of(2024, 2, 1, 10, 1, 50);
+
+        assertEquals(List.of(new RangeSegment(null, from, to)), RangePlanner.plan(from, to));
+    }
+
+    @DisplayName("Должен покрыть выровненный по дням интервал только дневными бакетами")
+    @Test
+    public void shouldUseOnlyDaysForAlignedRange() {
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+        assertEquals(List.of(new RangeSegment(DAY, from, to)), RangePlanner.plan(from, to));
+    }
+
+    @DisplayName("Не должен использовать бакеты крупнее заданных")
+    @Test
+    public void shouldNotUseBucketsCoarserThanGiven() {
+        LocalDateTime from = LocalDateTime.of(2024, 2, 1, 10, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 2, 3, 0, 0);
+
+        assertEquals(List.of(new RangeSegment(HOUR, from, to)), RangePlanner.plan(from, to, HOUR));
+    }
+
+    @DisplayName("Должен читать каждую часть интервала из уровня хранения, который её ещё содержит")
+    @Test
+    public void shouldPlanOverExpiredTiers() {
+        StorageTiers tiers = new StorageTiers(LocalDateTime.of(2024, 5, 24, 0, 0),
+                LocalDateTime.of(2024, 5, 24, 0, 0), LocalDateTime.of(2024, 3, 2, 0, 0));
+        LocalDateTime from = LocalDateTime.of(2024, 2, 10, 10, 1, 8);
+        LocalDateTime to = LocalDateTime.of(2024, 5, 30, 12, 30, 15);
+
+        assertEquals(List.of(
+                new RangeSegment(DAY, LocalDateTime.of(2024, 2, 10, 0, 0), LocalDateTime.of(2024, 3, 2, 0, 0)),
+                new RangeSegment(DAY, LocalDateTime.of(2024, 3, 2, 0, 0), LocalDateTime.of(2024, 5, 24, 0, 0)),
+                new RangeSegment(DAY, LocalDateTime.of(2024, 5, 24, 0, 0), LocalDateTime.of(2024, 5, 30, 0, 0)),
+                new RangeSegment(HOUR, LocalDateTime.of(2024, 5, 30, 0, 0), LocalDateTime.of(2024, 5, 30, 12, 0)),
+                new RangeSegment(MINUTE, LocalDateTime.of(2024, 5, 30, 12, 0), LocalDateTime.of(2024, 5, 30, 12, 30)),
+                new RangeSegment(null, LocalDateTime.of(2024, 5, 30, 12, 30), to)),
+                RangePlanner.plan(from, to, DAY, tiers));
+        assertEquals(List.of(
+                new RangeSegment(HOUR, LocalDateTime.of(2024, 3, 10, 10, 0), LocalDateTime.of(2024, 3, 10, 12, 0))),
+                RangePlanner.plan(LocalDateTime.of(2024, 3, 10, 10, 1, 8), LocalDateTime.of(2024, 3, 10, 11, 0, 1),
+                        DAY, tiers));
+        assertEquals(List.of(
+                new RangeSegment(DAY, LocalDateTime.of(2024, 2, 10, 0, 0), LocalDateTime.of(2024, 2, 11, 0, 0))),
+                RangePlanner.plan(from, from.plusHours(2), HOUR, tiers));
+    }
+}
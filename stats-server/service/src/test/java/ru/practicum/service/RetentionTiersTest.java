@@ -0,0 +1,66 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.config.BitmapProperties;
+import ru.practicum.config.RetentionProperties;
+import ru.practicum.config.RollupProperties;
+import ru.practicum.model.StorageTiers;
+import ru.practicum.repository.RollupRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static ru.practicum.model.Granularity.DAY;
+import static ru.practicum.model.Granularity.HOUR;
+import static ru.practicum.model.Granularity.MINUTE;
+
+public class RetentionTiersTest {
+    private RetentionProperties properties;
+    private BitmapProperties bitmapProperties;
+    private RollupRepository rollupRepository;
+    private RetentionTiers retentionTiers;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new RetentionProperties();
+        properties.setEnabled(true);
+        bitmapProperties = new BitmapProperties();
+        rollupRepository = mock(RollupRepository.class);
+        retentionTiers = new RetentionTiers(properties, new RollupProperties(), bitmapProperties, rollupRepository,
+                new MutableClock(LocalDateTime.of(2024, 6, 1, 3, 15)));
+    }
+
+    @DisplayName("Должен отсчитывать срок хранения каждого уровня целыми днями")
+    @Test
+    public void shouldExpireTiersInWholeDays() {
+        assertEquals(new StorageTiers(LocalDateTime.of(2024, 5, 25, 0, 0), LocalDateTime.of(2024, 5, 25, 0, 0),
+                LocalDateTime.of(2024, 3, 3, 0, 0)), retentionTiers.current());
+
+        bitmapProperties.setEnabled(false);
+        assertEquals(new StorageTiers(null, LocalDateTime.of(2024, 5, 25, 0, 0),
+                LocalDateTime.of(2024, 3, 3, 0, 0)), retentionTiers.current());
+
+        properties.setEnabled(false);
+        assertEquals(StorageTiers.COMPLETE, retentionTiers.current());
+    }
+
+    @DisplayName("Должен удалять устаревшие минутные и часовые агрегаты и никогда не трогать дневные")
+    @Test
+    public void shouldCompactMinuteAndHourRollups() {
+        properties.setHourRollups(Duration.ofDays(30));
+
+        retentionTiers.compact();
+
+        verify(rollupRepository).deleteBefore(MINUTE, LocalDateTime.of(2024, 5, 25, 0, 0));
+        verify(rollupRepository).deleteBefore(HOUR, LocalDateTime.of(2024, 5, 2, 0, 0));
+        verify(rollupRepository, never()).deleteBefore(eq(DAY), any());
+    }
+}
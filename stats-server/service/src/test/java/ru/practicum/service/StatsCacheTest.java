@@ -0,0 +1,117 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.config.StatsCacheProperties;
+import ru.practicum.model.StatsFilter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatsCacheTest {
+    private static final StatsFilter EVENT_1 = StatsFilter.of(null, List.of("/events/1"));
+    private static final List<ViewStatsDto> STATS = List.of(new ViewStatsDto("ewm-main-service", "/events/1", 3L));
+    private MeterRegistry meterRegistry;
+    private StatsCacheProperties properties;
+    private MutableClock clock;
+    private StatsCache statsCache;
+    private LocalDateTime now;
+    private LocalDateTime createdOn;
+
+    @BeforeEach
+    public void setUp() {
+        now = LocalDateTime.of(2024, 2, 1, 10, 30, 1);
+        createdOn = LocalDateTime.of(2024, 1, 15, 8, 0, 0);
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new StatsCacheProperties();
+        properties.setFreshness(Duration.ofSeconds(5));
+        properties.setHistoricalFreshness(Duration.ofMinutes(1));
+        properties.setMaxSize(2);
+        clock = new MutableClock(now);
+        statsCache = new StatsCache(properties, meterRegistry, clock);
+    }
+
+    @DisplayName("Запросы до текущего момента в пределах одного интервала должны попадать в одну запись")
+    @Test
+    public void shouldShareEntryOfRangesEndingNow() {
+        statsCache.put(statsCache.key(createdOn, now, EVENT_1, true, false), STATS);
+        clock.set(now.plusSeconds(3));
+
+        assertEquals(Optional.of(STATS),
+                statsCache.get(statsCache.key(createdOn, now.plusSeconds(3), EVENT_1, true, false)));
+        assertTrue(statsCache.get(statsCache.key(createdOn, now.plusSeconds(3), EVENT_1, false, false))
+                .isEmpty());
+        assertEquals(1.0, meterRegistry.counter("stats.cache.requests", "result", "hit").count());
+        assertEquals(1.0, meterRegistry.counter("stats.cache.requests", "result", "miss").count());
+        assertEquals(3.0, meterRegistry.timer("stats.cache.staleness").totalTime(TimeUnit.SECONDS));
+    }
+
+    @DisplayName("Прошлые диапазоны должны различаться по точному концу и не зависеть от порядка uri")
+    @Test
+    public void shouldKeyPastRangesByExactEnd() {
+        LocalDateTime end = now.minusDays(1);
+
+        assertEquals(statsCache.key(createdOn, end, StatsFilter.of(null, List.of("/events/2", "/events/1")),
+                        false, false),
+                statsCache.key(createdOn, end, StatsFilter.of(null, List.of("/events/1", "/events/2", "/events/1")),
+                        false, false));
+        assertNotEquals(statsCache.key(createdOn, end, StatsFilter.ALL, false, false),
+                statsCache.key(createdOn, end.plusSeconds(1), StatsFilter.ALL, false, false));
+        assertEquals(statsCache.key(createdOn, now, StatsFilter.ALL, false, false),
+                statsCache.key(createdOn, now.plusSeconds(2), StatsFilter.ALL, false, false));
+        // a leading "/events" is an exact uri, not a request for every uri
+        StatsFilter events = StatsFilter.of(null, List.of("/events", "/events/1"));
+        assertEquals(statsCache.key(createdOn, end, events, false, false),
+                statsCache.key(createdOn, end, StatsFilter.of(null, List.of("/events/1", "/events")), false, false));
+        assertNotEquals(statsCache.key(createdOn, end, StatsFilter.ALL, false, false),
+                statsCache.key(createdOn, end, events, false, false));
+    }
+
+    @DisplayName("Записи закрытых диапазонов должны жить дольше записей диапазонов до текущего момента")
+    @Test
+    public void shouldKeepClosedRangesLonger() {
+        StatsCache.Key live = statsCache.key(createdOn, now, StatsFilter.ALL, false, false);
+        StatsCache.Key closed = statsCache.key(createdOn, now.minusDays(1), StatsFilter.ALL, false, false);
+        statsCache.put(live, STATS);
+        statsCache.put(closed, STATS);
+
+        clock.set(now.plusSeconds(5));
+        assertTrue(statsCache.get(live).isEmpty());
+        assertEquals(Optional.of(STATS), statsCache.get(closed));
+
+        clock.set(now.plusMinutes(1));
+        assertTrue(statsCache.get(closed).isEmpty());
+    }
+
+    @DisplayName("Должен вытеснять устаревшие записи и давно не использованные сверх максимального размера")
+    @Test
+    public void shouldEvictExpiredAndLeastRecentlyUsedEntries() {
+        StatsCache.Key first = statsCache.key(createdOn, now.minusDays(1), StatsFilter.ALL, false, false);
+        StatsCache.Key second = statsCache.key(createdOn, now.minusDays(2), StatsFilter.ALL, false, false);
+        StatsCache.Key third = statsCache.key(createdOn, now.minusDays(3), StatsFilter.ALL, false, false);
+        statsCache.put(first, STATS);
+        statsCache.put(second, STATS);
+        statsCache.get(first);
+        statsCache.put(third, STATS);
+
+        assertTrue(statsCache.get(second).isEmpty());
+        assertEquals(Optional.of(STATS), statsCache.get(first));
+        assertEquals(1.0, meterRegistry.counter("stats.cache.evictions", "cause", "size").count());
+
+        clock.set(now.plusMinutes(1));
+        assertTrue(statsCache.get(third).isEmpty());
+        assertEquals(1.0, meterRegistry.counter("stats.cache.evictions", "cause", "expired").count());
+        assertEquals(1.0, meterRegistry.get("stats.cache.size").gauge().value());
+    }
+}
@@ -6,26 +6,57 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.EndpointHitDto;
+import ru.practicum.EntityStartDto;
+import ru.practicum.EntityStatsDto;
+import ru.practicum.EntityStatsQueryDto;
+import ru.practicum.HitSeriesDto;
+import ru.practicum.StatsQueryDto;
+import ru.practicum.UriStartDto;
+import ru.practicum.ViewSeriesDto;
 import ru.practicum.ViewStatsDto;
 import ru.practicum.exception.EndTimeBeforeStartTimeException;
+import ru.practicum.exception.InvalidIntervalException;
+import ru.practicum.mapper.StatsMapper;
+import ru.practicum.model.Granularity;
+import ru.practicum.model.IpAddresses;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.ViewStats;
+import ru.practicum.repository.Dictionary;
+import ru.practicum.repository.HitDictionaries;
+import ru.practicum.repository.StatsRepository;
+import ru.practicum.sketch.HyperLogLog;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Transactional
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:test",
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:test", "stats.cache.enabled=false",
+        "stats.ingest.import.batch-size=2"},
         webEnvironment = SpringBootTest.WebEnvironment.NONE)
 public class StatsServiceImplTest {
     private final StatsService statsService;
+    private final StatsRepository statsRepository;
+    private final StatsMapper statsMapper;
+    private final HitDictionaries hitDictionaries;
+    private final JdbcTemplate jdbcTemplate;
     protected LocalDateTime timestamp;
     protected EndpointHitDto endpointHitDtoOne;
     protected EndpointHitDto endpointHitDtoTwo;
@@ -68,6 +99,41 @@ public class StatsServiceImplTest {
         assertThat(endpointHitDtoSeven, is(equalTo(result)));
     }
 
+    @DisplayName("Должен сохранить пакет информации о запросах к эндпоинтам одной вставкой")
+    @Test
+    public void shouldCreateHits() {
+        EndpointHitDto endpointHitDtoEight = new EndpointHitDto("ewm7", "/events/7", "121.0.0.10",
+                timestamp.plusDays(6));
+        List<EndpointHitDto> hits = List.of(endpointHitDtoSeven, endpointHitDtoEight);
+
+        List<EndpointHitDto> result = statsService.createHits(hits);
+
+        assertThat(result, is(equalTo(hits)));
+        assertThat(statsService.getStats(start, end, List.of("/events/7"), null, false, false),
+                is(equalTo(List.of(new ViewStatsDto("ewm7", "/events/7", 2L)))));
+    }
+
+    @DisplayName("Должен загрузить запросы пакетами и выгрузить их в том же виде")
+    @Test
+    public void shouldImportAndExportHits() {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            hits.add(new EndpointHitDto("ewm9", "/events/" + i % 2, "121.0.1." + i,
+                    timestamp.plusDays(10).plusHours(i)));
+        }
+
+        long imported = statsService.importHits(hits.iterator());
+        List<EndpointHitDto> exported = new ArrayList<>();
+        statsService.exportHits(timestamp.plusDays(10), timestamp.plusDays(10).plusHours(4), exported::add);
+
+        assertEquals(5, imported);
+        exported.sort(Comparator.comparing(EndpointHitDto::getTimestamp));
+        assertEquals(hits, exported);
+        assertThat(statsService.getStats(timestamp.plusDays(10), timestamp.plusDays(11), null, "ewm9", false, false),
+                is(equalTo(List.of(new ViewStatsDto("ewm9", "/events/0", 3L),
+                        new ViewStatsDto("ewm9", "/events/1", 2L)))));
+    }
+
     @DisplayName("Должен получить статистику по посещениям с указанием количества уникальных ip")
     @Test
     public void shouldGetStatsAndUniqueIp() {
@@ -76,7 +142,7 @@ public class StatsServiceImplTest {
                 new ViewStatsDto("ewm1", "/events/1", 1L),
                 new ViewStatsDto("ewm2", "/events/2", 1L));
 
-        List<ViewStatsDto> result = statsService.getStats(start, end, null, true);
+        List<ViewStatsDto> result = statsService.getStats(start, end, null, null, true, false);
 
         assertThat(viewStatsDtoList, is(equalTo(result)));
     }
@@ -89,7 +155,7 @@ public class StatsServiceImplTest {
                 new ViewStatsDto("ewm2", "/events/2", 2L),
                 new ViewStatsDto("ewm1", "/events/1", 1L));
 
-        List<ViewStatsDto> result = statsService.getStats(start, end, null, false);
+        List<ViewStatsDto> result = statsService.getStats(start, end, null, null, false, false);
 
         assertThat(viewStatsDtoList, is(equalTo(result)));
     }
@@ -101,7 +167,7 @@ public class StatsServiceImplTest {
                 new ViewStatsDto("ewm3", "/events/3", 2L),
                 new ViewStatsDto("ewm2", "/events/2", 1L));
 
-        List<ViewStatsDto> result = statsService.getStats(start, end, uris, true);
+        List<ViewStatsDto> result = statsService.getStats(start, end, uris, null, true, false);
 
         assertThat(viewStatsDtoList, is(equalTo(result)));
     }
@@ -113,18 +179,309 @@ public class StatsServiceImplTest {
                 new ViewStatsDto("ewm3", "/events/3", 3L),
                 new ViewStatsDto("ewm2", "/events/2", 2L));
 
-        List<ViewStatsDto> result = statsService.getStats(start, end, uris, false);
+        List<ViewStatsDto> result = statsService.getStats(start, end, uris, null, false, false);
 
         assertThat(viewStatsDtoList, is(equalTo(result)));
     }
 
+    @DisplayName("Должен по агрегатам считать столько же посещений, сколько по сырым строкам, на любых границах")
+    @Test
+    public void shouldGetStatsFromRollupsSameAsFromRawHits() {
+        Random random = new Random(42);
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            hits.add(new EndpointHitDto("ewm", "/events/" + random.nextInt(5), "121.0.0." + random.nextInt(20),
+                    timestamp.plusSeconds(random.nextInt(3 * 24 * 60 * 60))));
+        }
+        statsService.createHits(hits);
+
+        for (int i = 0; i < 20; i++) {
+            LocalDateTime rangeStart = timestamp.plusSeconds(random.nextInt(24 * 60 * 60));
+            LocalDateTime rangeEnd = rangeStart.plusSeconds(random.nextInt(2 * 24 * 60 * 60));
+
+            assertThat(Set.copyOf(statsService.getStats(rangeStart, rangeEnd, null, null, false, false)),
+                    is(equalTo(Set.copyOf(statsMapper.toViewStatsDtoList(
+                            statsRepository.findAllByDateBetweenStartAndEnd(rangeStart, rangeEnd))))));
+            assertThat(Set.copyOf(statsService.getStats(rangeStart, rangeEnd, uris, null, false, false)),
+                    is(equalTo(Set.copyOf(statsMapper.toViewStatsDtoList(
+                            findStats(rangeStart, rangeEnd, uris, false))))));
+        }
+    }
+
+    @DisplayName("Фильтр по приложению и префиксу uri должен отбирать те же эндпоинты на любом пути подсчёта")
+    @Test
+    public void shouldGetStatsByAppAndUriPrefix() {
+        Random random = new Random(21);
+        String[] apps = {"ewm", "ewm-admin"};
+        String[] uris = {"/events/1", "/events/2", "/events_1", "/eventsX", "/compilations/1", "/users/1/events"};
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            hits.add(new EndpointHitDto(apps[random.nextInt(apps.length)], uris[random.nextInt(uris.length)],
+                    "10.0.0." + random.nextInt(50), timestamp.plusSeconds(random.nextInt(3 * 24 * 60 * 60))));
+        }
+        statsService.createHits(hits);
+        LocalDateTime rangeStart = timestamp.plusHours(5);
+        LocalDateTime rangeEnd = timestamp.plusDays(2).plusMinutes(17);
+
+        List<StatsFilter> filters = List.of(
+                StatsFilter.of(null, List.of("/events/*")),
+                StatsFilter.of("ewm-admin", null),
+                StatsFilter.of("ewm", List.of("/events_*", "/compilations/1")),
+                StatsFilter.of(null, List.of("/events")));
+        for (boolean unique : List.of(false, true)) {
+            for (boolean approximate : List.of(false, true)) {
+                List<ViewStatsDto> all = statsService.getStats(rangeStart, rangeEnd, null, null, unique, approximate);
+                for (StatsFilter filter : filters) {
+                    List<ViewStatsDto> expected = all.stream()
+                            .filter(stats -> filter.matches(stats.getApp(), stats.getUri()))
+                            .collect(Collectors.toList());
+
+                    assertThat(filter.toString(), statsService.getStats(rangeStart, rangeEnd,
+                                    concat(filter.getUris(), filter.getPrefixes()), filter.getApp(), unique,
+                                    approximate),
+                            is(equalTo(expected)));
+                }
+            }
+        }
+        assertThat(statsService.getStatsSeries(rangeStart, rangeEnd, List.of("/events/*"), "ewm", Granularity.HOUR,
+                        false).getSeries().stream().map(HitSeriesDto::getUri).collect(Collectors.toSet()),
+                is(equalTo(Set.of("/events/1", "/events/2"))));
+    }
+
+    @DisplayName("Точный подсчёт уникальных ip по битмапам должен совпадать с COUNT(DISTINCT) по сырым строкам")
+    @Test
+    public void shouldGetUniqueStatsFromBitmapsSameAsFromRawHits() {
+        Random random = new Random(13);
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            hits.add(new EndpointHitDto("ewm", "/events/" + random.nextInt(5), "10.0.0." + random.nextInt(200),
+                    timestamp.plusSeconds(random.nextInt(4 * 24 * 60 * 60))));
+        }
+        statsService.createHits(hits);
+
+        for (int i = 0; i < 20; i++) {
+            LocalDateTime rangeStart = timestamp.plusSeconds(random.nextInt(24 * 60 * 60));
+            LocalDateTime rangeEnd = rangeStart.plusSeconds(random.nextInt(3 * 24 * 60 * 60));
+
+            assertThat(Set.copyOf(statsService.getStats(rangeStart, rangeEnd, null, null, true, false)),
+                    is(equalTo(Set.copyOf(statsMapper.toViewStatsDtoList(
+                            statsRepository.findAllByDateBetweenAndUniqueIp(rangeStart, rangeEnd))))));
+            assertThat(Set.copyOf(statsService.getStats(rangeStart, rangeEnd, uris, null, true, false)),
+                    is(equalTo(Set.copyOf(statsMapper.toViewStatsDtoList(
+                            findStats(rangeStart, rangeEnd, uris, true))))));
+        }
+    }
+
+    @DisplayName("Точный подсчёт уникальных ip должен учитывать ip не из словаря, не добавляя их в словарь")
+    @Test
+    public void shouldCountUnknownIpsWithoutAddingThem() {
+        jdbcTemplate.update("INSERT INTO endpoint (app_id, uri_id, ip, timestamp) " +
+                "SELECT app_id, uri_id, ?, timestamp FROM endpoint WHERE timestamp = ?",
+                IpAddresses.toBytes("10.0.0.1"), timestamp);
+
+        List<ViewStatsDto> result = statsService.getStats(timestamp.minusHours(1), timestamp.plusHours(1),
+                List.of("/events/1"), null, true, false);
+
+        assertEquals(List.of(new ViewStatsDto("ewm1", "/events/1", 2L)), result);
+        assertTrue(hitDictionaries.ips().find(List.of("10.0.0.1")).isEmpty());
+    }
+
+    @DisplayName("Словарь должен выдавать id подряд, не расходуя их на уже известные значения")
+    @Test
+    public void shouldAssignDenseDictionaryIds() {
+        Dictionary dictionary = hitDictionaries.uris();
+        int first = dictionary.resolve("/dense/1");
+
+        dictionary.resolve(List.of("/dense/1", "/events/1"));
+
+        assertEquals(first + 1, dictionary.resolve("/dense/2"));
+    }
+
+    @DisplayName("Приближённый подсчёт уникальных ip по скетчам должен совпадать с точным в пределах ошибки")
+    @Test
+    public void shouldGetApproximateUniqueStatsCloseToExact() {
+        Random random = new Random(7);
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            hits.add(new EndpointHitDto("ewm", "/events/" + random.nextInt(3), "10.0." + random.nextInt(40) +
+                    "." + random.nextInt(250), timestamp.plusSeconds(random.nextInt(5 * 24 * 60 * 60))));
+        }
+        statsService.createHits(hits);
+        LocalDateTime rangeStart = timestamp.plusHours(7);
+        LocalDateTime rangeEnd = timestamp.plusDays(4).plusMinutes(13);
+
+        List<ViewStatsDto> exact = statsService.getStats(rangeStart, rangeEnd, null, null, true, false);
+        List<ViewStatsDto> approximate = statsService.getStats(rangeStart, rangeEnd, null, null, true, true);
+
+        assertEquals(exact.size(), approximate.size());
+        for (ViewStatsDto exactStats : exact) {
+            ViewStatsDto approximateStats = approximate.stream()
+                    .filter(stats -> stats.getApp().equals(exactStats.getApp())
+                            && stats.getUri().equals(exactStats.getUri()))
+                    .findFirst()
+                    .orElseThrow();
+            double error = Math.abs(approximateStats.getHits() - exactStats.getHits()) /
+                    (double) exactStats.getHits();
+            assertTrue(error < 3 * HyperLogLog.STANDARD_ERROR, exactStats.getUri() + ": error=" + error);
+        }
+    }
+
+    @DisplayName("Приближённый подсчёт на малом числе ip должен совпадать с точным")
+    @Test
+    public void shouldGetApproximateUniqueStatsEqualToExactForSmallCardinality() {
+        assertThat(statsService.getStats(start, end, uris, null, true, true),
+                is(equalTo(statsService.getStats(start, end, uris, null, true, false))));
+    }
+
+    @DisplayName("Топ эндпоинтов должен совпадать с началом полной статистики")
+    @Test
+    public void shouldGetTopStatsAsHeadOfStats() {
+        Random random = new Random(5);
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            hits.add(new EndpointHitDto("ewm", "/events/" + random.nextInt(30), "10.0.0." + random.nextInt(50),
+                    timestamp.plusSeconds(random.nextInt(3 * 24 * 60 * 60))));
+        }
+        statsService.createHits(hits);
+        LocalDateTime rangeStart = timestamp.plusHours(5);
+        LocalDateTime rangeEnd = timestamp.plusDays(2).plusMinutes(7);
+
+        assertThat(statsService.getTopStats(rangeStart, rangeEnd, 5, false),
+                is(equalTo(statsService.getStats(rangeStart, rangeEnd, null, null, false, false).subList(0, 5))));
+        assertThat(statsService.getTopStats(rangeStart, rangeEnd, 5, true),
+                is(equalTo(statsService.getStats(rangeStart, rangeEnd, null, null, true, false).subList(0, 5))));
+    }
+
+    @DisplayName("Ряд по часам и дням должен совпадать со статистикой, запрошенной отдельно по каждому бакету")
+    @Test
+    public void shouldGetStatsSeriesSameAsStatsPerBucket() {
+        Random random = new Random(3);
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            hits.add(new EndpointHitDto("ewm", "/events/" + random.nextInt(4), "10.0.0." + random.nextInt(30),
+                    timestamp.plusSeconds(random.nextInt(3 * 24 * 60 * 60))));
+        }
+        statsService.createHits(hits);
+        LocalDateTime rangeStart = timestamp.plusHours(3).plusMinutes(17).plusSeconds(4);
+        LocalDateTime rangeEnd = timestamp.plusDays(2).plusMinutes(41);
+
+        for (Granularity interval : List.of(Granularity.HOUR, Granularity.DAY)) {
+            for (boolean unique : List.of(false, true)) {
+                ViewSeriesDto series = statsService.getStatsSeries(rangeStart, rangeEnd, uris, null, interval, unique);
+
+                assertEquals(interval.floor(rangeStart), series.getStart());
+                // /events/2 and /events/3 of "ewm" and /events/2 of "ewm2" from setUp
+                assertEquals(3, series.getSeries().size());
+                for (HitSeriesDto hitSeries : series.getSeries()) {
+                    long[] hitsPerBucket = hitSeries.getHits();
+                    LocalDateTime bucket = series.getStart();
+                    for (int i = 0; i < hitsPerBucket.length; i++, bucket = interval.next(bucket)) {
+                        LocalDateTime from = bucket.isBefore(rangeStart) ? rangeStart : bucket;
+                        LocalDateTime nextBucket = interval.next(bucket).minusSeconds(1);
+                        LocalDateTime to = nextBucket.isAfter(rangeEnd) ? rangeEnd : nextBucket;
+                        List<ViewStats> expected = findStats(from, to, List.of(hitSeries.getUri()), unique);
+                        long expectedHits = expected.stream()
+                                .filter(viewStats -> viewStats.getApp().equals(hitSeries.getApp()))
+                                .mapToLong(ViewStats::getHits)
+                                .sum();
+                        assertEquals(expectedHits, hitsPerBucket[i],
+                                hitSeries.getUri() + " " + bucket + " unique=" + unique);
+                    }
+                }
+            }
+        }
+    }
+
+    @DisplayName("Должен считать просмотры сущностей по числовым id от собственного начала каждой")
+    @Test
+    public void shouldGetEntityStatsOfIdsWithTheirOwnStart() {
+        LocalDateTime queryEnd = timestamp.plusDays(10);
+        Map<Long, LocalDateTime> startsById = Map.of(
+                1L, timestamp,
+                2L, timestamp.plusDays(2),
+                3L, timestamp.plusDays(4).plusSeconds(1),
+                4L, timestamp);
+
+        for (boolean unique : List.of(false, true)) {
+            List<EntityStartDto> entities = new ArrayList<>();
+            Map<Long, Long> expected = new HashMap<>();
+            startsById.forEach((id, idStart) -> {
+                entities.add(new EntityStartDto(id, idStart));
+                statsService.getStats(idStart, queryEnd, List.of("/events/" + id), null, unique, false)
+                        .forEach(viewStats -> expected.merge(id, viewStats.getHits(), Long::sum));
+            });
+
+            EntityStatsDto entityStats = statsService.getEntityStats(
+                    new EntityStatsQueryDto(null, "events", entities, queryEnd, unique));
+            Map<Long, Long> actual = new HashMap<>();
+            for (int i = 0; i < entityStats.getIds().length; i++) {
+                actual.put(entityStats.getIds()[i], entityStats.getHits()[i]);
+            }
+            assertThat(actual, is(equalTo(expected)));
+        }
+
+        EntityStatsDto ewm3Stats = statsService.getEntityStats(new EntityStatsQueryDto("ewm3", "events",
+                List.of(new EntityStartDto(2L, timestamp), new EntityStartDto(3L, timestamp)), queryEnd, false));
+        assertThat(ewm3Stats.getIds(), is(equalTo(new long[]{3L})));
+        assertThat(ewm3Stats.getHits(), is(equalTo(new long[]{3L})));
+        assertThat(statsService.getEntityStats(new EntityStatsQueryDto(null, "users",
+                List.of(new EntityStartDto(1L, timestamp)), queryEnd, false)).getIds().length, is(0));
+    }
+
+    @DisplayName("Пакетный запрос должен считать каждый uri от его собственного начала")
+    @Test
+    public void shouldGetStatsOfUrisWithTheirOwnStart() {
+        LocalDateTime queryEnd = timestamp.plusDays(10);
+        Map<String, LocalDateTime> startsByUri = Map.of(
+                "/events/1", timestamp,
+                "/events/2", timestamp.plusDays(2),
+                "/events/3", timestamp.plusDays(4).plusSeconds(1));
+
+        for (boolean unique : List.of(false, true)) {
+            List<UriStartDto> uriStarts = new ArrayList<>();
+            List<ViewStatsDto> expected = new ArrayList<>();
+            startsByUri.forEach((uri, uriStart) -> {
+                uriStarts.add(new UriStartDto(uri, uriStart));
+                expected.addAll(statsService.getStats(uriStart, queryEnd, List.of(uri), null, unique, false));
+            });
+
+            assertThat(Set.copyOf(statsService.getStats(new StatsQueryDto(uriStarts, queryEnd, unique))),
+                    is(equalTo(Set.copyOf(expected))));
+        }
+        assertThat(statsService.getStats(new StatsQueryDto(List.of(new UriStartDto("/events/3", timestamp),
+                        new UriStartDto("/events/3", timestamp.plusDays(4).plusSeconds(1))), queryEnd, false)),
+                is(equalTo(List.of(new ViewStatsDto("ewm3", "/events/3", 3L)))));
+    }
+
     @DisplayName("Должен выдать исключение EndTimeBeforeStartTimeException, если время end начинается раньше start")
     @Test
     public void shouldNotGetStats() {
         EndTimeBeforeStartTimeException exception = assertThrows(
                 EndTimeBeforeStartTimeException.class,
-                () -> statsService.getStats(end, start, null, false)
+                () -> statsService.getStats(end, start, null, null, false, false)
         );
         assertEquals("End time cannot be before than start time", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @DisplayName("Должен отклонить ряд с интервалом, отличным от часа и дня")
+    @Test
+    public void shouldNotGetStatsSeriesPerMinute() {
+        InvalidIntervalException exception = assertThrows(InvalidIntervalException.class,
+                () -> statsService.getStatsSeries(start, end, null, null, Granularity.MINUTE, false));
+        assertEquals("Series are built per HOUR or DAY, not per MINUTE", exception.getMessage());
+    }
+
+    private static List<String> concat(List<String> uris, List<String> prefixes) {
+        List<String> all = new ArrayList<>(uris);
+        prefixes.forEach(prefix -> all.add(prefix + "*"));
+        return all;
+    }
+
+    // filters on uri here rather than in JPQL, where binding a uri would add it to the dictionary
+    private List<ViewStats> findStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        return (unique ? statsRepository.findAllByDateBetweenAndUniqueIp(start, end)
+                : statsRepository.findAllByDateBetweenStartAndEnd(start, end)).stream()
+                .filter(viewStats -> uris.contains(viewStats.getUri()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,43 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.ViewStatsDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:import", "stats.cache.enabled=false",
+        "stats.dedup.enabled=true", "stats.ingest.buffer.enabled=true", "stats.ingest.buffer.capacity=1",
+        "stats.ingest.import.batch-size=2"},
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class StatsServiceImportTest {
+    private final StatsService statsService;
+
+    @DisplayName("Импорт должен записать каждый запрос, минуя дедупликацию и буфер, и вернуть их число")
+    @Test
+    public void shouldWriteEveryImportedHit() {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 2, 1, 10, 1, 8);
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            hits.add(new EndpointHitDto("ewm", "/events/1", "121.0.0.1", timestamp));
+        }
+
+        long imported = statsService.importHits(hits.iterator());
+
+        assertEquals(5, imported);
+        assertThat(statsService.getStats(timestamp, timestamp.plusHours(1), null, "ewm", false, false),
+                is(equalTo(List.of(new ViewStatsDto("ewm", "/events/1", 5L)))));
+    }
+}
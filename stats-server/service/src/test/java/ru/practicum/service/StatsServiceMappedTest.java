@@ -0,0 +1,98 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.EntityStartDto;
+import ru.practicum.EntityStatsDto;
+import ru.practicum.EntityStatsQueryDto;
+import ru.practicum.HitSeriesDto;
+import ru.practicum.StatsQueryDto;
+import ru.practicum.UriStartDto;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.model.Granularity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:mapped", "stats.cache.enabled=false",
+        "stats.storage.engine=mapped"},
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class StatsServiceMappedTest {
+    private static final String APP = "ewm-main-service";
+    private final StatsService statsService;
+    private final AggregateBackfill aggregateBackfill;
+    private final JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) throws IOException {
+        Path directory = Files.createTempDirectory("hits");
+        registry.add("stats.storage.mapped.directory", directory::toString);
+    }
+
+    @DisplayName("Агрегаты должны дополняться запросами неполных минут по краям диапазона из журнала запросов")
+    @Test
+    public void shouldCountRawEdgesOfOffMinuteRange() {
+        LocalDateTime hour = LocalDateTime.of(2024, 3, 1, 10, 0);
+        statsService.createHits(List.of(
+                new EndpointHitDto(APP, "/events/1", "192.168.0.1", hour.plusSeconds(10)),
+                new EndpointHitDto(APP, "/events/1", "192.168.0.1", hour.plusSeconds(30)),
+                new EndpointHitDto(APP, "/events/1", "192.168.0.2", hour.plusMinutes(2)),
+                new EndpointHitDto(APP, "/events/1", "192.168.0.3", hour.plusMinutes(5).plusSeconds(30)),
+                new EndpointHitDto(APP, "/events/2", "192.168.0.1", hour.plusMinutes(5).plusSeconds(10)),
+                new EndpointHitDto(APP, "/events/1", "192.168.0.1", hour.plusMinutes(5).plusSeconds(50))));
+        LocalDateTime start = hour.plusSeconds(15);
+        LocalDateTime end = hour.plusMinutes(5).plusSeconds(45);
+        List<ViewStatsDto> expected = List.of(new ViewStatsDto(APP, "/events/1", 3L),
+                new ViewStatsDto(APP, "/events/2", 1L));
+
+        assertThat(statsService.getStats(start, end, List.of("/events/*"), APP, false, false),
+                is(equalTo(expected)));
+        assertThat(statsService.getStats(new StatsQueryDto(List.of(new UriStartDto("/events/1", start),
+                new UriStartDto("/events/2", start)), end, false)), is(equalTo(expected)));
+        EntityStatsDto entityStats = statsService.getEntityStats(new EntityStatsQueryDto(APP, "events",
+                List.of(new EntityStartDto(1L, start), new EntityStartDto(2L, start)), end, false));
+        assertThat(entityStats.getIds(), is(equalTo(new long[]{1L, 2L})));
+        assertThat(entityStats.getHits(), is(equalTo(new long[]{3L, 1L})));
+        List<HitSeriesDto> series = statsService.getStatsSeries(start, end, List.of("/events/*"), APP,
+                Granularity.HOUR, false).getSeries();
+        assertEquals(2, series.size());
+        assertThat(series.get(0).getHits(), is(equalTo(new long[]{3L})));
+        assertThat(series.get(1).getHits(), is(equalTo(new long[]{1L})));
+    }
+
+    @DisplayName("Заполнение агрегатов должно читать запросы из журнала запросов")
+    @Test
+    public void shouldBackfillFromHitLog() {
+        LocalDateTime day = LocalDateTime.of(2024, 4, 1, 0, 0);
+        statsService.createHits(List.of(
+                new EndpointHitDto(APP, "/events/3", "192.168.0.1", day.plusHours(1)),
+                new EndpointHitDto(APP, "/events/3", "192.168.0.2", day.plusHours(2)),
+                new EndpointHitDto(APP, "/events/4", "192.168.0.3", day.plusHours(3))));
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "endpoint_rollup_minute", "endpoint_rollup_hour",
+                "endpoint_rollup_day");
+
+        aggregateBackfill.afterSingletonsInstantiated();
+
+        assertEquals(List.of(2L, 1L), jdbcTemplate.queryForList(
+                "SELECT hits FROM endpoint_rollup_day WHERE bucket = ? ORDER BY uri", Long.class,
+                Timestamp.valueOf(day)));
+    }
+}
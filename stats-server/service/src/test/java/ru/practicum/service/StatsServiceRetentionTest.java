@@ -0,0 +1,135 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.EntityStartDto;
+import ru.practicum.EntityStatsDto;
+import ru.practicum.EntityStatsQueryDto;
+import ru.practicum.HitSeriesDto;
+import ru.practicum.StatsQueryDto;
+import ru.practicum.UriStartDto;
+import ru.practicum.ViewSeriesDto;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.exception.InvalidIntervalException;
+import ru.practicum.model.Granularity;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static ru.practicum.model.Granularity.DAY;
+
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:retention", "stats.cache.enabled=false",
+        "stats.retention.enabled=true", "stats.retention.raw-hits=7d"},
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class StatsServiceRetentionTest {
+    private static final String APP = "ewm-main-service";
+    private final StatsService statsService;
+    private final RetentionTiers retentionTiers;
+    private final JdbcTemplate jdbcTemplate;
+    private LocalDateTime oldDay;
+    private LocalDateTime recent;
+    private LocalDateTime end;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "endpoint", "endpoint_rollup_minute", "endpoint_rollup_hour",
+                "endpoint_rollup_day", "endpoint_hll_day", "endpoint_bitmap_day");
+        end = LocalDateTime.now().withNano(0);
+        oldDay = DAY.floor(end.minusDays(30));
+        recent = end.minusDays(1);
+        statsService.createHits(List.of(
+                new EndpointHitDto(APP, "/events/1", "192.168.0.1", oldDay.plusHours(10)),
+                new EndpointHitDto(APP, "/events/1", "192.168.0.1", oldDay.plusHours(11)),
+                new EndpointHitDto(APP, "/events/1", "192.168.0.2", oldDay.plusDays(1).plusHours(12)),
+                new EndpointHitDto(APP, "/events/1", "192.168.0.1", recent),
+                new EndpointHitDto(APP, "/events/2", "192.168.0.3", oldDay.plusHours(10)),
+                new EndpointHitDto(APP, "/events/2", "192.168.0.3", recent)));
+        // what the partitions of raw hits past their retention leave behind
+        jdbcTemplate.update("DELETE FROM endpoint WHERE timestamp < ?",
+                Timestamp.valueOf(retentionTiers.current().since(null)));
+    }
+
+    @DisplayName("Пакетный запрос должен считать по агрегатам начала, для которых сырые запросы уже удалены")
+    @Test
+    public void shouldGetStatsOfUrisFromAggregatesOnceRawHitsExpire() {
+        Map<String, LocalDateTime> startsByUri = Map.of(
+                "/events/1", oldDay.plusHours(9),
+                "/events/2", recent.minusHours(1));
+
+        for (boolean unique : List.of(false, true)) {
+            List<UriStartDto> uriStarts = new ArrayList<>();
+            List<ViewStatsDto> expected = new ArrayList<>();
+            startsByUri.forEach((uri, uriStart) -> {
+                uriStarts.add(new UriStartDto(uri, uriStart));
+                expected.addAll(statsService.getStats(uriStart, end, List.of(uri), null, unique, false));
+            });
+
+            assertThat(Set.copyOf(statsService.getStats(new StatsQueryDto(uriStarts, end, unique))),
+                    is(equalTo(Set.copyOf(expected))));
+        }
+        assertThat(statsService.getStats(new StatsQueryDto(List.of(new UriStartDto("/events/1", oldDay)), end, false)),
+                is(equalTo(List.of(new ViewStatsDto(APP, "/events/1", 4L)))));
+    }
+
+    @DisplayName("Просмотры сущностей должны учитывать запросы, сырые строки которых уже удалены")
+    @Test
+    public void shouldGetEntityStatsFromAggregatesOnceRawHitsExpire() {
+        Map<Long, LocalDateTime> startsById = Map.of(
+                1L, oldDay.plusHours(9),
+                2L, recent.minusHours(1));
+
+        for (boolean unique : List.of(false, true)) {
+            List<EntityStartDto> entities = new ArrayList<>();
+            Map<Long, Long> expected = new HashMap<>();
+            startsById.forEach((id, idStart) -> {
+                entities.add(new EntityStartDto(id, idStart));
+                statsService.getStats(idStart, end, List.of("/events/" + id), APP, unique, false)
+                        .forEach(viewStats -> expected.merge(id, viewStats.getHits(), Long::sum));
+            });
+
+            EntityStatsDto entityStats = statsService.getEntityStats(
+                    new EntityStatsQueryDto(APP, "events", entities, end, unique));
+            Map<Long, Long> actual = new HashMap<>();
+            for (int i = 0; i < entityStats.getIds().length; i++) {
+                actual.put(entityStats.getIds()[i], entityStats.getHits()[i]);
+            }
+            assertThat(actual, is(equalTo(expected)));
+        }
+        EntityStatsDto entityStats = statsService.getEntityStats(new EntityStatsQueryDto(APP, "events",
+                List.of(new EntityStartDto(1L, oldDay), new EntityStartDto(2L, oldDay)), end, false));
+        assertThat(entityStats.getIds(), is(equalTo(new long[]{1L, 2L})));
+        assertThat(entityStats.getHits(), is(equalTo(new long[]{4L, 2L})));
+    }
+
+    @DisplayName("Ряд уникальных ip по дням должен браться из битмапов там, где сырые запросы удалены")
+    @Test
+    public void shouldGetUniqueSeriesPerDayFromBitmapsOnceRawHitsExpire() {
+        ViewSeriesDto series = statsService.getStatsSeries(oldDay, end, List.of("/events/1"), null, DAY, true);
+
+        assertEquals(1, series.getSeries().size());
+        HitSeriesDto hitSeries = series.getSeries().get(0);
+        assertEquals(1L, hitSeries.getHits()[0]);
+        assertEquals(1L, hitSeries.getHits()[1]);
+        assertEquals(1L, hitSeries.getHits()[(int) DAY.bucketsBetween(oldDay, DAY.floor(recent))]);
+        assertThrows(InvalidIntervalException.class, () -> statsService.getStatsSeries(oldDay, end,
+                List.of("/events/1"), null, Granularity.HOUR, true));
+    }
+}
@@ -0,0 +1,112 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.practicum.config.RollupProperties;
+import ru.practicum.config.TopProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.RangeSegment;
+import ru.practicum.model.StatsFilter;
+import ru.practicum.model.ViewStats;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class TopHittersTest {
+    private TopProperties properties;
+    private SegmentedStats segmentedStats;
+    private TopHitters topHitters;
+    private LocalDateTime today;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new TopProperties();
+        properties.setCapacity(5);
+        segmentedStats = mock(SegmentedStats.class);
+        topHitters = new TopHitters(properties, new RollupProperties(), segmentedStats);
+        topHitters.load();
+        today = LocalDate.now().atStartOfDay();
+    }
+
+    @DisplayName("Должен отдавать самые посещаемые эндпоинты целых дней из сводок")
+    @Test
+    public void shouldGetTopOfWholeDays() {
+        topHitters.aggregate(hits(today.minusDays(1), "/events/1", 3));
+        topHitters.aggregate(hits(today, "/events/2", 4));
+        topHitters.aggregate(hits(today, "/events/1", 2));
+        topHitters.aggregate(hits(today, "/events/3", 1));
+
+        Optional<List<ViewStats>> top = topHitters.getTop(today.minusDays(1), today.plusDays(1).minusSeconds(1), 2);
+
+        assertEquals(Optional.of(List.of(new ViewStats("ewm-main-service", "/events/1", 5L),
+                new ViewStats("ewm-main-service", "/events/2", 4L))), top);
+        assertEquals(Optional.of(List.of(new ViewStats("ewm-main-service", "/events/2", 4L))),
+                topHitters.getTop(today, today.plusDays(1).minusSeconds(1), 1));
+    }
+
+    @DisplayName("Не должен отвечать по сводкам на диапазон, не совпадающий с целыми днями")
+    @Test
+    public void shouldNotGetTopOfPartialDays() {
+        topHitters.aggregate(hits(today, "/events/1", 1));
+
+        assertTrue(topHitters.getTop(today.plusHours(1), today.plusDays(1).minusSeconds(1), 1).isEmpty());
+        assertTrue(topHitters.getTop(today, today.plusHours(1), 1).isEmpty());
+        assertTrue(topHitters.getTop(today.minusDays(properties.getDays()), today.minusSeconds(1), 1).isEmpty());
+    }
+
+    @DisplayName("Не должен отвечать по сводкам, когда вытесненный эндпоинт может попасть в топ")
+    @Test
+    public void shouldNotGetTopWhenEvictedEndpointMayBeInIt() {
+        topHitters.aggregate(hits(today, "/events/100", 50));
+        for (int i = 0; i < 10; i++) {
+            topHitters.aggregate(hits(today, "/events/" + i, 2));
+        }
+
+        LocalDateTime end = today.plusDays(1).minusSeconds(1);
+        assertEquals(Optional.of(List.of(new ViewStats("ewm-main-service", "/events/100", 50L))),
+                topHitters.getTop(today, end, 1));
+        assertTrue(topHitters.getTop(today, end, 3).isEmpty());
+    }
+
+    @DisplayName("Перезагрузка должна заменять сводки агрегатами, а не добавлять к ним")
+    @Test
+    public void shouldReplaceSummariesOnReload() {
+        topHitters.aggregate(hits(today.minusDays(1), "/events/2", 2));
+        topHitters.aggregate(hits(today, "/events/1", 3));
+        doAnswer(invocation -> {
+            List<RangeSegment> segments = invocation.getArgument(0);
+            Consumer<ViewStats> consumer = invocation.getArgument(2);
+            if (segments.get(0).getFrom().equals(today)) {
+                consumer.accept(new ViewStats("ewm-main-service", "/events/1", 7L));
+            }
+            return null;
+        }).when(segmentedStats).forEachStats(anyList(), any(StatsFilter.class), any());
+
+        topHitters.load();
+
+        LocalDateTime end = today.plusDays(1).minusSeconds(1);
+        assertEquals(Optional.of(List.of(new ViewStats("ewm-main-service", "/events/1", 7L))),
+                topHitters.getTop(today, end, 1));
+        assertEquals(Optional.of(List.of()), topHitters.getTop(today.minusDays(1), today.minusSeconds(1), 1));
+    }
+
+    private static List<EndpointHit> hits(LocalDateTime day, String uri, int count) {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            hits.add(new EndpointHit(null, "ewm-main-service", uri, "121.0.0.1", day.plusHours(12)));
+        }
+        return hits;
+    }
+}
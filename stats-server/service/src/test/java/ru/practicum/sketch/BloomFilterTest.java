@@ -0,0 +1,57 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BloomFilterTest {
+    @DisplayName("Должен помнить все добавленные ключи и ошибаться на новых не чаще заданной доли")
+    @Test
+    public void shouldKeepFalsePositiveRateWithinTarget() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.put(hash(i)) || filter.mightContain(hash(i)));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain(hash(i)));
+            assertFalse(filter.put(hash(i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = 100_000; i < 200_000; i++) {
+            if (filter.mightContain(hash(i))) {
+                falsePositives++;
+            }
+        }
+        double rate = falsePositives / 100_000.0;
+        assertTrue(rate < 0.015, "false-positive rate=" + rate);
+        assertEquals(0.01, filter.falsePositiveRate(), 0.003);
+    }
+
+    @DisplayName("Не должен терять биты при одновременном добавлении")
+    @Test
+    public void shouldNotLoseBitsUnderConcurrentPuts() {
+        BloomFilter filter = new BloomFilter(400_000, 0.01);
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 100_000;
+            writers.add(CompletableFuture.runAsync(() ->
+                    IntStream.range(offset, offset + 100_000).forEach(i -> filter.put(hash(i)))));
+        }
+        writers.forEach(CompletableFuture::join);
+
+        assertTrue(IntStream.range(0, 400_000).allMatch(i -> filter.mightContain(hash(i))));
+    }
+
+    private static long hash(int i) {
+        return Hashing.hash64("10.0." + (i >> 8) + "." + (i & 0xff));
+    }
+}
@@ -0,0 +1,77 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HyperLogLogTest {
+    @DisplayName("Должен оценивать число уникальных ip в пределах трёх стандартных ошибок")
+    @Test
+    public void shouldEstimateWithinErrorBound() {
+        for (int cardinality : new int[]{1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < cardinality; i++) {
+                sketch.add(ip(i));
+            }
+
+            double error = Math.abs(sketch.estimate() - cardinality) / (double) cardinality;
+            assertTrue(error < 3 * HyperLogLog.STANDARD_ERROR,
+                    "cardinality=" + cardinality + ", relative error=" + error);
+        }
+    }
+
+    @DisplayName("Должен давать точный ответ на малом числе уникальных ip и не учитывать повторы")
+    @Test
+    public void shouldCountSmallCardinalityExactly() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 20; j++) {
+                sketch.add(ip(j));
+            }
+        }
+
+        assertEquals(20, sketch.estimate());
+    }
+
+    @DisplayName("Объединение скетчей должно совпадать со скетчем объединения множеств")
+    @Test
+    public void shouldMergeAsUnion() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 30_000; i++) {
+            first.add(ip(i));
+            union.add(ip(i));
+        }
+        for (int i = 20_000; i < 50_000; i++) {
+            second.add(ip(i));
+            union.add(ip(i));
+        }
+
+        assertEquals(union.estimate(), first.merge(second).estimate());
+    }
+
+    @DisplayName("Должен восстанавливать скетч после сериализации в разреженном и плотном виде")
+    @Test
+    public void shouldSerializeAndDeserialize() {
+        HyperLogLog sparse = new HyperLogLog();
+        HyperLogLog dense = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) {
+            if (i < 50) {
+                sparse.add(ip(i));
+            }
+            dense.add(ip(i));
+        }
+
+        byte[] sparseBytes = sparse.toBytes();
+        assertTrue(sparseBytes.length < 200);
+        assertEquals(sparse.estimate(), HyperLogLog.fromBytes(sparseBytes).estimate());
+        assertEquals(dense.estimate(), HyperLogLog.fromBytes(dense.toBytes()).estimate());
+    }
+
+    private String ip(int i) {
+        return (i >>> 24 & 0xff) + "." + (i >>> 16 & 0xff) + "." + (i >>> 8 & 0xff) + "." + (i & 0xff);
+    }
+}
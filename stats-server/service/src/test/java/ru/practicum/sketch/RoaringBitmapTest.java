@@ -0,0 +1,100 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RoaringBitmapTest {
+    @DisplayName("Должен хранить множество id без повторов в разреженных и плотных контейнерах")
+    @Test
+    public void shouldAddAndContain() {
+        Random random = new Random(1);
+        RoaringBitmap bitmap = new RoaringBitmap();
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            expected.add(i);
+            bitmap.add(i);
+        }
+        for (int i = 0; i < 20_000; i++) {
+            int id = random.nextInt(Integer.MAX_VALUE);
+            assertEquals(expected.add(id), bitmap.add(id));
+        }
+
+        assertEquals(expected.size(), bitmap.cardinality());
+        expected.forEach(id -> assertTrue(bitmap.contains(id)));
+        assertFalse(bitmap.contains(10_000));
+        assertFalse(bitmap.add(9_999));
+    }
+
+    @DisplayName("Объединение битмапов должно совпадать с объединением множеств")
+    @Test
+    public void shouldOrAsUnion() {
+        RoaringBitmap first = new RoaringBitmap();
+        RoaringBitmap second = new RoaringBitmap();
+        Set<Integer> union = new HashSet<>();
+        for (int i = 0; i < 3_000; i++) {
+            first.add(i * 3);
+            second.add(i * 5 + 1);
+            second.add(200_000 + i);
+            union.add(i * 3);
+            union.add(i * 5 + 1);
+            union.add(200_000 + i);
+        }
+
+        RoaringBitmap result = first.or(second);
+
+        assertEquals(union.size(), result.cardinality());
+        union.forEach(id -> assertTrue(result.contains(id)));
+    }
+
+    @DisplayName("Должен восстанавливать битмап после сериализации")
+    @Test
+    public void shouldSerializeAndDeserialize() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = 0; i < 100; i++) {
+            bitmap.add(i * 7);
+        }
+        for (int i = 0; i < 70_000; i++) {
+            bitmap.add(1 << 20 | i);
+        }
+
+        RoaringBitmap restored = RoaringBitmap.fromBytes(bitmap.toBytes());
+
+        assertEquals(bitmap.cardinality(), restored.cardinality());
+        assertTrue(restored.contains(693));
+        assertFalse(restored.contains(694));
+        assertTrue(restored.contains(1 << 20 | 69_999));
+        assertTrue(new RoaringBitmap().toBytes().length < 10);
+    }
+
+    @DisplayName("Отрицательные id должны храниться наравне с неотрицательными и обходиться после них")
+    @Test
+    public void shouldHoldNegativeIds() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int id : new int[]{-1, 5, Integer.MIN_VALUE, -70_000, Integer.MAX_VALUE, -2}) {
+            assertTrue(bitmap.add(id));
+        }
+        assertFalse(bitmap.add(-1));
+        RoaringBitmap other = new RoaringBitmap();
+        other.add(-2);
+        other.add(-3);
+
+        RoaringBitmap restored = RoaringBitmap.fromBytes(bitmap.or(other).toBytes());
+        List<Integer> ids = new ArrayList<>();
+        restored.forEach(ids::add);
+
+        assertEquals(7, restored.cardinality());
+        assertTrue(restored.contains(-3));
+        assertFalse(restored.contains(-4));
+        assertEquals(List.of(5, Integer.MAX_VALUE, Integer.MIN_VALUE, -70_000, -3, -2, -1), ids);
+    }
+}
@@ -0,0 +1,87 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpaceSavingTest {
+    @DisplayName("Пока ключей не больше ёмкости, счётчики должны быть точными")
+    @Test
+    public void shouldCountExactlyWithinCapacity() {
+        SpaceSaving<String> summary = new SpaceSaving<>(10);
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            String key = "/events/" + (i % 10);
+            summary.add(key, i % 3 + 1);
+            expected.merge(key, (long) (i % 3 + 1), Long::sum);
+        }
+
+        assertEquals(0, summary.untrackedBound());
+        summary.counters().forEach(counter -> {
+            assertEquals(0, counter.getError());
+            assertEquals(expected.get(counter.getKey()), counter.getCount());
+        });
+    }
+
+    @DisplayName("Оценки должны ограничивать истинные значения сверху и снизу на потоке с тяжёлыми ключами")
+    @Test
+    public void shouldBoundCountsOfSkewedStream() {
+        Random random = new Random(1);
+        SpaceSaving<Integer> summary = new SpaceSaving<>(100);
+        Map<Integer, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            int key = zipf(random, 10_000);
+            summary.add(key, 1);
+            expected.merge(key, 1L, Long::sum);
+        }
+
+        assertBounds(summary, expected);
+        IntStream.range(0, 5).forEach(key -> assertTrue(summary.counters().stream()
+                .anyMatch(counter -> counter.getKey() == key && counter.getError() == 0)));
+    }
+
+    @DisplayName("Объединение сводок непересекающихся потоков должно сохранять границы оценок")
+    @Test
+    public void shouldKeepBoundsWhenMerged() {
+        Random random = new Random(2);
+        Map<Integer, Long> expected = new HashMap<>();
+        SpaceSaving<Integer> first = new SpaceSaving<>(50);
+        SpaceSaving<Integer> second = new SpaceSaving<>(50);
+        for (int i = 0; i < 50_000; i++) {
+            int key = zipf(random, 5_000);
+            (i % 2 == 0 ? first : second).add(key, 1);
+            expected.merge(key, 1L, Long::sum);
+        }
+
+        SpaceSaving<Integer> merged = SpaceSaving.merge(List.of(first, second), 50);
+
+        assertEquals(50, merged.size());
+        assertBounds(merged, expected);
+    }
+
+    private static void assertBounds(SpaceSaving<Integer> summary, Map<Integer, Long> expected) {
+        Map<Integer, SpaceSaving.Counter<Integer>> counters = new HashMap<>();
+        summary.counters().forEach(counter -> counters.put(counter.getKey(), counter));
+        expected.forEach((key, count) -> {
+            SpaceSaving.Counter<Integer> counter = counters.get(key);
+            if (counter == null) {
+                assertTrue(count <= summary.untrackedBound());
+            } else {
+                assertTrue(count <= counter.getCount());
+                assertTrue(count >= counter.getCount() - counter.getError());
+            }
+        });
+    }
+
+    private static int zipf(Random random, int keys) {
+        return (int) Math.min(keys - 1, Math.floor(Math.exp(random.nextDouble() * Math.log(keys))) - 1);
+    }
+}